@@ -21,8 +21,19 @@
 package org.matsim.freight.logistics;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
 import org.matsim.api.core.v01.Id;
 import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
 
 /**
  * .... Macht 3 Schritte: 1.) the LSPShipments are handed over to the first {@link
@@ -32,99 +43,225 @@ import org.matsim.freight.logistics.shipment.LspShipment;
  *
  * <p>When traversing this list of {@link LSPResource}s, the operations in each {@link LSPResource}
  * are scheduled individually by calling their {@link LSPResourceScheduler}.
+ *
+ * <p>Steps 2.) and 3.) are a topological sort (Kahn's algorithm) of the graph whose nodes are the
+ * {@link LSPResource}s of the {@link LSP} and whose edges are given by the connections of the
+ * {@link LogisticChainElement}s of the selected plan. It runs in linear time and fails with an
+ * exception, if the resources form a cycle. The result is cached per {@link LSPPlan} and only
+ * recomputed, if the structure of its logistic chains has changed.
+ *
+ * <p>The sort yields levels: the resources of one level only depend on resources of previous
+ * levels, e.g. several distribution carriers that follow the same hub. If a {@link ForkJoinPool} is
+ * given, the resources of a level that declare {@link LSPResource#isSchedulingThreadSafe()} are
+ * scheduled in parallel. The hand-overs of the shipments to the next elements are deferred until
+ * the whole level is done and are then performed in the order of the level, so the result is the
+ * same as with sequential scheduling.
  */
 /* package-private */ class ForwardLogisticChainSchedulerImpl implements LogisticChainScheduler {
 
   /**
-   * The Resources are brought into the right sequence according to the algorithm. The result of
-   * this algorithm is a list of Resources that is later traversed from the front to the back, i.e.
-   * starting with the entry at index 0. In the algorithm, this list is called sortedResourceList.
+   * The sorted resources per plan, together with the structure of the logistic chains they were
+   * computed for. Weak keys, so that removed plans do not stay in memory.
    */
-  private final ArrayList<LSPResource> sortedResourceList;
+  private final Map<LSPPlan, SortedResources> sortedResourcesPerPlan = new WeakHashMap<>();
 
-  /**
-   * The determination of the neighborhood structure among the Resources resulted in the
-   * neighborList.
-   */
-  private final ArrayList<ResourceNeighbours> neighbourList;
+  /** The pool for the parallel scheduling of the resources of one level; null = sequential. */
+  private final ForkJoinPool pool;
 
   private LSP lsp;
   private int bufferTime;
 
   ForwardLogisticChainSchedulerImpl() {
-    this.sortedResourceList = new ArrayList<>();
-    this.neighbourList = new ArrayList<>();
+    this(null);
+  }
+
+  ForwardLogisticChainSchedulerImpl(ForkJoinPool pool) {
+    this.pool = pool;
   }
 
   @Override
   public void scheduleLogisticChain() {
+    LSPPlan lspPlan = lsp.getSelectedPlan();
     insertShipmentsAtBeginning();
-    setResourceNeighbours();
-    sortResources();
-    for (LSPResource resource : sortedResourceList) {
-      resource.schedule(bufferTime, lsp.getSelectedPlan());
+    if (pool != null) {
+      // Create all shipment plans up front, so that the resources of a level only read from the
+      // collection of shipment plans when they run in parallel.
+      for (LspShipment lspShipment : lsp.getLspShipments()) {
+        LspShipmentUtils.getOrCreateShipmentPlan(lspPlan, lspShipment.getId());
+      }
+    }
+    for (List<LSPResource> level : getSortedLevels(lspPlan)) {
+      scheduleLevel(level, lspPlan);
     }
   }
 
+  private void scheduleLevel(List<LSPResource> level, LSPPlan lspPlan) {
+    if (pool == null || level.size() < 2) {
+      for (LSPResource resource : level) {
+        resource.schedule(bufferTime, lspPlan);
+      }
+      return;
+    }
+
+    List<List<LSPResourceScheduler.DeferredAction>> actionsPerResource =
+        new ArrayList<>(level.size());
+    List<ForkJoinTask<List<LSPResourceScheduler.DeferredAction>>> tasks =
+        new ArrayList<>(level.size());
+    // resources that are not thread-safe are scheduled one after the other on this thread ...
+    for (LSPResource resource : level) {
+      if (resource.isSchedulingThreadSafe()) {
+        actionsPerResource.add(null);
+      } else {
+        actionsPerResource.add(scheduleDeferred(resource, lspPlan));
+      }
+    }
+    // ... before the thread-safe ones are scheduled in parallel.
+    for (LSPResource resource : level) {
+      tasks.add(
+          resource.isSchedulingThreadSafe()
+              ? pool.submit(() -> scheduleDeferred(resource, lspPlan))
+              : null);
+    }
+    for (int i = 0; i < level.size(); i++) {
+      if (tasks.get(i) != null) {
+        actionsPerResource.set(i, tasks.get(i).join());
+      }
+    }
+    for (List<LSPResourceScheduler.DeferredAction> actions : actionsPerResource) {
+      for (LSPResourceScheduler.DeferredAction action : actions) {
+        action.execute();
+      }
+    }
+  }
+
+  private List<LSPResourceScheduler.DeferredAction> scheduleDeferred(
+      LSPResource resource, LSPPlan lspPlan) {
+    List<LSPResourceScheduler.DeferredAction> actions;
+    LSPResourceScheduler.startDeferring();
+    try {
+      resource.schedule(bufferTime, lspPlan);
+    } finally {
+      actions = LSPResourceScheduler.stopDeferring();
+    }
+    return actions;
+  }
+
   @Override
   public void setEmbeddingContainer(LSP lsp) {
     this.lsp = lsp;
   }
 
-  private void setResourceNeighbours() {
-    // internal data structure, try to ignore when looking from outside.  kai/kai, jan'22
-    neighbourList.clear();
-    for (LSPResource resource : lsp.getResources()) {
-      ResourceNeighbours neighbours = new ResourceNeighbours(resource);
-      for (LogisticChainElement element : resource.getClientElements()) {
-        LogisticChainElement predecessor = element.getPreviousElement();
-        LSPResource previousResource = predecessor.getResource();
-        neighbours.addPredecessor(previousResource);
-        LogisticChainElement successor = element.getNextElement();
-        LSPResource nextResource = successor.getResource();
-        neighbours.addSuccessor(nextResource);
-      }
-      neighbourList.add(neighbours);
-    }
+  /**
+   * The Resources are brought into the right sequence according to the algorithm. The result of
+   * this algorithm is a list of Resources that is later traversed from the front to the back, i.e.
+   * starting with the entry at index 0.
+   */
+  /* package-private */ List<LSPResource> getSortedResources(LSPPlan lspPlan) {
+    return getCachedSortedResources(lspPlan).resources;
   }
 
-  private void sortResources() {
-    sortedResourceList.clear();
-    while (!neighbourList.isEmpty()) {
-      for (ResourceNeighbours neighbours : neighbourList) {
-        if (allPredecessorsAlreadyScheduled(neighbours)
-            && noSuccessorAlreadyScheduled(neighbours)) {
-          sortedResourceList.add(neighbours.resource);
-          neighbourList.remove(neighbours);
-        }
-      }
-    }
+  /**
+   * @return the sorted resources, split into levels. The resources of one level only depend on
+   *     resources of previous levels.
+   */
+  /* package-private */ List<List<LSPResource>> getSortedLevels(LSPPlan lspPlan) {
+    return getCachedSortedResources(lspPlan).levels;
   }
 
-  private boolean allPredecessorsAlreadyScheduled(ResourceNeighbours neighbours) {
-    if (neighbours.predecessors.isEmpty()) {
-      return true;
+  private SortedResources getCachedSortedResources(LSPPlan lspPlan) {
+    List<Object> structure = getStructure(lspPlan);
+    SortedResources cached = sortedResourcesPerPlan.get(lspPlan);
+    if (cached == null || !cached.structure.equals(structure)) {
+      cached = sortResources(lspPlan, structure);
+      sortedResourcesPerPlan.put(lspPlan, cached);
     }
+    return cached;
+  }
 
-    for (LSPResource predecessor : neighbours.predecessors) {
-      if (!sortedResourceList.contains(predecessor)) {
-        return true;
+  /**
+   * The structure the sorting depends on: the resources of the LSP and, for each chain element of
+   * the plan, its resource and the resource of its successor. Resources do not override equals,
+   * so the comparison of two structures is by identity. Building and comparing it is linear in the
+   * number of chain elements, but much cheaper than setting up the graph and sorting it again.
+   */
+  private List<Object> getStructure(LSPPlan lspPlan) {
+    List<Object> structure = new ArrayList<>(lsp.getResources());
+    for (LogisticChain chain : lspPlan.getLogisticChains()) {
+      for (LogisticChainElement element : chain.getLogisticChainElements()) {
+        structure.add(element.getResource());
+        LogisticChainElement successor = element.getNextElement();
+        structure.add(successor == null ? null : successor.getResource());
       }
     }
-    return false;
+    return structure;
   }
 
-  private boolean noSuccessorAlreadyScheduled(ResourceNeighbours neighbours) {
-    if (neighbours.successors.isEmpty()) {
-      return true;
+  private SortedResources sortResources(LSPPlan lspPlan, List<Object> structure) {
+    // The neighbourhood structure: successors and number of (distinct) predecessors per resource.
+    // internal data structure, try to ignore when looking from outside.  kai/kai, jan'22
+    Map<LSPResource, Set<LSPResource>> successors = new LinkedHashMap<>();
+    Map<LSPResource, Integer> noOfPredecessors = new LinkedHashMap<>();
+    for (LSPResource resource : lsp.getResources()) {
+      successors.put(resource, new LinkedHashSet<>());
+      noOfPredecessors.put(resource, 0);
+    }
+    for (LogisticChain chain : lspPlan.getLogisticChains()) {
+      for (LogisticChainElement element : chain.getLogisticChainElements()) {
+        noOfPredecessors.putIfAbsent(element.getResource(), 0);
+        LogisticChainElement successor = element.getNextElement();
+        if (successor == null || successor.getResource() == element.getResource()) {
+          // a resource that follows itself is scheduled for both elements at once
+          continue;
+        }
+        Set<LSPResource> successorsOfResource =
+            successors.computeIfAbsent(element.getResource(), k -> new LinkedHashSet<>());
+        if (successorsOfResource.add(successor.getResource())) {
+          noOfPredecessors.merge(successor.getResource(), 1, Integer::sum);
+        }
+      }
     }
 
-    for (LSPResource successor : neighbours.successors) {
-      if (!sortedResourceList.contains(successor)) {
-        return true;
+    // Kahn's algorithm, starting with the resources without predecessors in the order of the LSP.
+    // It is done level by level: a resource goes into the next level, once all its predecessors
+    // are in one of the levels so far.
+    List<LSPResource> sortedResourceList = new ArrayList<>(noOfPredecessors.size());
+    List<List<LSPResource>> levels = new ArrayList<>();
+    List<LSPResource> level = new ArrayList<>();
+    for (Map.Entry<LSPResource, Integer> entry : noOfPredecessors.entrySet()) {
+      if (entry.getValue() == 0) {
+        level.add(entry.getKey());
       }
     }
-    return false;
+    while (!level.isEmpty()) {
+      levels.add(Collections.unmodifiableList(level));
+      sortedResourceList.addAll(level);
+      List<LSPResource> nextLevel = new ArrayList<>();
+      for (LSPResource resource : level) {
+        for (LSPResource successor : successors.getOrDefault(resource, Collections.emptySet())) {
+          if (noOfPredecessors.merge(successor, -1, Integer::sum) == 0) {
+            nextLevel.add(successor);
+          }
+        }
+      }
+      level = nextLevel;
+    }
+
+    if (sortedResourceList.size() < noOfPredecessors.size()) {
+      String resourcesInCycle =
+          noOfPredecessors.entrySet().stream()
+              .filter(entry -> entry.getValue() > 0)
+              .map(entry -> entry.getKey().getId().toString())
+              .collect(Collectors.joining(", "));
+      throw new IllegalStateException(
+          "The resources of LSP "
+              + lsp.getId()
+              + " can not be brought into a sequence, because they form a cycle. Resources in or behind the cycle: "
+              + resourcesInCycle);
+    }
+    return new SortedResources(
+        structure,
+        Collections.unmodifiableList(sortedResourceList),
+        Collections.unmodifiableList(levels));
   }
 
   private void insertShipmentsAtBeginning() {
@@ -155,35 +292,6 @@ import org.matsim.freight.logistics.shipment.LspShipment;
     this.bufferTime = bufferTime;
   }
 
-  /**
-   * The relationship between different {@link LSPResource}s allows to handle various supply
-   * structures that the {@link LSP} might decide to maintain. Thus, a {@link LSPResource} can have
-   * several successors or predecessors or can be used by several different {@link LogisticChain}s.
-   * The neighborhood structure among the {@link LSPResource}s is stored in instances of the class
-   * {@link ResourceNeighbours} which contain references on the considered {@link LSPResource} and
-   * on the set of immediate successors respective predecessors. As the result of this step, a
-   * collection of {@link ResourceNeighbours} called neighborList is created that contains the
-   * neighbors of all {@link LSPResource}s in the plan of the considered {@link LSP}.
-   */
-  private static class ResourceNeighbours {
-    // internal data structure, try to ignore when looking from outside.  kai/kai, jan'22
-
-    private final ArrayList<LSPResource> predecessors;
-    private final ArrayList<LSPResource> successors;
-    private final LSPResource resource;
-
-    private ResourceNeighbours(LSPResource resource) {
-      this.resource = resource;
-      this.predecessors = new ArrayList<>();
-      this.successors = new ArrayList<>();
-    }
-
-    private void addPredecessor(LSPResource resource) {
-      this.predecessors.add(resource);
-    }
-
-    private void addSuccessor(LSPResource resource) {
-      this.successors.add(resource);
-    }
-  }
+  private record SortedResources(
+      List<Object> structure, List<LSPResource> resources, List<List<LSPResource>> levels) {}
 }
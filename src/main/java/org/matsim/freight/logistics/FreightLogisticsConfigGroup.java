@@ -35,6 +35,38 @@ public class FreightLogisticsConfigGroup extends ReflectiveConfigGroup {
     static final String LSPS_FILE = "lspsFile";
     private static final String LSPS_FILE_DESC = "Freight LogisticsServiceProviders (LSP)s File, according to MATSim logistics extension as part of MATSim's freight contrib.";
 
+    private int numberOfThreadsForScheduling = 1;
+    static final String NUMBER_OF_THREADS_FOR_SCHEDULING = "numberOfThreadsForScheduling";
+    private static final String NUMBER_OF_THREADS_FOR_SCHEDULING_DESC = "Number of threads used to schedule the LSPs in the replanning. If larger than 1, the LSPs are scheduled in parallel. Default is 1, i.e. one after the other.";
+
+    private int numberOfThreadsForReplanning = 1;
+    static final String NUMBER_OF_THREADS_FOR_REPLANNING = "numberOfThreadsForReplanning";
+    private static final String NUMBER_OF_THREADS_FOR_REPLANNING_DESC = "Number of threads used to run the strategy modules of the LSPs in the replanning. Selects the strategy manager that is created by LSPUtils.createLSPStrategyManager(config): if larger than 1, the strategy modules of different LSPs run in parallel (ParallelLSPStrategyManagerImpl). Default is 1, i.e. LSPStrategyManagerImpl.";
+
+    private int vrpSolutionCacheSize = 0;
+    static final String VRP_SOLUTION_CACHE_SIZE = "vrpSolutionCacheSize";
+    private static final String VRP_SOLUTION_CACHE_SIZE_DESC = "Maximum number of solved VRPs of the carriers that are kept for reuse. If the services, vehicles and jsprit iterations of a carrier are unchanged, the cached solution is used instead of running jsprit again. The least recently used solutions are dropped first. Default is 0, i.e. no caching.";
+
+    private boolean useTravelTimeDistanceMatrix = false;
+    static final String USE_TRAVEL_TIME_DISTANCE_MATRIX = "useTravelTimeDistanceMatrix";
+    private static final String USE_TRAVEL_TIME_DISTANCE_MATRIX_DESC = "If true, the travel times and distances between the depots, hubs and customers of all LSPs are calculated once per vehicle type (and again only if the network changes) and used by jsprit instead of routing on the network. Tours are still routed on the network. Not used for time variant networks and if tolls are considered. Default is false.";
+
+    private int writeLspsInterval = 1;
+    static final String WRITE_LSPS_INTERVAL = "writeLspsInterval";
+    private static final String WRITE_LSPS_INTERVAL_DESC = "Iteration interval in which the LSPs (with all plans and shipment plans) are written to lsps.xml in the iteration directories. 0 disables writing them. Default is 1, i.e. in every iteration. The output_lsps.xml.gz at the end of the run is always written.";
+
+    private boolean writeLspsAsync = false;
+    static final String WRITE_LSPS_ASYNC = "writeLspsAsync";
+    private static final String WRITE_LSPS_ASYNC_DESC = "If true, the lsps.xml of the iterations are written in a background thread while the next iteration already runs. A copy of the LSP plans is taken at the end of the iteration for this. Default is false.";
+
+    private int writeCheckpointInterval = 0;
+    static final String WRITE_CHECKPOINT_INTERVAL = "writeCheckpointInterval";
+    private static final String WRITE_CHECKPOINT_INTERVAL_DESC = "Iteration interval in which a checkpoint (lsp_checkpoint.bin.gz) is written to the iteration directories. It contains the plans of the LSPs and their carriers and the LSP score history, so that the run can be resumed from it, see resumeFromCheckpoint. 0 disables writing them. Default is 0.";
+
+    private String resumeFromCheckpoint = null;
+    static final String RESUME_FROM_CHECKPOINT = "resumeFromCheckpoint";
+    private static final String RESUME_FROM_CHECKPOINT_DESC = "Checkpoint file of iteration N, written because of " + WRITE_CHECKPOINT_INTERVAL + ", from which the run is resumed. The LSPs have to be set up as in the run that wrote the checkpoint, the firstIteration of the controller has to be N+1 and the random seed has to be the same. Default is null, i.e. the run is not resumed.";
+
     public FreightLogisticsConfigGroup() {
         super(GROUPNAME);
     }
@@ -60,6 +92,146 @@ public class FreightLogisticsConfigGroup extends ReflectiveConfigGroup {
         this.lspsFile = lspsFile;
     }
 
+    //### NumberOfThreadsForScheduling ###
+    /**
+     * @return -- {@value #NUMBER_OF_THREADS_FOR_SCHEDULING_DESC}
+     */
+    @StringGetter(NUMBER_OF_THREADS_FOR_SCHEDULING)
+    public int getNumberOfThreadsForScheduling() {
+        return numberOfThreadsForScheduling;
+    }
+
+    /**
+     * @param numberOfThreadsForScheduling -- {@value #NUMBER_OF_THREADS_FOR_SCHEDULING_DESC}
+     */
+    @StringSetter(NUMBER_OF_THREADS_FOR_SCHEDULING)
+    public void setNumberOfThreadsForScheduling(int numberOfThreadsForScheduling) {
+        this.numberOfThreadsForScheduling = numberOfThreadsForScheduling;
+    }
+
+    //### NumberOfThreadsForReplanning ###
+    /**
+     * @return -- {@value #NUMBER_OF_THREADS_FOR_REPLANNING_DESC}
+     */
+    @StringGetter(NUMBER_OF_THREADS_FOR_REPLANNING)
+    public int getNumberOfThreadsForReplanning() {
+        return numberOfThreadsForReplanning;
+    }
+
+    /**
+     * @param numberOfThreadsForReplanning -- {@value #NUMBER_OF_THREADS_FOR_REPLANNING_DESC}
+     */
+    @StringSetter(NUMBER_OF_THREADS_FOR_REPLANNING)
+    public void setNumberOfThreadsForReplanning(int numberOfThreadsForReplanning) {
+        this.numberOfThreadsForReplanning = numberOfThreadsForReplanning;
+    }
+
+    //### VrpSolutionCacheSize ###
+    /**
+     * @return -- {@value #VRP_SOLUTION_CACHE_SIZE_DESC}
+     */
+    @StringGetter(VRP_SOLUTION_CACHE_SIZE)
+    public int getVrpSolutionCacheSize() {
+        return vrpSolutionCacheSize;
+    }
+
+    /**
+     * @param vrpSolutionCacheSize -- {@value #VRP_SOLUTION_CACHE_SIZE_DESC}
+     */
+    @StringSetter(VRP_SOLUTION_CACHE_SIZE)
+    public void setVrpSolutionCacheSize(int vrpSolutionCacheSize) {
+        this.vrpSolutionCacheSize = vrpSolutionCacheSize;
+    }
+
+    //### UseTravelTimeDistanceMatrix ###
+    /**
+     * @return -- {@value #USE_TRAVEL_TIME_DISTANCE_MATRIX_DESC}
+     */
+    @StringGetter(USE_TRAVEL_TIME_DISTANCE_MATRIX)
+    public boolean getUseTravelTimeDistanceMatrix() {
+        return useTravelTimeDistanceMatrix;
+    }
+
+    /**
+     * @param useTravelTimeDistanceMatrix -- {@value #USE_TRAVEL_TIME_DISTANCE_MATRIX_DESC}
+     */
+    @StringSetter(USE_TRAVEL_TIME_DISTANCE_MATRIX)
+    public void setUseTravelTimeDistanceMatrix(boolean useTravelTimeDistanceMatrix) {
+        this.useTravelTimeDistanceMatrix = useTravelTimeDistanceMatrix;
+    }
+
+    //### WriteLspsInterval ###
+    /**
+     * @return -- {@value #WRITE_LSPS_INTERVAL_DESC}
+     */
+    @StringGetter(WRITE_LSPS_INTERVAL)
+    public int getWriteLspsInterval() {
+        return writeLspsInterval;
+    }
+
+    /**
+     * @param writeLspsInterval -- {@value #WRITE_LSPS_INTERVAL_DESC}
+     */
+    @StringSetter(WRITE_LSPS_INTERVAL)
+    public void setWriteLspsInterval(int writeLspsInterval) {
+        this.writeLspsInterval = writeLspsInterval;
+    }
+
+    //### WriteLspsAsync ###
+    /**
+     * @return -- {@value #WRITE_LSPS_ASYNC_DESC}
+     */
+    @StringGetter(WRITE_LSPS_ASYNC)
+    public boolean getWriteLspsAsync() {
+        return writeLspsAsync;
+    }
+
+    /**
+     * @param writeLspsAsync -- {@value #WRITE_LSPS_ASYNC_DESC}
+     */
+    @StringSetter(WRITE_LSPS_ASYNC)
+    public void setWriteLspsAsync(boolean writeLspsAsync) {
+        this.writeLspsAsync = writeLspsAsync;
+    }
+
+    //### WriteCheckpointInterval ###
+    /**
+     * @return -- {@value #WRITE_CHECKPOINT_INTERVAL_DESC}
+     */
+    @StringGetter(WRITE_CHECKPOINT_INTERVAL)
+    public int getWriteCheckpointInterval() {
+        return writeCheckpointInterval;
+    }
+
+    /**
+     * @param writeCheckpointInterval -- {@value #WRITE_CHECKPOINT_INTERVAL_DESC}
+     */
+    @StringSetter(WRITE_CHECKPOINT_INTERVAL)
+    public void setWriteCheckpointInterval(int writeCheckpointInterval) {
+        this.writeCheckpointInterval = writeCheckpointInterval;
+    }
+
+    //### ResumeFromCheckpoint ###
+    /**
+     * @return -- {@value #RESUME_FROM_CHECKPOINT_DESC}
+     */
+    @StringGetter(RESUME_FROM_CHECKPOINT)
+    public String getResumeFromCheckpoint() {
+        return resumeFromCheckpoint;
+    }
+
+    URL getResumeFromCheckpointUrl(URL context) {
+        return ConfigGroup.getInputFileURL(context, this.resumeFromCheckpoint);
+    }
+
+    /**
+     * @param resumeFromCheckpoint -- {@value #RESUME_FROM_CHECKPOINT_DESC}
+     */
+    @StringSetter(RESUME_FROM_CHECKPOINT)
+    public void setResumeFromCheckpoint(String resumeFromCheckpoint) {
+        this.resumeFromCheckpoint = resumeFromCheckpoint;
+    }
+
 
 
     //---
@@ -134,6 +306,13 @@ public class FreightLogisticsConfigGroup extends ReflectiveConfigGroup {
     public Map<String, String> getComments() {
         Map<String, String> map = super.getComments();
         map.put(LSPS_FILE, LSPS_FILE_DESC);
+        map.put(NUMBER_OF_THREADS_FOR_SCHEDULING, NUMBER_OF_THREADS_FOR_SCHEDULING_DESC);
+        map.put(VRP_SOLUTION_CACHE_SIZE, VRP_SOLUTION_CACHE_SIZE_DESC);
+        map.put(USE_TRAVEL_TIME_DISTANCE_MATRIX, USE_TRAVEL_TIME_DISTANCE_MATRIX_DESC);
+        map.put(WRITE_LSPS_INTERVAL, WRITE_LSPS_INTERVAL_DESC);
+        map.put(WRITE_LSPS_ASYNC, WRITE_LSPS_ASYNC_DESC);
+        map.put(WRITE_CHECKPOINT_INTERVAL, WRITE_CHECKPOINT_INTERVAL_DESC);
+        map.put(RESUME_FROM_CHECKPOINT, RESUME_FROM_CHECKPOINT_DESC);
 //        map.put(VRP_LOGIC_OF_DISTRIBUTION_CARRIER, VRP_LOGIC_OF_DISTRIBUTION_CARRIER_DESC);
 //        map.put(VRP_LOGIC_OF_MAINRUN_CARRIER, VRP_LOGIC_OF_MAINRUN_CARRIER_DESC);
 //        map.put(VRP_LOGIC_OF_COLLECTION_CARRIER, VRP_LOGIC_OF_COLLECTION_CARRIER_DESC);
@@ -10,5 +10,20 @@ public interface HasSimulationTrackers<T> {
 
   void addSimulationTracker(LSPSimulationTracker<T> tracker);
 
+  /**
+   * Removes a tracker that is not valid anymore, e.g. because it belongs to a schedule that has
+   * been replaced.
+   *
+   * <p>The default implementation does not support removing and throws an {@link
+   * UnsupportedOperationException}, so that existing implementations of this interface keep
+   * compiling.
+   *
+   * @return true, if the tracker was attached to this object.
+   */
+  default boolean removeSimulationTracker(LSPSimulationTracker<T> tracker) {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " does not support removing simulation trackers.");
+  }
+
   Collection<LSPSimulationTracker<T>> getSimulationTrackers();
 }
@@ -0,0 +1,117 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Collection that keeps its entries in insertion order and additionally indexes them by their
+ * {@link Id}. It is handed out by {@link LSPImpl#getLspShipments()} and {@link
+ * LSPPlanImpl#getShipmentPlans()}, so that adding and removing via the returned collection (as it
+ * is done e.g. by the parser or by the controler listener) keeps the index in sync.
+ *
+ * <p>There is at most one entry per id. Adding the same entry again does not change the
+ * collection; adding another entry with an already known id is rejected, since the old list-based
+ * collections would have kept both and lookups by id could not tell them apart. {@link
+ * #contains(Object)} and {@link #remove(Object)} go through the index as well.
+ *
+ * @param <T> the type of the id
+ * @param <V> the type of the entries
+ */
+/* package-private */ final class IdIndexedCollection<T, V> extends AbstractCollection<V> {
+
+  private final Map<Id<T>, V> entries = new LinkedHashMap<>();
+  private final Function<V, Id<T>> idGetter;
+
+  IdIndexedCollection(Function<V, Id<T>> idGetter) {
+    this.idGetter = idGetter;
+  }
+
+  /**
+   * @param id the id of the entry
+   * @return the entry with the given id or null, if there is none.
+   */
+  V get(Id<T> id) {
+    return entries.get(id);
+  }
+
+  @Override
+  public boolean add(V entry) {
+    Id<T> id = idGetter.apply(entry);
+    V existing = entries.putIfAbsent(id, entry);
+    if (existing == null) {
+      return true;
+    }
+    if (existing == entry) {
+      return false;
+    }
+    throw new IllegalArgumentException("There is already an entry with id " + id + ".");
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    Id<T> id = getIdOrNull(o);
+    return id != null && Objects.equals(entries.get(id), o);
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    Id<T> id = getIdOrNull(o);
+    if (id == null || !Objects.equals(entries.get(id), o)) {
+      return false;
+    }
+    entries.remove(id);
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Id<T> getIdOrNull(Object o) {
+    if (o == null) {
+      return null;
+    }
+    try {
+      return idGetter.apply((V) o);
+    } catch (ClassCastException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public Iterator<V> iterator() {
+    return entries.values().iterator();
+  }
+
+  @Override
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import jakarta.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.events.StartupEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.controler.listener.StartupListener;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.freight.logistics.analysis.LspScoreStatsControlerListener;
+import org.matsim.freight.logistics.analysis.LspScoreStatsControlerListener.ScoreItem;
+import org.matsim.freight.logistics.io.LSPBinarySnapshotReader;
+import org.matsim.freight.logistics.io.LSPBinarySnapshotWriter;
+
+/**
+ * Writes checkpoints of a run and resumes a run from one, see {@link
+ * FreightLogisticsConfigGroup#getWriteCheckpointInterval()} and {@link
+ * FreightLogisticsConfigGroup#getResumeFromCheckpoint()}.
+ *
+ * <p>The checkpoint of iteration N contains the LSPs with all their plans and all plans of their
+ * carriers with their scores (see {@link LSPBinarySnapshotWriter}), the LSP score history up to
+ * iteration N and the random seed of the run. It is written after all listeners have handled the
+ * end of iteration N, i.e. at the start of iteration N+1, or at shutdown if N is the last
+ * iteration.
+ *
+ * <p>The resumed run starts with iteration N+1. Since the controler does not replan in its first
+ * iteration, the {@link LSPControlerListener} replans the LSPs and then the carriers at the start of
+ * that iteration instead (see {@link LSPControlerListener#notifyIterationStarts}); the persons are
+ * not replanned, since the population is not part of the checkpoint. The random numbers of the
+ * controler are reset from the random seed and the iteration in every iteration, so they continue
+ * as in the run that wrote the checkpoint if the random seed is the same and the controler replans
+ * the LSPs and carriers in the same order. This does not hold for random
+ * number generators that were taken once at the start of the run (e.g. by {@link
+ * org.matsim.core.gbl.MatsimRandom#getLocalInstance()}) and then drawn from in every iteration.
+ * Neither are the cached VRP solutions of the carriers part of the checkpoint.
+ */
+class LSPCheckpointListener implements StartupListener, IterationStartsListener, ShutdownListener {
+  private static final Logger log = LogManager.getLogger(LSPCheckpointListener.class);
+
+  static final String CHECKPOINT_FILENAME = "lsp_checkpoint.bin.gz";
+
+  private static final int MAGIC = 0x4C535043; // "LSPC"
+  private static final int VERSION = 1;
+
+  private final Scenario scenario;
+  private final OutputDirectoryHierarchy controlerIO;
+  private final LspScoreStatsControlerListener scoreStats;
+
+  @Inject
+  LSPCheckpointListener(
+      Scenario scenario,
+      OutputDirectoryHierarchy controlerIO,
+      LspScoreStatsControlerListener scoreStats) {
+    this.scenario = scenario;
+    this.controlerIO = controlerIO;
+    this.scoreStats = scoreStats;
+  }
+
+  @Override
+  public void notifyStartup(StartupEvent event) {
+    FreightLogisticsConfigGroup freightLogisticsConfigGroup = getConfigGroup();
+    if (freightLogisticsConfigGroup.getResumeFromCheckpoint() == null) {
+      return;
+    }
+    URL url =
+        freightLogisticsConfigGroup.getResumeFromCheckpointUrl(scenario.getConfig().getContext());
+    log.info("Resuming the run from the lsp checkpoint {}", url);
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(IOUtils.getInputStream(url)))) {
+      readCheckpoint(in, url.toString());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read the lsp checkpoint from " + url, e);
+    }
+    if (freightLogisticsConfigGroup.getVrpSolutionCacheSize() > 0) {
+      log.warn(
+          "The cached VRP solutions are not part of the checkpoint. The resumed run may therefore"
+              + " differ from the run that wrote the checkpoint.");
+    }
+  }
+
+  private void readCheckpoint(DataInputStream in, String source) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IllegalArgumentException(source + " is not an lsp checkpoint.");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IllegalArgumentException(
+          source + " has version " + version + " of the lsp checkpoint, which is not supported.");
+    }
+
+    int iteration = in.readInt();
+    int firstIteration = scenario.getConfig().controller().getFirstIteration();
+    if (firstIteration != iteration + 1) {
+      throw new IllegalStateException(
+          "The checkpoint "
+              + source
+              + " was written in iteration "
+              + iteration
+              + ", so the run has to be resumed with firstIteration = "
+              + (iteration + 1)
+              + " instead of "
+              + firstIteration
+              + ".");
+    }
+    long randomSeed = in.readLong();
+    if (randomSeed != scenario.getConfig().global().getRandomSeed()) {
+      throw new IllegalStateException(
+          "The checkpoint "
+              + source
+              + " was written with the random seed "
+              + randomSeed
+              + ", which has to be used for the resumed run as well.");
+    }
+
+    Map<ScoreItem, Map<Integer, Double>> scoreHistory = new EnumMap<>(ScoreItem.class);
+    for (ScoreItem item : ScoreItem.values()) {
+      scoreHistory.put(item, new TreeMap<>());
+    }
+    int numberOfIterations = in.readInt();
+    for (int i = 0; i < numberOfIterations; i++) {
+      int scoredIteration = in.readInt();
+      for (ScoreItem item : ScoreItem.values()) {
+        scoreHistory.get(item).put(scoredIteration, in.readDouble());
+      }
+    }
+    scoreStats.restoreScoreHistory(scoreHistory);
+
+    new LSPBinarySnapshotReader(LSPUtils.getLSPs(scenario)).read(in);
+  }
+
+  @Override
+  public void notifyIterationStarts(IterationStartsEvent event) {
+    int previousIteration = event.getIteration() - 1;
+    if (previousIteration >= scenario.getConfig().controller().getFirstIteration()
+        && isCheckpointIteration(previousIteration)) {
+      writeCheckpoint(previousIteration);
+    }
+  }
+
+  @Override
+  public void notifyShutdown(ShutdownEvent event) {
+    int lastIteration = scenario.getConfig().controller().getLastIteration();
+    if (!event.isUnexpected() && isCheckpointIteration(lastIteration)) {
+      writeCheckpoint(lastIteration);
+    }
+  }
+
+  private boolean isCheckpointIteration(int iteration) {
+    int writeCheckpointInterval = getConfigGroup().getWriteCheckpointInterval();
+    return writeCheckpointInterval > 0 && iteration % writeCheckpointInterval == 0;
+  }
+
+  private void writeCheckpoint(int iteration) {
+    String filename = controlerIO.getIterationFilename(iteration, CHECKPOINT_FILENAME);
+    log.info(Gbl.aboutToWrite("lsp checkpoint", filename));
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(iteration);
+      out.writeLong(scenario.getConfig().global().getRandomSeed());
+
+      Map<ScoreItem, Map<Integer, Double>> scoreHistory = scoreStats.getScoreHistory();
+      Map<Integer, Double> executed = scoreHistory.get(ScoreItem.executed);
+      out.writeInt(executed.size());
+      for (Integer scoredIteration : executed.keySet()) {
+        out.writeInt(scoredIteration);
+        for (ScoreItem item : ScoreItem.values()) {
+          out.writeDouble(scoreHistory.get(item).get(scoredIteration));
+        }
+      }
+
+      new LSPBinarySnapshotWriter(LSPUtils.getLSPs(scenario)).write(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write the lsp checkpoint to " + filename, e);
+    }
+  }
+
+  private FreightLogisticsConfigGroup getConfigGroup() {
+    return ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class);
+  }
+}
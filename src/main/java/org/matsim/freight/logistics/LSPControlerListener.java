@@ -22,29 +22,56 @@ package org.matsim.freight.logistics;
 
 import jakarta.inject.Inject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.*;
 import org.matsim.core.controler.listener.*;
-import org.matsim.core.events.handler.EventHandler;
-import org.matsim.core.gbl.Gbl;
 import org.matsim.freight.carriers.Carrier;
 import org.matsim.freight.carriers.CarrierPlanWriter;
 import org.matsim.freight.carriers.Carriers;
 import org.matsim.freight.carriers.CarriersUtils;
 import org.matsim.freight.carriers.controler.CarrierAgentTracker;
+import org.matsim.freight.carriers.controler.CarrierStrategyManager;
 import org.matsim.freight.logistics.io.LSPPlanXmlWriter;
+import org.matsim.freight.logistics.io.LSPsSnapshot;
+import org.matsim.freight.logistics.resourceImplementations.TransportCostsProvider;
 import org.matsim.freight.logistics.shipment.LspShipment;
 
+/**
+ * Connects the LSPs with the controler: schedules them in the replanning, scores them, and hands
+ * the events and controler events over to their {@link LSPSimulationTracker}s.
+ *
+ * <p>The trackers are not added to the controler as listeners themselves, but are notified by this
+ * listener, each time after it has handled the controler event itself. Compared with registering
+ * them at the controler, this changes two things for the trackers:
+ *
+ * <ul>
+ *   <li>They are notified of the {@link ScoringEvent} after {@link LSP#scoreSelectedPlan()} was
+ *       called for all LSPs, i.e. the scores of the iteration are already computed then.
+ *   <li>They are (re-)collected in {@link #notifyBeforeMobsim(BeforeMobsimEvent)}, and trackers that
+ *       are found there for the first time already receive the {@link BeforeMobsimEvent} of that
+ *       iteration.
+ * </ul>
+ */
 class LSPControlerListener
     implements StartupListener,
         BeforeMobsimListener,
@@ -56,10 +83,24 @@ class LSPControlerListener
         ShutdownListener {
   private static final Logger log = LogManager.getLogger(LSPControlerListener.class);
   private final Scenario scenario;
-  private final List<EventHandler> registeredHandlers = new ArrayList<>();
 
-  private static int addListenerCnt = 0;
-  private  static final int maxAddListenerCnt = 1;
+  /**
+   * The trackers that are currently added to the events manager resp. as controler listeners.
+   * Membership is by identity, since the trackers do not define equals.
+   */
+  private Set<LSPSimulationTracker<?>> registeredTrackers =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /** The same trackers in the order in which they are notified of the controler events. */
+  private List<LSPSimulationTracker<?>> registeredTrackersInOrder = new ArrayList<>();
+
+  /** Pool for the parallel scheduling of the LSPs; created on first use. */
+  private ForkJoinPool schedulingPool;
+
+  /** Thread for writing the lsps.xml of the iterations asynchronously; created on first use. */
+  private ExecutorService lspsWriterExecutor;
+
+  private Future<?> pendingLspsWrite;
 
   @Inject private EventsManager eventsManager;
   @Inject private MatsimServices matsimServices;
@@ -68,18 +109,31 @@ class LSPControlerListener
   @Inject private OutputDirectoryHierarchy controlerIO;
   @Inject private CarrierAgentTracker carrierAgentTracker;
 
+  /** Only needed to replan the carriers when a run is resumed, see {@link #notifyIterationStarts}. */
+  @Inject @Nullable private CarrierStrategyManager carrierStrategyManager;
+
 
   @Inject
   LSPControlerListener(Scenario scenario) {
     this.scenario = scenario;
   }
 
+  /**
+   * Only for tests of the writing of the LSPs, i.e. of {@link #notifyIterationEnds} and {@link
+   * #finishLspsWriting()}; nothing else is injected.
+   */
+  LSPControlerListener(Scenario scenario, OutputDirectoryHierarchy controlerIO) {
+    this.scenario = scenario;
+    this.controlerIO = controlerIO;
+  }
+
   @Override
   public void notifyStartup(StartupEvent event) {
     //Ensure that all ressource Ids are only there once.
 
     checkForUniqueResourceIds();
 
+    notifyTrackers(StartupListener.class, tracker -> tracker.notifyStartup(event));
   }
 
 /**
@@ -119,60 +173,151 @@ class LSPControlerListener
   public void notifyBeforeMobsim(BeforeMobsimEvent event) {
     LSPs lsps = LSPUtils.getLSPs(scenario);
 
-    // TODO: Why do we add all simTrackers in every iteration beforeMobsim starts?
-    // Doing so results in a lot of "not adding eventsHandler since already added" warnings.
-    // @KN: Would it be possible to do it in (simulation) startup and therefor only oce?
+    // The trackers are collected in every iteration, since the scheduling in the replanning creates
+    // new (shipment) trackers and drops the ones of the previous schedule.  The list keeps the
+    // order in which they are found, so that they are registered in a reproducible order.
+    Set<LSPSimulationTracker<?>> liveTrackers = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<LSPSimulationTracker<?>> liveTrackersInOrder = new ArrayList<>();
     for (LSP lsp : lsps.getLSPs().values()) {
       ((LSPImpl) lsp).setScorer(lspScoringFunctionFactory.createScoringFunction());
 
       // simulation trackers of lsp:
-      registerSimulationTrackers(lsp);
+      collectSimulationTrackers(lsp, liveTrackers, liveTrackersInOrder);
 
       // simulation trackers of resources:
       for (LSPResource resource : lsp.getResources()) {
-        registerSimulationTrackers(resource);
+        collectSimulationTrackers(resource, liveTrackers, liveTrackersInOrder);
       }
 
       // simulation trackers of shipments:
       for (LspShipment lspShipment : lsp.getLspShipments()) {
-        registerSimulationTrackers(lspShipment);
+        collectSimulationTrackers(lspShipment, liveTrackers, liveTrackersInOrder);
       }
 
       // simulation trackers of solutions:
       for (LogisticChain solution : lsp.getSelectedPlan().getLogisticChains()) {
-        registerSimulationTrackers(solution);
+        collectSimulationTrackers(solution, liveTrackers, liveTrackersInOrder);
 
         // simulation trackers of solution elements:
         for (LogisticChainElement element : solution.getLogisticChainElements()) {
-          registerSimulationTrackers(element);
+          collectSimulationTrackers(element, liveTrackers, liveTrackersInOrder);
 
           // simulation trackers of resources:
-          registerSimulationTrackers(element.getResource());
+          collectSimulationTrackers(element.getResource(), liveTrackers, liveTrackersInOrder);
         }
       }
     }
+
+    int removed = 0;
+    for (LSPSimulationTracker<?> simulationTracker : registeredTrackers) {
+      if (!liveTrackers.contains(simulationTracker)) {
+        deregisterSimulationTracker(simulationTracker);
+        removed++;
+      }
+    }
+    int added = 0;
+    int handlersAtEventsManager = 0;
+    for (LSPSimulationTracker<?> simulationTracker : liveTrackersInOrder) {
+      if (!registeredTrackers.contains(simulationTracker)) {
+        registerSimulationTracker(simulationTracker);
+        added++;
+      }
+      if (simulationTracker.isRegisteredAtEventsManager()) {
+        handlersAtEventsManager++;
+      }
+    }
+    registeredTrackers = liveTrackers;
+    registeredTrackersInOrder = liveTrackersInOrder;
+
+    log.info(
+        "Simulation trackers in iteration {}: {} live, thereof {} registered at the events manager; {} added, {} removed.",
+        event.getIteration(),
+        liveTrackers.size(),
+        handlersAtEventsManager,
+        added,
+        removed);
+
+    notifyTrackers(BeforeMobsimListener.class, tracker -> tracker.notifyBeforeMobsim(event));
   }
 
-  private void registerSimulationTrackers(HasSimulationTrackers<?> hasSimulationTrackers) {
-    // get all simulation trackers ...
+  private boolean isFirstIterationOfResumedRun(int iteration) {
+    String resumeFromCheckpoint =
+        ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class)
+            .getResumeFromCheckpoint();
+    return resumeFromCheckpoint != null
+        && iteration == scenario.getConfig().controller().getFirstIteration();
+  }
+
+  /**
+   * Replans the run that wrote the checkpoint, see {@link #notifyIterationStarts}. The transport
+   * costs and link attributes are reset first, as the {@link LSPModule} does at the start of every
+   * iteration, since its listener may be notified only after this one.
+   */
+  private void replanFirstIterationOfResumedRun(IterationStartsEvent event) {
+    TransportCostsProvider.reset(scenario);
+    LinkAttributeTable.reset(scenario);
+
+    ReplanningEvent replanningEvent =
+        new ReplanningEvent(matsimServices, event.getIteration(), event.isLastIteration());
+    notifyReplanning(replanningEvent);
+    if (carrierStrategyManager != null) {
+      carrierStrategyManager.run(
+          CarriersUtils.getCarriers(scenario).getCarriers().values(),
+          event.getIteration(),
+          replanningEvent.getReplanningContext());
+    }
+  }
+
+  private static void collectSimulationTrackers(
+      HasSimulationTrackers<?> hasSimulationTrackers,
+      Set<LSPSimulationTracker<?>> liveTrackers,
+      List<LSPSimulationTracker<?>> liveTrackersInOrder) {
     for (LSPSimulationTracker<?> simulationTracker :
         hasSimulationTrackers.getSimulationTrackers()) {
-      // ... register them ...
-      if (!registeredHandlers.contains(simulationTracker)) {
-        log.info("adding eventsHandler: {}", simulationTracker);
-        eventsManager.addHandler(simulationTracker);
-        registeredHandlers.add(simulationTracker);
-        matsimServices.addControlerListener(simulationTracker);
-        simulationTracker.setEventsManager(eventsManager);
-      } else if ( addListenerCnt < maxAddListenerCnt ){
-        log.warn("not adding eventsHandler since already added: {}", simulationTracker);
-        addListenerCnt++;
-        if (addListenerCnt == maxAddListenerCnt) {
-          log.warn(Gbl.FUTURE_SUPPRESSED);
-        }
+      if (liveTrackers.add(simulationTracker)) {
+        liveTrackersInOrder.add(simulationTracker);
       }
     }
+  }
 
+  /**
+   * The trackers are not added to the controler as listeners, since they could not be removed from
+   * it again. Instead, this listener hands the controler events over to them, see {@link
+   * #notifyTrackers(Class, Consumer)}.
+   */
+  private void registerSimulationTracker(LSPSimulationTracker<?> simulationTracker) {
+    log.debug("adding eventsHandler: {}", simulationTracker);
+    if (simulationTracker.isRegisteredAtEventsManager()) {
+      eventsManager.addHandler(simulationTracker);
+    }
+    simulationTracker.setEventsManager(eventsManager);
+  }
+
+  /**
+   * Trackers that are not reachable from the LSPs anymore (e.g. the shipment trackers of a
+   * previous schedule or the scorer of the previous iteration) are removed, so that they neither
+   * receive events nor keep the old schedules alive.
+   */
+  private void deregisterSimulationTracker(LSPSimulationTracker<?> simulationTracker) {
+    log.debug("removing eventsHandler: {}", simulationTracker);
+    if (simulationTracker.isRegisteredAtEventsManager()) {
+      eventsManager.removeHandler(simulationTracker);
+    }
+  }
+
+  /**
+   * Hands a controler event over to the registered trackers that listen to it, in the order in
+   * which they were registered. This is done after this listener has handled the event itself.
+   * Trackers registered in {@link #notifyBeforeMobsim(BeforeMobsimEvent)} receive the events from
+   * that one on.
+   */
+  private <L extends ControlerListener> void notifyTrackers(
+      Class<L> listenerType, Consumer<L> notification) {
+    for (LSPSimulationTracker<?> simulationTracker : registeredTrackersInOrder) {
+      if (listenerType.isInstance(simulationTracker)) {
+        notification.accept(listenerType.cast(simulationTracker));
+      }
+    }
   }
 
   @Override
@@ -186,20 +331,46 @@ class LSPControlerListener
     strategyManager.run(
         lsps.getLSPs().values(), event.getIteration(), event.getReplanningContext());
 
-    for (LSP lsp : lsps.getLSPs().values()) {
-      lsp.getSelectedPlan()
-          .getShipmentPlans()
-          .clear(); // clear ShipmentPlans to start with clear(n) state. Otherwise, some of the times were
-                    // accumulating over the time. :(
-      lsp.scheduleLogisticChains();
+    // The LSPs do not share resources (see checkForUniqueResourceIds()), so they can be scheduled
+    // independently of each other.
+    int numberOfThreads =
+        ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class)
+            .getNumberOfThreadsForScheduling();
+    if (numberOfThreads > 1 && lsps.getLSPs().size() > 1) {
+      if (schedulingPool == null) {
+        schedulingPool = new ForkJoinPool(numberOfThreads);
+      }
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (LSP lsp : lsps.getLSPs().values()) {
+        tasks.add(schedulingPool.submit(() -> scheduleLsp(lsp)));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    } else {
+      for (LSP lsp : lsps.getLSPs().values()) {
+        scheduleLsp(lsp);
+      }
     }
 
-    // Update carriers in scenario and CarrierAgentTracker
+    // Update carriers in scenario and CarrierAgentTracker.
+    // This is done after all LSPs are scheduled, in the order of the LSPs, so that it does not
+    // depend on the order in which the (parallel) scheduling has finished.
     carrierAgentTracker.getCarriers().getCarriers().clear();
     for (Carrier carrier : getCarriersFromLSP().getCarriers().values()) {
       CarriersUtils.getCarriers(scenario).addCarrier(carrier);
       carrierAgentTracker.getCarriers().addCarrier(carrier);
     }
+
+    notifyTrackers(ReplanningListener.class, tracker -> tracker.notifyReplanning(event));
+  }
+
+  private static void scheduleLsp(LSP lsp) {
+    lsp.getSelectedPlan()
+        .getShipmentPlans()
+        .clear(); // clear ShipmentPlans to start with clear(n) state. Otherwise, some of the times were
+                  // accumulating over the time. :(
+    lsp.scheduleLogisticChains();
   }
 
   @Override
@@ -208,10 +379,14 @@ class LSPControlerListener
       lsp.scoreSelectedPlan();
     }
     // yyyyyy might make more sense to register the lsps directly as scoring controler listener (??)
+
+    notifyTrackers(ScoringListener.class, tracker -> tracker.notifyScoring(scoringEvent));
   }
 
   @Override
-  public void notifyAfterMobsim(AfterMobsimEvent event) {}
+  public void notifyAfterMobsim(AfterMobsimEvent event) {
+    notifyTrackers(AfterMobsimListener.class, tracker -> tracker.notifyAfterMobsim(event));
+  }
 
   Carriers getCarriersFromLSP() {
     LSPs lsps = LSPUtils.getLSPs(scenario);
@@ -234,21 +409,114 @@ class LSPControlerListener
     return carriers;
   }
 
+  /**
+   * A run that is resumed from a checkpoint (see {@link LSPCheckpointListener}) starts with the
+   * iteration after the checkpoint. The controler does not replan in the first iteration of a run,
+   * so the replanning that the run which wrote the checkpoint would have done is done here, after
+   * the trackers have been notified of the start of the iteration. Only the following is replanned,
+   * in this order:
+   *
+   * <ol>
+   *   <li>the LSPs, as in {@link #notifyReplanning(ReplanningEvent)}, including the scheduling;
+   *   <li>the carriers of the scenario, with the {@link CarrierStrategyManager} if one is bound.
+   * </ol>
+   *
+   * <p>The persons are not replanned, since the population is not part of the checkpoint. Other
+   * replanning listeners are not notified either. In the other iterations, the controler decides in
+   * which order the LSPs and the carriers are replanned, so if that differs from the order above,
+   * the random numbers are drawn in a different order than in the run that wrote the checkpoint.
+   *
+   * <p>All listeners that are notified before the mobsim see the replanned LSPs and carriers. Of the
+   * listeners of the start of the iteration, only those that are notified after this one do.
+   */
   @Override
-  public void notifyIterationStarts(IterationStartsEvent event) {}
+  public void notifyIterationStarts(IterationStartsEvent event) {
+    notifyTrackers(IterationStartsListener.class, tracker -> tracker.notifyIterationStarts(event));
+
+    if (isFirstIterationOfResumedRun(event.getIteration())) {
+      replanFirstIterationOfResumedRun(event);
+    }
+  }
 
   @Override
   public void notifyIterationEnds(IterationEndsEvent event) {
-    new LSPPlanXmlWriter(LSPUtils.getLSPs(scenario))
-        .write(controlerIO.getIterationFilename(event.getIteration(), "lsps.xml"));
+    writeLspsOfIteration(event);
+
+    notifyTrackers(IterationEndsListener.class, tracker -> tracker.notifyIterationEnds(event));
+  }
+
+  private void writeLspsOfIteration(IterationEndsEvent event) {
+    FreightLogisticsConfigGroup freightLogisticsConfigGroup =
+        ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class);
+    int writeLspsInterval = freightLogisticsConfigGroup.getWriteLspsInterval();
+    if (writeLspsInterval <= 0 || event.getIteration() % writeLspsInterval != 0) {
+      return;
+    }
+    String filename = controlerIO.getIterationFilename(event.getIteration(), "lsps.xml");
+    if (!freightLogisticsConfigGroup.getWriteLspsAsync()) {
+      new LSPPlanXmlWriter(LSPUtils.getLSPs(scenario)).write(filename);
+      return;
+    }
+
+    // At most one file is written at a time, so that the snapshots do not pile up if writing takes
+    // longer than an iteration.
+    waitForPendingLspsWrite();
+    LSPsSnapshot snapshot = LSPsSnapshot.of(LSPUtils.getLSPs(scenario));
+    if (lspsWriterExecutor == null) {
+      lspsWriterExecutor =
+          Executors.newSingleThreadExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "LSPsWriter");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    pendingLspsWrite =
+        lspsWriterExecutor.submit(() -> new LSPPlanXmlWriter(snapshot).write(filename));
+  }
+
+  private void waitForPendingLspsWrite() {
+    if (pendingLspsWrite == null) {
+      return;
+    }
+    try {
+      pendingLspsWrite.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Writing the lsps of an iteration failed.", e.getCause());
+    } finally {
+      pendingLspsWrite = null;
+    }
+  }
+
+  /**
+   * Waits for the lsps.xml that is still written in the background (if any) and stops the writer
+   * thread. Errors of that write are thrown here.
+   */
+  void finishLspsWriting() {
+    try {
+      waitForPendingLspsWrite();
+    } finally {
+      if (lspsWriterExecutor != null) {
+        lspsWriterExecutor.shutdown();
+      }
+    }
   }
 
   @Override
   public void notifyShutdown(ShutdownEvent event) {
+    finishLspsWriting();
     new LSPPlanXmlWriter(LSPUtils.getLSPs(scenario))
         .write(controlerIO.getOutputPath() + "/output_lsps.xml.gz");
     new CarrierPlanWriter(CarriersUtils.getCarriers(scenario))
         .write(controlerIO.getOutputPath() + "/output_carriers.xml.gz");
+    if (schedulingPool != null) {
+      schedulingPool.shutdown();
+    }
+
+    notifyTrackers(ShutdownListener.class, tracker -> tracker.notifyShutdown(event));
   }
 
 }
@@ -28,6 +28,11 @@ public class LSPDataObject<T> implements HasSimulationTrackers<T>, Attributable,
     // know that it is truly of type T.  kai, jun'22
   }
 
+  @Override
+  public final boolean removeSimulationTracker(LSPSimulationTracker<T> tracker) {
+    return this.trackers.remove(tracker);
+  }
+
   @Override
   public final Collection<LSPSimulationTracker<T>> getSimulationTrackers() {
     return Collections.unmodifiableCollection(this.trackers);
@@ -25,12 +25,13 @@ import java.util.Collection;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.freight.logistics.shipment.LspShipment;
 
 /* package-private */ class LSPImpl extends LSPDataObject<LSP> implements LSP {
   private static final Logger log = LogManager.getLogger(LSPImpl.class);
 
-  private final Collection<LspShipment> lspShipments;
+  private final IdIndexedCollection<LspShipment, LspShipment> lspShipments;
   private final ArrayList<LSPPlan> lspPlans;
   private final LogisticChainScheduler logisticChainScheduler;
   private final Collection<LSPResource> resources;
@@ -41,7 +42,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
 
   LSPImpl(LSPUtils.LSPBuilder builder) {
     super(builder.id);
-    this.lspShipments = new ArrayList<>();
+    this.lspShipments = new IdIndexedCollection<>(LspShipment::getId);
     this.lspPlans = new ArrayList<>();
     this.logisticChainScheduler = builder.logisticChainScheduler;
     this.logisticChainScheduler.setEmbeddingContainer(this);
@@ -57,7 +58,13 @@ import org.matsim.freight.logistics.shipment.LspShipment;
       LogisticChain newPlanChain =
           LSPUtils.LogisticChainBuilder.newInstance(initialPlanChain.getId()).build();
       newPlanChain.getLogisticChainElements().addAll(initialPlanChain.getLogisticChainElements());
-      newPlanChain.getLspShipmentIds().addAll(initialPlanChain.getLspShipmentIds());
+      // the shipment ids are only copied when one of the two chains is changed (copy-on-write).
+      if (initialPlanChain instanceof LogisticChainImpl initialChainImpl
+          && newPlanChain instanceof LogisticChainImpl newChainImpl) {
+        newChainImpl.shareShipmentIdsOf(initialChainImpl);
+      } else {
+        newPlanChain.getLspShipmentIds().addAll(initialPlanChain.getLspShipmentIds());
+      }
       newPlanChains.add(newPlanChain);
     }
 
@@ -75,6 +82,10 @@ import org.matsim.freight.logistics.shipment.LspShipment;
    * should bind {@link LSPScorerFactory}.
    */
   /* package-private */ void setScorer(LSPScorer scorer) {
+    if (this.scorer != null) {
+      // the scorer is replaced in every iteration; do not keep the old ones as trackers.
+      this.removeSimulationTracker(this.scorer);
+    }
     this.scorer = scorer;
     scorer.setEmbeddingContainer(this);
     this.addSimulationTracker(scorer);
@@ -160,4 +171,14 @@ import org.matsim.freight.logistics.shipment.LspShipment;
   public Collection<LspShipment> getLspShipments() {
     return this.lspShipments;
   }
+
+  /**
+   * Used by {@link LSPUtils#findLspShipment(LSP, Id)}.
+   *
+   * @param shipmentId Id of the shipment that should be found.
+   * @return the lspShipment object or null, if it is not found.
+   */
+  /* package-private */ LspShipment getLspShipment(Id<LspShipment> shipmentId) {
+    return this.lspShipments.get(shipmentId);
+  }
 }
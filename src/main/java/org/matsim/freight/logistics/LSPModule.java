@@ -30,7 +30,11 @@ import org.matsim.api.core.v01.population.HasPlansAndId;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.StartupEvent;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.StartupListener;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsConfigGroup;
 import org.matsim.core.replanning.GenericPlanStrategy;
@@ -39,6 +43,7 @@ import org.matsim.core.replanning.selectors.PlanSelector;
 import org.matsim.freight.carriers.FreightCarriersConfigGroup;
 import org.matsim.freight.carriers.controler.*;
 import org.matsim.freight.logistics.analysis.LspScoreStatsModule;
+import org.matsim.freight.logistics.resourceImplementations.TransportCostsProvider;
 
 public class LSPModule extends AbstractModule {
   private static final Logger log = LogManager.getLogger(LSPModule.class);
@@ -51,6 +56,9 @@ public class LSPModule extends AbstractModule {
     bind(LSPControlerListener.class).in(Singleton.class);
     addControlerListenerBinding().to(LSPControlerListener.class);
 
+    bind(LSPCheckpointListener.class).in(Singleton.class);
+    addControlerListenerBinding().to(LSPCheckpointListener.class);
+
     install(new CarrierModule());
     install(new LspScoreStatsModule());
 
@@ -103,9 +111,12 @@ public class LSPModule extends AbstractModule {
 
     // for iterations, one needs to replace the following with something meaningful.  If nothing
     // else, there are "empty implementations" that do nothing.  kai, jul'22
+    // LSPUtils.createLSPStrategyManager(config) gives the manager selected in the
+    // FreightLogisticsConfigGroup (numberOfThreadsForReplanning), to which the strategies are added.
     bind(LSPStrategyManager.class).toProvider(() -> null);
 
     this.addControlerListenerBinding().to(DumpLSPPlans.class);
+    this.addControlerListenerBinding().to(ResetTransportCosts.class);
   }
 
   private static class LSPScoringFunctionFactoryDummyImpl implements LSPScorerFactory {
@@ -166,6 +177,28 @@ public class LSPModule extends AbstractModule {
     }
   }
 
+  /**
+   * The transport costs used by the carrier schedulers are shared within one iteration; they are
+   * rebuilt in each iteration, see {@link TransportCostsProvider}. The same holds for the {@link
+   * LinkAttributeTable}. At startup, the links for the travel time/distance matrix are collected
+   * (if it is switched on).
+   */
+  public static final class ResetTransportCosts
+      implements StartupListener, IterationStartsListener {
+    @Inject Scenario scenario;
+
+    @Override
+    public void notifyStartup(StartupEvent event) {
+      TransportCostsProvider.collectMatrixLinks(scenario);
+    }
+
+    @Override
+    public void notifyIterationStarts(IterationStartsEvent event) {
+      TransportCostsProvider.reset(scenario);
+      LinkAttributeTable.reset(scenario);
+    }
+  }
+
   public static final class DumpLSPPlans implements BeforeMobsimListener {
     @Inject Scenario scenario;
 
@@ -20,22 +20,30 @@
 
 package org.matsim.freight.logistics;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.matsim.api.core.v01.Id;
+import org.matsim.freight.logistics.shipment.LspShipment;
 import org.matsim.freight.logistics.shipment.LspShipmentPlan;
 
 public class LSPPlanImpl implements LSPPlan {
 
   private final Collection<LogisticChain> logisticChains;
-  private final Collection<LspShipmentPlan> lspShipmentPlans;
+  private Map<Id<LspShipment>, LogisticChain> chainOfShipment = null;
+  private final IdIndexedCollection<LspShipment, LspShipmentPlan> lspShipmentPlans;
   private LSP lsp;
   private Double score = null;
   private InitialShipmentAssigner assigner;
   private String type = null;
 
   public LSPPlanImpl() {
-    this.logisticChains = new ArrayList<>();
-    this.lspShipmentPlans = new ArrayList<>();
+    this.logisticChains = new LogisticChainCollection();
+    this.lspShipmentPlans = new IdIndexedCollection<>(LspShipmentPlan::getLspShipmentId);
   }
 
   @Override
@@ -72,6 +80,80 @@ public class LSPPlanImpl implements LSPPlan {
     return null;
   }
 
+  /**
+   * Used by {@link LSPUtils#findLspShipmentPlan(LSPPlan, Id)}.
+   *
+   * @param shipmentId Id of the shipment for which the plan should be found.
+   * @return the shipmentPlan object or null, if it is not found.
+   */
+  /* package-private */ LspShipmentPlan getShipmentPlan(Id<LspShipment> shipmentId) {
+    return this.lspShipmentPlans.get(shipmentId);
+  }
+
+  /**
+   * Used by {@link LSPUtils#findLogisticChainOfShipment(LSPPlan, Id)}.
+   *
+   * @param shipmentId Id of the shipment for which the chain should be found.
+   * @return the chain the shipment is assigned to or null, if it is not assigned to any chain.
+   */
+  /* package-private */ LogisticChain getLogisticChainOfShipment(Id<LspShipment> shipmentId) {
+    if (chainOfShipment == null) {
+      // The index is built on first use, so that copies of plans that are never searched do not
+      // need one. From then on, it is kept up to date by the chains.
+      chainOfShipment = new HashMap<>();
+      for (LogisticChain logisticChain : logisticChains) {
+        if (logisticChain instanceof LogisticChainImpl) {
+          for (Id<LspShipment> id : logisticChain.getLspShipmentIds()) {
+            chainOfShipment.put(id, logisticChain);
+          }
+        }
+      }
+    }
+    LogisticChain chain = chainOfShipment.get(shipmentId);
+    if (chain == null) {
+      // chains of other implementations are not indexed
+      for (LogisticChain logisticChain : logisticChains) {
+        if (!(logisticChain instanceof LogisticChainImpl)
+            && logisticChain.getLspShipmentIds().contains(shipmentId)) {
+          return logisticChain;
+        }
+      }
+    }
+    return chain;
+  }
+
+  /** Called by the {@link ShipmentIdSet} of a chain of this plan. */
+  void shipmentIdAdded(Id<LspShipment> shipmentId, LogisticChain chain) {
+    if (chainOfShipment != null) {
+      chainOfShipment.put(shipmentId, chain);
+    }
+  }
+
+  /** Called by the {@link ShipmentIdSet} of a chain of this plan. */
+  void shipmentIdRemoved(Object shipmentId, LogisticChain chain) {
+    if (chainOfShipment != null) {
+      chainOfShipment.remove(shipmentId, chain);
+    }
+  }
+
+  /** Enters all shipments of the chain into the index (if it is already built). */
+  void chainAdded(LogisticChain chain) {
+    if (chainOfShipment != null) {
+      for (Id<LspShipment> id : chain.getLspShipmentIds()) {
+        chainOfShipment.put(id, chain);
+      }
+    }
+  }
+
+  /** Removes all shipments of the chain from the index (if it is already built). */
+  void chainRemoved(LogisticChain chain) {
+    if (chainOfShipment != null) {
+      for (Id<LspShipment> id : chain.getLspShipmentIds()) {
+        chainOfShipment.remove(id, chain);
+      }
+    }
+  }
+
   @Override
   public Double getScore() {
     return score;
@@ -124,4 +206,55 @@ public class LSPPlanImpl implements LSPPlan {
     }
     return strb.toString();
   }
+
+  /**
+   * The chains of the plan. Chains that are added (also via {@link #getLogisticChains()}) are
+   * connected to the index from shipment to chain, chains that are removed are disconnected.
+   */
+  private final class LogisticChainCollection extends AbstractCollection<LogisticChain> {
+    private final List<LogisticChain> chains = new ArrayList<>();
+
+    @Override
+    public boolean add(LogisticChain chain) {
+      chains.add(chain);
+      if (chain instanceof LogisticChainImpl logisticChainImpl) {
+        logisticChainImpl.attachToPlan(LSPPlanImpl.this);
+        chainAdded(chain);
+      }
+      return true;
+    }
+
+    @Override
+    public Iterator<LogisticChain> iterator() {
+      Iterator<LogisticChain> iterator = chains.iterator();
+      return new Iterator<>() {
+        private LogisticChain current;
+
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public LogisticChain next() {
+          current = iterator.next();
+          return current;
+        }
+
+        @Override
+        public void remove() {
+          iterator.remove();
+          if (current instanceof LogisticChainImpl logisticChainImpl) {
+            logisticChainImpl.detachFromPlan();
+            chainRemoved(current);
+          }
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return chains.size();
+    }
+  }
 }
@@ -37,4 +37,13 @@ public interface LSPResource
   Collection<LogisticChainElement> getClientElements();
 
   void schedule(int bufferTime, LSPPlan lspPlan);
+
+  /**
+   * @return true, if {@link #schedule(int, LSPPlan)} may run concurrently with the scheduling of
+   *     other resources of the same {@link LSP}, i.e. it does not share any mutable state with
+   *     them. Only then it is scheduled in parallel by a parallel {@link LogisticChainScheduler}.
+   */
+  default boolean isSchedulingThreadSafe() {
+    return false;
+  }
 }
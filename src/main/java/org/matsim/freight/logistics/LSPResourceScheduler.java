@@ -22,6 +22,9 @@ package org.matsim.freight.logistics;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.matsim.freight.logistics.shipment.LspShipment;
 import org.matsim.freight.logistics.shipment.LspShipmentUtils;
 
@@ -43,8 +46,28 @@ public abstract class LSPResourceScheduler {
   protected LSPResource resource;
   protected ArrayList<LspShipment> lspShipmentsToSchedule;
 
+  /**
+   * The client {@link LogisticChainElement} of each {@link LspShipment} to schedule, i.e. the
+   * element in whose incoming shipments the lspShipment is waiting. Is built once in
+   * presortIncomingShipments(), so that subclasses do not need to search through the incoming
+   * shipments of all client elements. A shipment may pass the same resource in several elements,
+   * but it can only wait at one of them at a time.
+   */
+  protected Map<LspShipment, LogisticChainElement> clientElementOfShipment = new HashMap<>();
+
   protected LSPPlan lspPlan;
 
+  /**
+   * If set for the current thread, the hand-overs of the scheduled shipments to the next elements
+   * and the detachments of outdated trackers from the shipments are collected here instead of being
+   * performed directly. This is used when several resources are scheduled in parallel (see {@link
+   * ForwardLogisticChainSchedulerImpl}): they may hand over to the same element, and a shipment may
+   * move from one of them to another, so that one resource detaches its old tracker while the other
+   * one attaches a new tracker. The collected actions are performed afterward in a deterministic
+   * order.
+   */
+  private static final ThreadLocal<List<DeferredAction>> deferredActions = new ThreadLocal<>();
+
   public final void scheduleShipments(LSPPlan lspPlan, LSPResource resource, int bufferTime) {
     this.lspPlan = lspPlan;
     this.resource = resource;
@@ -55,6 +78,7 @@ public abstract class LSPResourceScheduler {
     updateShipments();
     switchHandledShipments(bufferTime);
     lspShipmentsToSchedule.clear();
+    clientElementOfShipment.clear();
   }
 
   /**
@@ -80,27 +104,103 @@ public abstract class LSPResourceScheduler {
 
   private void presortIncomingShipments() {
     this.lspShipmentsToSchedule = new ArrayList<>();
+    this.clientElementOfShipment = new HashMap<>();
     for (LogisticChainElement element : resource.getClientElements()) {
-      lspShipmentsToSchedule.addAll(element.getIncomingShipments().getLspShipmentsWTime());
+      for (LspShipment lspShipment : element.getIncomingShipments().getLspShipmentsWTime()) {
+        LogisticChainElement otherElement = clientElementOfShipment.put(lspShipment, element);
+        if (otherElement != null) {
+          throw new IllegalStateException(
+              "LspShipment "
+                  + lspShipment.getId()
+                  + " is waiting at the elements "
+                  + otherElement.getId()
+                  + " and "
+                  + element.getId()
+                  + " of resource "
+                  + resource.getId()
+                  + " at the same time; it can only be scheduled for one of them.");
+        }
+        lspShipmentsToSchedule.add(lspShipment);
+      }
     }
     lspShipmentsToSchedule.sort(Comparator.comparingDouble(LspShipmentUtils::getTimeOfLspShipment));
   }
 
   private void switchHandledShipments(int bufferTime) {
+    // All incoming shipments of the client elements were scheduled (see presortIncomingShipments()),
+    // so all of them are handed over now.
+    for (LogisticChainElement element : resource.getClientElements()) {
+      element.getIncomingShipments().clear();
+    }
     for (LspShipment lspShipmentWithTime : lspShipmentsToSchedule) {
       var shipmentPlan = LspShipmentUtils.getOrCreateShipmentPlan(lspPlan, lspShipmentWithTime.getId());
       double endOfTransportTime = shipmentPlan.getMostRecentEntry().getEndTime() + bufferTime;
-      LspShipmentUtils.setTimeOfLspShipment(lspShipmentWithTime, endOfTransportTime);
-        for (LogisticChainElement element : resource.getClientElements()) {
-        if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipmentWithTime)) {
-          element.getIncomingShipments().getLspShipmentsWTime().remove(lspShipmentWithTime);
-          element.getOutgoingShipments().getLspShipmentsWTime().add(lspShipmentWithTime);
-          if (element.getNextElement() != null) {
-            element.getNextElement().getIncomingShipments().getLspShipmentsWTime().add(lspShipmentWithTime);
-            element.getOutgoingShipments().getLspShipmentsWTime().remove(lspShipmentWithTime);
-          }
-        }
+      LogisticChainElement element = clientElementOfShipment.get(lspShipmentWithTime);
+      WaitingShipments target;
+      if (element.getNextElement() != null) {
+        target = element.getNextElement().getIncomingShipments();
+      } else {
+        target = element.getOutgoingShipments();
       }
+      performOrDefer(new HandOver(target, endOfTransportTime, lspShipmentWithTime));
+    }
+  }
+
+  /**
+   * Detaches a tracker of the previous schedule from its shipment. Is to be used by the
+   * implementations instead of {@link LspShipment#removeSimulationTracker}, because the shipment
+   * may already be handled by another resource that is scheduled at the same time.
+   */
+  protected static void detachSimulationTracker(
+      LspShipment lspShipment, LSPSimulationTracker<LspShipment> tracker) {
+    performOrDefer(new Detachment(lspShipment, tracker));
+  }
+
+  private static void performOrDefer(DeferredAction action) {
+    List<DeferredAction> deferred = deferredActions.get();
+    if (deferred != null) {
+      deferred.add(action);
+    } else {
+      action.execute();
+    }
+  }
+
+  /* package-private */ static void startDeferring() {
+    deferredActions.set(new ArrayList<>());
+  }
+
+  /**
+   * @return the actions collected for the current thread since {@link #startDeferring()}
+   */
+  /* package-private */ static List<DeferredAction> stopDeferring() {
+    List<DeferredAction> actions = deferredActions.get();
+    deferredActions.remove();
+    return actions;
+  }
+
+  /* package-private */ interface DeferredAction {
+    void execute();
+  }
+
+  private record Detachment(LspShipment lspShipment, LSPSimulationTracker<LspShipment> tracker)
+      implements DeferredAction {
+    @Override
+    public void execute() {
+      lspShipment.removeSimulationTracker(tracker);
+    }
+  }
+
+  private record HandOver(WaitingShipments target, double time, LspShipment lspShipment)
+      implements DeferredAction {
+    /**
+     * Sets the time and appends the shipment, as before; {@link WaitingShipments#addShipment}
+     * would re-sort the list of the default implementation for each shipment. The list is sorted
+     * when it is read.
+     */
+    @Override
+    public void execute() {
+      LspShipmentUtils.setTimeOfLspShipment(lspShipment, time);
+      target.getLspShipmentsWTime().add(lspShipment);
     }
   }
 }
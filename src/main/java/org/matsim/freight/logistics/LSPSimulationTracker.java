@@ -29,4 +29,15 @@ public interface LSPSimulationTracker<T>
   // In general, we set backpointers when we add to the container.  So specifically, we set the
   // backpointer to which the tracker points when the tracker is added.
   default void setEventsManager(EventsManager eventsManager) {}
+
+  /**
+   * Trackers that get their events handed over by another tracker (e.g. a dispatcher of the
+   * resource they belong to) return <code>false</code> here. They are then not added to the
+   * {@link EventsManager}, so that they do not receive every event of the simulation.
+   *
+   * @return true, if this tracker should be added as events handler to the {@link EventsManager}.
+   */
+  default boolean isRegisteredAtEventsManager() {
+    return true;
+  }
 }
@@ -22,6 +22,8 @@
 package org.matsim.freight.logistics;
 
 import jakarta.inject.Provider;
+import java.util.function.Supplier;
+import org.matsim.core.replanning.GenericPlanStrategy;
 import org.matsim.core.replanning.GenericStrategyManager;
 
 /**
@@ -41,4 +43,18 @@ import org.matsim.core.replanning.GenericStrategyManager;
 public interface LSPStrategyManager extends GenericStrategyManager<LSPPlan, LSP> {
   // (this is mostly there so that it can be guice-bound.  kai, jul'22)
 
+  /**
+   * Adds a strategy of which the manager may create several instances, e.g. one per LSP so that
+   * the LSPs can be replanned in parallel (see {@link ParallelLSPStrategyManagerImpl}). The default
+   * implementation adds one instance, i.e. it is the same as {@link
+   * #addStrategy(GenericPlanStrategy, String, double)}.
+   *
+   * @param strategyFactory creates a new instance of the strategy
+   */
+  default void addStrategy(
+      Supplier<GenericPlanStrategy<LSPPlan, LSP>> strategyFactory,
+      String subpopulation,
+      double weight) {
+    addStrategy(strategyFactory.get(), subpopulation, weight);
+  }
 }
@@ -22,8 +22,11 @@ package org.matsim.freight.logistics;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.freight.carriers.Carriers;
 import org.matsim.freight.carriers.CarriersUtils;
 import org.matsim.freight.logistics.shipment.LspShipment;
@@ -54,8 +57,50 @@ public final class LSPUtils {
     return new ForwardLogisticChainSchedulerImpl();
   }
 
+  /**
+   * Same as {@link #createForwardLogisiticChainScheduler()}, but the resources that do not depend
+   * on each other (e.g. several distribution carriers behind one hub) are scheduled in parallel on
+   * the given pool, as far as they are {@link LSPResource#isSchedulingThreadSafe()}.
+   *
+   * <p>The carrier and hub resources of the resourceImplementations package are thread-safe in
+   * this sense, as long as each of them has its own scheduler instance.
+   *
+   * @param pool the pool to schedule the resources on, e.g. {@link ForkJoinPool#commonPool()}
+   */
+  public static LogisticChainScheduler createForwardLogisiticChainScheduler(ForkJoinPool pool) {
+    return new ForwardLogisticChainSchedulerImpl(pool);
+  }
+
+  /**
+   * @return an empty strategy manager of the type selected by {@link
+   *     FreightLogisticsConfigGroup#getNumberOfThreadsForReplanning()}: a {@link
+   *     ParallelLSPStrategyManagerImpl} if it is larger than 1, otherwise a {@link
+   *     LSPStrategyManagerImpl}. Only strategies that are added with {@link
+   *     LSPStrategyManager#addStrategy(java.util.function.Supplier, String, double)} are run in
+   *     parallel.
+   */
+  public static LSPStrategyManager createLSPStrategyManager(Config config) {
+    int numberOfThreads =
+        ConfigUtils.addOrGetModule(config, FreightLogisticsConfigGroup.class)
+            .getNumberOfThreadsForReplanning();
+    if (numberOfThreads > 1) {
+      return new ParallelLSPStrategyManagerImpl(numberOfThreads);
+    }
+    return new LSPStrategyManagerImpl();
+  }
+
+  /**
+   * @return {@link WaitingShipments} of the default type {@link WaitingShipmentsType#sortedList}
+   */
   public static WaitingShipments createWaitingShipments() {
-    return new WaitingShipmentsImpl();
+    return createWaitingShipments(WaitingShipmentsType.sortedList);
+  }
+
+  public static WaitingShipments createWaitingShipments(WaitingShipmentsType type) {
+    return switch (type) {
+      case sortedList -> new WaitingShipmentsImpl();
+      case timeOrdered -> new TimeOrderedWaitingShipments();
+    };
   }
 
   public static void addLSPs(Scenario scenario, LSPs lsps) {
@@ -120,6 +165,9 @@ public final class LSPUtils {
    * @return the lspShipment object or null, if it is not found.
    */
   public static LspShipment findLspShipment(LSP lsp, Id<LspShipment> shipmentId) {
+    if (lsp instanceof LSPImpl lspImpl) {
+      return lspImpl.getLspShipment(shipmentId);
+    }
     for (LspShipment lspShipment : lsp.getLspShipments()) {
       if (lspShipment.getId().equals(shipmentId)) {
         return lspShipment;
@@ -136,6 +184,9 @@ public final class LSPUtils {
    * @return the shipmentPlan object or null, if it is not found.
    */
   public static LspShipmentPlan findLspShipmentPlan(LSPPlan lspPlan, Id<LspShipment> shipmentId) {
+    if (lspPlan instanceof LSPPlanImpl lspPlanImpl) {
+      return lspPlanImpl.getShipmentPlan(shipmentId);
+    }
     for (LspShipmentPlan lspShipmentPlan : lspPlan.getShipmentPlans()) {
       if (lspShipmentPlan.getLspShipmentId().equals(shipmentId)) {
         return lspShipmentPlan;
@@ -144,8 +195,40 @@ public final class LSPUtils {
     return null;
   }
 
+  /**
+   * Returns the {@link LogisticChain} of the plan an {@link LspShipment} is assigned to.
+   *
+   * @param lspPlan the lspPlan: It contains the logistic chains
+   * @param shipmentId Id of the shipment whose chain should be found.
+   * @return the logistic chain or null, if the shipment is not assigned to any chain of the plan.
+   */
+  public static LogisticChain findLogisticChainOfShipment(
+      LSPPlan lspPlan, Id<LspShipment> shipmentId) {
+    if (lspPlan instanceof LSPPlanImpl lspPlanImpl) {
+      return lspPlanImpl.getLogisticChainOfShipment(shipmentId);
+    }
+    for (LogisticChain logisticChain : lspPlan.getLogisticChains()) {
+      if (logisticChain.getLspShipmentIds().contains(shipmentId)) {
+        return logisticChain;
+      }
+    }
+    return null;
+  }
+
     public enum LogicOfVrp {serviceBased, shipmentBased}
 
+  /**
+   * Implementations of {@link WaitingShipments}:
+   *
+   * <ul>
+   *   <li>sortedList: list that is re-sorted after each insertion. This is the default.
+   *   <li>timeOrdered: shipments are kept ordered by their time stamp in a tree; insertion and
+   *       removal in O(log n). Has to be selected explicitly, e.g. by {@link
+   *       LogisticChainElementBuilder#setWaitingShipmentsType(WaitingShipmentsType)}.
+   * </ul>
+   */
+  public enum WaitingShipmentsType {sortedList, timeOrdered}
+
     public static final class LSPBuilder {
     final Collection<LSPResource> resources;
     final Id<LSP> id;
@@ -245,8 +328,8 @@ public final class LSPUtils {
 
   public static final class LogisticChainElementBuilder {
     final Id<LogisticChainElement> id;
-    final WaitingShipments incomingShipments;
-    final WaitingShipments outgoingShipments;
+    WaitingShipments incomingShipments;
+    WaitingShipments outgoingShipments;
     LSPResource resource;
 
     private LogisticChainElementBuilder(Id<LogisticChainElement> id) {
@@ -264,6 +347,12 @@ public final class LSPUtils {
       return this;
     }
 
+    public LogisticChainElementBuilder setWaitingShipmentsType(WaitingShipmentsType type) {
+      this.incomingShipments = createWaitingShipments(type);
+      this.outgoingShipments = createWaitingShipments(type);
+      return this;
+    }
+
     public LogisticChainElement build() {
       return new LogisticChainElementImpl(this);
     }
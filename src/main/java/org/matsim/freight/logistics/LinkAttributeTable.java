@@ -0,0 +1,163 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.roadpricing.RoadPricingScheme;
+import org.matsim.contrib.roadpricing.RoadPricingUtils;
+
+/**
+ * Length, free speed and toll flag of all links of the network, stored in arrays that are indexed
+ * by {@link Id#index()}.
+ *
+ * <p>The LSP-side cost computations (e.g. the manual scoring of the main run plans or the
+ * event-based scorers) look up the length of every link of every route resp. of every {@link
+ * org.matsim.api.core.v01.events.LinkEnterEvent}. With this table, this is an array access instead
+ * of a lookup in the link map of the network.
+ *
+ * <p>The table is stored as scenario element and built on first use. {@link #reset(Scenario)}
+ * throws the content away, so that it is built again from the current network; this is done at
+ * the beginning of each iteration (see {@link LSPModule}). A link is tolled, if it is part of the
+ * scenario's road pricing scheme (if there is one).
+ */
+public final class LinkAttributeTable {
+  private static final Logger log = LogManager.getLogger(LinkAttributeTable.class);
+  private static final String ELEMENT_NAME = "lspLinkAttributeTable";
+
+  private final Scenario scenario;
+  private volatile Attributes attributes = null;
+
+  private LinkAttributeTable(Scenario scenario) {
+    this.scenario = scenario;
+  }
+
+  /**
+   * @return the table of the scenario; it is created on first use.
+   */
+  public static synchronized LinkAttributeTable getOrCreate(Scenario scenario) {
+    Object table = scenario.getScenarioElement(ELEMENT_NAME);
+    if (table == null) {
+      table = new LinkAttributeTable(scenario);
+      scenario.addScenarioElement(ELEMENT_NAME, table);
+    }
+    return (LinkAttributeTable) table;
+  }
+
+  /**
+   * Throws away the attributes of the table (if there is one) for the given scenario. They are
+   * built again from the network on the next request.
+   */
+  public static void reset(Scenario scenario) {
+    if (scenario.getScenarioElement(ELEMENT_NAME) instanceof LinkAttributeTable table) {
+      table.attributes = null;
+    }
+  }
+
+  /**
+   * @return the length of the link
+   * @throws IllegalArgumentException if the link is not part of the network
+   */
+  public double getLength(Id<Link> linkId) {
+    return getAttributes().lengths()[indexOf(linkId)];
+  }
+
+  /**
+   * @return the free speed of the link
+   * @throws IllegalArgumentException if the link is not part of the network
+   */
+  public double getFreespeed(Id<Link> linkId) {
+    return getAttributes().freespeeds()[indexOf(linkId)];
+  }
+
+  /**
+   * @return true, if the link is part of the road pricing scheme of the scenario.
+   * @throws IllegalArgumentException if the link is not part of the network
+   */
+  public boolean isTolled(Id<Link> linkId) {
+    return getAttributes().tolled().get(indexOf(linkId));
+  }
+
+  /**
+   * @return the index of the link in the arrays of the table. Links that are not part of the
+   *     network have the length NaN there, or their index is beyond the arrays.
+   */
+  private int indexOf(Id<Link> linkId) {
+    double[] lengths = getAttributes().lengths();
+    int index = linkId.index();
+    if (index >= lengths.length || Double.isNaN(lengths[index])) {
+      throw new IllegalArgumentException("Link " + linkId + " is not part of the network.");
+    }
+    return index;
+  }
+
+  private Attributes getAttributes() {
+    Attributes current = attributes;
+    if (current == null) {
+      synchronized (this) {
+        current = attributes;
+        if (current == null) {
+          current = build();
+          attributes = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  private Attributes build() {
+    int size = 0;
+    for (Id<Link> linkId : scenario.getNetwork().getLinks().keySet()) {
+      size = Math.max(size, linkId.index() + 1);
+    }
+    // ids that are not part of the network are marked with NaN
+    double[] lengths = new double[size];
+    double[] freespeeds = new double[size];
+    Arrays.fill(lengths, Double.NaN);
+    Arrays.fill(freespeeds, Double.NaN);
+    for (Link link : scenario.getNetwork().getLinks().values()) {
+      lengths[link.getId().index()] = link.getLength();
+      freespeeds[link.getId().index()] = link.getFreespeed();
+    }
+
+    BitSet tolled = new BitSet(size);
+    RoadPricingScheme scheme = null;
+    try {
+      scheme = RoadPricingUtils.getRoadPricingScheme(scenario);
+    } catch (Exception e) {
+      log.debug("Was not able getting RoadPricingScheme. No link is marked as tolled.", e);
+    }
+    if (scheme != null) {
+      for (Id<Link> linkId : scheme.getTolledLinkIds()) {
+        tolled.set(linkId.index());
+      }
+    }
+    return new Attributes(lengths, freespeeds, tolled);
+  }
+
+  private record Attributes(double[] lengths, double[] freespeeds, BitSet tolled) {}
+}
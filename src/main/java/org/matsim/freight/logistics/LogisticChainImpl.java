@@ -20,7 +20,6 @@
 
 package org.matsim.freight.logistics;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,7 +31,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
   private static final Logger log = LogManager.getLogger(LogisticChainImpl.class);
 
   private final Collection<LogisticChainElement> logisticChainElements;
-  private final Collection<Id<LspShipment>> lspShipmentIds;
+  private final ShipmentIdSet lspShipmentIds;
   private LSP lsp;
 
   LogisticChainImpl(LSPUtils.LogisticChainBuilder builder) {
@@ -41,7 +40,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
     for (LogisticChainElement element : this.logisticChainElements) {
       element.setEmbeddingContainer(this);
     }
-    this.lspShipmentIds = new ArrayList<>();
+    this.lspShipmentIds = new ShipmentIdSet(this);
   }
 
   @Override
@@ -64,6 +63,23 @@ import org.matsim.freight.logistics.shipment.LspShipment;
     return lspShipmentIds;
   }
 
+  /**
+   * Connects the shipment ids of this chain to the index of the plan it was added to, see {@link
+   * ShipmentIdSet}.
+   */
+  void attachToPlan(LSPPlanImpl plan) {
+    lspShipmentIds.setPlan(plan);
+  }
+
+  void detachFromPlan() {
+    lspShipmentIds.setPlan(null);
+  }
+
+  /** Used when plans are copied: the shipment ids are shared until one of the chains changes. */
+  void shareShipmentIdsOf(LogisticChainImpl other) {
+    lspShipmentIds.shareIdsOf(other.lspShipmentIds);
+  }
+
   @Override
   public void addShipmentToChain(LspShipment lspShipment) {
     lspShipmentIds.add(lspShipment.getId());
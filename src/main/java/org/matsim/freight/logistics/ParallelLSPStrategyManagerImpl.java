@@ -0,0 +1,286 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import org.matsim.api.core.v01.population.HasPlansAndId;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.replanning.GenericPlanStrategy;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.replanning.selectors.GenericWorstPlanForRemovalSelector;
+import org.matsim.core.replanning.selectors.PlanSelector;
+import org.matsim.core.replanning.selectors.RandomPlanSelector;
+
+/**
+ * Strategy manager that runs the strategy modules (i.e. {@link
+ * org.matsim.core.replanning.modules.GenericPlanStrategyModule#handlePlan}) of different LSPs in
+ * parallel. The LSPs do not share anything that is changed in the replanning, so this is possible
+ * in the same way as for persons in core matsim.
+ *
+ * <p>Strategies are not thread-safe (they collect the plans to handle between {@link
+ * GenericPlanStrategy#init} and {@link GenericPlanStrategy#finish}). Thus, the strategies that
+ * should run in parallel have to be added with {@link #addStrategy(Supplier, String, double)}
+ * (which is also part of {@link LSPStrategyManager}, so it can be used on the manager of {@link
+ * LSPUtils#createLSPStrategyManager}); one instance is created per LSP and replanning. Strategies added as instance with {@link
+ * #addStrategy(GenericPlanStrategy, String, double)} are run for all their LSPs at once in the
+ * calling thread, as in {@link LSPStrategyManagerImpl}.
+ *
+ * <p>The results do not depend on the number of threads: The removal of plans, the choice of the
+ * strategy and the selection of the plan to modify are done one LSP after the other, using {@link
+ * MatsimRandom#getRandom()}. For each LSP, also the seed of its own random stream is drawn there.
+ * While its modules run, this stream is returned by {@link #getRandom()}; so strategy modules that
+ * need random numbers should use {@link #getRandom()} instead of {@link MatsimRandom#getRandom()}.
+ *
+ * <p>As in {@link LSPStrategyManagerImpl}, LSPs do not have a subpopulation, i.e. only strategies
+ * added for subpopulation <code>null</code> are used.
+ */
+public class ParallelLSPStrategyManagerImpl implements LSPStrategyManager {
+
+  private static final ThreadLocal<Random> currentRandom = new ThreadLocal<>();
+
+  private final int numberOfThreads;
+  private final Map<String, List<StrategyEntry>> strategies = new HashMap<>();
+  private final Map<Integer, List<ChangeRequest>> changeRequests = new HashMap<>();
+  private int maxPlansPerAgent = 0;
+  private PlanSelector<LSPPlan, LSP> planSelectorForRemoval =
+      new GenericWorstPlanForRemovalSelector<>();
+
+  /**
+   * @param numberOfThreads the number of LSPs whose strategy modules are run at the same time. The
+   *     threads only live during {@link #run}.
+   */
+  public ParallelLSPStrategyManagerImpl(int numberOfThreads) {
+    this.numberOfThreads = numberOfThreads;
+  }
+
+  /**
+   * @return the random stream of the LSP that is currently replanned in this thread, or {@link
+   *     MatsimRandom#getRandom()} outside of {@link ParallelLSPStrategyManagerImpl}.
+   */
+  public static Random getRandom() {
+    Random random = currentRandom.get();
+    return random != null ? random : MatsimRandom.getRandom();
+  }
+
+  /**
+   * Adds a strategy that is run in parallel for the different LSPs.
+   *
+   * @param strategyFactory creates a new instance of the strategy; it is called once per LSP and
+   *     replanning (and once here, to get the instance that stands for the strategy in {@link
+   *     #getStrategies(String)} and {@link #addChangeRequest}).
+   */
+  @Override
+  public void addStrategy(
+      Supplier<GenericPlanStrategy<LSPPlan, LSP>> strategyFactory,
+      String subpopulation,
+      double weight) {
+    strategies
+        .computeIfAbsent(subpopulation, k -> new ArrayList<>())
+        .add(new StrategyEntry(strategyFactory.get(), strategyFactory, weight));
+  }
+
+  @Override
+  public void addStrategy(
+      GenericPlanStrategy<LSPPlan, LSP> strategy, String subpopulation, double weight) {
+    strategies
+        .computeIfAbsent(subpopulation, k -> new ArrayList<>())
+        .add(new StrategyEntry(strategy, null, weight));
+  }
+
+  @Override
+  public void run(
+      Iterable<? extends HasPlansAndId<LSPPlan, LSP>> persons,
+      int iteration,
+      ReplanningContext replanningContext) {
+    handleChangeRequests(iteration);
+    List<StrategyEntry> entries = strategies.getOrDefault(null, List.of());
+    double totalWeight = 0.;
+    for (StrategyEntry entry : entries) {
+      totalWeight += entry.weight;
+    }
+
+    // sequential part: everything that uses MatsimRandom.getRandom()
+    Map<GenericPlanStrategy<LSPPlan, LSP>, Long> sharedStrategies = new LinkedHashMap<>();
+    List<ParallelTask> parallelTasks = new ArrayList<>();
+    for (HasPlansAndId<LSPPlan, LSP> lsp : persons) {
+      removePlans(lsp);
+      StrategyEntry entry = chooseStrategy(entries, totalWeight);
+      if (entry == null) {
+        continue;
+      }
+      if (entry.factory == null) {
+        if (!sharedStrategies.containsKey(entry.strategy)) {
+          sharedStrategies.put(entry.strategy, MatsimRandom.getRandom().nextLong());
+          entry.strategy.init(replanningContext);
+        }
+        entry.strategy.run(lsp);
+      } else {
+        GenericPlanStrategy<LSPPlan, LSP> strategy = entry.factory.get();
+        strategy.init(replanningContext);
+        strategy.run(lsp);
+        parallelTasks.add(new ParallelTask(strategy, MatsimRandom.getRandom().nextLong()));
+      }
+    }
+
+    for (Map.Entry<GenericPlanStrategy<LSPPlan, LSP>, Long> shared : sharedStrategies.entrySet()) {
+      finish(shared.getKey(), shared.getValue(), replanningContext);
+    }
+    if (numberOfThreads > 1 && parallelTasks.size() > 1) {
+      // The replanning runs once per iteration, so the pool is not kept between the iterations.
+      ForkJoinPool pool = new ForkJoinPool(Math.min(numberOfThreads, parallelTasks.size()));
+      try {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (ParallelTask task : parallelTasks) {
+          tasks.add(pool.submit(() -> finish(task.strategy, task.seed, replanningContext)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+          task.join();
+        }
+      } finally {
+        pool.shutdown();
+      }
+    } else {
+      for (ParallelTask task : parallelTasks) {
+        finish(task.strategy, task.seed, replanningContext);
+      }
+    }
+  }
+
+  private static void finish(
+      GenericPlanStrategy<LSPPlan, LSP> strategy, long seed, ReplanningContext replanningContext) {
+    currentRandom.set(new Random(seed));
+    try {
+      strategy.finish(replanningContext);
+    } finally {
+      currentRandom.remove();
+    }
+  }
+
+  private void removePlans(HasPlansAndId<LSPPlan, LSP> lsp) {
+    if (maxPlansPerAgent <= 0) {
+      return;
+    }
+    while (lsp.getPlans().size() > maxPlansPerAgent) {
+      LSPPlan plan = planSelectorForRemoval.selectPlan(lsp);
+      lsp.removePlan(plan);
+      if (plan == lsp.getSelectedPlan()) {
+        lsp.setSelectedPlan(new RandomPlanSelector<LSPPlan, LSP>().selectPlan(lsp));
+      }
+    }
+  }
+
+  private static StrategyEntry chooseStrategy(List<StrategyEntry> entries, double totalWeight) {
+    if (entries.isEmpty() || totalWeight <= 0.) {
+      return null;
+    }
+    double rnd = MatsimRandom.getRandom().nextDouble() * totalWeight;
+    double sum = 0.;
+    for (StrategyEntry entry : entries) {
+      sum += entry.weight;
+      if (rnd <= sum) {
+        return entry;
+      }
+    }
+    return entries.getLast();
+  }
+
+  private void handleChangeRequests(int iteration) {
+    List<ChangeRequest> requests = changeRequests.remove(iteration);
+    if (requests == null) {
+      return;
+    }
+    for (ChangeRequest request : requests) {
+      for (StrategyEntry entry : strategies.getOrDefault(request.subpopulation(), List.of())) {
+        if (entry.strategy == request.strategy()) {
+          entry.weight = request.newWeight();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void setMaxPlansPerAgent(int maxPlansPerAgent) {
+    this.maxPlansPerAgent = maxPlansPerAgent;
+  }
+
+  @Override
+  public void addChangeRequest(
+      int iteration,
+      GenericPlanStrategy<LSPPlan, LSP> strategy,
+      String subpopulation,
+      double newWeight) {
+    changeRequests
+        .computeIfAbsent(iteration, k -> new ArrayList<>())
+        .add(new ChangeRequest(strategy, subpopulation, newWeight));
+  }
+
+  @Override
+  public void setPlanSelectorForRemoval(PlanSelector<LSPPlan, LSP> planSelector) {
+    this.planSelectorForRemoval = planSelector;
+  }
+
+  @Override
+  public List<GenericPlanStrategy<LSPPlan, LSP>> getStrategies(String subpopulation) {
+    List<GenericPlanStrategy<LSPPlan, LSP>> result = new ArrayList<>();
+    for (StrategyEntry entry : strategies.getOrDefault(subpopulation, List.of())) {
+      result.add(entry.strategy);
+    }
+    return result;
+  }
+
+  @Override
+  public List<Double> getWeights(String subpopulation) {
+    List<Double> result = new ArrayList<>();
+    for (StrategyEntry entry : strategies.getOrDefault(subpopulation, List.of())) {
+      result.add(entry.weight);
+    }
+    return result;
+  }
+
+  private static final class StrategyEntry {
+    final GenericPlanStrategy<LSPPlan, LSP> strategy;
+    final Supplier<GenericPlanStrategy<LSPPlan, LSP>> factory;
+    double weight;
+
+    StrategyEntry(
+        GenericPlanStrategy<LSPPlan, LSP> strategy,
+        Supplier<GenericPlanStrategy<LSPPlan, LSP>> factory,
+        double weight) {
+      this.strategy = strategy;
+      this.factory = factory;
+      this.weight = weight;
+    }
+  }
+
+  private record ParallelTask(GenericPlanStrategy<LSPPlan, LSP> strategy, long seed) {}
+
+  private record ChangeRequest(
+      GenericPlanStrategy<LSPPlan, LSP> strategy, String subpopulation, double newWeight) {}
+}
@@ -0,0 +1,262 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.matsim.api.core.v01.Id;
+import org.matsim.freight.logistics.shipment.LspShipment;
+
+/**
+ * The ids of the shipments of a {@link LogisticChain}, handed out by {@link
+ * LogisticChainImpl#getLspShipmentIds()}. Before, this was a list, and the replanning strategies
+ * (as well as the writer) scanned it for every contains and remove. Now these are O(1), and the
+ * insertion order is kept.
+ *
+ * <p>When a plan is copied (see {@link LSPImpl#copyPlan(LSPPlan)}), the chains of the copy share
+ * the ids with the original chains. A set consists of a base, which may be shared with other sets
+ * and is then not changed anymore, and of the ids that were added to resp. removed from this set
+ * since. A strategy typically moves a few shipments, so a changed copy holds only these few ids
+ * of its own. Once the own ids make up a considerable part of the set, they are merged into a new
+ * base of this set. The sets count the users of their base; a set that is the only user of its
+ * base changes it directly, e.g. the original after its copies were merged into own bases.
+ *
+ * <p>If the chain is part of an {@link LSPPlanImpl}, each change is also reported to the index
+ * from shipment id to chain of that plan (see {@link LSPUtils#findLogisticChainOfShipment}).
+ */
+/* package-private */ final class ShipmentIdSet extends AbstractSet<Id<LspShipment>> {
+
+  /** Own ids up to this number are not merged into a new base, even if the base is small. */
+  private static final int MIN_CHANGES_BEFORE_MERGE = 16;
+
+  private final LogisticChain chain;
+  private Base base = new Base(new LinkedHashSet<>());
+
+  /** Ids added since the base was taken, in the order in which they were added. */
+  private final Set<Id<LspShipment>> added = new LinkedHashSet<>();
+
+  /** Ids of the base that are not part of this set anymore. */
+  private final Set<Id<LspShipment>> removed = new HashSet<>();
+
+  private LSPPlanImpl plan = null;
+
+  ShipmentIdSet(LogisticChain chain) {
+    this.chain = chain;
+  }
+
+  /**
+   * Makes this set contain the same ids as the other set. The other set merges its own ids into
+   * its base first, if it has any; then both use this base.
+   */
+  void shareIdsOf(ShipmentIdSet other) {
+    if (plan != null) {
+      plan.chainRemoved(chain);
+    }
+    other.mergeIntoNewBase();
+    releaseBase();
+    this.base = other.base;
+    this.base.users++;
+    this.added.clear();
+    this.removed.clear();
+    if (plan != null) {
+      plan.chainAdded(chain);
+    }
+  }
+
+  /** The plan the chain is part of, or null; its index is informed about all changes. */
+  void setPlan(LSPPlanImpl plan) {
+    this.plan = plan;
+  }
+
+  /** @return true, if the base is not used by other sets and can be changed directly. */
+  private boolean ownsBase() {
+    return base.users == 1 && added.isEmpty() && removed.isEmpty();
+  }
+
+  @Override
+  public boolean add(Id<LspShipment> id) {
+    if (contains(id)) {
+      return false;
+    }
+    if (ownsBase()) {
+      base.ids.add(id);
+    } else {
+      // an id that was removed from the base stays in removed, so that it is iterated at its new
+      // position at the end
+      added.add(id);
+      mergeIfManyChanges();
+    }
+    if (plan != null) {
+      plan.shipmentIdAdded(id, chain);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return added.contains(o) || (base.ids.contains(o) && !removed.contains(o));
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!contains(o)) {
+      return false;
+    }
+    if (ownsBase()) {
+      base.ids.remove(o);
+    } else if (!added.remove(o)) {
+      @SuppressWarnings("unchecked") // it is part of the base
+      Id<LspShipment> id = (Id<LspShipment>) o;
+      removed.add(id);
+      mergeIfManyChanges();
+    }
+    if (plan != null) {
+      plan.shipmentIdRemoved(o, chain);
+    }
+    return true;
+  }
+
+  /** Iterates over the ids of the base that are not removed, then over the added ids. */
+  @Override
+  public Iterator<Id<LspShipment>> iterator() {
+    Iterator<Id<LspShipment>> baseIterator = base.ids.iterator();
+    Iterator<Id<LspShipment>> addedIterator = added.iterator();
+    return new Iterator<>() {
+      private Id<LspShipment> nextOfBase = findNextOfBase();
+      private Id<LspShipment> current;
+      private boolean currentIsAdded;
+
+      private Id<LspShipment> findNextOfBase() {
+        while (baseIterator.hasNext()) {
+          Id<LspShipment> id = baseIterator.next();
+          if (!removed.contains(id)) {
+            return id;
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return nextOfBase != null || addedIterator.hasNext();
+      }
+
+      @Override
+      public Id<LspShipment> next() {
+        if (nextOfBase != null) {
+          current = nextOfBase;
+          currentIsAdded = false;
+          nextOfBase = findNextOfBase();
+        } else {
+          current = addedIterator.next();
+          currentIsAdded = true;
+        }
+        return current;
+      }
+
+      @Override
+      public void remove() {
+        if (current == null) {
+          throw new IllegalStateException();
+        }
+        // the base is not changed while it is iterated, since the next id is already taken from it
+        if (currentIsAdded) {
+          addedIterator.remove();
+        } else {
+          removed.add(current);
+        }
+        if (plan != null) {
+          plan.shipmentIdRemoved(current, chain);
+        }
+        current = null;
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return base.ids.size() - removed.size() + added.size();
+  }
+
+  @Override
+  public void clear() {
+    if (plan != null) {
+      plan.chainRemoved(chain);
+    }
+    if (base.users == 1) {
+      base.ids.clear();
+    } else {
+      releaseBase();
+      base = new Base(new LinkedHashSet<>());
+    }
+    added.clear();
+    removed.clear();
+  }
+
+  /**
+   * Merges the own ids into a new base once they are at least half as many as the ids of the
+   * base. Like this, each id is copied a constant number of times on average.
+   */
+  private void mergeIfManyChanges() {
+    int changes = added.size() + removed.size();
+    if (changes >= MIN_CHANGES_BEFORE_MERGE && 2 * changes >= base.ids.size()) {
+      mergeIntoNewBase();
+    }
+  }
+
+  private void mergeIntoNewBase() {
+    if (added.isEmpty() && removed.isEmpty()) {
+      return;
+    }
+    Set<Id<LspShipment>> ids = new LinkedHashSet<>();
+    for (Id<LspShipment> id : base.ids) {
+      if (!removed.contains(id)) {
+        ids.add(id);
+      }
+    }
+    ids.addAll(added);
+    releaseBase();
+    base = new Base(ids);
+    added.clear();
+    removed.clear();
+  }
+
+  private void releaseBase() {
+    base.users--;
+  }
+
+  /**
+   * Ids that may be used by several sets. They are only changed while they are used by one set
+   * only, and if that set has no own ids.
+   */
+  private static final class Base {
+    final Set<Id<LspShipment>> ids;
+    int users = 1;
+
+    Base(Set<Id<LspShipment>> ids) {
+      this.ids = ids;
+    }
+  }
+}
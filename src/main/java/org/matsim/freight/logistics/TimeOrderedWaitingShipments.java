@@ -0,0 +1,177 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+
+/**
+ * {@link WaitingShipments} that keeps its shipments permanently ordered by their time stamp.
+ *
+ * <p>In contrast to {@link WaitingShipmentsImpl}, which re-sorts the whole list after each
+ * insertion, the shipments are kept in a balanced tree. Insertion and removal are in O(log n),
+ * ordered iteration is in O(n). The time stamp is read once when the shipment is added and then
+ * kept as primitive <code>double</code> in the tree entry, so the comparisons do not need to look
+ * into the attributes of the shipment. Shipments with the same time stamp stay in the order of
+ * their insertion.
+ *
+ * <p>There is at most one entry per shipment. Adding a shipment again moves it to the position of
+ * its new time stamp.
+ *
+ * <p>Both {@link #getSortedLspShipments()} and {@link #getLspShipmentsWTime()} return the same
+ * (ordered) view. Adding to this view uses the time that is currently stored in the shipment (see
+ * {@link LspShipmentUtils#getTimeOfLspShipment(LspShipment)}), removing from it also removes the
+ * shipment from the index.
+ */
+/* package-private */ class TimeOrderedWaitingShipments implements WaitingShipments {
+
+  private static final Comparator<Entry> ENTRY_COMPARATOR =
+      Comparator.<Entry>comparingDouble(Entry::time).thenComparingLong(Entry::seq);
+
+  private final TreeSet<Entry> entries = new TreeSet<>(ENTRY_COMPARATOR);
+  private final Map<LspShipment, Entry> entryOfShipment = new HashMap<>();
+  private final Collection<LspShipment> view = new OrderedView();
+  private long nextSeq = 0;
+
+  TimeOrderedWaitingShipments() {}
+
+  @Override
+  public void addShipment(double time, LspShipment lspShipment) {
+    LspShipmentUtils.setTimeOfLspShipment(lspShipment, time);
+    insert(time, lspShipment);
+  }
+
+  @Override
+  public Collection<LspShipment> getSortedLspShipments() {
+    return view;
+  }
+
+  @Override
+  public Collection<LspShipment> getLspShipmentsWTime() {
+    return view;
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+    entryOfShipment.clear();
+  }
+
+  private boolean insert(double time, LspShipment lspShipment) {
+    Entry newEntry = new Entry(time, nextSeq++, lspShipment);
+    Entry oldEntry = entryOfShipment.put(lspShipment, newEntry);
+    if (oldEntry != null) {
+      entries.remove(oldEntry);
+    }
+    entries.add(newEntry);
+    return true;
+  }
+
+  private boolean delete(Object o) {
+    Entry entry = entryOfShipment.remove(o);
+    if (entry == null) {
+      return false;
+    }
+    entries.remove(entry);
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder strb = new StringBuilder();
+    strb.append("TimeOrderedWaitingShipments{").append("No of Shipments= ").append(entries.size());
+    if (!entries.isEmpty()) {
+      strb.append("; ShipmentIds=");
+      for (Entry entry : entries) {
+        strb.append("[").append(entry.shipment().getId()).append("]");
+      }
+    }
+    strb.append('}');
+    return strb.toString();
+  }
+
+  private record Entry(double time, long seq, LspShipment shipment) {}
+
+  private final class OrderedView extends AbstractCollection<LspShipment> {
+
+    @Override
+    public Iterator<LspShipment> iterator() {
+      Iterator<Entry> it = entries.iterator();
+      return new Iterator<>() {
+        private Entry current;
+
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public LspShipment next() {
+          current = it.next();
+          return current.shipment();
+        }
+
+        @Override
+        public void remove() {
+          it.remove();
+          entryOfShipment.remove(current.shipment());
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return entries.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return entryOfShipment.containsKey(o);
+    }
+
+    @Override
+    public boolean add(LspShipment lspShipment) {
+      return insert(LspShipmentUtils.getTimeOfLspShipment(lspShipment), lspShipment);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return delete(o);
+    }
+
+    @Override
+    public void clear() {
+      TimeOrderedWaitingShipments.this.clear();
+    }
+  }
+}
@@ -120,11 +120,35 @@ public class LspScoreStatsControlerListener implements StartupListener, Iteratio
 		//		int iterations = maxIter - this.minIteration;
 		//		if (iterations > 5000) iterations = 5000; // limit the history size
 		for ( ScoreItem item : ScoreItem.values() ) {
-			this.scoreHistory.put( item, new TreeMap<>() ) ;
+			// the history may already be restored from a checkpoint
+			this.scoreHistory.computeIfAbsent( item, k -> new TreeMap<>() ) ;
 			this.perLsp.forEach((s, data) -> data.hist.put(item, new TreeMap<>()));
 		}
 	}
 
+	/**
+	 * Puts the score statistics of earlier iterations into the history, e.g. when a run is resumed from a checkpoint.
+	 * They are written to lsp_scorestats.csv as well, so that it covers all iterations. Has to be called before the
+	 * first iteration of the run. The statistics per subpopulation are not restored.
+	 */
+	public void restoreScoreHistory(Map<ScoreItem, Map<Integer, Double>> history) {
+		for ( ScoreItem item : ScoreItem.values() ) {
+			this.scoreHistory.computeIfAbsent( item, k -> new TreeMap<>() ).putAll( history.getOrDefault( item, Collections.emptyMap() ) ) ;
+		}
+		try {
+			for (Integer iteration : new TreeSet<>(this.scoreHistory.get(ScoreItem.executed).keySet())) {
+				this.out.write(iteration + this.delimiter
+					+ this.scoreHistory.get(ScoreItem.executed).get(iteration) + this.delimiter
+					+ this.scoreHistory.get(ScoreItem.worst).get(iteration) + this.delimiter
+					+ this.scoreHistory.get(ScoreItem.average).get(iteration) + this.delimiter
+					+ this.scoreHistory.get(ScoreItem.best).get(iteration) + "\n");
+			}
+			this.out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	@Override
 	public void notifyIterationEnds(final IterationEndsEvent event) {
 		collectScoreInfo(event);
@@ -29,7 +29,6 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
-import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.scoring.ScoringFunction;
 import org.matsim.core.scoring.SumScoringFunction;
 import org.matsim.freight.carriers.Carrier;
@@ -37,6 +36,7 @@ import org.matsim.freight.carriers.Tour;
 import org.matsim.freight.carriers.controler.CarrierScoringFunctionFactory;
 import org.matsim.freight.carriers.events.CarrierTourEndEvent;
 import org.matsim.freight.carriers.events.CarrierTourStartEvent;
+import org.matsim.freight.logistics.LinkAttributeTable;
 import org.matsim.freight.logistics.examples.ExampleConstants;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
@@ -47,8 +47,6 @@ import org.matsim.vehicles.VehicleUtils;
  */
 class MyEventBasedCarrierScorer implements CarrierScoringFunctionFactory {
 
-  @Inject private Network network;
-
   @Inject private Scenario scenario;
 
   private double toll;
@@ -76,6 +74,7 @@ class MyEventBasedCarrierScorer implements CarrierScoringFunctionFactory {
     private final Map<VehicleType, Double> vehicleType2TourDuration = new LinkedHashMap<>();
     private final Map<VehicleType, Integer> vehicleType2ScoredFixCosts = new LinkedHashMap<>();
     private final Map<Id<Tour>, Double> tourStartTime = new LinkedHashMap<>();
+    private final LinkAttributeTable linkAttributes = LinkAttributeTable.getOrCreate(scenario);
     private double score;
 
     public EventBasedScoring() {
@@ -154,7 +153,7 @@ class MyEventBasedCarrierScorer implements CarrierScoringFunctionFactory {
     }
 
     private void handleEvent(LinkEnterEvent event) {
-      final double distance = network.getLinks().get(event.getLinkId()).getLength();
+      final double distance = linkAttributes.getLength(event.getLinkId());
       final double costPerMeter =
           (VehicleUtils.findVehicle(event.getVehicleId(), scenario))
               .getType()
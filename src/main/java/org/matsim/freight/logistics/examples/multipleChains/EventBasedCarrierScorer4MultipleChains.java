@@ -28,7 +28,6 @@ import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.*;
-import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.scoring.ScoringFunction;
 import org.matsim.core.scoring.SumScoringFunction;
 import org.matsim.freight.carriers.Carrier;
@@ -36,6 +35,7 @@ import org.matsim.freight.carriers.Tour;
 import org.matsim.freight.carriers.controler.CarrierScoringFunctionFactory;
 import org.matsim.freight.carriers.events.CarrierTourEndEvent;
 import org.matsim.freight.carriers.events.CarrierTourStartEvent;
+import org.matsim.freight.logistics.LinkAttributeTable;
 import org.matsim.freight.logistics.analysis.Vehicle2CarrierEventHandler;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
@@ -46,7 +46,6 @@ import org.matsim.vehicles.VehicleUtils;
  */
 class EventBasedCarrierScorer4MultipleChains implements CarrierScoringFunctionFactory {
 
-  @Inject private Network network;
   @Inject private Scenario scenario;
 
   private Id<Carrier> carrierId;
@@ -84,6 +83,7 @@ class EventBasedCarrierScorer4MultipleChains implements CarrierScoringFunctionFa
 
     final Logger log = LogManager.getLogger(EventBasedScoring.class);
     private final Map<Id<Tour>, Double> tourStartTime = new LinkedHashMap<>();
+    private final LinkAttributeTable linkAttributes = LinkAttributeTable.getOrCreate(scenario);
     private double score;
 
     public EventBasedScoring() {
@@ -131,7 +131,7 @@ class EventBasedCarrierScorer4MultipleChains implements CarrierScoringFunctionFa
 
     // scores variable costs per distance
     private void handleEvent(LinkEnterEvent event) {
-      final double distance = network.getLinks().get(event.getLinkId()).getLength();
+      final double distance = linkAttributes.getLength(event.getLinkId());
       final double costPerMeter =
               (VehicleUtils.findVehicle(event.getVehicleId(), scenario))
                       .getType()
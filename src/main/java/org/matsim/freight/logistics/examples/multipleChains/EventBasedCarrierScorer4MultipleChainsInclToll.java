@@ -28,7 +28,6 @@ import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.*;
-import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.scoring.ScoringFunction;
 import org.matsim.core.scoring.SumScoringFunction;
@@ -38,6 +37,7 @@ import org.matsim.freight.carriers.Tour;
 import org.matsim.freight.carriers.controler.CarrierScoringFunctionFactory;
 import org.matsim.freight.carriers.events.CarrierTourEndEvent;
 import org.matsim.freight.carriers.events.CarrierTourStartEvent;
+import org.matsim.freight.logistics.LinkAttributeTable;
 import org.matsim.freight.logistics.analysis.Driver2VehicleEventHandler;
 import org.matsim.freight.logistics.analysis.Vehicle2CarrierEventHandler;
 import org.matsim.vehicles.Vehicle;
@@ -49,7 +49,6 @@ import org.matsim.vehicles.VehicleUtils;
  */
 class EventBasedCarrierScorer4MultipleChainsInclToll implements CarrierScoringFunctionFactory {
 
-  @Inject private Network network;
   @Inject private Scenario scenario;
 
   private Id<Carrier> carrierId;
@@ -74,6 +73,7 @@ class EventBasedCarrierScorer4MultipleChainsInclToll implements CarrierScoringFu
     private final Map<Id<Tour>, Double> tourStartTime = new LinkedHashMap<>();
     private final Driver2VehicleEventHandler d2v = new Driver2VehicleEventHandler();
     private final Vehicle2CarrierEventHandler v2c = new Vehicle2CarrierEventHandler();
+    private final LinkAttributeTable linkAttributes = LinkAttributeTable.getOrCreate(scenario);
     private double score;
 
     public EventBasedScoring() {
@@ -125,7 +125,7 @@ class EventBasedCarrierScorer4MultipleChainsInclToll implements CarrierScoringFu
 
     // scores variable costs per distance
     private void handleEvent(LinkEnterEvent event) {
-      final double distance = network.getLinks().get(event.getLinkId()).getLength();
+      final double distance = linkAttributes.getLength(event.getLinkId());
       final double costPerMeter =
               (VehicleUtils.findVehicle(event.getVehicleId(), scenario))
                       .getType()
@@ -130,16 +130,19 @@ final class ExampleMultipleOneEchelonChainsReplanning {
             bind(LSPStrategyManager.class)
                 .toProvider(
                     () -> {
-                      LSPStrategyManager strategyManager = new LSPStrategyManagerImpl();
+                      LSPStrategyManager strategyManager = LSPUtils.createLSPStrategyManager(config);
+                      // suppliers, so that the LSPs are replanned in parallel if the config
+                      // selects more than one thread for the replanning
                       strategyManager.addStrategy(
-                          new GenericPlanStrategyImpl<>(
-                              new ExpBetaPlanSelector<>(new ScoringConfigGroup())),
+                          () ->
+                              new GenericPlanStrategyImpl<>(
+                                  new ExpBetaPlanSelector<>(new ScoringConfigGroup())),
                           null,
                           1);
-                        strategyManager.addStrategy(
-                          RandomShiftingStrategyFactory.createStrategy(), null, 1);
+                      strategyManager.addStrategy(
+                          RandomShiftingStrategyFactory::createStrategy, null, 1);
                       //
-                      //	strategyManager.addStrategy(ProximityStrategyFactory.createStrategy(scenario.getNetwork()), null, 1);
+                      //	strategyManager.addStrategy(() -> ProximityStrategyFactory.createStrategy(scenario.getNetwork()), null, 1);
                       strategyManager.setMaxPlansPerAgent(5);
                       strategyManager.setPlanSelectorForRemoval(
                           new GenericWorstPlanForRemovalSelector<>());
@@ -126,9 +126,10 @@ final class ExampleMultipleTwoEchelonChainsReplanning {
                       return strategyManager;
                     });
             bind(LSPStrategyManager.class).toProvider( () -> {
-                      LSPStrategyManager strategyManager = new LSPStrategyManagerImpl();
-                      strategyManager.addStrategy( new GenericPlanStrategyImpl<>( new ExpBetaPlanSelector<>(new ScoringConfigGroup())), null, 1);
-                      strategyManager.addStrategy( ProximityStrategyFactory.createStrategy(scenario.getNetwork()), null, 1);
+                      LSPStrategyManager strategyManager = LSPUtils.createLSPStrategyManager(config);
+                      // suppliers, so that the LSPs are replanned in parallel if the config selects more than one thread for the replanning
+                      strategyManager.addStrategy( () -> new GenericPlanStrategyImpl<>( new ExpBetaPlanSelector<>(new ScoringConfigGroup())), null, 1);
+                      strategyManager.addStrategy( () -> ProximityStrategyFactory.createStrategy(scenario.getNetwork()), null, 1);
                       strategyManager.setMaxPlansPerAgent(5);
                       strategyManager.setPlanSelectorForRemoval( new GenericWorstPlanForRemovalSelector<>());
                       return strategyManager;
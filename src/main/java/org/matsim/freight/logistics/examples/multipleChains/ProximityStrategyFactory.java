@@ -28,7 +28,6 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.groups.ScoringConfigGroup;
-import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.replanning.GenericPlanStrategy;
 import org.matsim.core.replanning.GenericPlanStrategyImpl;
@@ -94,7 +93,7 @@ final class ProximityStrategyFactory {
             }
 
             // pick a random lspShipment from the shipments contained in the plan
-            int shipmentIndex = MatsimRandom.getRandom().nextInt(shipments.size());
+            int shipmentIndex = ParallelLSPStrategyManagerImpl.getRandom().nextInt(shipments.size());
             LspShipment lspShipment = shipments.get(shipmentIndex);
 
             // Collect all resources of the logistic chains of the LSP plan
@@ -119,23 +118,28 @@ final class ProximityStrategyFactory {
               }
             }
 
-            // add randomly picked lspShipment to chain with resource of the smallest distance
+            // move randomly picked lspShipment to the chain with resource of the smallest distance
+            LogisticChain targetLogisticChain = null;
             for (LogisticChain logisticChain : lspPlan.getLogisticChains()) {
               for (LogisticChainElement logisticChainElement :
                   logisticChain.getLogisticChainElements()) {
                 if (logisticChainElement.getResource().equals(minDistanceResource)) {
-                  logisticChain.getLspShipmentIds().add(lspShipment.getId());
+                  targetLogisticChain = logisticChain;
+                  break;
                 }
               }
+              if (targetLogisticChain != null) break;
             }
 
-            // remove the lspShipment from the previous logistic chain, can be the same as the new
-            // logistic chain
-            for (LogisticChain logisticChain : lspPlan.getLogisticChains()) {
-              if (logisticChain.getLspShipmentIds().contains(lspShipment.getId())) {
-                logisticChain.getLspShipmentIds().remove(lspShipment.getId());
-                break;
+            // remove the lspShipment from the previous logistic chain, unless it is the same as the
+            // new logistic chain
+            LogisticChain sourceLogisticChain =
+                LSPUtils.findLogisticChainOfShipment(lspPlan, lspShipment.getId());
+            if (targetLogisticChain != null && targetLogisticChain != sourceLogisticChain) {
+              if (sourceLogisticChain != null) {
+                sourceLogisticChain.getLspShipmentIds().remove(lspShipment.getId());
               }
+              targetLogisticChain.getLspShipmentIds().add(lspShipment.getId());
             }
           }
 
@@ -24,7 +24,6 @@ package org.matsim.freight.logistics.examples.multipleChains;
 import java.util.ArrayList;
 import java.util.List;
 import org.matsim.core.config.groups.ScoringConfigGroup;
-import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.replanning.GenericPlanStrategy;
 import org.matsim.core.replanning.GenericPlanStrategyImpl;
 import org.matsim.core.replanning.ReplanningContext;
@@ -33,6 +32,7 @@ import org.matsim.core.replanning.selectors.ExpBetaPlanSelector;
 import org.matsim.freight.logistics.LSP;
 import org.matsim.freight.logistics.LSPPlan;
 import org.matsim.freight.logistics.LogisticChain;
+import org.matsim.freight.logistics.ParallelLSPStrategyManagerImpl;
 import org.matsim.freight.logistics.shipment.LspShipment;
 
 /**
@@ -75,7 +75,7 @@ final class RandomDistributionAllShipmentsStrategyFactory {
                                 new ArrayList<>(lsp.getSelectedPlan().getLogisticChains());
 
                         for (LspShipment lspShipment : lsp.getLspShipments()) {
-                            int index = MatsimRandom.getRandom().nextInt(logisticChains.size());
+                            int index = ParallelLSPStrategyManagerImpl.getRandom().nextInt(logisticChains.size());
                             logisticChains.get(index).addShipmentToChain(lspShipment);
                         }
                     }
@@ -27,7 +27,6 @@ import java.util.List;
 import java.util.Random;
 
 import org.matsim.core.config.groups.ScoringConfigGroup;
-import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.replanning.GenericPlanStrategy;
 import org.matsim.core.replanning.GenericPlanStrategyImpl;
 import org.matsim.core.replanning.ReplanningContext;
@@ -35,7 +34,9 @@ import org.matsim.core.replanning.modules.GenericPlanStrategyModule;
 import org.matsim.core.replanning.selectors.ExpBetaPlanSelector;
 import org.matsim.freight.logistics.LSP;
 import org.matsim.freight.logistics.LSPPlan;
+import org.matsim.freight.logistics.LSPUtils;
 import org.matsim.freight.logistics.LogisticChain;
+import org.matsim.freight.logistics.ParallelLSPStrategyManagerImpl;
 import org.matsim.freight.logistics.shipment.LspShipment;
 
 /**
@@ -46,8 +47,6 @@ import org.matsim.freight.logistics.shipment.LspShipment;
  */
 class RandomShiftingStrategyFactory {
 
-    private static Random random = null;
-
     //This is ok so as long as it is **non-public**.
     //Before making it public, it should be configurable either via config or Injection.
     //KMT, KN (Jan'24)
@@ -55,9 +54,6 @@ class RandomShiftingStrategyFactory {
 
     static GenericPlanStrategy<LSPPlan, LSP> createStrategy() {
 
-        MatsimRandom.reset();
-        random = MatsimRandom.getLocalInstance();
-
         GenericPlanStrategyImpl<LSPPlan, LSP> strategy = new GenericPlanStrategyImpl<>(new ExpBetaPlanSelector<>(new ScoringConfigGroup()));
         GenericPlanStrategyModule<LSPPlan> randomModule = new GenericPlanStrategyModule<>() {
 
@@ -71,6 +67,8 @@ class RandomShiftingStrategyFactory {
                 if (lspPlan.getLogisticChains().size() < 2) return;
 
                 LSP lsp = lspPlan.getLSP();
+                // the random stream of the LSP, so that the strategy can be replanned in parallel
+                Random random = ParallelLSPStrategyManagerImpl.getRandom();
 
                 // Make a new list of lspShipments and pick a random lspShipment from it
                 List<LspShipment> lspShipments = new ArrayList<>(lsp.getLspShipments());
@@ -78,12 +76,10 @@ class RandomShiftingStrategyFactory {
                 LspShipment lspShipment = lspShipments.get(shipmentIndex);
 
                 // Find and remove the random lspShipment from its current logistic chain
-                LogisticChain sourceLogisticChain = null;
-                for (LogisticChain logisticChain : lsp.getSelectedPlan().getLogisticChains()) {
-                    if (logisticChain.getLspShipmentIds().remove(lspShipment.getId())) {
-                        sourceLogisticChain = logisticChain;
-                        break;
-                    }
+                LogisticChain sourceLogisticChain =
+                        LSPUtils.findLogisticChainOfShipment(lsp.getSelectedPlan(), lspShipment.getId());
+                if (sourceLogisticChain != null) {
+                    sourceLogisticChain.getLspShipmentIds().remove(lspShipment.getId());
                 }
 
                 // Find a new logistic chain for the lspShipment
@@ -89,15 +89,11 @@ class RebalancingStrategyFactory {
             // get the first shipment ID from the chain with the maximum shipment count
             Id<LspShipment> shipmentIdForReplanning = maxChain.getLspShipmentIds().iterator().next();
 
-            // iterate through the chains and move the shipment from the max chain to the min chain
-            for (LogisticChain logisticChain : lsp.getSelectedPlan().getLogisticChains()) {
-              if (logisticChain.equals(maxChain)) {
-                logisticChain.getLspShipmentIds().remove(shipmentIdForReplanning);
-              }
-              if (logisticChain.equals(minChain)) {
-                logisticChain.getLspShipmentIds().add(shipmentIdForReplanning);
-              }
-            }
+            // move the shipment from the max chain to the min chain; both are chains of the selected
+            // plan, so there is no need to search them again. Removing first keeps the index of the
+            // plan (see LSPUtils#findLogisticChainOfShipment) consistent.
+            maxChain.getLspShipmentIds().remove(shipmentIdForReplanning);
+            minChain.getLspShipmentIds().add(shipmentIdForReplanning);
           }
 
           @Override
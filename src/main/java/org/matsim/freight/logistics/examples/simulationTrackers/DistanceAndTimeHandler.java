@@ -33,7 +33,7 @@ import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
 import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
 import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
-import org.matsim.api.core.v01.network.Network;
+import org.matsim.freight.logistics.LinkAttributeTable;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleUtils;
 import org.matsim.vehicles.Vehicles;
@@ -44,12 +44,12 @@ import org.matsim.vehicles.Vehicles;
 
   private final Map<Id<Vehicle>, LinkEnterEvent> events;
   private final Vehicles allVehicles;
-  private final Network network;
+  private final LinkAttributeTable linkAttributes;
   private double distanceCosts;
   private double timeCosts;
 
   DistanceAndTimeHandler(Scenario scenario) {
-    this.network = scenario.getNetwork();
+    this.linkAttributes = LinkAttributeTable.getOrCreate(scenario);
     this.events = new LinkedHashMap<>();
     this.allVehicles = VehicleUtils.getOrCreateAllvehicles(scenario);
   }
@@ -81,7 +81,7 @@ import org.matsim.vehicles.Vehicles;
       Vehicle carrierVehicle = this.allVehicles.getVehicles().get(vehicleId);
       double linkDuration = time - enterEvent.getTime();
       timeCosts += linkDuration * carrierVehicle.getType().getCostInformation().getCostsPerSecond();
-      double linkLength = network.getLinks().get(enterEvent.getLinkId()).getLength();
+      double linkLength = linkAttributes.getLength(enterEvent.getLinkId());
       distanceCosts +=
           linkLength * carrierVehicle.getType().getCostInformation().getCostsPerMeter();
     }
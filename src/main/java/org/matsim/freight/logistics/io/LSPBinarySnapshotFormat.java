@@ -0,0 +1,159 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Constants and helpers shared by the {@link LSPBinarySnapshotWriter} and the {@link
+ * LSPBinarySnapshotReader}.
+ *
+ * <p>Layout of version 2 (all numbers big endian, as written by {@link DataOutputStream}):
+ *
+ * <pre>
+ * file         := MAGIC version:varint lspCount:varint lsp*
+ * lsp          := id:str carrierCount:varint carrier* planCount:varint selectedPlan:varint plan*
+ *                 (selectedPlan is the index of the selected plan plus 1, or 0 if there is none)
+ * carrier      := id:str serviceCount:varint service* shipmentCount:varint shipment*
+ *                 planCount:varint selectedPlan:varint carrierPlan*
+ * service      := id:str link:str demand:varint duration:double twStart:double twEnd:double
+ * shipment     := id:str from:str to:str demand:varint pickupDuration:double
+ *                 deliveryDuration:double pickupTwStart:double pickupTwEnd:double
+ *                 deliveryTwStart:double deliveryTwEnd:double
+ * carrierPlan  := score:optDouble jspritScore:optDouble tourCount:varint tour*
+ * tour         := id:str vehicle:str departure:double start:str end:str elementCount:varint
+ *                 (LEG leg | (SERVICE | PICKUP | DELIVERY) jobId:str expectedArrival:double)*
+ * leg          := departure:double transportTime:double hasRoute:bool
+ *                 [start:str linkCount:varint link:str* end:str distance:double travelTime:double]
+ * plan         := score:optDouble type:str chainCount:varint chain* shipmentPlanCount:varint
+ *                 shipmentPlan*
+ * chain        := id:str elementCount:varint elementId:str* shipmentCount:varint shipmentId:str*
+ * shipmentPlan := shipmentId:str n:varint
+ *                 (id:str type:str resource:str chainElement:str
+ *                  [carrier:str from:str to:str carrierService:str carrierShipment:str])^n
+ *                 startTime:double^n endTime:double^n
+ * </pre>
+ *
+ * <p>The bracketed transport fields are only there for elements of type TRANSPORT. All strings
+ * (mostly ids) go through a dictionary: a string is written once, together with the next free
+ * index, and afterward only as its index. Index 0 stands for null. The times of the shipment plan
+ * elements are written column by column.
+ */
+final class LSPBinarySnapshotFormat {
+
+  static final int MAGIC = 0x4C535053; // "LSPS"
+  static final int VERSION = 2;
+
+  static final byte LEG = 1;
+  static final byte SERVICE = 2;
+  static final byte PICKUP = 3;
+  static final byte DELIVERY = 4;
+
+  // the types of the (scheduled) shipment plan elements
+  static final String LOAD = "LOAD";
+  static final String TRANSPORT = "TRANSPORT";
+  static final String UNLOAD = "UNLOAD";
+  static final String HANDLE = "HANDLE";
+
+  private LSPBinarySnapshotFormat() {}
+
+  static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("negative value: " + value);
+    }
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  /** Writes a double that may be null. */
+  static void writeOptionalDouble(DataOutputStream out, Double value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeDouble(value);
+    }
+  }
+
+  static Double readOptionalDouble(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readDouble() : null;
+  }
+
+  static final class StringDictionaryWriter {
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    void write(DataOutputStream out, Object value) throws IOException {
+      if (value == null) {
+        writeVarInt(out, 0);
+        return;
+      }
+      String string = value.toString();
+      Integer index = indexes.get(string);
+      if (index != null) {
+        writeVarInt(out, index);
+      } else {
+        index = indexes.size() + 1;
+        indexes.put(string, index);
+        writeVarInt(out, index);
+        out.writeUTF(string);
+      }
+    }
+  }
+
+  static final class StringDictionaryReader {
+    private final List<String> strings = new ArrayList<>();
+
+    String read(DataInputStream in) throws IOException {
+      int index = readVarInt(in);
+      if (index == 0) {
+        return null;
+      }
+      if (index <= strings.size()) {
+        return strings.get(index - 1);
+      }
+      if (index != strings.size() + 1) {
+        throw new IOException("unexpected dictionary index " + index);
+      }
+      String string = in.readUTF();
+      strings.add(string);
+      return string;
+    }
+  }
+}
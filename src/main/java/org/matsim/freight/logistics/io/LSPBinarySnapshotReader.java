@@ -0,0 +1,467 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import static org.matsim.freight.logistics.io.LSPBinarySnapshotFormat.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentPlan;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+
+/**
+ * Restores the state of the LSPs from a file written by the {@link LSPBinarySnapshotWriter}.
+ *
+ * <p>The snapshot is read into the given LSPs, which have to be set up as at the start of the run
+ * in which the snapshot was written, i.e. with the same resources, shipments and logistic chain
+ * elements. The plans of the LSPs are replaced by the ones of the snapshot; the chains of the
+ * snapshot refer to the existing chain elements by id. The plans of the carriers are replaced as
+ * well, together with their services and shipments.
+ *
+ * <p>The simulation trackers of the shipments and resources are not part of the snapshot. They are
+ * created again when the LSPs are scheduled the next time.
+ */
+public final class LSPBinarySnapshotReader {
+  private static final Logger log = LogManager.getLogger(LSPBinarySnapshotReader.class);
+
+  private final LSPs lsps;
+  private final StringDictionaryReader strings = new StringDictionaryReader();
+
+  public LSPBinarySnapshotReader(LSPs lsps) {
+    this.lsps = lsps;
+  }
+
+  public void read(String filename) {
+    log.info("Reading lsp snapshot from {}", filename);
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(IOUtils.getInputStream(IOUtils.getFileUrl(filename))))) {
+      read(in, filename);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read the lsp snapshot from " + filename, e);
+    }
+    log.info("done");
+  }
+
+  /**
+   * Reads a snapshot from the given stream, e.g. from a larger file, which is positioned at the
+   * start of the snapshot. The stream is not closed.
+   */
+  public void read(DataInputStream in) throws IOException {
+    read(in, "The stream");
+  }
+
+  private void read(DataInputStream in, String source) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IllegalArgumentException(source + " is not an lsp snapshot.");
+    }
+    int version = readVarInt(in);
+    if (version != VERSION) {
+      throw new IllegalArgumentException(
+          source + " has version " + version + " of the lsp snapshot, which is not supported.");
+    }
+    int numberOfLsps = readVarInt(in);
+    for (int i = 0; i < numberOfLsps; i++) {
+      readLsp(in);
+    }
+  }
+
+  private void readLsp(DataInputStream in) throws IOException {
+    Id<LSP> lspId = Id.create(strings.read(in), LSP.class);
+    LSP lsp = lsps.getLSPs().get(lspId);
+    if (lsp == null) {
+      throw new IllegalStateException("LSP " + lspId + " of the snapshot does not exist.");
+    }
+
+    Map<String, Carrier> carriers = new HashMap<>();
+    for (LSPResource resource : lsp.getResources()) {
+      if (resource instanceof LSPCarrierResource carrierResource) {
+        carriers.put(carrierResource.getCarrier().getId().toString(), carrierResource.getCarrier());
+      }
+    }
+    int numberOfCarriers = readVarInt(in);
+    for (int i = 0; i < numberOfCarriers; i++) {
+      readCarrier(in, carriers);
+    }
+
+    // the chain elements are shared by all plans of the LSP (see LSPImpl.copyPlan)
+    Map<String, LogisticChainElement> chainElements = new HashMap<>();
+    for (LSPPlan plan : lsp.getPlans()) {
+      for (LogisticChain chain : plan.getLogisticChains()) {
+        for (LogisticChainElement element : chain.getLogisticChainElements()) {
+          chainElements.putIfAbsent(element.getId().toString(), element);
+        }
+      }
+    }
+    InitialShipmentAssigner assigner =
+        lsp.getSelectedPlan() == null ? null : lsp.getSelectedPlan().getInitialShipmentAssigner();
+
+    int numberOfPlans = readVarInt(in);
+    int selectedPlan = readVarInt(in);
+    List<LSPPlan> plans = new ArrayList<>(numberOfPlans);
+    for (int i = 0; i < numberOfPlans; i++) {
+      plans.add(readPlan(in, chainElements, carriers, assigner));
+    }
+    lsp.getPlans().clear();
+    for (LSPPlan plan : plans) {
+      lsp.addPlan(plan);
+    }
+    if (selectedPlan > 0) {
+      lsp.setSelectedPlan(plans.get(selectedPlan - 1));
+    }
+  }
+
+  private void readCarrier(DataInputStream in, Map<String, Carrier> carriers) throws IOException {
+    String carrierId = strings.read(in);
+    Carrier carrier = carriers.get(carrierId);
+    if (carrier == null) {
+      throw new IllegalStateException("Carrier " + carrierId + " of the snapshot does not exist.");
+    }
+
+    Map<Id<CarrierService>, CarrierService> services = new LinkedHashMap<>();
+    int numberOfServices = readVarInt(in);
+    for (int i = 0; i < numberOfServices; i++) {
+      Id<CarrierService> serviceId = Id.create(strings.read(in), CarrierService.class);
+      Id<Link> linkId = Id.createLinkId(strings.read(in));
+      int capacityDemand = readVarInt(in);
+      double serviceDuration = in.readDouble();
+      double timeWindowStart = in.readDouble();
+      double timeWindowEnd = in.readDouble();
+      services.put(
+          serviceId,
+          CarrierService.Builder.newInstance(serviceId, linkId)
+              .setServiceStartTimeWindow(TimeWindow.newInstance(timeWindowStart, timeWindowEnd))
+              .setCapacityDemand(capacityDemand)
+              .setServiceDuration(serviceDuration)
+              .build());
+    }
+
+    Map<Id<CarrierShipment>, CarrierShipment> shipments = new LinkedHashMap<>();
+    int numberOfShipments = readVarInt(in);
+    for (int i = 0; i < numberOfShipments; i++) {
+      Id<CarrierShipment> shipmentId = Id.create(strings.read(in), CarrierShipment.class);
+      Id<Link> fromLinkId = Id.createLinkId(strings.read(in));
+      Id<Link> toLinkId = Id.createLinkId(strings.read(in));
+      int capacityDemand = readVarInt(in);
+      double pickupDuration = in.readDouble();
+      double deliveryDuration = in.readDouble();
+      TimeWindow pickupTimeWindow = TimeWindow.newInstance(in.readDouble(), in.readDouble());
+      TimeWindow deliveryTimeWindow = TimeWindow.newInstance(in.readDouble(), in.readDouble());
+      shipments.put(
+          shipmentId,
+          CarrierShipment.Builder.newInstance(shipmentId, fromLinkId, toLinkId, capacityDemand)
+              .setPickupTimeWindow(pickupTimeWindow)
+              .setPickupServiceTime(pickupDuration)
+              .setDeliveryTimeWindow(deliveryTimeWindow)
+              .setDeliveryServiceTime(deliveryDuration)
+              .build());
+    }
+
+    int numberOfPlans = readVarInt(in);
+    int selectedPlan = readVarInt(in);
+    List<CarrierPlan> plans = new ArrayList<>(numberOfPlans);
+    for (int i = 0; i < numberOfPlans; i++) {
+      plans.add(readCarrierPlan(in, carrier, services, shipments));
+    }
+
+    carrier.getServices().clear();
+    carrier.getServices().putAll(services);
+    carrier.getShipments().clear();
+    carrier.getShipments().putAll(shipments);
+    carrier.getPlans().clear();
+    for (CarrierPlan plan : plans) {
+      carrier.addPlan(plan);
+    }
+    carrier.setSelectedPlan(selectedPlan == 0 ? null : plans.get(selectedPlan - 1));
+  }
+
+  private CarrierPlan readCarrierPlan(
+      DataInputStream in,
+      Carrier carrier,
+      Map<Id<CarrierService>, CarrierService> services,
+      Map<Id<CarrierShipment>, CarrierShipment> shipments)
+      throws IOException {
+    Double score = readOptionalDouble(in);
+    Double jspritScore = readOptionalDouble(in);
+    List<ScheduledTour> scheduledTours = new ArrayList<>();
+    int numberOfTours = readVarInt(in);
+    for (int i = 0; i < numberOfTours; i++) {
+      scheduledTours.add(readTour(in, carrier, services, shipments));
+    }
+    CarrierPlan plan = new CarrierPlan(carrier, scheduledTours);
+    plan.setScore(score);
+    plan.setJspritScore(jspritScore);
+    return plan;
+  }
+
+  private ScheduledTour readTour(
+      DataInputStream in,
+      Carrier carrier,
+      Map<Id<CarrierService>, CarrierService> services,
+      Map<Id<CarrierShipment>, CarrierShipment> shipments)
+      throws IOException {
+    Id<Tour> tourId = Id.create(strings.read(in), Tour.class);
+    String vehicleId = strings.read(in);
+    double departure = in.readDouble();
+    Id<Link> startLinkId = Id.createLinkId(strings.read(in));
+    Id<Link> endLinkId = Id.createLinkId(strings.read(in));
+
+    Tour.Builder tourBuilder = Tour.Builder.newInstance(tourId);
+    tourBuilder.scheduleStart(startLinkId);
+    List<Double> expectedArrivals = new ArrayList<>();
+    int numberOfElements = readVarInt(in);
+    for (int i = 0; i < numberOfElements; i++) {
+      byte kind = in.readByte();
+      if (kind == LEG) {
+        tourBuilder.addLeg(readLeg(in));
+      } else if (kind == SERVICE) {
+        Id<CarrierService> serviceId = Id.create(strings.read(in), CarrierService.class);
+        CarrierService service = services.get(serviceId);
+        if (service == null) {
+          throw new IOException("unknown service " + serviceId + " in tour " + tourId);
+        }
+        tourBuilder.scheduleService(service);
+        expectedArrivals.add(in.readDouble());
+      } else if (kind == PICKUP || kind == DELIVERY) {
+        Id<CarrierShipment> shipmentId = Id.create(strings.read(in), CarrierShipment.class);
+        CarrierShipment shipment = shipments.get(shipmentId);
+        if (shipment == null) {
+          throw new IOException("unknown shipment " + shipmentId + " in tour " + tourId);
+        }
+        if (kind == PICKUP) {
+          tourBuilder.schedulePickup(shipment);
+        } else {
+          tourBuilder.scheduleDelivery(shipment);
+        }
+        expectedArrivals.add(in.readDouble());
+      } else {
+        throw new IOException("unknown tour element " + kind + " in tour " + tourId);
+      }
+    }
+    tourBuilder.scheduleEnd(endLinkId);
+    Tour tour = tourBuilder.build();
+
+    int activityIndex = 0;
+    for (Tour.TourElement tourElement : tour.getTourElements()) {
+      if (tourElement instanceof Tour.TourActivity activity) {
+        activity.setExpectedArrival(expectedArrivals.get(activityIndex++));
+      }
+    }
+
+    CarrierVehicle vehicle =
+        carrier.getCarrierCapabilities().getCarrierVehicles().get(Id.createVehicleId(vehicleId));
+    if (vehicle == null) {
+      throw new IllegalStateException(
+          "Vehicle " + vehicleId + " of carrier " + carrier.getId() + " does not exist.");
+    }
+    return ScheduledTour.newInstance(tour, vehicle, departure);
+  }
+
+  private Tour.Leg readLeg(DataInputStream in) throws IOException {
+    Tour.Leg leg = new Tour.Leg();
+    leg.setExpectedDepartureTime(in.readDouble());
+    leg.setExpectedTransportTime(in.readDouble());
+    if (in.readBoolean()) {
+      Id<Link> startLinkId = Id.createLinkId(strings.read(in));
+      int numberOfLinks = readVarInt(in);
+      List<Id<Link>> linkIds = new ArrayList<>(numberOfLinks);
+      for (int i = 0; i < numberOfLinks; i++) {
+        linkIds.add(Id.createLinkId(strings.read(in)));
+      }
+      Id<Link> endLinkId = Id.createLinkId(strings.read(in));
+      NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(startLinkId, linkIds, endLinkId);
+      route.setDistance(in.readDouble());
+      double travelTime = in.readDouble();
+      if (!Double.isNaN(travelTime)) {
+        route.setTravelTime(travelTime);
+      }
+      leg.setRoute(route);
+    }
+    return leg;
+  }
+
+  private LSPPlan readPlan(
+      DataInputStream in,
+      Map<String, LogisticChainElement> chainElements,
+      Map<String, Carrier> carriers,
+      InitialShipmentAssigner assigner)
+      throws IOException {
+    LSPPlan plan = LSPUtils.createLSPPlan();
+    if (assigner != null) {
+      plan.setInitialShipmentAssigner(assigner);
+    }
+    plan.setScore(readOptionalDouble(in));
+    plan.setType(strings.read(in));
+
+    int numberOfChains = readVarInt(in);
+    for (int i = 0; i < numberOfChains; i++) {
+      LogisticChain chain =
+          LSPUtils.LogisticChainBuilder.newInstance(
+                  Id.create(strings.read(in), LogisticChain.class))
+              .build();
+      int numberOfChainElements = readVarInt(in);
+      for (int j = 0; j < numberOfChainElements; j++) {
+        String elementId = strings.read(in);
+        LogisticChainElement element = chainElements.get(elementId);
+        if (element == null) {
+          throw new IllegalStateException(
+              "Logistic chain element " + elementId + " of the snapshot does not exist.");
+        }
+        chain.getLogisticChainElements().add(element);
+      }
+      int numberOfShipments = readVarInt(in);
+      for (int j = 0; j < numberOfShipments; j++) {
+        chain.getLspShipmentIds().add(Id.create(strings.read(in), LspShipment.class));
+      }
+      plan.addLogisticChain(chain);
+    }
+
+    int numberOfShipmentPlans = readVarInt(in);
+    for (int i = 0; i < numberOfShipmentPlans; i++) {
+      readShipmentPlan(in, plan, chainElements, carriers);
+    }
+    return plan;
+  }
+
+  private void readShipmentPlan(
+      DataInputStream in,
+      LSPPlan plan,
+      Map<String, LogisticChainElement> chainElements,
+      Map<String, Carrier> carriers)
+      throws IOException {
+    Id<LspShipment> shipmentId = Id.create(strings.read(in), LspShipment.class);
+    LspShipmentPlan shipmentPlan = LspShipmentUtils.getOrCreateShipmentPlan(plan, shipmentId);
+    int size = readVarInt(in);
+    String[] ids = new String[size];
+    String[] types = new String[size];
+    String[] resourceIds = new String[size];
+    String[] chainElementIds = new String[size];
+    String[] carrierIds = new String[size];
+    String[] fromLinkIds = new String[size];
+    String[] toLinkIds = new String[size];
+    String[] carrierServiceIds = new String[size];
+    String[] carrierShipmentIds = new String[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = strings.read(in);
+      types[i] = strings.read(in);
+      resourceIds[i] = strings.read(in);
+      chainElementIds[i] = strings.read(in);
+      if (TRANSPORT.equals(types[i])) {
+        carrierIds[i] = strings.read(in);
+        fromLinkIds[i] = strings.read(in);
+        toLinkIds[i] = strings.read(in);
+        carrierServiceIds[i] = strings.read(in);
+        carrierShipmentIds[i] = strings.read(in);
+      }
+    }
+    double[] startTimes = new double[size];
+    for (int i = 0; i < size; i++) {
+      startTimes[i] = in.readDouble();
+    }
+    double[] endTimes = new double[size];
+    for (int i = 0; i < size; i++) {
+      endTimes[i] = in.readDouble();
+    }
+
+    for (int i = 0; i < size; i++) {
+      Id<LSPResource> resourceId = Id.create(resourceIds[i], LSPResource.class);
+      LogisticChainElement chainElement =
+          chainElementIds[i] == null ? null : chainElements.get(chainElementIds[i]);
+      LspShipmentPlanElement element =
+          switch (types[i]) {
+            case LOAD -> {
+              var builder = LspShipmentUtils.ScheduledShipmentLoadBuilder.newInstance();
+              builder.setStartTime(startTimes[i]);
+              builder.setEndTime(endTimes[i]);
+              builder.setResourceId(resourceId);
+              builder.setLogisticChainElement(chainElement);
+              yield builder.build();
+            }
+            case TRANSPORT -> {
+              var builder = LspShipmentUtils.ScheduledShipmentTransportBuilder.newInstance();
+              builder.setStartTime(startTimes[i]);
+              builder.setEndTime(endTimes[i]);
+              builder.setResourceId(resourceId);
+              builder.setLogisticChainElement(chainElement);
+              if (carrierIds[i] != null) {
+                builder.setCarrierId(Id.create(carrierIds[i], Carrier.class));
+              }
+              if (fromLinkIds[i] != null) {
+                builder.setFromLinkId(Id.createLinkId(fromLinkIds[i]));
+              }
+              if (toLinkIds[i] != null) {
+                builder.setToLinkId(Id.createLinkId(toLinkIds[i]));
+              }
+              Carrier carrier = carrierIds[i] == null ? null : carriers.get(carrierIds[i]);
+              if (carrier != null && carrierServiceIds[i] != null) {
+                builder.setCarrierService(
+                    carrier
+                        .getServices()
+                        .get(Id.create(carrierServiceIds[i], CarrierService.class)));
+              }
+              if (carrier != null && carrierShipmentIds[i] != null) {
+                builder.setCarrierShipment(
+                    carrier
+                        .getShipments()
+                        .get(Id.create(carrierShipmentIds[i], CarrierShipment.class)));
+              }
+              yield builder.build();
+            }
+            case UNLOAD -> {
+              var builder = LspShipmentUtils.ScheduledShipmentUnloadBuilder.newInstance();
+              builder.setStartTime(startTimes[i]);
+              builder.setEndTime(endTimes[i]);
+              builder.setResourceId(resourceId);
+              builder.setLogisticsChainElement(chainElement);
+              yield builder.build();
+            }
+            case HANDLE -> {
+              var builder = LspShipmentUtils.ScheduledShipmentHandleBuilder.newInstance();
+              builder.setStartTime(startTimes[i]);
+              builder.setEndTime(endTimes[i]);
+              builder.setResourceId(resourceId);
+              builder.setLogisticsChainElement(chainElement);
+              yield builder.build();
+            }
+            default -> throw new IOException("unknown shipment plan element type " + types[i]);
+          };
+      shipmentPlan.addPlanElement(Id.create(ids[i], LspShipmentPlanElement.class), element);
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import static org.matsim.freight.logistics.io.LSPBinarySnapshotFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentLeg;
+import org.matsim.freight.logistics.shipment.LspShipmentPlan;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+
+/**
+ * Writes the state of the LSPs into a compact binary file, which can be read again by the {@link
+ * LSPBinarySnapshotReader}. Meant for checkpoints of a running simulation; for everything else,
+ * use the {@link LSPPlanXmlWriter}.
+ *
+ * <p>Contained are all plans of the LSPs with their scores, chains, shipment assignments and
+ * shipment plans, and all plans of the carriers of the {@link LSPCarrierResource}s with their
+ * scores, services, shipments and routed tours. The resources, shipments and schedulers are not
+ * written; they are expected to be set up again from the input files before the snapshot is read.
+ *
+ * <p>A carrier whose plans contain tour elements other than legs, services, pickups and deliveries
+ * cannot be written; the snapshot then fails. See {@link LSPBinarySnapshotFormat} for the layout
+ * of the file.
+ */
+public final class LSPBinarySnapshotWriter {
+  private static final Logger log = LogManager.getLogger(LSPBinarySnapshotWriter.class);
+  private static final Set<String> ELEMENT_TYPES = Set.of(LOAD, TRANSPORT, UNLOAD, HANDLE);
+
+  private final LSPs lsps;
+  private final StringDictionaryWriter strings = new StringDictionaryWriter();
+
+  public LSPBinarySnapshotWriter(LSPs lsps) {
+    this.lsps = lsps;
+  }
+
+  public void write(String filename) {
+    log.info(Gbl.aboutToWrite("lsp snapshot", filename));
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false)))) {
+      write(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write the lsp snapshot to " + filename, e);
+    }
+    log.info("done");
+  }
+
+  /**
+   * Writes the snapshot to the given stream, e.g. as part of a larger file. The stream is neither
+   * flushed nor closed.
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    writeVarInt(out, VERSION);
+    writeVarInt(out, lsps.getLSPs().size());
+    for (LSP lsp : lsps.getLSPs().values()) {
+      writeLsp(out, lsp);
+    }
+  }
+
+  private void writeLsp(DataOutputStream out, LSP lsp) throws IOException {
+    strings.write(out, lsp.getId());
+
+    List<Carrier> carriers = getCarriers(lsp);
+    writeVarInt(out, carriers.size());
+    for (Carrier carrier : carriers) {
+      writeCarrier(out, carrier);
+    }
+
+    List<? extends LSPPlan> plans = lsp.getPlans();
+    writeVarInt(out, plans.size());
+    writeVarInt(out, plans.indexOf(lsp.getSelectedPlan()) + 1);
+    for (LSPPlan plan : plans) {
+      writePlan(out, plan);
+    }
+  }
+
+  private static List<Carrier> getCarriers(LSP lsp) {
+    Map<Id<Carrier>, Carrier> carriers = new LinkedHashMap<>();
+    for (LSPResource resource : lsp.getResources()) {
+      if (resource instanceof LSPCarrierResource carrierResource) {
+        carriers.putIfAbsent(carrierResource.getCarrier().getId(), carrierResource.getCarrier());
+      }
+    }
+    return new ArrayList<>(carriers.values());
+  }
+
+  private void writeCarrier(DataOutputStream out, Carrier carrier) throws IOException {
+    strings.write(out, carrier.getId());
+    List<CarrierPlan> plans = new ArrayList<>(carrier.getPlans());
+    int selectedPlan = plans.indexOf(carrier.getSelectedPlan()) + 1;
+    if (carrier.getSelectedPlan() != null && selectedPlan == 0) {
+      throw new IllegalStateException(
+          "The selected plan of carrier " + carrier.getId() + " is not one of its plans.");
+    }
+
+    // the jobs of the tours are normally the ones of the carrier; a reused VRP solution may
+    // however refer to equal jobs, which then are written in addition.
+    Map<Id<CarrierService>, CarrierService> services = new LinkedHashMap<>(carrier.getServices());
+    Map<Id<CarrierShipment>, CarrierShipment> shipments =
+        new LinkedHashMap<>(carrier.getShipments());
+    for (CarrierPlan plan : plans) {
+      for (ScheduledTour scheduledTour : plan.getScheduledTours()) {
+        for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+          switch (tourElement) {
+            case Tour.Leg leg -> {}
+            case Tour.ServiceActivity activity ->
+                services.putIfAbsent(activity.getService().getId(), activity.getService());
+            case Tour.ShipmentBasedActivity activity ->
+                shipments.putIfAbsent(activity.getShipment().getId(), activity.getShipment());
+            default ->
+                throw new IllegalArgumentException(
+                    "Cannot write the plans of carrier "
+                        + carrier.getId()
+                        + ", since they contain the tour element "
+                        + tourElement);
+          }
+        }
+      }
+    }
+
+    writeVarInt(out, services.size());
+    for (CarrierService service : services.values()) {
+      strings.write(out, service.getId());
+      strings.write(out, service.getLocationLinkId());
+      writeVarInt(out, service.getCapacityDemand());
+      out.writeDouble(service.getServiceDuration());
+      out.writeDouble(service.getServiceStartTimeWindow().getStart());
+      out.writeDouble(service.getServiceStartTimeWindow().getEnd());
+    }
+
+    writeVarInt(out, shipments.size());
+    for (CarrierShipment shipment : shipments.values()) {
+      strings.write(out, shipment.getId());
+      strings.write(out, shipment.getFrom());
+      strings.write(out, shipment.getTo());
+      writeVarInt(out, shipment.getCapacityDemand());
+      out.writeDouble(shipment.getPickupServiceTime());
+      out.writeDouble(shipment.getDeliveryServiceTime());
+      out.writeDouble(shipment.getPickupTimeWindow().getStart());
+      out.writeDouble(shipment.getPickupTimeWindow().getEnd());
+      out.writeDouble(shipment.getDeliveryTimeWindow().getStart());
+      out.writeDouble(shipment.getDeliveryTimeWindow().getEnd());
+    }
+
+    writeVarInt(out, plans.size());
+    writeVarInt(out, selectedPlan);
+    for (CarrierPlan plan : plans) {
+      writeCarrierPlan(out, plan);
+    }
+  }
+
+  private void writeCarrierPlan(DataOutputStream out, CarrierPlan plan) throws IOException {
+    writeOptionalDouble(out, plan.getScore());
+    writeOptionalDouble(out, plan.getJspritScore());
+    writeVarInt(out, plan.getScheduledTours().size());
+    for (ScheduledTour scheduledTour : plan.getScheduledTours()) {
+      Tour tour = scheduledTour.getTour();
+      strings.write(out, tour.getId());
+      strings.write(out, scheduledTour.getVehicle().getId());
+      out.writeDouble(scheduledTour.getDeparture());
+      strings.write(out, tour.getStartLinkId());
+      strings.write(out, tour.getEndLinkId());
+      writeVarInt(out, tour.getTourElements().size());
+      for (Tour.TourElement tourElement : tour.getTourElements()) {
+        switch (tourElement) {
+          case Tour.Leg leg -> {
+            out.writeByte(LEG);
+            writeLeg(out, leg);
+          }
+          case Tour.ServiceActivity serviceActivity -> {
+            out.writeByte(SERVICE);
+            strings.write(out, serviceActivity.getService().getId());
+            out.writeDouble(serviceActivity.getExpectedArrival());
+          }
+          case Tour.Pickup pickup -> {
+            out.writeByte(PICKUP);
+            strings.write(out, pickup.getShipment().getId());
+            out.writeDouble(pickup.getExpectedArrival());
+          }
+          case Tour.Delivery delivery -> {
+            out.writeByte(DELIVERY);
+            strings.write(out, delivery.getShipment().getId());
+            out.writeDouble(delivery.getExpectedArrival());
+          }
+          default ->
+              throw new IllegalArgumentException("Cannot write the tour element " + tourElement);
+        }
+      }
+    }
+  }
+
+  private void writeLeg(DataOutputStream out, Tour.Leg leg) throws IOException {
+    out.writeDouble(leg.getExpectedDepartureTime());
+    out.writeDouble(leg.getExpectedTransportTime());
+    if (!(leg.getRoute() instanceof NetworkRoute route)) {
+      out.writeBoolean(false);
+      return;
+    }
+    out.writeBoolean(true);
+    strings.write(out, route.getStartLinkId());
+    writeVarInt(out, route.getLinkIds().size());
+    for (Id<?> linkId : route.getLinkIds()) {
+      strings.write(out, linkId);
+    }
+    strings.write(out, route.getEndLinkId());
+    out.writeDouble(route.getDistance());
+    out.writeDouble(route.getTravelTime().orElse(Double.NaN));
+  }
+
+  private void writePlan(DataOutputStream out, LSPPlan plan) throws IOException {
+    writeOptionalDouble(out, plan.getScore());
+    strings.write(out, plan.getType());
+
+    writeVarInt(out, plan.getLogisticChains().size());
+    for (LogisticChain chain : plan.getLogisticChains()) {
+      strings.write(out, chain.getId());
+      writeVarInt(out, chain.getLogisticChainElements().size());
+      for (LogisticChainElement element : chain.getLogisticChainElements()) {
+        strings.write(out, element.getId());
+      }
+      writeVarInt(out, chain.getLspShipmentIds().size());
+      for (Id<LspShipment> shipmentId : chain.getLspShipmentIds()) {
+        strings.write(out, shipmentId);
+      }
+    }
+
+    writeVarInt(out, plan.getShipmentPlans().size());
+    for (LspShipmentPlan shipmentPlan : plan.getShipmentPlans()) {
+      writeShipmentPlan(out, shipmentPlan);
+    }
+  }
+
+  private void writeShipmentPlan(DataOutputStream out, LspShipmentPlan shipmentPlan)
+      throws IOException {
+    Map<Id<LspShipmentPlanElement>, LspShipmentPlanElement> elements =
+        shipmentPlan.getPlanElements();
+    strings.write(out, shipmentPlan.getLspShipmentId());
+    writeVarInt(out, elements.size());
+    for (Map.Entry<Id<LspShipmentPlanElement>, LspShipmentPlanElement> entry :
+        elements.entrySet()) {
+      LspShipmentPlanElement element = entry.getValue();
+      if (!ELEMENT_TYPES.contains(element.getElementType())) {
+        throw new IllegalArgumentException(
+            "Cannot write shipment plan element of type " + element.getElementType());
+      }
+      strings.write(out, entry.getKey());
+      strings.write(out, element.getElementType());
+      strings.write(out, element.getResourceId());
+      strings.write(
+          out,
+          element.getLogisticChainElement() == null
+              ? null
+              : element.getLogisticChainElement().getId());
+      if (TRANSPORT.equals(element.getElementType())) {
+        LspShipmentLeg leg = element instanceof LspShipmentLeg l ? l : null;
+        strings.write(out, leg == null ? null : leg.getCarrierId());
+        strings.write(out, leg == null ? null : leg.getFromLinkId());
+        strings.write(out, leg == null ? null : leg.getToLinkId());
+        strings.write(
+            out,
+            leg == null || leg.getCarrierService() == null
+                ? null
+                : leg.getCarrierService().getId());
+        strings.write(
+            out,
+            leg == null || leg.getCarrierShipment() == null
+                ? null
+                : leg.getCarrierShipment().getId());
+      }
+    }
+    for (LspShipmentPlanElement element : elements.values()) {
+      out.writeDouble(element.getStartTime());
+    }
+    for (LspShipmentPlanElement element : elements.values()) {
+      out.writeDouble(element.getEndTime());
+    }
+  }
+}
@@ -60,6 +60,9 @@ class LSPPlanXmlParserV1 extends MatsimXmlParser {
   private final Map<String, LspShipmentPlanElement> planElements = new LinkedHashMap<>();
   private final AttributesXmlReaderDelegate attributesReader = new AttributesXmlReaderDelegate();
   private final List<LogisticChain> logisticChains = new LinkedList<>();
+  // lookups for the current LSP resp. plan, so that the parsing is linear in the size of the file.
+  private final Map<String, LSPResource> resourcesOfCurrentLsp = new HashMap<>();
+  private final Map<String, LogisticChain> chainsOfCurrentPlan = new HashMap<>();
   private LSP currentLsp = null;
   private Carrier currentCarrier = null;
   private LspShipment currentShipment = null;
@@ -305,6 +308,7 @@ class LSPPlanXmlParserV1 extends MatsimXmlParser {
         currentLsp.getPlans().removeFirst(); // empty plan zero was set for initialization of currentLSP
         lsPs.getLSPs().put(currentLsp.getId(), currentLsp);
         currentLsp = null;
+        resourcesOfCurrentLsp.clear();
       }
       case CARRIER -> {
         Gbl.assertNotNull(currentCarrier);
@@ -335,10 +339,12 @@ class LSPPlanXmlParserV1 extends MatsimXmlParser {
         }
         Gbl.assertNotNull(lspResource);
         currentLsp.getResources().add(lspResource);
+        resourcesOfCurrentLsp.put(lspResource.getId().toString(), lspResource);
         currentCarrier = null;
       }
       case HUB -> {
         currentLsp.getResources().add(hubResource);
+        resourcesOfCurrentLsp.put(hubResource.getId().toString(), hubResource);
         LSPUtils.setFixedCost(hubResource, currentHubFixedCost);
         hubResource = null;
         currentHubFixedCost = null;
@@ -353,8 +359,10 @@ class LSPPlanXmlParserV1 extends MatsimXmlParser {
       case LOGISTIC_CHAINS -> {
         currentLspPlan = LSPUtils.createLSPPlan();
 
+        chainsOfCurrentPlan.clear();
         for (LogisticChain logisticChain : logisticChains) {
           currentLspPlan.addLogisticChain(logisticChain);
+          chainsOfCurrentPlan.put(logisticChain.getId().toString(), logisticChain);
         }
 
         currentLspPlan.setScore(score);
@@ -369,21 +377,17 @@ class LSPPlanXmlParserV1 extends MatsimXmlParser {
       }
 
       case LOGISTIC_CHAIN -> {
-        LSPResource resource;
-        List<LogisticChainElement> logisticChainElements = new LinkedList<>();
+        List<LogisticChainElement> logisticChainElements = new ArrayList<>();
 
         for (Map.Entry<String, String> entry : elementIdResourceIdMap.entrySet()) {
-          for (LSPResource currentResource : currentLsp.getResources()) {
-            if (currentResource.getId().toString().equals(entry.getValue())) {
-              resource = currentResource;
-              Gbl.assertNotNull(resource);
-              LogisticChainElement logisticChainElement =
-                  LSPUtils.LogisticChainElementBuilder.newInstance(
-                          Id.create(entry.getKey(), LogisticChainElement.class))
-                      .setResource(resource)
-                      .build();
-              logisticChainElements.add(logisticChainElement);
-            }
+          LSPResource resource = resourcesOfCurrentLsp.get(entry.getValue());
+          if (resource != null) {
+            LogisticChainElement logisticChainElement =
+                LSPUtils.LogisticChainElementBuilder.newInstance(
+                        Id.create(entry.getKey(), LogisticChainElement.class))
+                    .setResource(resource)
+                    .build();
+            logisticChainElements.add(logisticChainElement);
           }
         }
 
@@ -405,20 +409,18 @@ class LSPPlanXmlParserV1 extends MatsimXmlParser {
       }
 
       case SHIPMENT_PLAN -> {
-        for (LspShipment lspShipment : currentLsp.getLspShipments()) {
-          if (lspShipment.getId().toString().equals(shipmentPlanId)) {
-            for (Map.Entry<String, LspShipmentPlanElement> planElement : planElements.entrySet()) {
-              LspShipmentUtils.getOrCreateShipmentPlan(currentLspPlan, lspShipment.getId())
-                  .addPlanElement(
-                      Id.create(planElement.getKey(), LspShipmentPlanElement.class),
-                      planElement.getValue());
-            }
+        LspShipment lspShipment =
+            LSPUtils.findLspShipment(currentLsp, Id.create(shipmentPlanId, LspShipment.class));
+        if (lspShipment != null) {
+          for (Map.Entry<String, LspShipmentPlanElement> planElement : planElements.entrySet()) {
+            LspShipmentUtils.getOrCreateShipmentPlan(currentLspPlan, lspShipment.getId())
+                .addPlanElement(
+                    Id.create(planElement.getKey(), LspShipmentPlanElement.class),
+                    planElement.getValue());
           }
-          for (LogisticChain logisticChain : currentLspPlan.getLogisticChains()) {
-            if (logisticChain.getId().toString().equals(shipmentChainId)
-                && lspShipment.getId().toString().equals(shipmentPlanId)) {
-              logisticChain.addShipmentToChain(lspShipment);
-            }
+          LogisticChain logisticChain = chainsOfCurrentPlan.get(shipmentChainId);
+          if (logisticChain != null) {
+            logisticChain.addShipmentToChain(lspShipment);
           }
         }
         shipmentPlanId = null;
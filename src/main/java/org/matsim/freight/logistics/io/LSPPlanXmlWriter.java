@@ -22,8 +22,8 @@ package org.matsim.freight.logistics.io;
 
 import static org.matsim.freight.logistics.LSPConstants.*;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -31,32 +31,57 @@ import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.core.utils.io.MatsimXmlWriter;
 import org.matsim.freight.logistics.*;
-import org.matsim.freight.logistics.LSP;
+import org.matsim.freight.logistics.io.LSPsSnapshot.ChainElementSnapshot;
+import org.matsim.freight.logistics.io.LSPsSnapshot.ChainSnapshot;
+import org.matsim.freight.logistics.io.LSPsSnapshot.LspSnapshot;
+import org.matsim.freight.logistics.io.LSPsSnapshot.PlanSnapshot;
+import org.matsim.freight.logistics.io.LSPsSnapshot.ResourceSnapshot;
+import org.matsim.freight.logistics.io.LSPsSnapshot.ShipmentPlanSnapshot;
 import org.matsim.freight.logistics.resourceImplementations.TransshipmentHubResource;
 import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentPlan;
 import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
-import org.matsim.freight.logistics.shipment.LspShipmentUtils;
 
 /**
  * Writes out resources, shipments and plans for each LSP in an XML-file including header for
  * validating against respective XSD and setting up according writer. Uses variables defined in
  * LSPConstants-class for the elements and attributes within the XML.
  *
+ * <p>The LSPs are either written directly, or from a {@link LSPsSnapshot} that was taken before.
+ * Both produce the same file. The shipments and the elements of the shipment plans, which make up
+ * most of the file, are streamed directly to the underlying writer.
+ *
  * @author nrichter (Niclas Richter)
  */
 public class LSPPlanXmlWriter extends MatsimXmlWriter {
 
   private static final Logger logger = LogManager.getLogger(LSPPlanXmlWriter.class);
 
-  private final Collection<LSP> lsPs;
+  private final LSPs lsPs;
+  private final LSPsSnapshot snapshot;
+
+  /** Number of tags that are opened with {@link #openTag} and not closed yet. */
+  private int openTags = 0;
 
   public LSPPlanXmlWriter(LSPs lsPs) {
     super();
-    this.lsPs = lsPs.getLSPs().values();
+    this.lsPs = lsPs;
+    this.snapshot = null;
+  }
+
+  /**
+   * Writes a snapshot that was taken before. Since the snapshot does not change anymore, this can
+   * also be done from another thread than the one that changes the LSPs.
+   */
+  public LSPPlanXmlWriter(LSPsSnapshot snapshot) {
+    super();
+    this.lsPs = null;
+    this.snapshot = snapshot;
   }
 
   public void write(String filename) {
@@ -65,20 +90,20 @@ public class LSPPlanXmlWriter extends MatsimXmlWriter {
       this.openFile(filename);
       this.writeXmlHead();
       this.writeRootElement();
-      for (LSP lsp : lsPs) {
-        this.startLSP(lsp);
-        this.writeResources(lsp);
-        this.writeShipments(lsp);
-        this.writePlans(lsp, this.writer);
-        this.writeEndTag(LSP);
+      if (snapshot != null) {
+        for (LspSnapshot lsp : snapshot.getLsps()) {
+          this.writeLsp(lsp);
+        }
+      } else {
+        for (LSP lsp : lsPs.getLSPs().values()) {
+          this.writeLsp(lsp);
+        }
       }
-      this.writeEndTag(LSPConstants.LSPS);
+      closeTag(LSPConstants.LSPS);
       this.close();
       logger.info("done");
     } catch (IOException e) {
-      e.printStackTrace();
-      logger.error(e);
-      System.exit(1);
+      throw new UncheckedIOException("Could not write the lsps to " + filename, e);
     }
   }
 
@@ -90,131 +115,283 @@ public class LSPPlanXmlWriter extends MatsimXmlWriter {
         createTuple(
             "xsi:schemaLocation",
             MATSIM_NAMESPACE + " " + DEFAULT_DTD_LOCATION + "lspsDefinitions_v1.xsd"));
-    this.writeStartTag(LSPConstants.LSPS, atts);
+    openTag(LSPConstants.LSPS, atts);
     this.writer.write(NL);
   }
 
-  private void startLSP(LSP lsp) throws IOException {
-    this.writeStartTag(LSP, List.of(createTuple(ID, lsp.getId().toString())));
-  }
+  private void writeLsp(LSP lsp) throws IOException {
+    openTag(LSP, List.of(createTuple(ID, lsp.getId().toString())));
 
-  private void writeResources(LSP lsp) throws IOException {
-    if (lsp.getResources().isEmpty()) return;
-    this.writeStartTag(RESOURCES, null);
-    for (LSPResource resource : lsp.getResources()) {
-      if (resource instanceof TransshipmentHubResource hub) {
-        List<Tuple<String, String>> tupleList = new ArrayList<>();
-        tupleList.add(new Tuple<>(ID, hub.getId().toString()));
-        tupleList.add(new Tuple<>(LOCATION, hub.getStartLinkId().toString()));
-        if (hub.getAttributes().getAttribute(FIXED_COST) != null) {
-          tupleList.add(
-              new Tuple<>(FIXED_COST, hub.getAttributes().getAttribute(FIXED_COST).toString()));
+    if (!lsp.getResources().isEmpty()) {
+      openTag(RESOURCES, null);
+      for (LSPResource resource : lsp.getResources()) {
+        if (resource instanceof TransshipmentHubResource hub) {
+          Object fixedCost = hub.getAttributes().getAttribute(FIXED_COST);
+          writeHub(
+              hub.getId(),
+              hub.getStartLinkId(),
+              fixedCost == null ? null : fixedCost.toString(),
+              hub.getCapacityNeedFixed(),
+              hub.getCapacityNeedLinear());
+        }
+        if (resource instanceof LSPCarrierResource carrierResource) {
+          writeCarrier(carrierResource.getId());
         }
-        this.writeStartTag(HUB, tupleList);
-        this.writeStartTag(
-            SCHEDULER,
-            List.of(
-                createTuple(CAPACITY_NEED_FIXED, hub.getCapacityNeedFixed()),
-                createTuple(CAPACITY_NEED_LINEAR, hub.getCapacityNeedLinear())),
-            true);
-        this.writeEndTag(HUB);
-      }
-      if (resource instanceof LSPCarrierResource carrierResource) {
-        this.writeStartTag(
-            CARRIER, List.of(createTuple(ID, carrierResource.getId().toString())), true);
       }
+      closeTag(RESOURCES);
     }
-    this.writeEndTag(RESOURCES);
-  }
-
-  private void writeShipments(LSP lsp) throws IOException {
-    if (lsp.getLspShipments().isEmpty()) return;
-    this.writeStartTag(SHIPMENTS, null);
-    for (LspShipment lspShipment : lsp.getLspShipments()) {
-      this.writeStartTag(
-          SHIPMENT,
-          List.of(
-              createTuple(ID, lspShipment.getId().toString()),
-              createTuple(FROM, lspShipment.getFrom().toString()),
-              createTuple(TO, lspShipment.getTo().toString()),
-              createTuple(SIZE, lspShipment.getSize()),
-              createTuple(START_PICKUP, lspShipment.getPickupTimeWindow().getStart()),
-              createTuple(END_PICKUP, lspShipment.getPickupTimeWindow().getEnd()),
-              createTuple(START_DELIVERY, lspShipment.getDeliveryTimeWindow().getStart()),
-              createTuple(END_DELIVERY, lspShipment.getDeliveryTimeWindow().getEnd()),
-              createTuple(PICKUP_SERVICE_TIME, lspShipment.getPickupServiceTime()),
-              createTuple(DELIVERY_SERVICE_TIME, lspShipment.getDeliveryServiceTime())),
-          true);
+
+    writeShipments(lsp.getLspShipments());
+
+    if (!lsp.getPlans().isEmpty()) {
+      openTag(LSP_PLANS, null);
+      for (LSPPlan plan : lsp.getPlans()) {
+        boolean withScore = plan.getScore() != null && lsp.getSelectedPlan() != null;
+        startPlan(withScore ? plan.getScore() : null, withScore && plan == lsp.getSelectedPlan());
+
+        openTag(LOGISTIC_CHAINS, null);
+        for (LogisticChain chain : plan.getLogisticChains()) {
+          openTag(LOGISTIC_CHAIN, List.of(createTuple(ID, chain.getId().toString())));
+          for (LogisticChainElement chainElement : chain.getLogisticChainElements()) {
+            writeChainElement(chainElement.getId(), chainElement.getResource().getId());
+          }
+          closeTag(LOGISTIC_CHAIN);
+        }
+        closeTag(LOGISTIC_CHAINS);
+
+        openTag(SHIPMENT_PLANS, null);
+        for (LogisticChain chain : plan.getLogisticChains()) {
+          for (Id<LspShipment> shipmentId : chain.getLspShipmentIds()) {
+            // only read, so that no (empty) shipment plans are created by writing.
+            LspShipmentPlan shipmentPlan = LSPUtils.findLspShipmentPlan(plan, shipmentId);
+            startShipmentPlan(shipmentId, chain.getId());
+            if (shipmentPlan != null) {
+              for (Map.Entry<Id<LspShipmentPlanElement>, LspShipmentPlanElement> entry :
+                  shipmentPlan.getPlanElements().entrySet()) {
+                LspShipmentPlanElement element = entry.getValue();
+                writeShipmentPlanElement(
+                    entry.getKey(),
+                    element.getElementType(),
+                    element.getStartTime(),
+                    element.getEndTime(),
+                    element.getResourceId());
+              }
+            }
+            closeTag(SHIPMENT_PLAN);
+          }
+        }
+        closeTag(SHIPMENT_PLANS);
+        closeTag(LSP_PLAN);
+      }
+      closeTag(LSP_PLANS);
     }
-    this.writeEndTag(SHIPMENTS);
+
+    closeTag(LSP);
   }
 
-  private void writePlans(LSP lsp, BufferedWriter writer) throws IOException {
-    if (lsp.getPlans().isEmpty()) return;
-    this.writeStartTag(LSP_PLANS, null);
+  private void writeLsp(LspSnapshot lsp) throws IOException {
+    openTag(LSP, List.of(createTuple(ID, lsp.id().toString())));
 
-    for (LSPPlan plan : lsp.getPlans()) {
-      if (plan.getScore() != null && lsp.getSelectedPlan() != null) {
-        if (plan == lsp.getSelectedPlan()) {
-          this.writeStartTag(
-              LSP_PLAN,
-              List.of(createTuple(SCORE, plan.getScore()), createTuple(SELECTED, "true")));
+    if (!lsp.resources().isEmpty()) {
+      openTag(RESOURCES, null);
+      for (ResourceSnapshot resource : lsp.resources()) {
+        if (resource.isHub()) {
+          writeHub(
+              resource.id(),
+              resource.location(),
+              resource.fixedCost(),
+              resource.capacityNeedFixed(),
+              resource.capacityNeedLinear());
         } else {
-          this.writeStartTag(
-              LSP_PLAN,
-              List.of(createTuple(SCORE, plan.getScore()), createTuple(SELECTED, "false")));
+          writeCarrier(resource.id());
         }
-      } else {
-        this.writeStartTag(LSP_PLAN, List.of(createTuple(SELECTED, "false")));
       }
+      closeTag(RESOURCES);
+    }
 
-      this.writeStartTag(LOGISTIC_CHAINS, null);
-      for (LogisticChain chain : plan.getLogisticChains()) {
-        writeStartTag(LOGISTIC_CHAIN, List.of(createTuple(ID, chain.getId().toString())));
-        for (LogisticChainElement chainElement : chain.getLogisticChainElements()) {
-          this.writeStartTag(
-              LOGISTIC_CHAIN_ELEMENT,
-              List.of(
-                  createTuple(ID, chainElement.getId().toString()),
-                  createTuple(RESOURCE_ID, chainElement.getResource().getId().toString())),
-              true);
-        }
-        writeEndTag(LOGISTIC_CHAIN);
-      }
-      writeEndTag(LOGISTIC_CHAINS);
-
-      writeStartTag(SHIPMENT_PLANS, null);
-      for (LogisticChain chain : plan.getLogisticChains()) {
-        for (Id<LspShipment> shipmentId : chain.getLspShipmentIds()) {
-          if (chain.getLspShipmentIds().contains(shipmentId)) {
-            this.writeStartTag(
-                SHIPMENT_PLAN,
-                List.of(
-                    createTuple(SHIPMENT_ID, shipmentId.toString()),
-                    createTuple(CHAIN_ID, chain.getId().toString())));
+    writeShipments(lsp.shipments());
+
+    if (!lsp.plans().isEmpty()) {
+      openTag(LSP_PLANS, null);
+      for (PlanSnapshot plan : lsp.plans()) {
+        startPlan(plan.score(), plan.selected());
+
+        openTag(LOGISTIC_CHAINS, null);
+        for (ChainSnapshot chain : plan.chains()) {
+          openTag(LOGISTIC_CHAIN, List.of(createTuple(ID, chain.id().toString())));
+          for (ChainElementSnapshot chainElement : chain.elements()) {
+            writeChainElement(chainElement.id(), chainElement.resourceId());
           }
-          LspShipment lspShipment = LSPUtils.findLspShipment(lsp, shipmentId);
-          assert lspShipment != null;
-          final Map<Id<LspShipmentPlanElement>, LspShipmentPlanElement> planElements =
-              LspShipmentUtils.getOrCreateShipmentPlan(plan, lspShipment.getId()).getPlanElements();
-          for (Id<LspShipmentPlanElement> elementId : planElements.keySet()) {
-            LspShipmentPlanElement element = planElements.get(elementId);
-            this.writeStartTag(
-                ELEMENT,
-                List.of(
-                    createTuple(ID, elementId.toString()),
-                    createTuple(TYPE, element.getElementType()),
-                    createTuple(START_TIME, element.getStartTime()),
-                    createTuple(END_TIME, element.getEndTime()),
-                    createTuple(RESOURCE_ID, element.getResourceId().toString())),
-                true);
+          closeTag(LOGISTIC_CHAIN);
+        }
+        closeTag(LOGISTIC_CHAINS);
+
+        openTag(SHIPMENT_PLANS, null);
+        for (ChainSnapshot chain : plan.chains()) {
+          for (ShipmentPlanSnapshot shipmentPlan : chain.shipmentPlans()) {
+            startShipmentPlan(shipmentPlan.shipmentId(), chain.id());
+            for (int i = 0; i < shipmentPlan.size(); i++) {
+              writeShipmentPlanElement(
+                  shipmentPlan.elementIds()[i],
+                  shipmentPlan.elementTypes()[i],
+                  shipmentPlan.startTimes()[i],
+                  shipmentPlan.endTimes()[i],
+                  shipmentPlan.resourceIds()[i]);
+            }
+            closeTag(SHIPMENT_PLAN);
           }
-          writeEndTag(SHIPMENT_PLAN);
         }
+        closeTag(SHIPMENT_PLANS);
+        closeTag(LSP_PLAN);
       }
-      writeEndTag(SHIPMENT_PLANS);
-      writeEndTag(LSP_PLAN);
+      closeTag(LSP_PLANS);
     }
-    this.writeEndTag(LSP_PLANS);
+
+    closeTag(LSP);
+  }
+
+  private void writeHub(
+      Id<LSPResource> id,
+      Id<Link> location,
+      String fixedCost,
+      double capacityNeedFixed,
+      double capacityNeedLinear)
+      throws IOException {
+    List<Tuple<String, String>> tupleList = new ArrayList<>();
+    tupleList.add(new Tuple<>(ID, id.toString()));
+    tupleList.add(new Tuple<>(LOCATION, location.toString()));
+    if (fixedCost != null) {
+      tupleList.add(new Tuple<>(FIXED_COST, fixedCost));
+    }
+    openTag(HUB, tupleList);
+    this.writeStartTag(
+        SCHEDULER,
+        List.of(
+            createTuple(CAPACITY_NEED_FIXED, capacityNeedFixed),
+            createTuple(CAPACITY_NEED_LINEAR, capacityNeedLinear)),
+        true);
+    closeTag(HUB);
+  }
+
+  private void writeCarrier(Id<LSPResource> id) throws IOException {
+    this.writeStartTag(CARRIER, List.of(createTuple(ID, id.toString())), true);
+  }
+
+  /**
+   * The shipments make up a large part of the file, so they are streamed directly to the writer,
+   * i.e. without creating a list of attribute tuples per shipment.
+   */
+  private void writeShipments(Collection<LspShipment> lspShipments) throws IOException {
+    if (lspShipments.isEmpty()) return;
+    openTag(SHIPMENTS, null);
+    for (LspShipment lspShipment : lspShipments) {
+      startStreamedTag(SHIPMENT);
+      writeAttribute(ID, lspShipment.getId().toString());
+      writeAttribute(FROM, lspShipment.getFrom().toString());
+      writeAttribute(TO, lspShipment.getTo().toString());
+      writeAttribute(SIZE, Integer.toString(lspShipment.getSize()));
+      writeAttribute(START_PICKUP, lspShipment.getPickupTimeWindow().getStart());
+      writeAttribute(END_PICKUP, lspShipment.getPickupTimeWindow().getEnd());
+      writeAttribute(START_DELIVERY, lspShipment.getDeliveryTimeWindow().getStart());
+      writeAttribute(END_DELIVERY, lspShipment.getDeliveryTimeWindow().getEnd());
+      writeAttribute(PICKUP_SERVICE_TIME, lspShipment.getPickupServiceTime());
+      writeAttribute(DELIVERY_SERVICE_TIME, lspShipment.getDeliveryServiceTime());
+      endStreamedTag();
+    }
+    closeTag(SHIPMENTS);
+  }
+
+  /** The score is null if it should not be written; the plan is then not selected either. */
+  private void startPlan(Double score, boolean selected) throws IOException {
+    if (score != null) {
+      openTag(
+          LSP_PLAN,
+          List.of(createTuple(SCORE, score), createTuple(SELECTED, String.valueOf(selected))));
+    } else {
+      openTag(LSP_PLAN, List.of(createTuple(SELECTED, "false")));
+    }
+  }
+
+  private void writeChainElement(Id<LogisticChainElement> id, Id<LSPResource> resourceId)
+      throws IOException {
+    this.writeStartTag(
+        LOGISTIC_CHAIN_ELEMENT,
+        List.of(createTuple(ID, id.toString()), createTuple(RESOURCE_ID, resourceId.toString())),
+        true);
+  }
+
+  private void startShipmentPlan(Id<LspShipment> shipmentId, Id<LogisticChain> chainId)
+      throws IOException {
+    openTag(
+        SHIPMENT_PLAN,
+        List.of(
+            createTuple(SHIPMENT_ID, shipmentId.toString()),
+            createTuple(CHAIN_ID, chainId.toString())));
+  }
+
+  /** Streamed like the shipments, since there are several elements per shipment. */
+  private void writeShipmentPlanElement(
+      Id<LspShipmentPlanElement> id,
+      String type,
+      double startTime,
+      double endTime,
+      Id<LSPResource> resourceId)
+      throws IOException {
+    startStreamedTag(ELEMENT);
+    writeAttribute(ID, id.toString());
+    writeAttribute(TYPE, type);
+    writeAttribute(START_TIME, startTime);
+    writeAttribute(END_TIME, endTime);
+    writeAttribute(RESOURCE_ID, resourceId.toString());
+    endStreamedTag();
+  }
+
+  /**
+   * Opens a tag that contains other elements. All such tags are opened here, so that {@link
+   * #openTags} is the indentation level of the {@link MatsimXmlWriter} for the streamed elements.
+   */
+  private void openTag(String tagName, List<Tuple<String, String>> attributes) {
+    this.writeStartTag(tagName, attributes);
+    openTags++;
+  }
+
+  private void closeTag(String tagName) {
+    openTags--;
+    this.writeEndTag(tagName);
+  }
+
+  /**
+   * Starts an empty element in the same way as {@link MatsimXmlWriter#writeStartTag}, i.e.
+   * indented with one tab per open tag. The attributes are written with {@link #writeAttribute},
+   * and the element is finished with {@link #endStreamedTag()}.
+   */
+  private void startStreamedTag(String tagName) throws IOException {
+    for (int i = 0; i < openTags; i++) {
+      this.writer.write('\t');
+    }
+    this.writer.write('<');
+    this.writer.write(tagName);
+  }
+
+  private void endStreamedTag() throws IOException {
+    this.writer.write("/>");
+    this.writer.write(NL);
+  }
+
+  private void writeAttribute(String name, String value) throws IOException {
+    this.writer.write(' ');
+    this.writer.write(name);
+    this.writer.write("=\"");
+    this.writer.write(encodeAttributeValue(value));
+    this.writer.write('"');
+  }
+
+  /** Writes the value as {@link MatsimXmlWriter#createTuple(String, double)} does. */
+  private void writeAttribute(String name, double value) throws IOException {
+    this.writer.write(' ');
+    this.writer.write(name);
+    this.writer.write("=\"");
+    this.writer.write(Double.toString(value));
+    this.writer.write('"');
   }
 }
@@ -0,0 +1,197 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import static org.matsim.freight.logistics.LSPConstants.FIXED_COST;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.resourceImplementations.TransshipmentHubResource;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentPlan;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+
+/**
+ * Immutable copy of everything that is written by the {@link LSPPlanXmlWriter}.
+ *
+ * <p>The plans, chains and shipment plans of the LSPs are changed in every replanning and the
+ * shipment plan elements also during the mobsim. The snapshot is taken on the controler thread
+ * and can then be written from another thread while the next iteration runs. The shipments
+ * themselves are not copied, because the written fields of them are final.
+ *
+ * <p>The times of the shipment plan elements are kept in primitive arrays per shipment plan, so
+ * that there is no object per element.
+ */
+public final class LSPsSnapshot {
+
+  private static final ShipmentPlanSnapshot[] NO_SHIPMENT_PLANS = new ShipmentPlanSnapshot[0];
+
+  private final List<LspSnapshot> lsps;
+
+  private LSPsSnapshot(List<LspSnapshot> lsps) {
+    this.lsps = lsps;
+  }
+
+  /**
+   * Copies the current state of the LSPs. The LSPs are only read; in particular, no (empty)
+   * shipment plans are created.
+   */
+  public static LSPsSnapshot of(LSPs lsps) {
+    List<LspSnapshot> lspSnapshots = new ArrayList<>(lsps.getLSPs().size());
+    for (LSP lsp : lsps.getLSPs().values()) {
+      lspSnapshots.add(createLspSnapshot(lsp));
+    }
+    return new LSPsSnapshot(List.copyOf(lspSnapshots));
+  }
+
+  List<LspSnapshot> getLsps() {
+    return lsps;
+  }
+
+  private static LspSnapshot createLspSnapshot(LSP lsp) {
+    List<ResourceSnapshot> resources = new ArrayList<>();
+    for (LSPResource resource : lsp.getResources()) {
+      if (resource instanceof TransshipmentHubResource hub) {
+        Object fixedCost = hub.getAttributes().getAttribute(FIXED_COST);
+        resources.add(
+            new ResourceSnapshot(
+                true,
+                hub.getId(),
+                hub.getStartLinkId(),
+                fixedCost == null ? null : fixedCost.toString(),
+                hub.getCapacityNeedFixed(),
+                hub.getCapacityNeedLinear()));
+      }
+      if (resource instanceof LSPCarrierResource carrierResource) {
+        resources.add(
+            new ResourceSnapshot(false, carrierResource.getId(), null, null, Double.NaN, Double.NaN));
+      }
+    }
+
+    List<PlanSnapshot> plans = new ArrayList<>(lsp.getPlans().size());
+    for (LSPPlan plan : lsp.getPlans()) {
+      plans.add(createPlanSnapshot(lsp, plan));
+    }
+
+    return new LspSnapshot(
+        lsp.getId(),
+        List.copyOf(resources),
+        List.copyOf(lsp.getLspShipments()),
+        List.copyOf(plans));
+  }
+
+  private static PlanSnapshot createPlanSnapshot(LSP lsp, LSPPlan plan) {
+    // as it was written before: the score only if there is one and if there is a selected plan.
+    boolean withScore = plan.getScore() != null && lsp.getSelectedPlan() != null;
+    List<ChainSnapshot> chains = new ArrayList<>(plan.getLogisticChains().size());
+    for (LogisticChain chain : plan.getLogisticChains()) {
+      List<ChainElementSnapshot> elements = new ArrayList<>();
+      for (LogisticChainElement chainElement : chain.getLogisticChainElements()) {
+        elements.add(
+            new ChainElementSnapshot(chainElement.getId(), chainElement.getResource().getId()));
+      }
+      ShipmentPlanSnapshot[] shipmentPlans =
+          chain.getLspShipmentIds().isEmpty()
+              ? NO_SHIPMENT_PLANS
+              : new ShipmentPlanSnapshot[chain.getLspShipmentIds().size()];
+      int i = 0;
+      for (Id<LspShipment> shipmentId : chain.getLspShipmentIds()) {
+        shipmentPlans[i++] =
+            createShipmentPlanSnapshot(shipmentId, LSPUtils.findLspShipmentPlan(plan, shipmentId));
+      }
+      chains.add(new ChainSnapshot(chain.getId(), List.copyOf(elements), shipmentPlans));
+    }
+    return new PlanSnapshot(
+        withScore ? plan.getScore() : null,
+        withScore && plan == lsp.getSelectedPlan(),
+        List.copyOf(chains));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ShipmentPlanSnapshot createShipmentPlanSnapshot(
+      Id<LspShipment> shipmentId, LspShipmentPlan shipmentPlan) {
+    int size = shipmentPlan == null ? 0 : shipmentPlan.getPlanElements().size();
+    Id<LspShipmentPlanElement>[] elementIds = new Id[size];
+    String[] types = new String[size];
+    double[] startTimes = new double[size];
+    double[] endTimes = new double[size];
+    Id<LSPResource>[] resourceIds = new Id[size];
+    if (shipmentPlan != null) {
+      int i = 0;
+      for (var entry : shipmentPlan.getPlanElements().entrySet()) {
+        LspShipmentPlanElement element = entry.getValue();
+        elementIds[i] = entry.getKey();
+        types[i] = element.getElementType();
+        startTimes[i] = element.getStartTime();
+        endTimes[i] = element.getEndTime();
+        resourceIds[i] = element.getResourceId();
+        i++;
+      }
+    }
+    return new ShipmentPlanSnapshot(
+        shipmentId, elementIds, types, startTimes, endTimes, resourceIds);
+  }
+
+  record LspSnapshot(
+      Id<LSP> id,
+      List<ResourceSnapshot> resources,
+      List<LspShipment> shipments,
+      List<PlanSnapshot> plans) {}
+
+  /**
+   * Either a hub or a carrier resource. For carrier resources, only the id is kept. The fixed cost
+   * of a hub is null if it is not set.
+   */
+  record ResourceSnapshot(
+      boolean isHub,
+      Id<LSPResource> id,
+      Id<Link> location,
+      String fixedCost,
+      double capacityNeedFixed,
+      double capacityNeedLinear) {}
+
+  /** The score is null if it should not be written. */
+  record PlanSnapshot(Double score, boolean selected, List<ChainSnapshot> chains) {}
+
+  record ChainSnapshot(
+      Id<LogisticChain> id,
+      List<ChainElementSnapshot> elements,
+      ShipmentPlanSnapshot[] shipmentPlans) {}
+
+  record ChainElementSnapshot(Id<LogisticChainElement> id, Id<LSPResource> resourceId) {}
+
+  /** The plan elements of one shipment, column by column. */
+  record ShipmentPlanSnapshot(
+      Id<LspShipment> shipmentId,
+      Id<LspShipmentPlanElement>[] elementIds,
+      String[] elementTypes,
+      double[] startTimes,
+      double[] endTimes,
+      Id<LSPResource>[] resourceIds) {
+
+    int size() {
+      return elementIds.length;
+    }
+  }
+}
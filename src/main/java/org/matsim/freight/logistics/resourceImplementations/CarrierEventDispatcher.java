@@ -0,0 +1,209 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.matsim.api.core.v01.Id;
+import org.matsim.freight.carriers.CarrierService;
+import org.matsim.freight.carriers.CarrierShipment;
+import org.matsim.freight.carriers.Tour;
+import org.matsim.freight.carriers.events.CarrierServiceEndEvent;
+import org.matsim.freight.carriers.events.CarrierServiceStartEvent;
+import org.matsim.freight.carriers.events.CarrierShipmentDeliveryStartEvent;
+import org.matsim.freight.carriers.events.CarrierTourEndEvent;
+import org.matsim.freight.carriers.events.CarrierTourStartEvent;
+import org.matsim.freight.carriers.events.eventhandler.CarrierServiceEndEventHandler;
+import org.matsim.freight.carriers.events.eventhandler.CarrierServiceStartEventHandler;
+import org.matsim.freight.carriers.events.eventhandler.CarrierShipmentDeliveryStartEventHandler;
+import org.matsim.freight.carriers.events.eventhandler.CarrierTourEndEventHandler;
+import org.matsim.freight.carriers.events.eventhandler.CarrierTourStartEventHandler;
+import org.matsim.freight.logistics.LSPCarrierResource;
+import org.matsim.freight.logistics.LSPResource;
+import org.matsim.freight.logistics.LSPSimulationTracker;
+import org.matsim.freight.logistics.shipment.LspShipment;
+
+/**
+ * Receives the carrier events of the {@link LSPCarrierResource} it is attached to and hands them
+ * over to the shipment-level trackers that were created while scheduling this resource.
+ *
+ * <p>Before, each shipment-level tracker was registered at the events manager on its own. Thus,
+ * every carrier event reached every tracker of every shipment, and the work grew with shipments
+ * times events. Now the events manager knows only one dispatcher per resource, and the trackers
+ * are looked up by tour id resp. service/shipment id. The carrier id is implicitly part of the
+ * key, because there is exactly one carrier per resource.
+ *
+ * <p>The trackers are still attached to their {@link
+ * org.matsim.freight.logistics.shipment.LspShipment}, but they return <code>false</code> for
+ * {@link LSPSimulationTracker#isRegisteredAtEventsManager()}.
+ */
+/*package-private*/ class CarrierEventDispatcher
+    implements LSPSimulationTracker<LSPResource>,
+        CarrierTourStartEventHandler,
+        CarrierTourEndEventHandler,
+        CarrierServiceStartEventHandler,
+        CarrierServiceEndEventHandler,
+        CarrierShipmentDeliveryStartEventHandler {
+
+  private final LSPCarrierResource resource;
+  private final Map<Id<Tour>, List<LSPTourStartEventHandler>> tourStartHandlers = new HashMap<>();
+  private final Map<Id<Tour>, List<LSPTourEndEventHandler>> tourEndHandlers = new HashMap<>();
+  private final Map<Id<CarrierService>, List<DistributionServiceStartEventHandler>>
+      serviceStartHandlers = new HashMap<>();
+  private final Map<Id<CarrierShipment>, List<DistributionServiceStartEventHandler>>
+      shipmentDeliveryStartHandlers = new HashMap<>();
+  private final Map<Id<CarrierService>, List<CollectionServiceEndEventHandler>>
+      serviceEndHandlers = new HashMap<>();
+  private final Map<LSPSimulationTracker<LspShipment>, LspShipment> shipmentOfHandler =
+      new IdentityHashMap<>();
+
+  CarrierEventDispatcher(LSPCarrierResource resource) {
+    this.resource = resource;
+  }
+
+  void register(LSPTourStartEventHandler handler) {
+    tourStartHandlers.computeIfAbsent(handler.getTourId(), k -> new ArrayList<>()).add(handler);
+    shipmentOfHandler.put(handler, handler.getLspShipment());
+  }
+
+  void register(LSPTourEndEventHandler handler) {
+    tourEndHandlers.computeIfAbsent(handler.getTourId(), k -> new ArrayList<>()).add(handler);
+    shipmentOfHandler.put(handler, handler.getLspShipment());
+  }
+
+  void register(DistributionServiceStartEventHandler handler) {
+    if (handler.getCarrierService() != null) {
+      serviceStartHandlers
+          .computeIfAbsent(handler.getCarrierService().getId(), k -> new ArrayList<>())
+          .add(handler);
+    }
+    if (handler.getCarrierShipment() != null) {
+      shipmentDeliveryStartHandlers
+          .computeIfAbsent(handler.getCarrierShipment().getId(), k -> new ArrayList<>())
+          .add(handler);
+    }
+    shipmentOfHandler.put(handler, handler.getLspShipment());
+  }
+
+  void register(CollectionServiceEndEventHandler handler) {
+    serviceEndHandlers
+        .computeIfAbsent(handler.getCarrierService().getId(), k -> new ArrayList<>())
+        .add(handler);
+    shipmentOfHandler.put(handler, handler.getLspShipment());
+  }
+
+  /**
+   * Removes all registered trackers. Is called when the resource gets (re-)scheduled, because the
+   * trackers of the previous schedule are not valid anymore.
+   *
+   * <p>The trackers are also detached from their shipments. Otherwise, the shipments would collect
+   * a new set of trackers in every replanning, and the controler listener could not tell which of
+   * them are still in use. The detaching is left to the given function, because a shipment may
+   * already be handled by another resource that is scheduled at the same time (see {@link
+   * org.matsim.freight.logistics.LSPResourceScheduler#detachSimulationTracker}).
+   */
+  void clear(BiConsumer<LspShipment, LSPSimulationTracker<LspShipment>> detach) {
+    for (Map.Entry<LSPSimulationTracker<LspShipment>, LspShipment> entry :
+        shipmentOfHandler.entrySet()) {
+      detach.accept(entry.getValue(), entry.getKey());
+    }
+    shipmentOfHandler.clear();
+    tourStartHandlers.clear();
+    tourEndHandlers.clear();
+    serviceStartHandlers.clear();
+    shipmentDeliveryStartHandlers.clear();
+    serviceEndHandlers.clear();
+  }
+
+  @Override
+  public void handleEvent(CarrierTourStartEvent event) {
+    if (isNotMyCarrier(event.getCarrierId())) return;
+    List<LSPTourStartEventHandler> handlers = tourStartHandlers.get(event.getTourId());
+    if (handlers != null) {
+      for (LSPTourStartEventHandler handler : handlers) {
+        handler.handleEvent(event);
+      }
+    }
+  }
+
+  @Override
+  public void handleEvent(CarrierTourEndEvent event) {
+    if (isNotMyCarrier(event.getCarrierId())) return;
+    List<LSPTourEndEventHandler> handlers = tourEndHandlers.get(event.getTourId());
+    if (handlers != null) {
+      for (LSPTourEndEventHandler handler : handlers) {
+        handler.handleEvent(event);
+      }
+    }
+  }
+
+  @Override
+  public void handleEvent(CarrierServiceStartEvent event) {
+    if (isNotMyCarrier(event.getCarrierId())) return;
+    List<DistributionServiceStartEventHandler> handlers =
+        serviceStartHandlers.get(event.getServiceId());
+    if (handlers != null) {
+      for (DistributionServiceStartEventHandler handler : handlers) {
+        handler.handleEvent(event);
+      }
+    }
+  }
+
+  @Override
+  public void handleEvent(CarrierShipmentDeliveryStartEvent event) {
+    if (isNotMyCarrier(event.getCarrierId())) return;
+    List<DistributionServiceStartEventHandler> handlers =
+        shipmentDeliveryStartHandlers.get(event.getShipmentId());
+    if (handlers != null) {
+      for (DistributionServiceStartEventHandler handler : handlers) {
+        handler.handleEvent(event);
+      }
+    }
+  }
+
+  @Override
+  public void handleEvent(CarrierServiceEndEvent event) {
+    if (isNotMyCarrier(event.getCarrierId())) return;
+    List<CollectionServiceEndEventHandler> handlers = serviceEndHandlers.get(event.getServiceId());
+    if (handlers != null) {
+      for (CollectionServiceEndEventHandler handler : handlers) {
+        handler.handleEvent(event);
+      }
+    }
+  }
+
+  private boolean isNotMyCarrier(Id<?> carrierId) {
+    return !resource.getCarrier().getId().equals(carrierId);
+  }
+
+  @Override
+  public void reset(int iteration) {
+    // nothing to do here: the registered trackers belong to the current schedule and are replaced
+    // by clear() once the resource gets scheduled again.
+  }
+
+  @Override
+  public void setEmbeddingContainer(LSPResource pointer) {}
+}
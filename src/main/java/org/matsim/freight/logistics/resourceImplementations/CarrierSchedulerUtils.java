@@ -3,23 +3,36 @@ package org.matsim.freight.logistics.resourceImplementations;
 import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithm;
 import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
+import com.graphhopper.jsprit.core.problem.driver.DriverImpl;
+import com.graphhopper.jsprit.core.problem.job.Job;
+import com.graphhopper.jsprit.core.problem.job.Service;
+import com.graphhopper.jsprit.core.problem.job.Shipment;
 import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
+import com.graphhopper.jsprit.core.problem.solution.route.VehicleRoute;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
 import com.graphhopper.jsprit.core.util.Solutions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.contrib.roadpricing.RoadPricingScheme;
-import org.matsim.contrib.roadpricing.RoadPricingUtils;
 import org.matsim.freight.carriers.Carrier;
 import org.matsim.freight.carriers.CarrierPlan;
 import org.matsim.freight.carriers.CarriersUtils;
+import org.matsim.freight.carriers.ScheduledTour;
+import org.matsim.freight.carriers.Tour;
 import org.matsim.freight.carriers.jsprit.MatsimJspritFactory;
 import org.matsim.freight.carriers.jsprit.NetworkBasedTransportCosts;
 import org.matsim.freight.carriers.jsprit.NetworkRouter;
 import org.matsim.freight.logistics.LSPUtils;
+import org.matsim.vehicles.VehicleType;
 
 /**
  * This class contains some code fragments, that are used in the different *CarrierScheduler
@@ -30,6 +43,8 @@ import org.matsim.freight.logistics.LSPUtils;
 public class CarrierSchedulerUtils {
   private static final Logger log = LogManager.getLogger(CarrierSchedulerUtils.class);
   private static final String LOGIC_OF_VRP = "logicOfVrp";
+  private static final String SOLVE_AUXILIARY_CARRIERS_IN_PARALLEL = "solveAuxiliaryCarriersInParallel";
+  private static final String JSPRIT_WARM_START_ITERATIONS = "jspritWarmStartIterations";
 
   /**
    * Creates a VehicleRoutingProblem from a carrier and a network and solves it with Jsprit.
@@ -43,33 +58,24 @@ public class CarrierSchedulerUtils {
    * @return Carrier  with the solution of the VehicleRoutingProblem and the routed plan.
    */
   public static Carrier solveVrpWithJsprit(Carrier carrier, Scenario scenario) {
-    // Maybe it make sense to store this object instead of rebuilding it for each carrier (in each iteration) ???
-    // pro: save computation time
-    // con: interdependencies, if something changes in the network (load), the object is not up-to-date & it is not clear, if the object is thread safe
-    // Decision for the time being: rebuild it for each carrier to have a clear state KMT/KN Aug'24
-    NetworkBasedTransportCosts netbasedTransportCosts;
-    Network network = scenario.getNetwork();
-    RoadPricingScheme roadPricingScheme = null;
-    try {
-      roadPricingScheme = RoadPricingUtils.getRoadPricingScheme(scenario);
-    } catch (Exception e) {
-      log.info("Was not able getting RoadPricingScheme. Tolls cannot be considered.", e);
-    }
-    if (roadPricingScheme != null) {
-      netbasedTransportCosts = NetworkBasedTransportCosts.Builder.newInstance(network, ResourceImplementationUtils.getVehicleTypeCollection(carrier))
-              .setRoadPricingScheme(roadPricingScheme)
-              .build();
-    } else {
-      log.debug("RoadPricingScheme is null. Tolls cannot be considered.");
-      netbasedTransportCosts = NetworkBasedTransportCosts.Builder.newInstance(network, ResourceImplementationUtils.getVehicleTypeCollection(carrier))
-              .build();
-    }
-
-    VehicleRoutingProblem vrp =
-            MatsimJspritFactory.createRoutingProblemBuilder(carrier, network)
-                    .setRoutingCost(netbasedTransportCosts)
-                    .build();
+    return solveVrpWithJsprit(carrier, scenario, null);
+  }
 
+  /**
+   * As {@link #solveVrpWithJsprit(Carrier, Scenario)}, but jsprit may start from the tours of a
+   * previous plan of the carrier instead of building a new solution from scratch. This is done, if
+   * warm start iterations are set for the carrier, see {@link
+   * #setJspritWarmStartIterations(Carrier, int)}. The jobs of the previous plan that are not part of
+   * the carrier anymore are dropped, new jobs are inserted by jsprit.
+   *
+   * @param carrier Carrier for which the problem should be solved
+   * @param scenario the scenario
+   * @param previousPlan the plan to start from, e.g. the selected plan of the last scheduling; may
+   *     be null
+   * @return Carrier with the solution of the VehicleRoutingProblem and the routed plan.
+   */
+  public static Carrier solveVrpWithJsprit(
+      Carrier carrier, Scenario scenario, CarrierPlan previousPlan) {
     //If jspritIterations are not set (get.... returns a negativ value), set it to 1
     int jspritIterations;
     if (CarriersUtils.getJspritIterations(carrier) >= 1) {
@@ -79,17 +85,118 @@ public class CarrierSchedulerUtils {
       jspritIterations = 1;
     }
 
+    // Unchanged VRPs are not solved again, if the solution cache is switched on.
+    VrpSolutionCache solutionCache = VrpSolutionCache.getOrCreate(scenario);
+    String fingerprint = null;
+    if (solutionCache != null) {
+      fingerprint = VrpSolutionCache.createFingerprint(carrier, jspritIterations, scenario);
+      if (fingerprint != null && solutionCache.applyCachedSolution(fingerprint, carrier)) {
+        return carrier;
+      }
+    }
+
+    // The transport costs are shared between the carriers (and tours) and are rebuilt once per
+    // iteration, see TransportCostsProvider. (Before, the decision of KMT/KN in Aug'24 was to
+    // rebuild them for each carrier to have a clear state.)
+    // If switched on, jsprit gets its travel times and distances from a matrix, whereas the tours
+    // are still routed on the network.
+    Network network = scenario.getNetwork();
+    TransportCostsProvider transportCostsProvider = TransportCostsProvider.getOrCreate(scenario);
+    Collection<VehicleType> vehicleTypes =
+        ResourceImplementationUtils.getVehicleTypeCollection(carrier);
+    NetworkBasedTransportCosts netbasedTransportCosts =
+        transportCostsProvider.getTransportCosts(vehicleTypes, true);
+
+    VehicleRoutingProblem vrp =
+            MatsimJspritFactory.createRoutingProblemBuilder(carrier, network)
+                    .setRoutingCost(transportCostsProvider.getRoutingCosts(vehicleTypes, true))
+                    .build();
+
     VehicleRoutingAlgorithm vra = Jsprit.createAlgorithm(vrp);
-    vra.setMaxIterations(jspritIterations);
+    int warmStartIterations = getJspritWarmStartIterations(carrier);
+    if (previousPlan != null && warmStartIterations >= 1) {
+      vra.addInitialSolution(createInitialSolution(vrp, previousPlan));
+      vra.setMaxIterations(Math.min(warmStartIterations, jspritIterations));
+    } else {
+      vra.setMaxIterations(jspritIterations);
+    }
     VehicleRoutingProblemSolution solution = Solutions.bestOf(vra.searchSolutions());
 
     CarrierPlan plan = MatsimJspritFactory.createPlan(carrier, solution);
     NetworkRouter.routePlan(plan, netbasedTransportCosts);
     carrier.addPlan(plan);
     carrier.setSelectedPlan(plan);
+    if (fingerprint != null) {
+      solutionCache.put(fingerprint, plan);
+    }
     return carrier;
   }
 
+  /**
+   * Converts the tours of the previous plan into a jsprit solution of the given problem. Jobs that
+   * are not part of the problem anymore are left out, the jobs that are new are unassigned. Tours
+   * of vehicles that are not available anymore are dropped.
+   */
+  private static VehicleRoutingProblemSolution createInitialSolution(
+      VehicleRoutingProblem vrp, CarrierPlan previousPlan) {
+    Map<String, Vehicle> vehicles = new HashMap<>();
+    for (Vehicle vehicle : vrp.getVehicles()) {
+      vehicles.put(vehicle.getId(), vehicle);
+    }
+    Set<String> routedJobIds = new HashSet<>();
+    List<VehicleRoute> routes = new ArrayList<>();
+    for (ScheduledTour scheduledTour : previousPlan.getScheduledTours()) {
+      Vehicle vehicle = vehicles.get(scheduledTour.getVehicle().getId().toString());
+      if (vehicle == null) {
+        continue;
+      }
+      VehicleRoute.Builder routeBuilder =
+          VehicleRoute.Builder.newInstance(vehicle, DriverImpl.noDriver())
+              .setJobActivityFactory(vrp.getJobActivityFactory())
+              .setDepartureTime(scheduledTour.getDeparture());
+      boolean hasJobs = false;
+      Set<String> pickedUpJobIds = new HashSet<>();
+      for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+        switch (tourElement) {
+          case Tour.ServiceActivity serviceActivity -> {
+            Job job = vrp.getJobs().get(serviceActivity.getService().getId().toString());
+            if (job instanceof Service service && routedJobIds.add(service.getId())) {
+              routeBuilder.addService(service);
+              hasJobs = true;
+            }
+          }
+          case Tour.Pickup pickup -> {
+            Job job = vrp.getJobs().get(pickup.getShipment().getId().toString());
+            if (job instanceof Shipment shipment && routedJobIds.add(shipment.getId())) {
+              routeBuilder.addPickup(shipment);
+              pickedUpJobIds.add(shipment.getId());
+              hasJobs = true;
+            }
+          }
+          case Tour.Delivery delivery -> {
+            Job job = vrp.getJobs().get(delivery.getShipment().getId().toString());
+            if (job instanceof Shipment shipment && pickedUpJobIds.contains(shipment.getId())) {
+              routeBuilder.addDelivery(shipment);
+            }
+          }
+          default -> {}
+        }
+      }
+      if (hasJobs) {
+        routes.add(routeBuilder.build());
+      }
+    }
+    List<Job> unassignedJobs = new ArrayList<>();
+    for (Job job : vrp.getJobs().values()) {
+      if (!routedJobIds.contains(job.getId())) {
+        unassignedJobs.add(job);
+      }
+    }
+    // The costs of this solution are not known; jsprit replaces it by the first solution it finds
+    // starting from here.
+    return new VehicleRoutingProblemSolution(routes, unassignedJobs, Double.MAX_VALUE);
+  }
+
   public static Double sumUpScore(List<CarrierPlan> scheduledPlans) {
     double score = 0;
     for (CarrierPlan scheduledPlan : scheduledPlans) {
@@ -143,4 +250,51 @@ public class CarrierSchedulerUtils {
     }
   }
 
+  /**
+   * Setter, whether the VRPs of the auxiliary carriers, which are created for the single tours of
+   * a distribution carrier, are solved in parallel.
+   * The tours are merged in the order of the auxiliary carriers in both cases, so the result is the same.
+   *
+   * @param carrier The (distribution) carrier for which the setting should be set.
+   * @param inParallel true, if the auxiliary carriers should be solved in parallel
+   */
+  public static void setSolveAuxiliaryCarriersInParallel(Carrier carrier, boolean inParallel) {
+    carrier.getAttributes().putAttribute(SOLVE_AUXILIARY_CARRIERS_IN_PARALLEL, inParallel);
+  }
+
+  /**
+   * Getter, whether the VRPs of the auxiliary carriers of a distribution carrier are solved in parallel.
+   *
+   * @param carrier The (distribution) carrier for which the setting should be got.
+   * @return the setting, returns false if not set.
+   */
+  public static boolean isSolveAuxiliaryCarriersInParallel(Carrier carrier) {
+    Object result = carrier.getAttributes().getAttribute(SOLVE_AUXILIARY_CARRIERS_IN_PARALLEL);
+    return result != null && (boolean) result;
+  }
+
+  /**
+   * Setter for the number of jsprit iterations, if jsprit starts from the previous plan of the
+   * carrier (warm start). Usually, this is much smaller than the jsprit iterations for solving the
+   * VRP from scratch, since only the changed jobs need to be (re)inserted.
+   * The number of iterations is not larger than {@link CarriersUtils#getJspritIterations(Carrier)}.
+   *
+   * @param carrier The carrier for which the setting should be set.
+   * @param warmStartIterations the number of iterations; 0 switches the warm start off.
+   */
+  public static void setJspritWarmStartIterations(Carrier carrier, int warmStartIterations) {
+    carrier.getAttributes().putAttribute(JSPRIT_WARM_START_ITERATIONS, warmStartIterations);
+  }
+
+  /**
+   * Getter for the number of jsprit iterations, if jsprit starts from the previous plan of the carrier.
+   *
+   * @param carrier The carrier for which the setting should be got.
+   * @return the number of iterations, returns 0 (i.e. no warm start) if not set.
+   */
+  public static int getJspritWarmStartIterations(Carrier carrier) {
+    Object result = carrier.getAttributes().getAttribute(JSPRIT_WARM_START_ITERATIONS);
+    return result == null ? 0 : (int) result;
+  }
+
 }
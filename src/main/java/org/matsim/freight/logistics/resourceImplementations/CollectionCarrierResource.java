@@ -36,12 +36,15 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
   private final Carrier carrier;
   private final List<LogisticChainElement> clientElements;
   private final CollectionCarrierScheduler collectionScheduler;
+  private final CarrierEventDispatcher eventDispatcher;
 
   CollectionCarrierResource(CollectionCarrierResourceBuilder builder) {
     super(builder.id);
     this.collectionScheduler = builder.collectionScheduler;
     this.clientElements = builder.clientElements;
     this.carrier = builder.carrier;
+    this.eventDispatcher = new CarrierEventDispatcher(this);
+    this.addSimulationTracker(eventDispatcher);
   }
 
   @Override
@@ -78,8 +81,17 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
     collectionScheduler.scheduleShipments(lspPlan, this, bufferTime);
   }
 
+  @Override
+  public boolean isSchedulingThreadSafe() {
+    return true;
+  }
+
   public Carrier getCarrier() {
     return carrier;
   }
 
+  /*package-private*/ CarrierEventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
+
 }
@@ -49,6 +49,7 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
 
   private Carrier carrier;
   private CollectionCarrierResource resource;
+  private CarrierPlan previousPlan;
   private final Scenario scenario;
 
   /**
@@ -66,9 +67,11 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
     if (resource.getClass() == CollectionCarrierResource.class) {
       this.resource = (CollectionCarrierResource) resource;
       this.carrier = this.resource.getCarrier();
+      this.previousPlan = this.carrier.getSelectedPlan(); // may be used as start for jsprit
       this.carrier.getServices().clear();
       this.carrier.getShipments().clear();
       this.carrier.getPlans().clear();
+      this.resource.getEventDispatcher().clear(LSPResourceScheduler::detachSimulationTracker);
     }
   }
 
@@ -78,7 +81,8 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
       CarrierService carrierService = convertToCarrierService(lspShipmentToBeAssigned);
       carrier.getServices().put(carrierService.getId(), carrierService);
     }
-    CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+    CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario, previousPlan);
+    previousPlan = null;
   }
 
   private CarrierService convertToCarrierService(LspShipment lspShipment) {
@@ -123,11 +127,7 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
             LspShipmentUtils.ScheduledShipmentLoadBuilder.newInstance();
     builder.setResourceId(resource.getId());
 
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticChainElement(element);
-      }
-    }
+    builder.setLogisticChainElement(clientElementOfShipment.get(lspShipment));
 
     int serviceIndex = tour.getTourElements().indexOf(serviceActivity);
     Leg legBeforeService = (Leg) tour.getTourElements().get(serviceIndex - 1);
@@ -151,11 +151,7 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
             LspShipmentUtils.ScheduledShipmentTransportBuilder.newInstance();
     builder.setResourceId(resource.getId());
 
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticChainElement(element);
-      }
-    }
+    builder.setLogisticChainElement(clientElementOfShipment.get(lspShipment));
 
     int serviceIndex = tour.getTourElements().indexOf(serviceActivity);
     Leg legAfterService = (Leg) tour.getTourElements().get(serviceIndex + 1);
@@ -182,15 +178,12 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
   private void addCollectionServiceEventHandler(
           CarrierService carrierService, LspShipment lspShipment, LSPCarrierResource resource) {
 
-    for (LogisticChainElement element : this.resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        CollectionServiceEndEventHandler endHandler =
-                new CollectionServiceEndEventHandler(
-                        carrierService, lspShipment, element, resource);
-        lspShipment.addSimulationTracker(endHandler);
-        break;
-      }
-    }
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    CollectionServiceEndEventHandler endHandler =
+            new CollectionServiceEndEventHandler(
+                    carrierService, lspShipment, element, resource);
+    lspShipment.addSimulationTracker(endHandler);
+    this.resource.getEventDispatcher().register(endHandler);
   }
 
   private void addCollectionTourEndEventHandler(
@@ -198,15 +191,12 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
           LspShipment lspShipment,
           LSPCarrierResource resource,
           Tour tour) {
-    for (LogisticChainElement element : this.resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        LSPTourEndEventHandler handler =
-                new LSPTourEndEventHandler(
-                        lspShipment, carrierService, element, resource, tour);
-        lspShipment.addSimulationTracker(handler);
-        break;
-      }
-    }
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    LSPTourEndEventHandler handler =
+            new LSPTourEndEventHandler(
+                    lspShipment, carrierService, element, resource, tour);
+    lspShipment.addSimulationTracker(handler);
+    this.resource.getEventDispatcher().register(handler);
   }
 
   private void addShipmentUnloadElement(LspShipment lspShipment, Tour tour) {
@@ -214,11 +204,7 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
     LspShipmentUtils.ScheduledShipmentUnloadBuilder builder =
             LspShipmentUtils.ScheduledShipmentUnloadBuilder.newInstance();
     builder.setResourceId(resource.getId());
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticsChainElement(element);
-      }
-    }
+    builder.setLogisticsChainElement(clientElementOfShipment.get(lspShipment));
     Leg lastLeg = (Leg) tour.getTourElements().getLast();
     double startTime = lastLeg.getExpectedDepartureTime() + lastLeg.getExpectedTransportTime();
     builder.setStartTime(startTime);
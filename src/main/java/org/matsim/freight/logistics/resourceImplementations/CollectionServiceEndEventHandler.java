@@ -130,6 +130,11 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
     this.lspShipment = pointer;
   }
 
+  @Override
+  public boolean isRegisteredAtEventsManager() {
+    return false; // events are handed over by the CarrierEventDispatcher of the resource
+  }
+
   @Override
   public void notifyAfterMobsim(AfterMobsimEvent event) {}
 }
@@ -35,12 +35,15 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
   private final Carrier carrier;
   private final Collection<LogisticChainElement> clientElements;
   private final DistributionCarrierScheduler distributionHandler;
+  private final CarrierEventDispatcher eventDispatcher;
 
   DistributionCarrierResource(DistributionCarrierResourceBuilder builder) {
     super(builder.id);
     this.distributionHandler = builder.distributionHandler;
     this.clientElements = builder.clientElements;
     this.carrier = builder.carrier;
+    this.eventDispatcher = new CarrierEventDispatcher(this);
+    this.addSimulationTracker(eventDispatcher);
   }
 
   @Override
@@ -77,7 +80,16 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
     distributionHandler.scheduleShipments(lspPlan, this, bufferTime);
   }
 
+  @Override
+  public boolean isSchedulingThreadSafe() {
+    return true;
+  }
+
   public Carrier getCarrier() {
     return carrier;
   }
+
+  /*package-private*/ CarrierEventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
 }
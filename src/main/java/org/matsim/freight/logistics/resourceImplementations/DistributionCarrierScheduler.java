@@ -46,6 +46,10 @@ import org.matsim.vehicles.VehicleType;
  * loaded into a waiting distribution vehicle in the order of their arrival at the depot. Once this
  * vehicle is full, the tour for this single one is planned by jsprit. All vehicles are thus filled
  * and scheduled consecutively.
+ *
+ * <p>If the carrier uses {@link LSPUtils.LogicOfVrp#shipmentBased}, there is instead only one VRP
+ * with all shipments and all vehicles of the carrier, and jsprit decides which shipments go into
+ * which tour.
  */
 /*package-private*/ class DistributionCarrierScheduler extends LSPResourceScheduler {
 
@@ -53,6 +57,7 @@ import org.matsim.vehicles.VehicleType;
 
   private Carrier carrier;
   private DistributionCarrierResource resource;
+  private CarrierPlan previousPlan;
   private int carrierCnt = 1;
   private final Scenario scenario;
 
@@ -72,20 +77,74 @@ import org.matsim.vehicles.VehicleType;
     if (resource.getClass() == DistributionCarrierResource.class) {
       this.resource = (DistributionCarrierResource) resource;
       this.carrier = this.resource.getCarrier();
+      this.previousPlan = this.carrier.getSelectedPlan(); // may be used as start for jsprit
       this.carrier.getServices().clear();
       this.carrier.getShipments().clear();
       this.carrier.getPlans().clear();
+      this.resource.getEventDispatcher().clear(LSPResourceScheduler::detachSimulationTracker);
     }
   }
 
   @Override
   protected void scheduleResource() {
+    switch (CarrierSchedulerUtils.getVrpLogic(carrier)) {
+      case serviceBased -> scheduleWithAuxiliaryCarriers();
+      case shipmentBased -> scheduleWithOneVrp();
+      default ->
+          throw new IllegalStateException(
+              "Unexpected value: " + CarrierSchedulerUtils.getVrpLogic(carrier));
+    }
+  }
+
+  /**
+   * Builds one VRP with all shipments and all vehicles of the carrier and solves it with one jsprit
+   * run. The shipments are picked up at the depot; they can be picked up once they are available
+   * there.
+   *
+   * @throws IllegalStateException if jsprit leaves shipments unassigned, e.g. because they cannot
+   *     be delivered within their time window. They could neither get plan elements of this
+   *     resource nor be handed over to the next element.
+   */
+  private void scheduleWithOneVrp() {
+    for (LspShipment lspShipment : lspShipmentsToSchedule) {
+      CarrierShipment carrierShipment = convertToCarrierShipment(lspShipment);
+      carrier.getShipments().put(carrierShipment.getId(), carrierShipment);
+    }
+    CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario, previousPlan);
+    previousPlan = null;
+
+    Set<Id<CarrierShipment>> assignedShipmentIds = new HashSet<>();
+    for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+      for (TourElement element : scheduledTour.getTour().getTourElements()) {
+        if (element instanceof Tour.Delivery deliveryActivity) {
+          assignedShipmentIds.add(deliveryActivity.getShipment().getId());
+        }
+      }
+    }
+    List<Id<CarrierShipment>> unassignedShipmentIds = new ArrayList<>();
+    for (CarrierShipment carrierShipment : carrier.getShipments().values()) {
+      if (!assignedShipmentIds.contains(carrierShipment.getId())) {
+        unassignedShipmentIds.add(carrierShipment.getId());
+      }
+    }
+    if (!unassignedShipmentIds.isEmpty()) {
+      throw new IllegalStateException(
+          "Carrier " + carrier.getId() + " could not schedule the shipments " + unassignedShipmentIds
+              + "; jsprit left them unassigned.");
+    }
+  }
+
+  /**
+   * Loads the shipments into the vehicle in the order of their arrival at the depot. Once the
+   * vehicle is full, a VRP for this single vehicle is solved with the help of an auxiliary carrier.
+   */
+  private void scheduleWithAuxiliaryCarriers() {
     int load = 0;
     double cumulatedLoadingTime = 0;
     double availabilityTimeOfLastShipment = 0;
     ArrayList<LspShipment> copyOfAssignedShipments = new ArrayList<>(lspShipmentsToSchedule);
     ArrayList<LspShipment> shipmentsInCurrentTour = new ArrayList<>();
-    List<CarrierPlan> scheduledPlans = new LinkedList<>();
+    List<Carrier> auxiliaryCarriers = new ArrayList<>();
 
     for (LspShipment lspShipment : copyOfAssignedShipments) {
       // TODO KMT: Verstehe es nur mäßig, was er hier mit den Fahrzeugtypen macht. Er nimmt einfach
@@ -94,18 +153,8 @@ import org.matsim.vehicles.VehicleType;
       VehicleType vehicleType = ResourceImplementationUtils.getVehicleTypeCollection(carrier).iterator().next();
       if ((load + lspShipment.getSize()) > vehicleType.getCapacity().getOther().intValue()) {
         load = 0;
-        Carrier auxiliaryCarrier =
-                CarrierSchedulerUtils.solveVrpWithJsprit(
-                        createAuxiliaryCarrier(shipmentsInCurrentTour, availabilityTimeOfLastShipment + cumulatedLoadingTime),
-                        scenario);
-        scheduledPlans.add(auxiliaryCarrier.getSelectedPlan());
-        var vrpLogic = CarrierSchedulerUtils.getVrpLogic(carrier);
-        switch (vrpLogic) {
-          case serviceBased -> { carrier.getServices().putAll(auxiliaryCarrier.getServices()); }
-          case shipmentBased -> { carrier.getShipments().putAll(auxiliaryCarrier.getShipments()); }
-          default -> throw new IllegalStateException("Unexpected value: " + vrpLogic);
-        }
-
+        auxiliaryCarriers.add(
+                createAuxiliaryCarrier(shipmentsInCurrentTour, availabilityTimeOfLastShipment + cumulatedLoadingTime));
         cumulatedLoadingTime = 0;
         shipmentsInCurrentTour.clear();
       }
@@ -116,22 +165,28 @@ import org.matsim.vehicles.VehicleType;
     }
 
     if (!shipmentsInCurrentTour.isEmpty()) {
-      Carrier auxiliaryCarrier =
-              CarrierSchedulerUtils.solveVrpWithJsprit(
-                      createAuxiliaryCarrier(shipmentsInCurrentTour, availabilityTimeOfLastShipment + cumulatedLoadingTime),
-                      scenario);
-      scheduledPlans.add(auxiliaryCarrier.getSelectedPlan());
+      auxiliaryCarriers.add(
+              createAuxiliaryCarrier(shipmentsInCurrentTour, availabilityTimeOfLastShipment + cumulatedLoadingTime));
+      shipmentsInCurrentTour.clear();
+    }
 
-      switch (CarrierSchedulerUtils.getVrpLogic(carrier)) {
-        case serviceBased -> { carrier.getServices().putAll(auxiliaryCarrier.getServices()); }
-        case shipmentBased -> { carrier.getShipments().putAll(auxiliaryCarrier.getShipments());
-          //TODO: When using shipmentbased, only ONE Vrp should be created and solved. -> No need for the auxiliary carrier(s). KMT'Aug 24
-          //Then we can also just pass all the vehicles over :)
-          //And need the TimeWindows for the Shipments...
-        }
-        default -> throw new IllegalStateException("Unexpected value: " + CarrierSchedulerUtils.getVrpLogic(carrier));
+    // The VRPs of the auxiliary carriers are independent of each other, so they can be solved in
+    // parallel. Each auxiliary carrier gets its solution set as selected plan.
+    if (CarrierSchedulerUtils.isSolveAuxiliaryCarriersInParallel(carrier)) {
+      auxiliaryCarriers.parallelStream()
+              .forEach(auxiliaryCarrier -> CarrierSchedulerUtils.solveVrpWithJsprit(auxiliaryCarrier, scenario));
+    } else {
+      for (Carrier auxiliaryCarrier : auxiliaryCarriers) {
+        CarrierSchedulerUtils.solveVrpWithJsprit(auxiliaryCarrier, scenario);
       }
-      shipmentsInCurrentTour.clear();
+    }
+
+    // Merge the results in the order in which the auxiliary carriers were created (and not in the
+    // order in which they were solved), so that unifyTourIds() gives the same ids in both cases.
+    List<CarrierPlan> scheduledPlans = new LinkedList<>();
+    for (Carrier auxiliaryCarrier : auxiliaryCarriers) {
+      scheduledPlans.add(auxiliaryCarrier.getSelectedPlan());
+      carrier.getServices().putAll(auxiliaryCarrier.getServices());
     }
 
     CarrierPlan plan = new CarrierPlan(carrier, unifyTourIds(scheduledPlans));
@@ -206,11 +261,17 @@ import org.matsim.vehicles.VehicleType;
    */
   private CarrierShipment convertToCarrierShipment(LspShipment lspShipment) {
     Id<CarrierShipment> serviceId = Id.create(lspShipment.getId().toString(), CarrierShipment.class);
-    CarrierShipment carrierShipment = CarrierShipment.Builder.newInstance(serviceId, lspShipment.getFrom(), lspShipment.getTo(), lspShipment.getSize())
-            //TODO TimeWindows are not set. This seems to be a problem. KMT'Aug'24
-            //If added here, we also need to decide what happens, if the vehicles StartTime (plus TT) is > TimeWindowEnd ....
-            .setDeliveryServiceTime(lspShipment.getDeliveryServiceTime())
-            .build();
+    // The shipment is picked up at the depot, once it is available there. Loading takes as long as
+    // unloading; this is the same assumption as for the (service based) auxiliary carriers.
+    CarrierShipment.Builder builder = CarrierShipment.Builder.newInstance(serviceId, resource.getStartLinkId(), lspShipment.getTo(), lspShipment.getSize())
+            .setPickupTimeWindow(TimeWindow.newInstance(LspShipmentUtils.getTimeOfLspShipment(lspShipment), Integer.MAX_VALUE))
+            .setPickupServiceTime(lspShipment.getDeliveryServiceTime())
+            .setDeliveryServiceTime(lspShipment.getDeliveryServiceTime());
+    // Shipments that cannot be delivered within their time window are left unassigned by jsprit.
+    if (lspShipment.getDeliveryTimeWindow() != null) {
+      builder.setDeliveryTimeWindow(lspShipment.getDeliveryTimeWindow());
+    }
+    CarrierShipment carrierShipment = builder.build();
     //ensure that the ids of the lspShipment and the carrierShipment are the same. This is needed for updating the LSPShipmentPlan
     if (! Objects.equals(lspShipment.getId().toString(), carrierShipment.getId().toString())) {
       log.error("Id of LspShipment: {} and CarrierService: {} do not match", lspShipment.getId().toString(), carrierShipment.getId().toString(),
@@ -231,8 +292,9 @@ import org.matsim.vehicles.VehicleType;
             for (TourElement element : tour.getTourElements()) {
               if (element instanceof Tour.ServiceActivity serviceActivity) {
                 if (Objects.equals(lspShipment.getId().toString(), serviceActivity.getService().getId().toString())) {
-                  addShipmentLoadElement(lspShipment, tour);
-                  addShipmentTransportElement(lspShipment, tour, serviceActivity);
+                  double startTimeOfTransport = getStartTimeOfTour(tour);
+                  addShipmentLoadElement(lspShipment, startTimeOfTransport - getCumulatedServiceDuration(tour), startTimeOfTransport);
+                  addShipmentTransportElement(lspShipment, tour, serviceActivity, startTimeOfTransport);
                   addShipmentUnloadElement(lspShipment, serviceActivity);
                   addDistributionTourStartEventHandler(serviceActivity, lspShipment, resource, tour);
                   addDistributionServiceEventHandler(serviceActivity, lspShipment, resource);
@@ -241,12 +303,21 @@ import org.matsim.vehicles.VehicleType;
             }
           }
           case shipmentBased -> {
-            //TODO needs to get fixed. KMT'Aug'24
+            // The shipment is loaded at its pickup activity, and not necessarily at the start of the
+            // tour: jsprit may pick up shipments that become available later during the tour.
+            Tour.Pickup pickupActivity = null;
             for (TourElement element : tour.getTourElements()) {
+              if (element instanceof Tour.Pickup pickup
+                      && Objects.equals(lspShipment.getId().toString(), pickup.getShipment().getId().toString())) {
+                pickupActivity = pickup;
+              }
               if (element instanceof Tour.Delivery deliveryActivity) {
                 if (Objects.equals(lspShipment.getId().toString(), deliveryActivity.getShipment().getId().toString())) {
-                  addShipmentLoadElement(lspShipment, tour);
-                  addShipmentTransportElement(lspShipment, tour, deliveryActivity);
+                  Assert.isTrue(pickupActivity != null, "shipment " + lspShipment.getId() + " is delivered before it is picked up");
+                  Leg legAfterPickup = (Leg) tour.getTourElements().get(tour.getTourElements().indexOf(pickupActivity) + 1);
+                  double endTimeOfLoading = legAfterPickup.getExpectedDepartureTime();
+                  addShipmentLoadElement(lspShipment, endTimeOfLoading - pickupActivity.getDuration(), endTimeOfLoading);
+                  addShipmentTransportElement(lspShipment, tour, deliveryActivity, endTimeOfLoading);
                   addShipmentUnloadElement(lspShipment, deliveryActivity);
                   addDistributionTourStartEventHandler(deliveryActivity, lspShipment, resource, tour);
                   addDistributionServiceEventHandler(deliveryActivity, lspShipment, resource);
@@ -262,28 +333,36 @@ import org.matsim.vehicles.VehicleType;
     }
   }
 
-  private void addShipmentLoadElement(LspShipment lspShipment, Tour tour) {
-    LspShipmentUtils.ScheduledShipmentLoadBuilder builder =
-            LspShipmentUtils.ScheduledShipmentLoadBuilder.newInstance();
-    builder.setResourceId(resource.getId());
-
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticChainElement(element);
-      }
-    }
-
+  /** The departure of the first leg of the tour, i.e. the end of loading at the depot. */
+  private static double getStartTimeOfTour(Tour tour) {
     int startIndex = tour.getTourElements().indexOf(tour.getTourElements().indexOf(tour.getStart()));
     Leg legAfterStart = (Leg) tour.getTourElements().get(startIndex + 1);
-    double startTimeOfTransport = legAfterStart.getExpectedDepartureTime();
+    return legAfterStart.getExpectedDepartureTime();
+  }
+
+  /**
+   * In a service based tour, all shipments are loaded at the depot before the tour starts; loading
+   * takes as long as the unloading of all services of the tour.
+   */
+  private static double getCumulatedServiceDuration(Tour tour) {
     double cumulatedLoadingTime = 0;
     for (TourElement element : tour.getTourElements()) {
       if (element instanceof Tour.ServiceActivity activity) {
         cumulatedLoadingTime = cumulatedLoadingTime + activity.getDuration();
       }
     }
-    builder.setStartTime(startTimeOfTransport - cumulatedLoadingTime);
-    builder.setEndTime(startTimeOfTransport);
+    return cumulatedLoadingTime;
+  }
+
+  private void addShipmentLoadElement(LspShipment lspShipment, double startTime, double endTime) {
+    LspShipmentUtils.ScheduledShipmentLoadBuilder builder =
+            LspShipmentUtils.ScheduledShipmentLoadBuilder.newInstance();
+    builder.setResourceId(resource.getId());
+
+    builder.setLogisticChainElement(clientElementOfShipment.get(lspShipment));
+
+    builder.setStartTime(startTime);
+    builder.setEndTime(endTime);
 
     LspShipmentPlanElement load = builder.build();
     String idString =
@@ -294,23 +373,16 @@ import org.matsim.vehicles.VehicleType;
   }
 
   private void addShipmentTransportElement(
-    LspShipment lspShipment, Tour tour, Tour.TourActivity tourActivity) {
+    LspShipment lspShipment, Tour tour, Tour.TourActivity tourActivity, double startTimeOfTransport) {
 
     LspShipmentUtils.ScheduledShipmentTransportBuilder builder =
             LspShipmentUtils.ScheduledShipmentTransportBuilder.newInstance();
     builder.setResourceId(resource.getId());
 
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticChainElement(element);
-      }
-    }
+    builder.setLogisticChainElement(clientElementOfShipment.get(lspShipment));
 
-    int startIndex = tour.getTourElements().indexOf(tour.getTourElements().indexOf(tour.getStart()));
-    final Leg legAfterStart = (Leg) tour.getTourElements().get(startIndex + 1);
     final int serviceIndex = tour.getTourElements().indexOf(tourActivity);
     final Leg legBeforeService = (Leg) tour.getTourElements().get(serviceIndex - 1);
-    final double startTimeOfTransport = legAfterStart.getExpectedDepartureTime();
     final double endTimeOfTransport =
             legBeforeService.getExpectedTransportTime() + legBeforeService.getExpectedDepartureTime();
     Assert.isTrue(
@@ -350,11 +422,7 @@ import org.matsim.vehicles.VehicleType;
             LspShipmentUtils.ScheduledShipmentUnloadBuilder.newInstance();
     builder.setResourceId(resource.getId());
 
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(tuple)) {
-        builder.setLogisticsChainElement(element);
-      }
-    }
+    builder.setLogisticsChainElement(clientElementOfShipment.get(tuple));
 
     final double startTime = tourActivity.getExpectedArrival();
     final double endTime = startTime + tourActivity.getDuration();
@@ -408,23 +476,11 @@ import org.matsim.vehicles.VehicleType;
     auxiliaryCarrier.getCarrierCapabilities().getCarrierVehicles().put(cv.getId(), cv);
     auxiliaryCarrier.getCarrierCapabilities().setFleetSize(FleetSize.FINITE);
 
-    switch (CarrierSchedulerUtils.getVrpLogic(carrier)) {
-      case serviceBased -> {
-        for (LspShipment lspShipment : shipmentsInCurrentTour) {
-          CarrierService carrierService = convertToCarrierService(lspShipment);
-          auxiliaryCarrier.getServices().put(carrierService.getId(), carrierService);
-        }
-      }
-      case shipmentBased -> {
-        for (LspShipment lspShipment : shipmentsInCurrentTour) {
-          CarrierShipment carrierShipment = convertToCarrierShipment(lspShipment);
-          auxiliaryCarrier.getShipments().put(carrierShipment.getId(), carrierShipment);
-        }
-      }
-      default -> throw new IllegalStateException("Unexpected value: " + CarrierSchedulerUtils.getVrpLogic(carrier));
+    for (LspShipment lspShipment : shipmentsInCurrentTour) {
+      CarrierService carrierService = convertToCarrierService(lspShipment);
+      auxiliaryCarrier.getServices().put(carrierService.getId(), carrierService);
     }
 
-
     return auxiliaryCarrier;
   }
 
@@ -433,23 +489,20 @@ import org.matsim.vehicles.VehicleType;
           LspShipment lspShipment,
           LSPCarrierResource resource) {
 
-    for (LogisticChainElement element : this.resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        DistributionServiceStartEventHandler handler;
-        switch (tourActivity) {
-          case Tour.ServiceActivity serviceActivity-> {
-            handler = new DistributionServiceStartEventHandler(serviceActivity.getService(), lspShipment, element, resource, null);
-          }
-          case Tour.ShipmentBasedActivity shipmentBasedActivity-> {
-            handler = new DistributionServiceStartEventHandler(null, lspShipment, element, resource, shipmentBasedActivity.getShipment());
-          }
-          default -> throw new IllegalStateException("Unexpected value: " + tourActivity);
-        }
-
-        lspShipment.addSimulationTracker(handler);
-        break;
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    DistributionServiceStartEventHandler handler;
+    switch (tourActivity) {
+      case Tour.ServiceActivity serviceActivity-> {
+        handler = new DistributionServiceStartEventHandler(serviceActivity.getService(), lspShipment, element, resource, null);
+      }
+      case Tour.ShipmentBasedActivity shipmentBasedActivity-> {
+        handler = new DistributionServiceStartEventHandler(null, lspShipment, element, resource, shipmentBasedActivity.getShipment());
       }
+      default -> throw new IllegalStateException("Unexpected value: " + tourActivity);
     }
+
+    lspShipment.addSimulationTracker(handler);
+    this.resource.getEventDispatcher().register(handler);
   }
 
   private void addDistributionTourStartEventHandler(
@@ -458,23 +511,20 @@ import org.matsim.vehicles.VehicleType;
           LSPCarrierResource resource,
           Tour tour) {
 
-    for (LogisticChainElement element : this.resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        LSPTourStartEventHandler handler;
-        switch (tourActivity) {
-          case Tour.ServiceActivity serviceActivity-> {
-            handler = new LSPTourStartEventHandler(lspShipment, serviceActivity.getService(), element, resource, tour, null);
-          }
-          case Tour.ShipmentBasedActivity shipmentBasedActivity-> {
-            handler = new LSPTourStartEventHandler(lspShipment, null , element, resource, tour, shipmentBasedActivity.getShipment());
-          }
-          default -> throw new IllegalStateException("Unexpected value: " + tourActivity);
-        }
-
-        lspShipment.addSimulationTracker(handler);
-        break;
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    LSPTourStartEventHandler handler;
+    switch (tourActivity) {
+      case Tour.ServiceActivity serviceActivity-> {
+        handler = new LSPTourStartEventHandler(lspShipment, serviceActivity.getService(), element, resource, tour, null);
       }
+      case Tour.ShipmentBasedActivity shipmentBasedActivity-> {
+        handler = new LSPTourStartEventHandler(lspShipment, null , element, resource, tour, shipmentBasedActivity.getShipment());
+      }
+      default -> throw new IllegalStateException("Unexpected value: " + tourActivity);
     }
+
+    lspShipment.addSimulationTracker(handler);
+    this.resource.getEventDispatcher().register(handler);
   }
 
 
@@ -165,11 +165,20 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
     return resource;
   }
 
+  /*package-private*/ CarrierShipment getCarrierShipment() {
+    return carrierShipment;
+  }
+
   @Override
   public void setEmbeddingContainer(LspShipment pointer) {
     this.lspShipment = pointer;
   }
 
+  @Override
+  public boolean isRegisteredAtEventsManager() {
+    return false; // events are handed over by the CarrierEventDispatcher of the resource
+  }
+
   @Override
   public void notifyAfterMobsim(AfterMobsimEvent event) {}
 }
@@ -146,11 +146,20 @@ import org.matsim.freight.logistics.shipment.LspShipmentUtils;
     return resource.getId();
   }
 
+  /*package-private*/ Id<Tour> getTourId() {
+    return tour.getId();
+  }
+
   @Override
   public void setEmbeddingContainer(LspShipment pointer) {
     this.lspShipment = pointer;
   }
 
+  @Override
+  public boolean isRegisteredAtEventsManager() {
+    return false; // events are handed over by the CarrierEventDispatcher of the resource
+  }
+
   @Override
   public void notifyAfterMobsim(AfterMobsimEvent event) {}
 }
\ No newline at end of file
@@ -40,7 +40,6 @@ import org.matsim.freight.logistics.shipment.LspShipmentLeg;
 import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
 import org.matsim.freight.logistics.shipment.LspShipmentUtils;
 
-import java.util.Objects;
 
 /*package-private*/ class LSPTourStartEventHandler
         implements CarrierTourStartEventHandler, LSPSimulationTracker<LspShipment> {
@@ -84,8 +83,9 @@ import java.util.Objects;
               logLoadAndTransport(event);
             }
           }
-          case Tour.ShipmentBasedActivity shipmentBasedActivity -> {
-            if (Objects.equals(shipmentBasedActivity.getShipment().getId().toString(), carrierService.getId().toString())) {
+          case Tour.Delivery delivery -> {
+            // handlers of shipment based tours have no carrierService, but a carrierShipment.
+            if (carrierShipment != null && delivery.getShipment().getId() == carrierShipment.getId()) {
               logLoadAndTransport(event);
             }
           }
@@ -167,8 +167,17 @@ import java.util.Objects;
     return resource.getId();
   }
 
+  /*package-private*/ Id<Tour> getTourId() {
+    return tour.getId();
+  }
+
   @Override
   public void setEmbeddingContainer(LspShipment pointer) {
     this.lspShipment = pointer;
   }
+
+  @Override
+  public boolean isRegisteredAtEventsManager() {
+    return false; // events are handed over by the CarrierEventDispatcher of the resource
+  }
 }
@@ -40,6 +40,7 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
   private final Id<Link> toLinkId;
   private final Collection<LogisticChainElement> clientElements;
   private final MainRunCarrierScheduler mainRunScheduler;
+  private final CarrierEventDispatcher eventDispatcher;
 
   private final ResourceImplementationUtils.VehicleReturn vehicleReturn;
 
@@ -56,6 +57,8 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
       log.warn("Return behaviour was not specified. Using the following setting as default: {}", ResourceImplementationUtils.VehicleReturn.endAtToLink);
       this.vehicleReturn = ResourceImplementationUtils.VehicleReturn.endAtToLink;
     }
+    this.eventDispatcher = new CarrierEventDispatcher(this);
+    this.addSimulationTracker(eventDispatcher);
   }
 
   @Override
@@ -78,6 +81,11 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
     mainRunScheduler.scheduleShipments(lspPlan, this, bufferTime);
   }
 
+  @Override
+  public boolean isSchedulingThreadSafe() {
+    return true;
+  }
+
   public Carrier getCarrier() {
     return carrier;
   }
@@ -85,4 +93,8 @@ import org.matsim.freight.logistics.resourceImplementations.ResourceImplementati
   public ResourceImplementationUtils.VehicleReturn getVehicleReturn() {
     return vehicleReturn;
   }
+
+  /*package-private*/ CarrierEventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
 }
@@ -71,6 +71,7 @@ import org.matsim.vehicles.VehicleType;
       this.carrier.getServices().clear();
       this.carrier.getShipments().clear();
       this.carrier.getPlans().clear();
+      this.resource.getEventDispatcher().clear(LSPResourceScheduler::detachSimulationTracker);
     }
   }
 
@@ -120,11 +121,11 @@ import org.matsim.vehicles.VehicleType;
 
     // TODO: Allgemein: Hier ist alles manuell zusammen gesetzt; es findet KEINE Tourenplanung
     // statt!
-    NetworkBasedTransportCosts.Builder tpcostsBuilder =
-        NetworkBasedTransportCosts.Builder.newInstance(
-            scenario.getNetwork(),
-            ResourceImplementationUtils.getVehicleTypeCollection(resource.getCarrier()));
-    NetworkBasedTransportCosts netbasedTransportcosts = tpcostsBuilder.build();
+    // no tolls for the main run (as before).
+    NetworkBasedTransportCosts netbasedTransportcosts =
+        TransportCostsProvider.getOrCreate(scenario)
+            .getTransportCosts(
+                ResourceImplementationUtils.getVehicleTypeCollection(resource.getCarrier()), false);
     Collection<ScheduledTour> tours = new ArrayList<>();
 
     Tour.Builder tourBuilder = Tour.Builder.newInstance(Id.create(tourIdIndex, Tour.class));
@@ -186,6 +187,7 @@ import org.matsim.vehicles.VehicleType;
     // score plan // Note: Activities are not scored, but they are also NOT scored for the
     // Distribution carrier (as the VRP is currently set up) kmt nov'22
     double score = 0.;
+    LinkAttributeTable linkAttributes = LinkAttributeTable.getOrCreate(scenario);
     for (ScheduledTour scheduledTour : plan.getScheduledTours()) {
       // vehicle fixed costs
       score = score + scheduledTour.getVehicle().getType().getCostInformation().getFixedCosts();
@@ -198,14 +200,13 @@ import org.matsim.vehicles.VehicleType;
           // distance
           NetworkRoute route = (NetworkRoute) leg.getRoute();
           for (Id<Link> linkId : route.getLinkIds()) {
-            distance = distance + scenario.getNetwork().getLinks().get(linkId).getLength();
+            distance = distance + linkAttributes.getLength(linkId);
           }
           if (route.getEndLinkId()
               != route
                   .getStartLinkId()) { // Do not calculate any distance, if start and endpoint are
                                        // identical
-            distance =
-                distance + scenario.getNetwork().getLinks().get(route.getEndLinkId()).getLength();
+            distance = distance + linkAttributes.getLength(route.getEndLinkId());
           }
 
           // travel time (exp.)
@@ -264,11 +265,7 @@ import org.matsim.vehicles.VehicleType;
     LspShipmentUtils.ScheduledShipmentLoadBuilder builder =
         LspShipmentUtils.ScheduledShipmentLoadBuilder.newInstance();
     builder.setResourceId(resource.getId());
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticChainElement(element);
-      }
-    }
+    builder.setLogisticChainElement(clientElementOfShipment.get(lspShipment));
     int startIndex = tour.getTourElements().indexOf(tour.getTourElements().indexOf(tour.getStart()));
     Leg legAfterStart = (Leg) tour.getTourElements().get(startIndex + 1);
     double startTimeOfTransport = legAfterStart.getExpectedDepartureTime();
@@ -295,11 +292,7 @@ import org.matsim.vehicles.VehicleType;
     LspShipmentUtils.ScheduledShipmentTransportBuilder builder =
         LspShipmentUtils.ScheduledShipmentTransportBuilder.newInstance();
     builder.setResourceId(resource.getId());
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticChainElement(element);
-      }
-    }
+    builder.setLogisticChainElement(clientElementOfShipment.get(lspShipment));
     int startIndex = tour.getTourElements().indexOf(tour.getTourElements().indexOf(tour.getStart()));
     Leg legAfterStart = (Leg) tour.getTourElements().get(startIndex + 1);
     double startTimeOfTransport = legAfterStart.getExpectedDepartureTime();
@@ -323,11 +316,7 @@ import org.matsim.vehicles.VehicleType;
     LspShipmentUtils.ScheduledShipmentUnloadBuilder builder =
         LspShipmentUtils.ScheduledShipmentUnloadBuilder.newInstance();
     builder.setResourceId(resource.getId());
-    for (LogisticChainElement element : resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticsChainElement(element);
-      }
-    }
+    builder.setLogisticsChainElement(clientElementOfShipment.get(lspShipment));
     double cumulatedLoadingTime = 0;
     for (TourElement element : tour.getTourElements()) {
       if (element instanceof Tour.ServiceActivity activity) {
@@ -359,14 +348,11 @@ import org.matsim.vehicles.VehicleType;
       LSPCarrierResource resource,
       Tour tour) {
 
-    for (LogisticChainElement element : this.resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        LSPTourStartEventHandler handler =
-            new LSPTourStartEventHandler(lspShipment, carrierService, element, resource, tour, null);
-        lspShipment.addSimulationTracker(handler);
-        break;
-      }
-    }
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    LSPTourStartEventHandler handler =
+        new LSPTourStartEventHandler(lspShipment, carrierService, element, resource, tour, null);
+    lspShipment.addSimulationTracker(handler);
+    this.resource.getEventDispatcher().register(handler);
   }
 
   private void addMainRunTourEndEventHandler(
@@ -374,14 +360,11 @@ import org.matsim.vehicles.VehicleType;
       LspShipment lspShipment,
       LSPCarrierResource resource,
       Tour tour) {
-    for (LogisticChainElement element : this.resource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        LSPTourEndEventHandler handler =
-            new LSPTourEndEventHandler(lspShipment, carrierService, element, resource, tour);
-        lspShipment.addSimulationTracker(handler);
-        break;
-      }
-    }
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    LSPTourEndEventHandler handler =
+        new LSPTourEndEventHandler(lspShipment, carrierService, element, resource, tour);
+    lspShipment.addSimulationTracker(handler);
+    this.resource.getEventDispatcher().register(handler);
   }
 
   private record LSPShipmentCarrierServicePair(LspShipment lspShipment, CarrierService carrierService) {}
@@ -0,0 +1,100 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.AbstractForwardVehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.driver.Driver;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import java.util.Map;
+
+/**
+ * jsprit transport costs that are looked up in the {@link TravelTimeDistanceMatrix} of the vehicle
+ * type. Pairs of locations that are not part of the matrix (and requests without vehicle) are
+ * answered by the given fallback, i.e. by routing on the network.
+ */
+final class MatrixTransportCosts extends AbstractForwardVehicleRoutingTransportCosts {
+
+  private final Map<String, TravelTimeDistanceMatrix> matrixOfVehicleType;
+  private final VehicleRoutingTransportCosts fallback;
+
+  /**
+   * @param matrixOfVehicleType the matrices by (jsprit) vehicle type id
+   * @param fallback the costs for everything the matrices do not know
+   */
+  MatrixTransportCosts(
+      Map<String, TravelTimeDistanceMatrix> matrixOfVehicleType,
+      VehicleRoutingTransportCosts fallback) {
+    this.matrixOfVehicleType = matrixOfVehicleType;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public double getTransportTime(
+      Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+    double travelTime = getMatrixTravelTime(from, to, vehicle);
+    if (Double.isNaN(travelTime)) {
+      return fallback.getTransportTime(from, to, departureTime, driver, vehicle);
+    }
+    return travelTime;
+  }
+
+  @Override
+  public double getTransportCost(
+      Location from, Location to, double departureTime, Driver driver, Vehicle vehicle) {
+    double travelTime = getMatrixTravelTime(from, to, vehicle);
+    double distance = getMatrixDistance(from, to, vehicle);
+    if (Double.isNaN(travelTime) || Double.isNaN(distance)) {
+      return fallback.getTransportCost(from, to, departureTime, driver, vehicle);
+    }
+    VehicleTypeImpl.VehicleCostParams costParams = vehicle.getType().getVehicleCostParams();
+    return costParams.perDistanceUnit * distance + costParams.perTransportTimeUnit * travelTime;
+  }
+
+  @Override
+  public double getDistance(Location from, Location to, double departureTime, Vehicle vehicle) {
+    double distance = getMatrixDistance(from, to, vehicle);
+    if (Double.isNaN(distance)) {
+      return fallback.getDistance(from, to, departureTime, vehicle);
+    }
+    return distance;
+  }
+
+  private double getMatrixTravelTime(Location from, Location to, Vehicle vehicle) {
+    TravelTimeDistanceMatrix matrix = getMatrix(vehicle);
+    return matrix == null ? Double.NaN : matrix.getTravelTime(from.getId(), to.getId());
+  }
+
+  private double getMatrixDistance(Location from, Location to, Vehicle vehicle) {
+    TravelTimeDistanceMatrix matrix = getMatrix(vehicle);
+    return matrix == null ? Double.NaN : matrix.getDistance(from.getId(), to.getId());
+  }
+
+  private TravelTimeDistanceMatrix getMatrix(Vehicle vehicle) {
+    if (vehicle == null) {
+      return null;
+    }
+    return matrixOfVehicleType.get(vehicle.getType().getTypeId());
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.roadpricing.RoadPricingScheme;
+import org.matsim.contrib.roadpricing.RoadPricingSchemeImpl.Cost;
+import org.matsim.contrib.roadpricing.RoadPricingUtils;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.speedy.SpeedyGraph;
+import org.matsim.core.router.speedy.SpeedyGraphBuilder;
+import org.matsim.freight.carriers.CarrierVehicle;
+import org.matsim.freight.carriers.jsprit.NetworkBasedTransportCosts;
+import org.matsim.freight.logistics.FreightLogisticsConfigGroup;
+import org.matsim.freight.logistics.LSP;
+import org.matsim.freight.logistics.LSPCarrierResource;
+import org.matsim.freight.logistics.LSPResource;
+import org.matsim.freight.logistics.LSPUtils;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Provides the {@link NetworkBasedTransportCosts} for the carrier schedulers of one {@link
+ * Scenario}.
+ *
+ * <p>Before, a new {@link NetworkBasedTransportCosts} (including the lookup of the road pricing
+ * scheme) was built for each jsprit run and for each main run tour. Now there is one instance per
+ * set of vehicle types and toll scheme, which is shared by all carriers and tours, so that its
+ * internal caches of least cost paths are reused. {@link NetworkBasedTransportCosts} can be used
+ * from several threads at the same time, so this also holds when the resources or LSPs are
+ * scheduled in parallel.
+ *
+ * <p>The provider is stored as scenario element. Its content is thrown away at the beginning of
+ * each iteration (see {@link org.matsim.freight.logistics.LSPModule}), so that changes of the
+ * network between the iterations are taken into account.
+ *
+ * <p>If {@link FreightLogisticsConfigGroup#getUseTravelTimeDistanceMatrix()} is set, the links of
+ * the depots, hubs and customers of all LSPs are collected at startup (see {@link
+ * #collectMatrixLinks(Scenario)}), and the jsprit runs get their travel times and distances between
+ * these links from a {@link TravelTimeDistanceMatrix} per vehicle type (see {@link
+ * #getRoutingCosts(Collection, boolean)}). The matrices are only calculated again if the link
+ * lengths or free speeds have changed between two iterations. Tours are still routed with the
+ * {@link NetworkBasedTransportCosts}, because the matrix does not know the paths.
+ */
+public final class TransportCostsProvider {
+  private static final Logger log = LogManager.getLogger(TransportCostsProvider.class);
+  private static final String ELEMENT_NAME = "lspTransportCostsProvider";
+
+  /** Each matrix needs 8 bytes per pair of links, i.e. about 72 MB per vehicle type for 3000. */
+  private static final int MAX_NUMBER_OF_MATRIX_LINKS = 3000;
+
+  private final Scenario scenario;
+  private final Map<CostsKey, NetworkBasedTransportCosts> transportCosts =
+      new ConcurrentHashMap<>();
+  private volatile boolean roadPricingSchemeLookedUp = false;
+  private volatile RoadPricingScheme roadPricingScheme = null;
+  private final Map<Id<VehicleType>, TravelTimeDistanceMatrix> matrices = new ConcurrentHashMap<>();
+  private volatile List<Link> matrixLinks = null;
+  private SpeedyGraph graph = null;
+  private long graphNetworkSignature;
+  private volatile Long networkSignature = null;
+  private volatile Long tollSignature = null;
+
+  private TransportCostsProvider(Scenario scenario) {
+    this.scenario = scenario;
+  }
+
+  /**
+   * @return the provider of the scenario; it is created on first use.
+   */
+  static synchronized TransportCostsProvider getOrCreate(Scenario scenario) {
+    Object provider = scenario.getScenarioElement(ELEMENT_NAME);
+    if (provider == null) {
+      provider = new TransportCostsProvider(scenario);
+      scenario.addScenarioElement(ELEMENT_NAME, provider);
+    }
+    return (TransportCostsProvider) provider;
+  }
+
+  /**
+   * Throws away all transport costs (and the road pricing scheme) provided so far for the given
+   * scenario. They are rebuilt on the next request.
+   */
+  public static void reset(Scenario scenario) {
+    if (scenario.getScenarioElement(ELEMENT_NAME) instanceof TransportCostsProvider provider) {
+      provider.transportCosts.clear();
+      provider.roadPricingSchemeLookedUp = false;
+      provider.roadPricingScheme = null;
+      provider.networkSignature = null;
+      provider.tollSignature = null;
+      provider.resetMatricesIfNetworkChanged();
+    }
+  }
+
+  /**
+   * Collects the links of the depots, hubs and customers of all LSPs of the scenario, i.e. the
+   * start and end links of the resources, the links of the carrier vehicles and the from and to
+   * links of the shipments. Between these links, the jsprit costs are then taken from a {@link
+   * TravelTimeDistanceMatrix}. Does nothing if the matrix is not switched on in the {@link
+   * FreightLogisticsConfigGroup}.
+   */
+  public static void collectMatrixLinks(Scenario scenario) {
+    FreightLogisticsConfigGroup logisticsConfigGroup =
+        ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class);
+    if (!logisticsConfigGroup.getUseTravelTimeDistanceMatrix()) {
+      return;
+    }
+    if (scenario.getConfig().network().isTimeVariantNetwork()) {
+      log.warn(
+          "The travel time/distance matrix is not used, because the network is time variant.");
+      return;
+    }
+    Set<Id<Link>> linkIds = new LinkedHashSet<>();
+    for (LSP lsp : LSPUtils.getLSPs(scenario).getLSPs().values()) {
+      for (LSPResource resource : lsp.getResources()) {
+        linkIds.add(resource.getStartLinkId());
+        linkIds.add(resource.getEndLinkId());
+        if (resource instanceof LSPCarrierResource carrierResource) {
+          for (CarrierVehicle vehicle :
+              carrierResource.getCarrier().getCarrierCapabilities().getCarrierVehicles().values()) {
+            linkIds.add(vehicle.getLinkId());
+          }
+        }
+      }
+      for (LspShipment lspShipment : lsp.getLspShipments()) {
+        linkIds.add(lspShipment.getFrom());
+        linkIds.add(lspShipment.getTo());
+      }
+    }
+    List<Link> links = new ArrayList<>();
+    for (Id<Link> linkId : linkIds) {
+      Link link = linkId == null ? null : scenario.getNetwork().getLinks().get(linkId);
+      if (link != null) {
+        links.add(link);
+      }
+    }
+    if (links.size() > MAX_NUMBER_OF_MATRIX_LINKS) {
+      log.warn(
+          "The travel time/distance matrix is not used, because there are {} relevant links, but at most {} are supported.",
+          links.size(),
+          MAX_NUMBER_OF_MATRIX_LINKS);
+      return;
+    }
+    log.info("Using a travel time/distance matrix for {} links.", links.size());
+    TransportCostsProvider provider = getOrCreate(scenario);
+    provider.matrices.clear();
+    provider.matrixLinks = links;
+  }
+
+  /**
+   * @param vehicleTypes the vehicle types the costs are needed for
+   * @param considerTolls whether tolls of the scenario's road pricing scheme (if there is one)
+   *     should be considered
+   * @return the (shared) transport costs for the given vehicle types
+   */
+  NetworkBasedTransportCosts getTransportCosts(
+      Collection<VehicleType> vehicleTypes, boolean considerTolls) {
+    RoadPricingScheme scheme = considerTolls ? getRoadPricingScheme() : null;
+    Set<Id<VehicleType>> vehicleTypeIds =
+        vehicleTypes.stream().map(VehicleType::getId).collect(Collectors.toSet());
+    return transportCosts.computeIfAbsent(
+        new CostsKey(vehicleTypeIds, scheme), key -> build(vehicleTypes, scheme));
+  }
+
+  /**
+   * @param vehicleTypes the vehicle types the costs are needed for
+   * @param considerTolls whether tolls of the scenario's road pricing scheme (if there is one)
+   *     should be considered
+   * @return the costs for solving a VRP with jsprit: the travel times and distances are taken from
+   *     the {@link TravelTimeDistanceMatrix}, if it is switched on and there are no tolls to
+   *     consider. Otherwise, this is the same as {@link #getTransportCosts(Collection, boolean)}.
+   */
+  VehicleRoutingTransportCosts getRoutingCosts(
+      Collection<VehicleType> vehicleTypes, boolean considerTolls) {
+    NetworkBasedTransportCosts networkBasedTransportCosts =
+        getTransportCosts(vehicleTypes, considerTolls);
+    List<Link> links = matrixLinks;
+    if (links == null || (considerTolls && getRoadPricingScheme() != null)) {
+      return networkBasedTransportCosts;
+    }
+    Map<String, TravelTimeDistanceMatrix> matrixOfVehicleType = new HashMap<>();
+    for (VehicleType vehicleType : vehicleTypes) {
+      matrixOfVehicleType.put(
+          vehicleType.getId().toString(),
+          matrices.computeIfAbsent(
+              vehicleType.getId(), id -> calculateMatrix(links, vehicleType)));
+    }
+    return new MatrixTransportCosts(matrixOfVehicleType, networkBasedTransportCosts);
+  }
+
+  private TravelTimeDistanceMatrix calculateMatrix(List<Link> links, VehicleType vehicleType) {
+    log.info(
+        "Calculating the travel time/distance matrix of vehicle type {} for {} links.",
+        vehicleType.getId(),
+        links.size());
+    return TravelTimeDistanceMatrix.calculate(
+        getGraph(), links, vehicleType, scenario.getConfig().global().getNumberOfThreads());
+  }
+
+  private synchronized SpeedyGraph getGraph() {
+    if (graph == null) {
+      graph = SpeedyGraphBuilder.build(scenario.getNetwork());
+      graphNetworkSignature = getNetworkSignature();
+    }
+    return graph;
+  }
+
+  /**
+   * The matrices depend on the link lengths and free speeds only, so they are kept as long as these
+   * do not change.
+   */
+  private synchronized void resetMatricesIfNetworkChanged() {
+    if (graph != null && graphNetworkSignature != getNetworkSignature()) {
+      log.info("The network has changed. The travel time/distance matrices are calculated again.");
+      matrices.clear();
+      graph = null;
+    }
+  }
+
+  /**
+   * @return a hash of the links of the network with their nodes, lengths and free speeds. It is
+   *     computed on first use and then kept until the next {@link #reset(Scenario)}.
+   */
+  long getNetworkSignature() {
+    Long signature = networkSignature;
+    if (signature == null) {
+      signature = computeNetworkSignature();
+      networkSignature = signature;
+    }
+    return signature;
+  }
+
+  /**
+   * @return a hash of the tolls of the scenario's road pricing scheme, 0 if there is none. It is
+   *     computed on first use and then kept until the next {@link #reset(Scenario)}.
+   */
+  long getTollSignature() {
+    Long signature = tollSignature;
+    if (signature == null) {
+      signature = computeTollSignature();
+      tollSignature = signature;
+    }
+    return signature;
+  }
+
+  private long computeNetworkSignature() {
+    long signature = scenario.getNetwork().getNodes().size();
+    for (Link link : scenario.getNetwork().getLinks().values()) {
+      signature = 31 * signature + link.getId().index();
+      signature = 31 * signature + link.getFromNode().getId().index();
+      signature = 31 * signature + link.getToNode().getId().index();
+      signature = 31 * signature + Double.hashCode(link.getLength());
+      signature = 31 * signature + Double.hashCode(link.getFreespeed());
+    }
+    return signature;
+  }
+
+  private long computeTollSignature() {
+    RoadPricingScheme scheme = getRoadPricingScheme();
+    if (scheme == null) {
+      return 0;
+    }
+    long signature = scheme.getType().hashCode();
+    signature = addCostsToSignature(signature, scheme.getTypicalCosts());
+    List<Map.Entry<Id<Link>, List<Cost>>> costsForLinks =
+        new ArrayList<>(scheme.getTypicalCostsForLink().entrySet());
+    costsForLinks.sort(Comparator.comparingInt(entry -> entry.getKey().index()));
+    for (Map.Entry<Id<Link>, List<Cost>> costsForLink : costsForLinks) {
+      signature = 31 * signature + costsForLink.getKey().index();
+      // no costs for the link means that the typical costs apply
+      if (costsForLink.getValue() != null) {
+        signature = addCostsToSignature(signature, costsForLink.getValue());
+      }
+    }
+    return signature;
+  }
+
+  private static long addCostsToSignature(long signature, Iterable<Cost> costs) {
+    for (Cost cost : costs) {
+      signature = 31 * signature + Double.hashCode(cost.startTime);
+      signature = 31 * signature + Double.hashCode(cost.endTime);
+      signature = 31 * signature + Double.hashCode(cost.amount);
+    }
+    return signature;
+  }
+
+  private NetworkBasedTransportCosts build(
+      Collection<VehicleType> vehicleTypes, RoadPricingScheme scheme) {
+    NetworkBasedTransportCosts.Builder builder =
+        NetworkBasedTransportCosts.Builder.newInstance(scenario.getNetwork(), vehicleTypes);
+    if (scheme != null) {
+      builder.setRoadPricingScheme(scheme);
+    }
+    return builder.build();
+  }
+
+  private RoadPricingScheme getRoadPricingScheme() {
+    if (!roadPricingSchemeLookedUp) {
+      synchronized (this) {
+        if (!roadPricingSchemeLookedUp) {
+          try {
+            roadPricingScheme = RoadPricingUtils.getRoadPricingScheme(scenario);
+          } catch (Exception e) {
+            log.info("Was not able getting RoadPricingScheme. Tolls cannot be considered.", e);
+          }
+          if (roadPricingScheme == null) {
+            log.debug("RoadPricingScheme is null. Tolls cannot be considered.");
+          }
+          roadPricingSchemeLookedUp = true;
+        }
+      }
+    }
+    return roadPricingScheme;
+  }
+
+  /** Road pricing schemes do not override equals, so they are compared by identity. */
+  private record CostsKey(Set<Id<VehicleType>> vehicleTypeIds, RoadPricingScheme roadPricingScheme) {}
+}
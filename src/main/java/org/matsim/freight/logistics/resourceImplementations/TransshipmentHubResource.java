@@ -75,7 +75,7 @@ public class TransshipmentHubResource extends LSPDataObject<LSPResource> impleme
     this.transshipmentHubScheduler = builder.getTransshipmentHubScheduler();
     transshipmentHubScheduler.setTranshipmentHub(this);
     TransshipmentHubTourEndEventHandler eventHandler =
-        new TransshipmentHubTourEndEventHandler(this, scenario);
+        new TransshipmentHubTourEndEventHandler(this);
     transshipmentHubScheduler.setTransshipmentHubTourEndEventHandler(eventHandler);
     this.clientElements = builder.getClientElements();
   }
@@ -100,6 +100,11 @@ public class TransshipmentHubResource extends LSPDataObject<LSPResource> impleme
     transshipmentHubScheduler.scheduleShipments(lspPlan, this, bufferTime);
   }
 
+  @Override
+  public boolean isSchedulingThreadSafe() {
+    return true;
+  }
+
   public double getCapacityNeedFixed() {
     return transshipmentHubScheduler.getCapacityNeedFixed();
   }
@@ -22,13 +22,30 @@
 package org.matsim.freight.logistics.resourceImplementations;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.freight.carriers.Carrier;
+import org.matsim.freight.carriers.CarrierService;
+import org.matsim.freight.carriers.ScheduledTour;
+import org.matsim.freight.carriers.Tour;
+import org.matsim.freight.carriers.Tour.ServiceActivity;
+import org.matsim.freight.carriers.Tour.TourElement;
+import org.matsim.freight.logistics.LSPCarrierResource;
 import org.matsim.freight.logistics.LSPResource;
 import org.matsim.freight.logistics.LSPResourceScheduler;
 import org.matsim.freight.logistics.LogisticChainElement;
 import org.matsim.freight.logistics.resourceImplementations.ResourceImplementationUtils.TranshipmentHubSchedulerBuilder;
+import org.matsim.freight.logistics.resourceImplementations.TransshipmentHubTourEndEventHandler.CarrierTour;
+import org.matsim.freight.logistics.resourceImplementations.TransshipmentHubTourEndEventHandler.HubHandling;
+import org.matsim.freight.logistics.resourceImplementations.TransshipmentHubTourEndEventHandler.TourHandling;
+import org.matsim.freight.logistics.resourceImplementations.TransshipmentHubTourEndEventHandler.TransshipmentHubEventHandlerPair;
+import org.matsim.freight.logistics.shipment.LspShipmentLeg;
 import org.matsim.freight.logistics.shipment.LspShipmentPlan;
 import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
 import org.matsim.freight.logistics.shipment.LspShipmentUtils;
@@ -41,6 +58,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
   private final double capacityNeedFixed;
   private TransshipmentHubResource transshipmentHubResource;
   private TransshipmentHubTourEndEventHandler eventHandler;
+  private Map<Id<Carrier>, Carrier> carriersOfIncomingLegs = new LinkedHashMap<>();
 
   TransshipmentHubScheduler(TranshipmentHubSchedulerBuilder builder) {
     this.lspShipmentsToSchedule = new ArrayList<>();
@@ -51,6 +69,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
   @Override
   protected void initializeValues(LSPResource resource) {
     this.transshipmentHubResource = (TransshipmentHubResource) resource;
+    this.carriersOfIncomingLegs = new LinkedHashMap<>();
   }
 
   @Override
@@ -58,6 +77,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
     for (LspShipment lspShipmentToBeAssigned : lspShipmentsToSchedule) {
       updateSchedule(lspShipmentToBeAssigned);
     }
+    createTourHandlings();
   }
 
   @Override
@@ -77,11 +97,7 @@ import org.matsim.freight.logistics.shipment.LspShipment;
     builder.setStartTime(LspShipmentUtils.getTimeOfLspShipment(lspShipment));
     builder.setEndTime(LspShipmentUtils.getTimeOfLspShipment(lspShipment) + capacityNeedFixed + capacityNeedLinear * lspShipment.getSize());
     builder.setResourceId(transshipmentHubResource.getId());
-    for (LogisticChainElement element : transshipmentHubResource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        builder.setLogisticsChainElement(element);
-      }
-    }
+    builder.setLogisticsChainElement(clientElementOfShipment.get(lspShipment));
     LspShipmentPlanElement handle = builder.build();
 
     String idString =
@@ -94,14 +110,104 @@ import org.matsim.freight.logistics.shipment.LspShipment;
   }
 
   private void addShipmentToEventHandler(LspShipment lspShipment) {
-    for (LogisticChainElement element : transshipmentHubResource.getClientElements()) {
-      if (element.getIncomingShipments().getLspShipmentsWTime().contains(lspShipment)) {
-        LspShipmentPlan lspShipmentPlan =
-            LspShipmentUtils.getOrCreateShipmentPlan(lspPlan, lspShipment.getId());
-        eventHandler.addShipment(lspShipment, element, lspShipmentPlan);
-        break;
+    LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+    LspShipmentPlan lspShipmentPlan =
+        LspShipmentUtils.getOrCreateShipmentPlan(lspPlan, lspShipment.getId());
+    eventHandler.addShipment(lspShipment, element, lspShipmentPlan);
+
+    // remember the carriers that bring the shipment to the hub:
+    for (LspShipmentPlanElement planElement : lspShipmentPlan.getPlanElements().values()) {
+      if (planElement instanceof LspShipmentLeg transport
+          && transport.getLogisticChainElement().getNextElement() == element
+          && transport.getLogisticChainElement().getResource()
+              instanceof LSPCarrierResource carrierResource) {
+        Carrier carrier = carrierResource.getCarrier();
+        carriersOfIncomingLegs.putIfAbsent(carrier.getId(), carrier);
+      }
+    }
+  }
+
+  /**
+   * Precomputes for each tour that brings shipments to this hub, which shipments get handled when
+   * the tour ends, and when. All of this is known once the carriers of the incoming legs are
+   * scheduled, i.e. before this hub. The {@link TransshipmentHubTourEndEventHandler} then only
+   * needs to look up the ending tour.
+   */
+  private void createTourHandlings() {
+    Map<CarrierService, TransshipmentHubEventHandlerPair> servicesWaitedFor =
+        eventHandler.getServicesWaitedFor();
+    Map<CarrierTour, TourHandling> tourHandlings = new HashMap<>();
+    for (Carrier carrier : carriersOfIncomingLegs.values()) {
+      if (carrier.getSelectedPlan() == null) {
+        continue;
+      }
+      ResourceImplementationUtils.CARRIER_TYPE carrierType =
+          ResourceImplementationUtils.getCarrierType(carrier);
+      for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+        Tour tour = scheduledTour.getTour();
+        TourHandling tourHandling =
+            switch (carrierType) {
+              case mainRunCarrier -> createMainRunTourHandling(tour, servicesWaitedFor);
+              case collectionCarrier -> createCollectionTourHandling(tour, servicesWaitedFor);
+              default -> null;
+            };
+        if (tourHandling != null && !tourHandling.hubHandlings().isEmpty()) {
+          tourHandlings.put(new CarrierTour(carrier.getId(), tour.getId()), tourHandling);
+        }
+      }
+    }
+    eventHandler.setTourHandlings(tourHandlings);
+  }
+
+  private TourHandling createMainRunTourHandling(
+      Tour tour, Map<CarrierService, TransshipmentHubEventHandlerPair> servicesWaitedFor) {
+    Id<Link> hubLinkId = transshipmentHubResource.getStartLinkId();
+    boolean allServicesWaitedFor = true;
+    boolean allServicesAtTourEnd = true;
+    for (TourElement tourElement : tour.getTourElements()) {
+      if (tourElement instanceof ServiceActivity serviceActivity) {
+        allServicesWaitedFor &= servicesWaitedFor.containsKey(serviceActivity.getService());
+        allServicesAtTourEnd &= serviceActivity.getLocation() == tour.getEndLinkId();
       }
     }
+    if (!allServicesWaitedFor || !allServicesAtTourEnd || tour.getStartLinkId() == hubLinkId) {
+      return null;
+    }
+    List<HubHandling> hubHandlings = new ArrayList<>();
+    for (TourElement tourElement : tour.getTourElements()) {
+      if (tourElement instanceof ServiceActivity serviceActivity
+          && serviceActivity.getLocation() == hubLinkId) {
+        hubHandlings.add(createHubHandling(servicesWaitedFor.get(serviceActivity.getService())));
+      }
+    }
+    // NOTE: Do NOT add time vor unloading all goods, because they are included for the main run
+    // (Service activity at end of tour)
+    return new TourHandling(0., hubHandlings);
+  }
+
+  private TourHandling createCollectionTourHandling(
+      Tour tour, Map<CarrierService, TransshipmentHubEventHandlerPair> servicesWaitedFor) {
+    if (tour.getEndLinkId() != transshipmentHubResource.getStartLinkId()) {
+      return null;
+    }
+    double totalUnloadingTime = 0.;
+    List<HubHandling> hubHandlings = new ArrayList<>();
+    for (TourElement tourElement : tour.getTourElements()) {
+      if (tourElement instanceof ServiceActivity serviceActivity) {
+        totalUnloadingTime += serviceActivity.getDuration();
+        TransshipmentHubEventHandlerPair pair = servicesWaitedFor.get(serviceActivity.getService());
+        if (pair != null) {
+          hubHandlings.add(createHubHandling(pair));
+        }
+      }
+    }
+    return new TourHandling(totalUnloadingTime, hubHandlings);
+  }
+
+  private HubHandling createHubHandling(TransshipmentHubEventHandlerPair pair) {
+    double expHandlingDuration =
+        capacityNeedFixed + capacityNeedLinear * pair.lspShipment.getSize();
+    return new HubHandling(pair.lspShipment, pair.logisticChainElement, expHandlingDuration);
   }
 
   public double getCapacityNeedLinear() {
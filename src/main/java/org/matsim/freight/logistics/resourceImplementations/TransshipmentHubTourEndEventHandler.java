@@ -21,18 +21,17 @@
 
 package org.matsim.freight.logistics.resourceImplementations;
 
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.controler.events.AfterMobsimEvent;
 import org.matsim.core.controler.listener.AfterMobsimListener;
-import org.matsim.freight.carriers.*;
-import org.matsim.freight.carriers.Tour.ServiceActivity;
-import org.matsim.freight.carriers.Tour.TourElement;
+import org.matsim.freight.carriers.Carrier;
+import org.matsim.freight.carriers.CarrierService;
+import org.matsim.freight.carriers.Tour;
 import org.matsim.freight.carriers.events.CarrierTourEndEvent;
 import org.matsim.freight.carriers.events.eventhandler.CarrierTourEndEventHandler;
 import org.matsim.freight.logistics.LSPResource;
@@ -48,26 +47,23 @@ import org.matsim.freight.logistics.shipment.*;
   //Currently, this is not possible very easily, because of missing injection (of the scenario.)
   //KMT, KN (Jan'24)
 
-  private final Scenario scenario;
   private final HashMap<CarrierService, TransshipmentHubEventHandlerPair> servicesWaitedFor;
   private final TransshipmentHubResource transshipmentHubResource;
   private final Id<LSPResource> resourceId;
   private final Id<Link> linkId;
   private EventsManager eventsManager;
+  private Map<CarrierTour, TourHandling> tourHandlings = new HashMap<>();
 
   /**
    * This is a TourEndEvent-Handler, doing some stuff regarding the {@link
    * TransshipmentHubResource}.
    *
    * @param transshipmentHubResource hub
-   * @param scenario The scenario. Is used to get the Carrier(s).
    */
-  TransshipmentHubTourEndEventHandler(
-      TransshipmentHubResource transshipmentHubResource, Scenario scenario) {
+  TransshipmentHubTourEndEventHandler(TransshipmentHubResource transshipmentHubResource) {
     this.transshipmentHubResource = transshipmentHubResource;
     this.linkId = transshipmentHubResource.getEndLinkId();
     this.resourceId = transshipmentHubResource.getId();
-    this.scenario = scenario;
     this.servicesWaitedFor = new HashMap<>();
     this.transshipmentHubResource.addSimulationTracker(this);
   }
@@ -85,6 +81,7 @@ import org.matsim.freight.logistics.shipment.*;
     servicesWaitedFor
         .clear(); // cleanup after Mobsim ends (instead of doing it in reset() = before Mobsim
                   // starts.) kmt oct'22
+    tourHandlings = new HashMap<>();
   }
 
   @Override
@@ -109,102 +106,44 @@ import org.matsim.freight.logistics.shipment.*;
     }
   }
 
-  @Override
-  public void handleEvent(CarrierTourEndEvent event) {
-    Tour tour = null;
-    Carrier carrier = CarriersUtils.getCarriers(scenario).getCarriers().get(event.getCarrierId());
-    Collection<ScheduledTour> scheduledTours = carrier.getSelectedPlan().getScheduledTours();
-    for (ScheduledTour scheduledTour : scheduledTours) {
-      if (scheduledTour.getTour().getId() == event.getTourId()) {
-        tour = scheduledTour.getTour();
-        break;
-      }
-    }
-    if ((event.getLinkId() == this.linkId)) {
-      assert tour != null;
-
-      if (ResourceImplementationUtils.getCarrierType(carrier)
-          == ResourceImplementationUtils.CARRIER_TYPE.mainRunCarrier) {
-        if (allShipmentsOfTourEndInOnePoint(tour)) {
-          for (TourElement tourElement : tour.getTourElements()) {
-            if (tourElement instanceof ServiceActivity serviceActivity) {
-              if (serviceActivity.getLocation() == transshipmentHubResource.getStartLinkId()
-                  && allServicesAreInOnePoint(tour)
-                  && (tour.getStartLinkId() != transshipmentHubResource.getStartLinkId())) {
-
-                final CarrierService carrierService = serviceActivity.getService();
-                final LspShipment lspShipment = servicesWaitedFor.get(carrierService).lspShipment;
-                // NOTE: Do NOT add time vor unloading all goods, because they are included for the
-                // main run (Service activity at end of tour)
-                final double expHandlingDuration =
-                    transshipmentHubResource.getCapacityNeedFixed()
-                        + (transshipmentHubResource.getCapacityNeedLinear()
-                            * lspShipment.getSize());
-                final double startTime = event.getTime();
-                final double endTime = startTime + expHandlingDuration;
-
-                logHandlingInHub(serviceActivity.getService(), startTime, endTime);
-                throwHandlingEvent(event, lspShipment, expHandlingDuration);
-              }
-            }
-          }
-        }
-      } else if ((ResourceImplementationUtils.getCarrierType(carrier)
-          == ResourceImplementationUtils.CARRIER_TYPE.collectionCarrier)) {
-        for (TourElement tourElement : tour.getTourElements()) {
-          if (tourElement instanceof ServiceActivity serviceActivity) {
-            if (tour.getEndLinkId() == transshipmentHubResource.getStartLinkId()) {
-
-              final CarrierService carrierService = serviceActivity.getService();
-              final LspShipment lspShipment = servicesWaitedFor.get(carrierService).lspShipment;
-
-              // TODO: Adding this here to be more in line with the schedule and have the shipment
-              // log fitting to it.
-              // This does NOT mean, that it really makes sense, because we decided for some
-              // reasons, that the handlingEvent start once the vehicle has arrived.
-              // It may change again, once we have unloading events available.
-              final double expUnloadingTime = getTotalUnloadingTime(tour);
-              final double expHandlingDuration =
-                  transshipmentHubResource.getCapacityNeedFixed()
-                      + (transshipmentHubResource.getCapacityNeedLinear() * lspShipment.getSize());
-              final double startTime = event.getTime() + expUnloadingTime;
-              final double endTime = startTime + expHandlingDuration;
-
-              logHandlingInHub(carrierService, startTime, endTime);
-              throwHandlingEvent(event, lspShipment, expHandlingDuration);
-            }
-          }
-        }
-      }
-    }
+  /**
+   * Sets the handlings of the tours that end in this hub. They are precomputed by the {@link
+   * TransshipmentHubScheduler} whenever the hub gets scheduled, so that the handling of a {@link
+   * CarrierTourEndEvent} does not need to look up the carrier and its tour.
+   */
+  void setTourHandlings(Map<CarrierTour, TourHandling> tourHandlings) {
+    this.tourHandlings = tourHandlings;
   }
 
-  private boolean allShipmentsOfTourEndInOnePoint(Tour tour) {
-    boolean allShipmentsOfTourEndInOnePoint = true;
-    for (TourElement tourElement : tour.getTourElements()) {
-      if (tourElement instanceof ServiceActivity serviceActivity) {
-        if (!servicesWaitedFor.containsKey(serviceActivity.getService())) {
-          return false;
-        }
-      }
-    }
-    return allShipmentsOfTourEndInOnePoint;
+  Map<CarrierTour, TourHandling> getTourHandlings() {
+    return tourHandlings;
   }
 
-  private double getTotalUnloadingTime(Tour tour) {
-    double totalTime = 0;
-    for (TourElement element : tour.getTourElements()) {
-      if (element instanceof ServiceActivity serviceActivity) {
-        totalTime = totalTime + serviceActivity.getDuration();
-      }
+  @Override
+  public void handleEvent(CarrierTourEndEvent event) {
+    if (event.getLinkId() != this.linkId) {
+      return;
+    }
+    TourHandling tourHandling =
+        tourHandlings.get(new CarrierTour(event.getCarrierId(), event.getTourId()));
+    if (tourHandling == null) {
+      return;
+    }
+    // For tours of collection carriers, the unloading time is added to be more in line with the
+    // schedule and have the shipment log fitting to it. This does NOT mean, that it really makes
+    // sense, because we decided for some reasons, that the handlingEvent start once the vehicle
+    // has arrived. It may change again, once we have unloading events available.
+    final double startTime = event.getTime() + tourHandling.unloadingDuration();
+    for (HubHandling hubHandling : tourHandling.hubHandlings()) {
+      final double endTime = startTime + hubHandling.expHandlingDuration();
+      logHandlingInHub(hubHandling, startTime, endTime);
+      throwHandlingEvent(event, hubHandling.lspShipment(), hubHandling.expHandlingDuration());
     }
-    return totalTime;
   }
 
-  private void logHandlingInHub(
-          CarrierService carrierService, double startTime, double endTime) {
+  private void logHandlingInHub(HubHandling hubHandling, double startTime, double endTime) {
 
-    LspShipment lspShipment = servicesWaitedFor.get(carrierService).lspShipment;
+    LspShipment lspShipment = hubHandling.lspShipment();
 
     { // Old logging approach - will be removed at some point in time
       LspShipmentPlanElement handle =
@@ -213,7 +152,7 @@ import org.matsim.freight.logistics.shipment.*;
               .setResourceId(resourceId)
               .setStartTime(startTime)
               .setEndTime(endTime)
-              .setLogisticsChainElement(servicesWaitedFor.get(carrierService).logisticChainElement)
+              .setLogisticsChainElement(hubHandling.logisticChainElement())
               .build();
       Id<LspShipmentPlanElement> loadId =
           Id.create(
@@ -239,17 +178,6 @@ import org.matsim.freight.logistics.shipment.*;
             event.getTime(), linkId, lspShipment.getId(), resourceId, expHandlingDuration));
   }
 
-  private boolean allServicesAreInOnePoint(Tour tour) {
-    for (TourElement element : tour.getTourElements()) {
-      if (element instanceof ServiceActivity activity) {
-        if (activity.getLocation() != tour.getEndLinkId()) {
-          return false;
-        }
-      }
-    }
-    return true;
-  }
-
   public Map<CarrierService, TransshipmentHubEventHandlerPair> getServicesWaitedFor() {
     return servicesWaitedFor;
   }
@@ -266,6 +194,20 @@ import org.matsim.freight.logistics.shipment.*;
     return linkId;
   }
 
+  /** Key of the precomputed {@link TourHandling}s. */
+  record CarrierTour(Id<Carrier> carrierId, Id<Tour> tourId) {}
+
+  /**
+   * What happens in the hub when a tour ends there.
+   *
+   * @param unloadingDuration time between the end of the tour and the start of the handling
+   * @param hubHandlings the shipments that get handled, in the order of the tour
+   */
+  record TourHandling(double unloadingDuration, List<HubHandling> hubHandlings) {}
+
+  record HubHandling(
+      LspShipment lspShipment, LogisticChainElement logisticChainElement, double expHandlingDuration) {}
+
   public static class TransshipmentHubEventHandlerPair {
     public final LspShipment lspShipment;
     public final LogisticChainElement logisticChainElement;
@@ -0,0 +1,195 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.costcalculators.TravelDisutility;
+import org.matsim.core.router.speedy.LeastCostPathTree;
+import org.matsim.core.router.speedy.SpeedyGraph;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Travel times and distances between all pairs of a (small) set of links, for one vehicle type.
+ *
+ * <p>The values are computed with one least cost path tree per origin link, using the free speed
+ * travel times (limited by the maximum velocity of the vehicle type) and the costs per meter and
+ * second of the vehicle type as travel disutility. This corresponds to what {@link
+ * org.matsim.freight.carriers.jsprit.NetworkBasedTransportCosts} computes without tolls: the path
+ * starts at the to-node of the origin link and includes the destination link.
+ *
+ * <p>The matrix is immutable once it is calculated and can thus be read from several threads.
+ */
+final class TravelTimeDistanceMatrix {
+
+  private final Map<String, Integer> indexOfLink = new HashMap<>();
+  private final int size;
+  private final float[] travelTimes;
+  private final float[] distances;
+
+  private TravelTimeDistanceMatrix(List<Link> links) {
+    this.size = links.size();
+    for (int i = 0; i < size; i++) {
+      indexOfLink.put(links.get(i).getId().toString(), i);
+    }
+    this.travelTimes = new float[size * size];
+    this.distances = new float[size * size];
+  }
+
+  /**
+   * Calculates the matrix. The origins are split into one block per thread; each block is done
+   * with its own {@link LeastCostPathTree}, because the trees are not thread-safe.
+   *
+   * @param graph the graph of the network the links belong to
+   * @param links the origins and destinations of the matrix
+   * @param vehicleType the vehicle type whose maximum velocity and costs are used
+   * @param numberOfThreads the number of origin blocks that are calculated in parallel
+   */
+  static TravelTimeDistanceMatrix calculate(
+      SpeedyGraph graph, List<Link> links, VehicleType vehicleType, int numberOfThreads) {
+    TravelTimeDistanceMatrix matrix = new TravelTimeDistanceMatrix(links);
+    VehicleTypeTravelTime travelTime = new VehicleTypeTravelTime(vehicleType);
+    TravelDisutility travelDisutility = new VehicleTypeTravelDisutility(vehicleType, travelTime);
+
+    int numberOfBlocks = Math.max(1, Math.min(numberOfThreads, links.size()));
+    ForkJoinPool pool = new ForkJoinPool(numberOfBlocks);
+    try {
+      pool.submit(
+              () ->
+                  IntStream.range(0, numberOfBlocks)
+                      .parallel()
+                      .forEach(
+                          block -> {
+                            LeastCostPathTree tree =
+                                new LeastCostPathTree(graph, travelTime, travelDisutility);
+                            for (int from = block; from < links.size(); from += numberOfBlocks) {
+                              matrix.fillRow(tree, travelTime, links, from);
+                            }
+                          }))
+          .join();
+    } finally {
+      pool.shutdown();
+    }
+    return matrix;
+  }
+
+  private void fillRow(
+      LeastCostPathTree tree, VehicleTypeTravelTime travelTime, List<Link> links, int from) {
+    Link fromLink = links.get(from);
+    tree.calculate(fromLink.getToNode().getId().index(), 0., null, null);
+    for (int to = 0; to < size; to++) {
+      Link toLink = links.get(to);
+      int cell = from * size + to;
+      if (to == from) {
+        travelTimes[cell] = 0f;
+        distances[cell] = 0f;
+        continue;
+      }
+      OptionalTime arrivalTime = tree.getTime(toLink.getFromNode().getId().index());
+      if (arrivalTime.isUndefined()) {
+        travelTimes[cell] = Float.NaN;
+        distances[cell] = Float.NaN;
+      } else {
+        travelTimes[cell] =
+            (float)
+                (arrivalTime.seconds()
+                    + travelTime.getLinkTravelTime(toLink, arrivalTime.seconds(), null, null));
+        distances[cell] =
+            (float) (tree.getDistance(toLink.getFromNode().getId().index()) + toLink.getLength());
+      }
+    }
+  }
+
+  /**
+   * @return the travel time from the one to the other link, or NaN if one of the links is not part
+   *     of the matrix or the destination cannot be reached.
+   */
+  double getTravelTime(String fromLinkId, String toLinkId) {
+    return get(travelTimes, fromLinkId, toLinkId);
+  }
+
+  /**
+   * @return the distance from the one to the other link, or NaN if one of the links is not part of
+   *     the matrix or the destination cannot be reached.
+   */
+  double getDistance(String fromLinkId, String toLinkId) {
+    return get(distances, fromLinkId, toLinkId);
+  }
+
+  private double get(float[] values, String fromLinkId, String toLinkId) {
+    Integer from = indexOfLink.get(fromLinkId);
+    Integer to = indexOfLink.get(toLinkId);
+    if (from == null || to == null) {
+      return Double.NaN;
+    }
+    return values[from * size + to];
+  }
+
+  /** Free speed travel time, limited by the maximum velocity of the vehicle type. */
+  private record VehicleTypeTravelTime(VehicleType vehicleType) implements TravelTime {
+    @Override
+    public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+      double velocity = Math.min(link.getFreespeed(time), vehicleType.getMaximumVelocity());
+      return link.getLength() / velocity;
+    }
+  }
+
+  /**
+   * Costs per second and per meter of the vehicle type. If the vehicle type has no such costs, the
+   * travel time is used, so that there still is a (fastest) path.
+   */
+  private static final class VehicleTypeTravelDisutility implements TravelDisutility {
+    private final double costsPerSecond;
+    private final double costsPerMeter;
+    private final TravelTime travelTime;
+
+    VehicleTypeTravelDisutility(VehicleType vehicleType, TravelTime travelTime) {
+      Double perSecond = vehicleType.getCostInformation().getCostsPerSecond();
+      Double perMeter = vehicleType.getCostInformation().getCostsPerMeter();
+      double seconds = perSecond == null ? 0. : perSecond;
+      double meters = perMeter == null ? 0. : perMeter;
+      this.costsPerSecond = (seconds == 0. && meters == 0.) ? 1. : seconds;
+      this.costsPerMeter = meters;
+      this.travelTime = travelTime;
+    }
+
+    @Override
+    public double getLinkTravelDisutility(
+        Link link, double time, Person person, Vehicle vehicle) {
+      return costsPerSecond * travelTime.getLinkTravelTime(link, time, person, vehicle)
+          + costsPerMeter * link.getLength();
+    }
+
+    @Override
+    public double getLinkMinimumTravelDisutility(Link link) {
+      return getLinkTravelDisutility(link, 0., null, null);
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.freight.carriers.Carrier;
+import org.matsim.freight.carriers.CarrierPlan;
+import org.matsim.freight.carriers.CarrierService;
+import org.matsim.freight.carriers.CarrierVehicle;
+import org.matsim.freight.carriers.ScheduledTour;
+import org.matsim.freight.carriers.TimeWindow;
+import org.matsim.freight.carriers.Tour;
+import org.matsim.freight.logistics.FreightLogisticsConfigGroup;
+import org.matsim.vehicles.CostInformation;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Keeps the solutions of the VRPs solved by {@link CarrierSchedulerUtils#solveVrpWithJsprit} for
+ * reuse in later iterations.
+ *
+ * <p>Most strategies move only few shipments per replanning, but the carriers are cleared and
+ * solved from scratch whenever the LSPs are scheduled. The cache is keyed by a fingerprint of
+ * everything the VRP is built from: the services (id, location, demand, duration, time window),
+ * the vehicles (id, depot, operating times), their types (capacity, costs, maximum velocity,
+ * network mode), the fleet size, the number of jsprit iterations and the transport costs, i.e. the
+ * network (see {@link TransportCostsProvider#getNetworkSignature()}), the tolls and whether the
+ * travel times are taken from a matrix. The id of the carrier is not part of it, so that also the
+ * auxiliary carriers of a distribution carrier, which are created anew in each scheduling, find
+ * their solution again. Carriers with {@link org.matsim.freight.carriers.CarrierShipment}s and
+ * time variant networks are not cached.
+ *
+ * <p>At most {@link FreightLogisticsConfigGroup#getVrpSolutionCacheSize()} solutions are kept;
+ * the least recently used one is evicted first. With the default size of 0, nothing is cached.
+ * Note that a reused solution is not optimized again, i.e. jsprit does not get another chance to
+ * find a better solution for an unchanged carrier. The network and the tolls are only looked at
+ * again after {@link TransportCostsProvider#reset(Scenario)}, i.e. once per iteration.
+ *
+ * <p>Each carrier plan gets its own copies of the cached tours, so that the plans of different
+ * carriers (or iterations) do not share {@link ScheduledTour} instances.
+ *
+ * <p>The cache is stored as scenario element and can be used from several threads at the same
+ * time.
+ */
+final class VrpSolutionCache {
+  private static final Logger log = LogManager.getLogger(VrpSolutionCache.class);
+  private static final String ELEMENT_NAME = "lspVrpSolutionCache";
+
+  private final int maxSize;
+  private final Map<String, CachedSolution> solutions;
+  private int hits = 0;
+  private int misses = 0;
+
+  private VrpSolutionCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.solutions =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedSolution> eldest) {
+            return size() > VrpSolutionCache.this.maxSize;
+          }
+        };
+  }
+
+  /**
+   * @return the cache of the scenario; it is created on first use. Null, if caching is switched
+   *     off in the {@link FreightLogisticsConfigGroup}.
+   */
+  static synchronized VrpSolutionCache getOrCreate(Scenario scenario) {
+    Object cache = scenario.getScenarioElement(ELEMENT_NAME);
+    if (cache == null) {
+      int maxSize =
+          ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class)
+              .getVrpSolutionCacheSize();
+      if (maxSize <= 0) {
+        return null;
+      }
+      cache = new VrpSolutionCache(maxSize);
+      scenario.addScenarioElement(ELEMENT_NAME, cache);
+    }
+    return (VrpSolutionCache) cache;
+  }
+
+  /**
+   * @return the fingerprint of the VRP of the carrier, or null if the carrier cannot be cached.
+   */
+  static String createFingerprint(Carrier carrier, int jspritIterations, Scenario scenario) {
+    if (!carrier.getShipments().isEmpty()
+        || scenario.getConfig().network().isTimeVariantNetwork()) {
+      return null;
+    }
+    TransportCostsProvider transportCostsProvider = TransportCostsProvider.getOrCreate(scenario);
+    StringBuilder fingerprint = new StringBuilder();
+    fingerprint.append("it=").append(jspritIterations);
+    fingerprint.append(";warm=").append(CarrierSchedulerUtils.getJspritWarmStartIterations(carrier));
+    fingerprint.append(";fleet=").append(carrier.getCarrierCapabilities().getFleetSize());
+    fingerprint.append(";net=").append(transportCostsProvider.getNetworkSignature());
+    fingerprint.append(";tolls=").append(transportCostsProvider.getTollSignature());
+    fingerprint
+        .append(";matrix=")
+        .append(
+            ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class)
+                .getUseTravelTimeDistanceMatrix());
+
+    Map<Id<VehicleType>, VehicleType> vehicleTypes = new TreeMap<>();
+
+    List<CarrierVehicle> vehicles =
+        new ArrayList<>(carrier.getCarrierCapabilities().getCarrierVehicles().values());
+    vehicles.sort(Comparator.comparing(vehicle -> vehicle.getId().toString()));
+    for (CarrierVehicle vehicle : vehicles) {
+      fingerprint
+          .append(";v=")
+          .append(vehicle.getId())
+          .append(',')
+          .append(vehicle.getType().getId())
+          .append(',')
+          .append(vehicle.getLinkId())
+          .append(',')
+          .append(vehicle.getEarliestStartTime())
+          .append(',')
+          .append(vehicle.getLatestEndTime());
+      vehicleTypes.put(vehicle.getType().getId(), vehicle.getType());
+    }
+    for (VehicleType vehicleType : vehicleTypes.values()) {
+      VehicleCapacity capacity = vehicleType.getCapacity();
+      CostInformation costInformation = vehicleType.getCostInformation();
+      fingerprint
+          .append(";t=")
+          .append(vehicleType.getId())
+          .append(',')
+          .append(capacity.getOther())
+          .append(',')
+          .append(capacity.getWeightInTons())
+          .append(',')
+          .append(capacity.getVolumeInCubicMeters())
+          .append(',')
+          .append(costInformation.getFixedCosts())
+          .append(',')
+          .append(costInformation.getCostsPerMeter())
+          .append(',')
+          .append(costInformation.getCostsPerSecond())
+          .append(',')
+          .append(vehicleType.getMaximumVelocity())
+          .append(',')
+          .append(vehicleType.getNetworkMode());
+    }
+
+    List<CarrierService> services = new ArrayList<>(carrier.getServices().values());
+    services.sort(Comparator.comparing(service -> service.getId().toString()));
+    for (CarrierService service : services) {
+      TimeWindow timeWindow = service.getServiceStartTimeWindow();
+      fingerprint
+          .append(";s=")
+          .append(service.getId())
+          .append(',')
+          .append(service.getLocationLinkId())
+          .append(',')
+          .append(service.getCapacityDemand())
+          .append(',')
+          .append(service.getServiceDuration())
+          .append(',')
+          .append(timeWindow.getStart())
+          .append(',')
+          .append(timeWindow.getEnd());
+    }
+    return fingerprint.toString();
+  }
+
+  /**
+   * Sets the cached solution as selected plan of the carrier, if there is one for the fingerprint.
+   * The services of the carrier are replaced by the (equal) ones the cached tours refer to.
+   *
+   * @return true, if there was a cached solution.
+   */
+  boolean applyCachedSolution(String fingerprint, Carrier carrier) {
+    CachedSolution solution;
+    synchronized (this) {
+      solution = solutions.get(fingerprint);
+      if (solution == null) {
+        misses++;
+        return false;
+      }
+      hits++;
+    }
+    for (ScheduledTour scheduledTour : solution.scheduledTours()) {
+      for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+        if (tourElement instanceof Tour.ServiceActivity serviceActivity) {
+          CarrierService service = serviceActivity.getService();
+          carrier.getServices().put(service.getId(), service);
+        }
+      }
+    }
+    CarrierPlan plan = new CarrierPlan(carrier, copyTours(solution.scheduledTours()));
+    plan.setScore(solution.score());
+    plan.setJspritScore(solution.jspritScore());
+    carrier.addPlan(plan);
+    carrier.setSelectedPlan(plan);
+    log.debug("Reused the cached VRP solution for carrier {}.", carrier.getId());
+    return true;
+  }
+
+  /** Stores the selected plan of the carrier as solution of the VRP with the given fingerprint. */
+  synchronized void put(String fingerprint, CarrierPlan plan) {
+    solutions.put(
+        fingerprint,
+        new CachedSolution(
+            copyTours(plan.getScheduledTours()), plan.getScore(), plan.getJspritScore()));
+  }
+
+  /** @return copies of the tours, with the same ids, vehicles and departure times. */
+  private static List<ScheduledTour> copyTours(Collection<ScheduledTour> scheduledTours) {
+    List<ScheduledTour> copies = new ArrayList<>(scheduledTours.size());
+    for (ScheduledTour scheduledTour : scheduledTours) {
+      Tour tour = scheduledTour.getTour();
+      copies.add(
+          ScheduledTour.newInstance(
+              tour.duplicateWithNewId(tour.getId()),
+              scheduledTour.getVehicle(),
+              scheduledTour.getDeparture()));
+    }
+    return copies;
+  }
+
+  synchronized int getHits() {
+    return hits;
+  }
+
+  synchronized int getMisses() {
+    return misses;
+  }
+
+  synchronized int size() {
+    return solutions.size();
+  }
+
+  private record CachedSolution(
+      Collection<ScheduledTour> scheduledTours, Double score, Double jspritScore) {}
+}
@@ -24,6 +24,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.freight.carriers.Carrier;
 import org.matsim.freight.carriers.CarrierService;
+import org.matsim.freight.carriers.CarrierShipment;
 import org.matsim.freight.logistics.LSPResource;
 import org.matsim.freight.logistics.LogisticChainElement;
 
@@ -82,6 +83,11 @@ final class LoggedLspShipmentTransport implements LspShipmentLeg {
     throw new RuntimeException("not implemented");
   }
 
+  @Override
+  public CarrierShipment getCarrierShipment() {
+    throw new RuntimeException("not implemented");
+  }
+
   public Id<Link> getToLinkId() {
     return toLinkId;
   }
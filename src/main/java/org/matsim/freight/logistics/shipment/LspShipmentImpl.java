@@ -42,6 +42,13 @@ class LspShipmentImpl extends LSPDataObject<LspShipment> implements LspShipment
   private final LspShipmentPlan shipmentLog;
   private final List<LspShipmentRequirement> lspShipmentRequirements;
 
+  /**
+   * Time stamp used during the scheduling, see {@link LspShipmentUtils#setTimeOfLspShipment}. Kept
+   * as primitive field (instead of an attribute) since it is read in every comparison when sorting
+   * the shipments.
+   */
+  private double time = Double.NaN;
+
   //	private Id<LSP> lspId;
 
   LspShipmentImpl(LspShipmentUtils.LspShipmentBuilder builder) {
@@ -105,6 +112,14 @@ class LspShipmentImpl extends LSPDataObject<LspShipment> implements LspShipment
     return pickupServiceTime;
   }
 
+  /*package-private*/ double getTime() {
+    return time;
+  }
+
+  /*package-private*/ void setTime(double time) {
+    this.time = time;
+  }
+
 
 
     @Override
@@ -4,6 +4,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.freight.carriers.Carrier;
 import org.matsim.freight.carriers.CarrierService;
+import org.matsim.freight.carriers.CarrierShipment;
 
 public interface LspShipmentLeg extends LspShipmentPlanElement {
   Id<Link> getToLinkId();
@@ -16,5 +17,7 @@ public interface LspShipmentLeg extends LspShipmentPlanElement {
 
   CarrierService getCarrierService();
 
+  CarrierShipment getCarrierShipment();
+
   void setEndTime(double time);
 }
@@ -31,9 +31,12 @@ import org.matsim.freight.carriers.CarrierShipment;
 import org.matsim.freight.carriers.TimeWindow;
 import org.matsim.freight.logistics.LSPPlan;
 import org.matsim.freight.logistics.LSPResource;
+import org.matsim.freight.logistics.LSPUtils;
 import org.matsim.freight.logistics.LogisticChainElement;
 
 public final class LspShipmentUtils {
+  private static final String TIME_ATTRIBUTE = "time";
+
   private LspShipmentUtils() {} // do not instantiate
 
   public static Comparator<LspShipmentPlanElement> createShipmentPlanElementComparator() {
@@ -50,10 +53,9 @@ public final class LspShipmentUtils {
    */
   public static LspShipmentPlan getOrCreateShipmentPlan(LSPPlan lspPlan, Id<LspShipment> shipmentId) {
     // Return shipmentPlan if already existing in LspPlan
-    for (LspShipmentPlan lspShipmentPlan : lspPlan.getShipmentPlans()) {
-      if (lspShipmentPlan.getLspShipmentId().equals(shipmentId)) {
-        return lspShipmentPlan;
-      }
+    LspShipmentPlan lspShipmentPlan = LSPUtils.findLspShipmentPlan(lspPlan, shipmentId);
+    if (lspShipmentPlan != null) {
+      return lspShipmentPlan;
     }
     // ShipmentPlan does not exist in LspPlan. Will create one, add it to the LspPlan.
     LspShipmentPlan newLspShipmentPlan = new LspShipmentPlanImpl(shipmentId);
@@ -62,16 +64,23 @@ public final class LspShipmentUtils {
   }
 
   /**
-   * Stores a time as Attribute in the LspShipment.
+   * Stores a time in the LspShipment.
    * This is needed for some kind of tracking the shipment.
    * <p>
    * This will replace the LSPShipmentWithTime class and thus reduce the complexity of the code.
    * KMT Jul'24
+   * <p>
+   * For the default implementation, the time is kept in a primitive field, since it is read by the
+   * comparators when sorting the shipments. Other implementations store it as Attribute.
    * @param lspShipment the LspShipment to store the time in
    * @param time the time to store
    */
   public static void setTimeOfLspShipment(LspShipment lspShipment, double time){
-    lspShipment.getAttributes().putAttribute("time", time);
+    if (lspShipment instanceof LspShipmentImpl lspShipmentImpl) {
+      lspShipmentImpl.setTime(time);
+    } else {
+      lspShipment.getAttributes().putAttribute(TIME_ATTRIBUTE, time);
+    }
   }
 
   /**
@@ -79,10 +88,14 @@ public final class LspShipmentUtils {
    * <p>
    * This will replace the LSPShipmentWithTime class and thus reduce the complexity of the code. KMT Jul'24
    * @param lspShipment the LspShipment to get the time from
-   * @return the time as double
+   * @return the time as double (NaN, if no time was set yet)
    */
   public static double getTimeOfLspShipment(LspShipment lspShipment) {
-    return (double) lspShipment.getAttributes().getAttribute("time");
+    if (lspShipment instanceof LspShipmentImpl lspShipmentImpl) {
+      return lspShipmentImpl.getTime();
+    }
+    Object time = lspShipment.getAttributes().getAttribute(TIME_ATTRIBUTE);
+    return time == null ? Double.NaN : (double) time;
   }
 
   public static final class LspShipmentBuilder {
@@ -107,6 +107,7 @@ final class ScheduledLspShipmentTransport implements LspShipmentLeg {
     return carrierService;
   }
 
+  @Override
   public CarrierShipment getCarrierShipment() {
     return carrierShipment;
   }
@@ -0,0 +1,193 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+public class ForwardLogisticChainSchedulerImplTest {
+
+	private final List<LSPResource> scheduledResources = Collections.synchronizedList(new ArrayList<>());
+
+	/**
+	 * Collection -> Hub -> Distribution and a second chain MainRun -> Hub. The resources are handed
+	 * over to the LSP in a "wrong" order.
+	 */
+	@Test
+	public void testResourcesAreScheduledInTopologicalOrder() {
+		LSPResource collection = new TestResource("collection");
+		LSPResource mainRun = new TestResource("mainRun");
+		LSPResource hub = new TestResource("hub");
+		LSPResource distribution = new TestResource("distribution");
+
+		LSPPlan plan = LSPUtils.createLSPPlan();
+		plan.addLogisticChain(createChain("chain1", collection, hub, distribution));
+		plan.addLogisticChain(createChain("chain2", mainRun, hub));
+
+		LSP lsp = createLsp(plan);
+		lsp.getResources().clear();
+		lsp.getResources().addAll(List.of(distribution, hub, mainRun, collection));
+
+		lsp.scheduleLogisticChains();
+
+		assertEquals(4, scheduledResources.size());
+		assertTrue(scheduledResources.indexOf(collection) < scheduledResources.indexOf(hub));
+		assertTrue(scheduledResources.indexOf(mainRun) < scheduledResources.indexOf(hub));
+		assertTrue(scheduledResources.indexOf(hub) < scheduledResources.indexOf(distribution));
+	}
+
+	@Test
+	public void testSortingIsCachedPerPlanAndRecomputedOnChange() {
+		LSPResource first = new TestResource("first");
+		LSPResource second = new TestResource("second");
+
+		LSPPlan plan = LSPUtils.createLSPPlan();
+		plan.addLogisticChain(createChain("chain", first, second));
+		LSP lsp = createLsp(plan);
+
+		ForwardLogisticChainSchedulerImpl scheduler = new ForwardLogisticChainSchedulerImpl();
+		scheduler.setEmbeddingContainer(lsp);
+		List<LSPResource> sorted = scheduler.getSortedResources(plan);
+		assertEquals(List.of(first, second), sorted);
+		assertSame(sorted, scheduler.getSortedResources(plan));
+
+		LSPResource third = new TestResource("third");
+		lsp.getResources().add(third);
+		plan.addLogisticChain(createChain("chain2", third, first));
+		List<LSPResource> resorted = scheduler.getSortedResources(plan);
+		assertNotSame(sorted, resorted);
+		assertEquals(List.of(third, first, second), resorted);
+	}
+
+	@Test
+	public void testLevelsAreScheduledInParallel() {
+		LSPResource collection = new TestResource("collection");
+		LSPResource mainRun = new TestResource("mainRun");
+		LSPResource hub = new TestResource("hub");
+		LSPResource distribution1 = new TestResource("distribution1");
+		LSPResource distribution2 = new TestResource("distribution2");
+
+		LSPPlan plan = LSPUtils.createLSPPlan();
+		plan.addLogisticChain(createChain("chain1", collection, hub, distribution1));
+		plan.addLogisticChain(createChain("chain2", mainRun, hub, distribution2));
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("lsp", LSP.class))
+					.setInitialPlan(plan)
+					.setLogisticChainScheduler(LSPUtils.createForwardLogisiticChainScheduler(pool))
+					.build();
+
+			ForwardLogisticChainSchedulerImpl scheduler = new ForwardLogisticChainSchedulerImpl();
+			scheduler.setEmbeddingContainer(lsp);
+			assertEquals(List.of(List.of(collection, mainRun), List.of(hub), List.of(distribution1, distribution2)),
+					scheduler.getSortedLevels(plan));
+
+			lsp.scheduleLogisticChains();
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(5, scheduledResources.size());
+		assertTrue(scheduledResources.indexOf(collection) < scheduledResources.indexOf(hub));
+		assertTrue(scheduledResources.indexOf(mainRun) < scheduledResources.indexOf(hub));
+		assertTrue(scheduledResources.indexOf(hub) < scheduledResources.indexOf(distribution1));
+		assertTrue(scheduledResources.indexOf(hub) < scheduledResources.indexOf(distribution2));
+	}
+
+	@Test
+	public void testCycleIsDetected() {
+		LSPResource a = new TestResource("a");
+		LSPResource b = new TestResource("b");
+
+		LSPPlan plan = LSPUtils.createLSPPlan();
+		plan.addLogisticChain(createChain("chain1", a, b));
+		plan.addLogisticChain(createChain("chain2", b, a));
+		LSP lsp = createLsp(plan);
+
+		assertThrows(IllegalStateException.class, lsp::scheduleLogisticChains);
+	}
+
+	private LSP createLsp(LSPPlan plan) {
+		return LSPUtils.LSPBuilder.getInstance(Id.create("lsp", LSP.class))
+				.setInitialPlan(plan)
+				.setLogisticChainScheduler(LSPUtils.createForwardLogisiticChainScheduler())
+				.build();
+	}
+
+	private static LogisticChain createChain(String id, LSPResource... resources) {
+		LSPUtils.LogisticChainBuilder chainBuilder = LSPUtils.LogisticChainBuilder.newInstance(Id.create(id, LogisticChain.class));
+		LogisticChainElement previous = null;
+		for (LSPResource resource : resources) {
+			LogisticChainElement element = LSPUtils.LogisticChainElementBuilder
+					.newInstance(Id.create(id + "_" + resource.getId(), LogisticChainElement.class))
+					.setResource(resource)
+					.build();
+			if (previous != null) {
+				previous.connectWithNextElement(element);
+			}
+			chainBuilder.addLogisticChainElement(element);
+			previous = element;
+		}
+		return chainBuilder.build();
+	}
+
+	private class TestResource extends LSPDataObject<LSPResource> implements LSPResource {
+		private final Collection<LogisticChainElement> clientElements = new ArrayList<>();
+
+		TestResource(String id) {
+			super(Id.create(id, LSPResource.class));
+		}
+
+		@Override
+		public Id<Link> getStartLinkId() {
+			return null;
+		}
+
+		@Override
+		public Id<Link> getEndLinkId() {
+			return null;
+		}
+
+		@Override
+		public Collection<LogisticChainElement> getClientElements() {
+			return clientElements;
+		}
+
+		@Override
+		public void schedule(int bufferTime, LSPPlan lspPlan) {
+			scheduledResources.add(this);
+		}
+
+		@Override
+		public boolean isSchedulingThreadSafe() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+public class IdIndexedCollectionTest {
+
+	private record Entry(Id<Link> id, String name) {}
+
+	private final Entry a = new Entry(Id.createLinkId("a"), "a");
+	private final Entry b = new Entry(Id.createLinkId("b"), "b");
+	private final Entry c = new Entry(Id.createLinkId("c"), "c");
+
+	private IdIndexedCollection<Link, Entry> collection;
+
+	@BeforeEach
+	public void initialize() {
+		collection = new IdIndexedCollection<>(Entry::id);
+		collection.add(a);
+		collection.add(b);
+		collection.add(c);
+	}
+
+	@Test
+	public void testInsertionOrderAndLookup() {
+		assertEquals(List.of(a, b, c), List.copyOf(collection));
+		assertSame(b, collection.get(Id.createLinkId("b")));
+		assertNull(collection.get(Id.createLinkId("unknown")));
+	}
+
+	@Test
+	public void testAddingTheSameEntryAgainDoesNotChangeTheCollection() {
+		assertFalse(collection.add(b));
+		assertEquals(List.of(a, b, c), List.copyOf(collection));
+	}
+
+	@Test
+	public void testAnotherEntryWithAKnownIdIsRejected() {
+		Entry otherB = new Entry(Id.createLinkId("b"), "other b");
+		assertThrows(IllegalArgumentException.class, () -> collection.add(otherB));
+		assertSame(b, collection.get(Id.createLinkId("b")));
+		assertEquals(3, collection.size());
+	}
+
+	@Test
+	public void testContainsAndRemoveUseTheIndex() {
+		Entry equalB = new Entry(Id.createLinkId("b"), "b");
+		Entry otherB = new Entry(Id.createLinkId("b"), "other b");
+
+		assertTrue(collection.contains(b));
+		// records are equal by value, as for any other collection
+		assertTrue(collection.contains(equalB));
+		assertFalse(collection.contains(otherB));
+		assertFalse(collection.contains("b"));
+		assertFalse(collection.contains(null));
+
+		assertFalse(collection.remove(otherB));
+		assertTrue(collection.remove(b));
+		assertFalse(collection.contains(b));
+		assertNull(collection.get(Id.createLinkId("b")));
+		assertEquals(List.of(a, c), List.copyOf(collection));
+	}
+
+	@Test
+	public void testIteratorRemovalKeepsTheIndexInSync() {
+		Iterator<Entry> iterator = collection.iterator();
+		iterator.next();
+		iterator.remove();
+		assertNull(collection.get(Id.createLinkId("a")));
+		assertEquals(List.of(b, c), List.copyOf(collection));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControllerConfigGroup;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Tests the writing of the lsps.xml of the iterations by {@link LSPControlerListener}, with an
+ * interval of 2 and in the background.
+ */
+public class LSPControlerListenerTest {
+
+	private static final int LAST_ITERATION = 5;
+
+	@RegisterExtension
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	private OutputDirectoryHierarchy controlerIO;
+	private LSPControlerListener listener;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = ConfigUtils.createConfig();
+		FreightLogisticsConfigGroup logisticsConfigGroup = ConfigUtils.addOrGetModule(config, FreightLogisticsConfigGroup.class);
+		logisticsConfigGroup.setWriteLspsInterval(2);
+		logisticsConfigGroup.setWriteLspsAsync(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		LSPUtils.addLSPs(scenario, new LSPs(List.of()));
+
+		controlerIO = new OutputDirectoryHierarchy(utils.getOutputDirectory(), OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists,
+				ControllerConfigGroup.CompressionType.none);
+		listener = new LSPControlerListener(scenario, controlerIO);
+	}
+
+	@Test
+	public void testOnlyIntervalIterationsAreWritten() throws IOException {
+		for (int iteration = 0; iteration <= LAST_ITERATION; iteration++) {
+			createIterationDirectory(iteration);
+			listener.notifyIterationEnds(new IterationEndsEvent(null, iteration, iteration == LAST_ITERATION));
+		}
+		// as done at shutdown, before the output_lsps.xml.gz (with the state after the last iteration) is written
+		listener.finishLspsWriting();
+
+		for (int iteration = 0; iteration <= LAST_ITERATION; iteration++) {
+			if (iteration % 2 == 0) {
+				assertCompletelyWritten(iteration);
+			} else {
+				assertFalse(Files.exists(getLspsFile(iteration)), "lsps of iteration " + iteration + " must not be written");
+			}
+		}
+	}
+
+	@Test
+	public void testPendingWriteIsFinishedBeforeTheNextOne() throws IOException {
+		createIterationDirectory(0);
+		createIterationDirectory(2);
+		listener.notifyIterationEnds(new IterationEndsEvent(null, 0, false));
+		listener.notifyIterationEnds(new IterationEndsEvent(null, 2, false));
+
+		// the write of iteration 0 has to be finished before the one of iteration 2 is started
+		assertCompletelyWritten(0);
+
+		listener.finishLspsWriting();
+		assertCompletelyWritten(2);
+	}
+
+	@Test
+	public void testErrorsOfBackgroundWritesAreReported() throws IOException {
+		createIterationDirectory(0);
+		listener.notifyIterationEnds(new IterationEndsEvent(null, 0, false));
+		// there is no directory for iteration 2, so writing fails in the background ...
+		listener.notifyIterationEnds(new IterationEndsEvent(null, 2, false));
+
+		// ... which is reported before the next lsps are written
+		createIterationDirectory(4);
+		RuntimeException exception = assertThrows(RuntimeException.class,
+				() -> listener.notifyIterationEnds(new IterationEndsEvent(null, 4, LAST_ITERATION == 4)));
+		assertEquals("Writing the lsps of an iteration failed.", exception.getMessage());
+		assertNotNull(exception.getCause());
+		assertCompletelyWritten(0);
+	}
+
+	@Test
+	public void testErrorOfTheLastBackgroundWriteIsReportedAtShutdown() {
+		// there is no directory for iteration 4
+		listener.notifyIterationEnds(new IterationEndsEvent(null, 4, false));
+
+		RuntimeException exception = assertThrows(RuntimeException.class, () -> listener.finishLspsWriting());
+		assertEquals("Writing the lsps of an iteration failed.", exception.getMessage());
+	}
+
+	private void createIterationDirectory(int iteration) throws IOException {
+		Files.createDirectories(getLspsFile(iteration).getParent());
+	}
+
+	private Path getLspsFile(int iteration) {
+		return Path.of(controlerIO.getIterationFilename(iteration, "lsps.xml"));
+	}
+
+	private void assertCompletelyWritten(int iteration) throws IOException {
+		Path file = getLspsFile(iteration);
+		assertTrue(Files.exists(file), "lsps of iteration " + iteration + " are not written");
+		assertTrue(Files.readString(file).contains("</" + LSPConstants.LSPS + ">"), "lsps of iteration " + iteration + " are not complete");
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.freight.carriers.TimeWindow;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+
+public class LSPResourceSchedulerTest {
+
+	private TestResource resource;
+	private LogisticChainElement firstElement;
+	private LogisticChainElement secondElement;
+	private LSPPlan lspPlan;
+
+	@BeforeEach
+	public void initialize() {
+		resource = new TestResource();
+		// both elements use the same resource, e.g. a hub that is passed twice
+		firstElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create("first", LogisticChainElement.class))
+				.setResource(resource)
+				.build();
+		secondElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create("second", LogisticChainElement.class))
+				.setResource(resource)
+				.build();
+		lspPlan = LSPUtils.createLSPPlan();
+	}
+
+	@Test
+	public void testShipmentsAreScheduledForTheirOwnClientElement() {
+		LspShipment shipmentA = createShipment("A");
+		LspShipment shipmentB = createShipment("B");
+		firstElement.getIncomingShipments().addShipment(10, shipmentA);
+		secondElement.getIncomingShipments().addShipment(20, shipmentB);
+
+		resource.schedule(0, lspPlan);
+
+		assertSame(firstElement, resource.scheduler.scheduledElements.get(shipmentA));
+		assertSame(secondElement, resource.scheduler.scheduledElements.get(shipmentB));
+		assertTrue(firstElement.getIncomingShipments().getLspShipmentsWTime().isEmpty());
+		assertTrue(secondElement.getIncomingShipments().getLspShipmentsWTime().isEmpty());
+		assertTrue(firstElement.getOutgoingShipments().getLspShipmentsWTime().contains(shipmentA));
+		assertTrue(secondElement.getOutgoingShipments().getLspShipmentsWTime().contains(shipmentB));
+	}
+
+	@Test
+	public void testShipmentWaitingAtTwoElementsOfTheResourceIsRejected() {
+		LspShipment shipment = createShipment("A");
+		firstElement.getIncomingShipments().addShipment(10, shipment);
+		secondElement.getIncomingShipments().addShipment(20, shipment);
+
+		assertThrows(IllegalStateException.class, () -> resource.schedule(0, lspPlan));
+	}
+
+	private static LspShipment createShipment(String id) {
+		LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(id, LspShipment.class));
+		builder.setFromLinkId(Id.createLinkId("from"));
+		builder.setToLinkId(Id.createLinkId("to"));
+		builder.setStartTimeWindow(TimeWindow.newInstance(0, 24 * 3600));
+		builder.setEndTimeWindow(TimeWindow.newInstance(0, 24 * 3600));
+		builder.setCapacityDemand(1);
+		return builder.build();
+	}
+
+	/** Remembers the client element of each shipment and adds a handle of 60 s to its plan. */
+	private static class TestScheduler extends LSPResourceScheduler {
+		private final Map<LspShipment, LogisticChainElement> scheduledElements = new HashMap<>();
+
+		@Override
+		protected void initializeValues(LSPResource resource) {}
+
+		@Override
+		protected void scheduleResource() {}
+
+		@Override
+		protected void updateShipments() {
+			for (LspShipment lspShipment : lspShipmentsToSchedule) {
+				LogisticChainElement element = clientElementOfShipment.get(lspShipment);
+				scheduledElements.put(lspShipment, element);
+				LspShipmentUtils.ScheduledShipmentHandleBuilder builder = LspShipmentUtils.ScheduledShipmentHandleBuilder.newInstance();
+				builder.setStartTime(LspShipmentUtils.getTimeOfLspShipment(lspShipment));
+				builder.setEndTime(LspShipmentUtils.getTimeOfLspShipment(lspShipment) + 60);
+				builder.setLogisticsChainElement(element);
+				builder.setResourceId(resource.getId());
+				LspShipmentPlanElement handle = builder.build();
+				LspShipmentUtils.getOrCreateShipmentPlan(lspPlan, lspShipment.getId())
+						.addPlanElement(Id.create(element.getId() + "HANDLE", LspShipmentPlanElement.class), handle);
+			}
+		}
+	}
+
+	private static class TestResource extends LSPDataObject<LSPResource> implements LSPResource {
+		private final List<LogisticChainElement> clientElements = new ArrayList<>();
+		private final TestScheduler scheduler = new TestScheduler();
+
+		TestResource() {
+			super(Id.create("resource", LSPResource.class));
+		}
+
+		@Override
+		public Id<Link> getStartLinkId() {
+			return Id.createLinkId("from");
+		}
+
+		@Override
+		public Id<Link> getEndLinkId() {
+			return Id.createLinkId("to");
+		}
+
+		@Override
+		public Collection<LogisticChainElement> getClientElements() {
+			return clientElements;
+		}
+
+		@Override
+		public void schedule(int bufferTime, LSPPlan lspPlan) {
+			scheduler.scheduleShipments(lspPlan, this, bufferTime);
+		}
+	}
+}
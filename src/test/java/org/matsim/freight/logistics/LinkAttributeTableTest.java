@@ -0,0 +1,103 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.roadpricing.RoadPricingScheme;
+import org.matsim.contrib.roadpricing.RoadPricingSchemeImpl;
+import org.matsim.contrib.roadpricing.RoadPricingUtils;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class LinkAttributeTableTest {
+
+	private Scenario scenario;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+	}
+
+	@Test
+	public void testAttributesOfAllLinks() {
+		LinkAttributeTable table = LinkAttributeTable.getOrCreate(scenario);
+		assertSame(table, LinkAttributeTable.getOrCreate(scenario));
+		for (Link link : scenario.getNetwork().getLinks().values()) {
+			assertEquals(link.getLength(), table.getLength(link.getId()), 0.);
+			assertEquals(link.getFreespeed(), table.getFreespeed(link.getId()), 0.);
+			assertFalse(table.isTolled(link.getId()));
+		}
+	}
+
+	@Test
+	public void testLinksOfTheRoadPricingSchemeAreTolled() {
+		Id<Link> tolledLinkId = Id.createLinkId("(2 2) (2 3)");
+		RoadPricingSchemeImpl scheme = RoadPricingUtils.addOrGetMutableRoadPricingScheme(scenario);
+		RoadPricingUtils.setType(scheme, RoadPricingScheme.TOLL_TYPE_LINK);
+		RoadPricingUtils.addLink(scheme, tolledLinkId);
+
+		LinkAttributeTable table = LinkAttributeTable.getOrCreate(scenario);
+		for (Link link : scenario.getNetwork().getLinks().values()) {
+			assertEquals(link.getId().equals(tolledLinkId), table.isTolled(link.getId()), link.getId().toString());
+		}
+	}
+
+	@Test
+	public void testUnknownLinkThrows() {
+		LinkAttributeTable table = LinkAttributeTable.getOrCreate(scenario);
+		// created after the table was built, i.e. its index is beyond the table
+		Id<Link> unknownLinkId = Id.createLinkId("linkThatIsNotInTheNetwork");
+		assertThrows(IllegalArgumentException.class, () -> table.getLength(unknownLinkId));
+		assertThrows(IllegalArgumentException.class, () -> table.getFreespeed(unknownLinkId));
+		assertThrows(IllegalArgumentException.class, () -> table.isTolled(unknownLinkId));
+
+		// an index within the table, but the link is removed from the network
+		Id<Link> removedLinkId = Id.createLinkId("(2 2) (2 3)");
+		scenario.getNetwork().removeLink(removedLinkId);
+		LinkAttributeTable.reset(scenario);
+		assertThrows(IllegalArgumentException.class, () -> table.getLength(removedLinkId));
+		assertThrows(IllegalArgumentException.class, () -> table.isTolled(removedLinkId));
+	}
+
+	@Test
+	public void testResetTakesChangedNetworkIntoAccount() {
+		Id<Link> linkId = Id.createLinkId("(2 2) (2 3)");
+		LinkAttributeTable table = LinkAttributeTable.getOrCreate(scenario);
+		assertEquals(1000., table.getLength(linkId), 0.);
+
+		scenario.getNetwork().getLinks().get(linkId).setLength(1500.);
+		assertEquals(1000., table.getLength(linkId), 0.);
+
+		LinkAttributeTable.reset(scenario);
+		assertEquals(1500., table.getLength(linkId), 0.);
+	}
+}
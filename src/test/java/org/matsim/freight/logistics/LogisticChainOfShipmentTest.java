@@ -0,0 +1,172 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.freight.logistics.shipment.LspShipment;
+
+public class LogisticChainOfShipmentTest {
+
+	private final Id<LspShipment> shipment1 = Id.create("shipment1", LspShipment.class);
+	private final Id<LspShipment> shipment2 = Id.create("shipment2", LspShipment.class);
+	private final Id<LspShipment> shipment3 = Id.create("shipment3", LspShipment.class);
+
+	private LSPPlan plan;
+	private LogisticChain chainA;
+	private LogisticChain chainB;
+
+	@BeforeEach
+	public void initialize() {
+		plan = LSPUtils.createLSPPlan();
+		chainA = LSPUtils.LogisticChainBuilder.newInstance(Id.create("chainA", LogisticChain.class)).build();
+		chainB = LSPUtils.LogisticChainBuilder.newInstance(Id.create("chainB", LogisticChain.class)).build();
+		// added before the chain is part of the plan
+		chainA.getLspShipmentIds().add(shipment1);
+		plan.addLogisticChain(chainA);
+		// added via the collection of the plan
+		plan.getLogisticChains().add(chainB);
+	}
+
+	@Test
+	public void testMembershipKeepsInsertionOrderWithoutDuplicates() {
+		chainA.getLspShipmentIds().add(shipment3);
+		chainA.getLspShipmentIds().add(shipment2);
+		assertFalse(chainA.getLspShipmentIds().add(shipment3));
+		assertEquals(List.of(shipment1, shipment3, shipment2), List.copyOf(chainA.getLspShipmentIds()));
+	}
+
+	@Test
+	public void testIndexFollowsChanges() {
+		chainB.getLspShipmentIds().add(shipment2);
+		assertSame(chainA, LSPUtils.findLogisticChainOfShipment(plan, shipment1));
+		assertSame(chainB, LSPUtils.findLogisticChainOfShipment(plan, shipment2));
+		assertNull(LSPUtils.findLogisticChainOfShipment(plan, shipment3));
+
+		// move shipment1 from chain A to chain B
+		chainA.getLspShipmentIds().remove(shipment1);
+		chainB.getLspShipmentIds().add(shipment1);
+		assertSame(chainB, LSPUtils.findLogisticChainOfShipment(plan, shipment1));
+
+		Iterator<Id<LspShipment>> iterator = chainB.getLspShipmentIds().iterator();
+		iterator.next();
+		iterator.remove();
+		assertNull(LSPUtils.findLogisticChainOfShipment(plan, shipment2));
+
+		chainB.getLspShipmentIds().clear();
+		assertNull(LSPUtils.findLogisticChainOfShipment(plan, shipment1));
+	}
+
+	@Test
+	public void testRemovedChainIsNotIndexedAnymore() {
+		plan.getLogisticChains().remove(chainA);
+		assertNull(LSPUtils.findLogisticChainOfShipment(plan, shipment1));
+	}
+
+	@Test
+	public void testCopiedPlanHasItsOwnIndex() {
+		LSPPlan copy = LSPImpl.copyPlan(plan);
+		LogisticChain copiedChainA = LSPUtils.findLogisticChainOfShipment(copy, shipment1);
+		assertNotNull(copiedChainA);
+		assertNotSame(chainA, copiedChainA);
+		assertEquals(chainA.getId(), copiedChainA.getId());
+		assertSame(chainA, LSPUtils.findLogisticChainOfShipment(plan, shipment1));
+	}
+
+	@Test
+	public void testCopiedChainsAreChangedIndependently() {
+		chainA.getLspShipmentIds().add(shipment2);
+		LSPPlan copy = LSPImpl.copyPlan(plan);
+		LogisticChain copiedChainA = LSPUtils.findLogisticChainOfShipment(copy, shipment1);
+		LSPPlan copyOfCopy = LSPImpl.copyPlan(copy);
+		LogisticChain copiedCopiedChainA = LSPUtils.findLogisticChainOfShipment(copyOfCopy, shipment1);
+
+		copiedChainA.getLspShipmentIds().remove(shipment1);
+		copiedChainA.getLspShipmentIds().add(shipment3);
+		assertEquals(List.of(shipment2, shipment3), List.copyOf(copiedChainA.getLspShipmentIds()));
+		assertEquals(List.of(shipment1, shipment2), List.copyOf(chainA.getLspShipmentIds()));
+		assertEquals(List.of(shipment1, shipment2), List.copyOf(copiedCopiedChainA.getLspShipmentIds()));
+
+		Iterator<Id<LspShipment>> iterator = chainA.getLspShipmentIds().iterator();
+		while (iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+		assertTrue(chainA.getLspShipmentIds().isEmpty());
+		assertEquals(List.of(shipment1, shipment2), List.copyOf(copiedCopiedChainA.getLspShipmentIds()));
+		assertEquals(List.of(shipment2, shipment3), List.copyOf(copiedChainA.getLspShipmentIds()));
+
+		assertNull(LSPUtils.findLogisticChainOfShipment(plan, shipment1));
+		assertSame(copiedChainA, LSPUtils.findLogisticChainOfShipment(copy, shipment3));
+		assertNull(LSPUtils.findLogisticChainOfShipment(copy, shipment1));
+		assertSame(copiedCopiedChainA, LSPUtils.findLogisticChainOfShipment(copyOfCopy, shipment2));
+	}
+
+	@Test
+	public void testShipmentReaddedToACopiedChainIsAtTheEnd() {
+		chainA.getLspShipmentIds().add(shipment2);
+		LSPPlan copy = LSPImpl.copyPlan(plan);
+		LogisticChain copiedChainA = LSPUtils.findLogisticChainOfShipment(copy, shipment1);
+
+		copiedChainA.getLspShipmentIds().remove(shipment1);
+		assertFalse(copiedChainA.getLspShipmentIds().contains(shipment1));
+		copiedChainA.getLspShipmentIds().add(shipment1);
+		assertEquals(List.of(shipment2, shipment1), List.copyOf(copiedChainA.getLspShipmentIds()));
+		assertEquals(2, copiedChainA.getLspShipmentIds().size());
+		assertEquals(List.of(shipment1, shipment2), List.copyOf(chainA.getLspShipmentIds()));
+	}
+
+	/** Enough changes, so that the own ids of the copy are merged into a new base several times. */
+	@Test
+	public void testManyChangesOfACopiedChain() {
+		List<Id<LspShipment>> expected = new ArrayList<>(List.copyOf(chainA.getLspShipmentIds()));
+		for (int i = 0; i < 100; i++) {
+			Id<LspShipment> id = Id.create("many" + i, LspShipment.class);
+			chainA.getLspShipmentIds().add(id);
+			expected.add(id);
+		}
+		List<Id<LspShipment>> original = List.copyOf(expected);
+		LSPPlan copy = LSPImpl.copyPlan(plan);
+		LogisticChain copiedChainA = LSPUtils.findLogisticChainOfShipment(copy, shipment1);
+
+		for (int i = 0; i < 100; i += 2) {
+			Id<LspShipment> id = Id.create("many" + i, LspShipment.class);
+			assertTrue(copiedChainA.getLspShipmentIds().remove(id));
+			expected.remove(id);
+			Id<LspShipment> newId = Id.create("new" + i, LspShipment.class);
+			assertTrue(copiedChainA.getLspShipmentIds().add(newId));
+			expected.add(newId);
+		}
+		assertEquals(expected, List.copyOf(copiedChainA.getLspShipmentIds()));
+		assertEquals(expected.size(), copiedChainA.getLspShipmentIds().size());
+		assertEquals(original, List.copyOf(chainA.getLspShipmentIds()));
+		assertSame(copiedChainA, LSPUtils.findLogisticChainOfShipment(copy, Id.create("new98", LspShipment.class)));
+		assertNull(LSPUtils.findLogisticChainOfShipment(copy, Id.create("many98", LspShipment.class)));
+		assertSame(chainA, LSPUtils.findLogisticChainOfShipment(plan, Id.create("many98", LspShipment.class)));
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.replanning.GenericPlanStrategy;
+import org.matsim.core.replanning.GenericPlanStrategyImpl;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.replanning.modules.GenericPlanStrategyModule;
+import org.matsim.core.replanning.selectors.KeepSelected;
+
+public class ParallelLSPStrategyManagerImplTest {
+
+	private static final int NUMBER_OF_LSPS = 20;
+	private static final int NUMBER_OF_ITERATIONS = 3;
+
+	@Test
+	public void testResultDoesNotDependOnNumberOfThreads() {
+		List<Double> sequential = runReplanning(1);
+		List<Double> parallel = runReplanning(4);
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	public void testConfigSelectsTheStrategyManager() {
+		Config config = ConfigUtils.createConfig();
+		assertInstanceOf(LSPStrategyManagerImpl.class, LSPUtils.createLSPStrategyManager(config));
+
+		ConfigUtils.addOrGetModule(config, FreightLogisticsConfigGroup.class).setNumberOfThreadsForReplanning(4);
+		assertInstanceOf(ParallelLSPStrategyManagerImpl.class, LSPUtils.createLSPStrategyManager(config));
+	}
+
+	@Test
+	public void testConfiguredStrategyManagerCreatesOneStrategyPerLSP() {
+		Config config = ConfigUtils.createConfig();
+		ConfigUtils.addOrGetModule(config, FreightLogisticsConfigGroup.class).setNumberOfThreadsForReplanning(4);
+		LSPStrategyManager strategyManager = LSPUtils.createLSPStrategyManager(config);
+		AtomicInteger numberOfStrategies = new AtomicInteger();
+		strategyManager.addStrategy(() -> {
+			numberOfStrategies.incrementAndGet();
+			return createScoringStrategy();
+		}, null, 1.);
+
+		strategyManager.run(createLSPs(), 1, null);
+		// one instance stands for the strategy, the others are run in parallel
+		assertEquals(1 + NUMBER_OF_LSPS, numberOfStrategies.get());
+	}
+
+	@Test
+	public void testMaxPlansPerAgent() {
+		List<LSP> lsps = createLSPs();
+		ParallelLSPStrategyManagerImpl strategyManager = new ParallelLSPStrategyManagerImpl(4);
+		strategyManager.addStrategy(ParallelLSPStrategyManagerImplTest::createScoringStrategy, null, 1.);
+		strategyManager.setMaxPlansPerAgent(2);
+		for (int iteration = 1; iteration <= NUMBER_OF_ITERATIONS; iteration++) {
+			strategyManager.run(lsps, iteration, null);
+		}
+		for (LSP lsp : lsps) {
+			// at most 2 plans are kept before the replanning, plus the new one
+			assertEquals(3, lsp.getPlans().size());
+			assertTrue(lsp.getPlans().contains(lsp.getSelectedPlan()));
+		}
+	}
+
+	/**
+	 * @return the scores of the selected plans of all LSPs after some replannings
+	 */
+	private static List<Double> runReplanning(int numberOfThreads) {
+		MatsimRandom.reset(4711);
+		List<LSP> lsps = createLSPs();
+		ParallelLSPStrategyManagerImpl strategyManager = new ParallelLSPStrategyManagerImpl(numberOfThreads);
+		strategyManager.addStrategy(ParallelLSPStrategyManagerImplTest::createScoringStrategy, null, 1.);
+		strategyManager.addStrategy(new GenericPlanStrategyImpl<>(new KeepSelected<>()), null, 1.);
+		for (int iteration = 1; iteration <= NUMBER_OF_ITERATIONS; iteration++) {
+			strategyManager.run(lsps, iteration, null);
+		}
+		List<Double> scores = new ArrayList<>();
+		for (LSP lsp : lsps) {
+			scores.add(lsp.getSelectedPlan().getScore());
+		}
+		return scores;
+	}
+
+	private static List<LSP> createLSPs() {
+		List<LSP> lsps = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_LSPS; i++) {
+			lsps.add(LSPUtils.LSPBuilder.getInstance(Id.create("lsp" + i, LSP.class))
+					.setInitialPlan(LSPUtils.createLSPPlan())
+					.setLogisticChainScheduler(LSPUtils.createForwardLogisiticChainScheduler())
+					.build());
+		}
+		return lsps;
+	}
+
+	/** Copies the selected plan and gives it a random score. */
+	private static GenericPlanStrategy<LSPPlan, LSP> createScoringStrategy() {
+		GenericPlanStrategyImpl<LSPPlan, LSP> strategy = new GenericPlanStrategyImpl<>(new KeepSelected<>());
+		strategy.addStrategyModule(new GenericPlanStrategyModule<>() {
+			@Override
+			public void prepareReplanning(ReplanningContext replanningContext) {}
+
+			@Override
+			public void handlePlan(LSPPlan plan) {
+				plan.setScore(ParallelLSPStrategyManagerImpl.getRandom().nextDouble());
+			}
+
+			@Override
+			public void finishReplanning() {}
+		});
+		return strategy;
+	}
+}
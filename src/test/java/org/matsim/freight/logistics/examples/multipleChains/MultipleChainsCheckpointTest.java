@@ -0,0 +1,247 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.examples.multipleChains;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ScoringConfigGroup;
+import org.matsim.core.config.groups.VspExperimentalConfigGroup;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.replanning.GenericPlanStrategyImpl;
+import org.matsim.core.replanning.selectors.BestPlanSelector;
+import org.matsim.core.replanning.selectors.ExpBetaPlanSelector;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.controler.CarrierControlerUtils;
+import org.matsim.freight.carriers.controler.CarrierScoringFunctionFactory;
+import org.matsim.freight.carriers.controler.CarrierStrategyManager;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.analysis.LspScoreStats;
+import org.matsim.freight.logistics.analysis.LspScoreStatsControlerListener.ScoreItem;
+import org.matsim.freight.logistics.resourceImplementations.ResourceImplementationUtils;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+/**
+ * Runs some iterations in one go, and the same run again, resumed from the checkpoint of one of
+ * its iterations. Both have to end with the same LSP plans, carrier plans and score history.
+ */
+public class MultipleChainsCheckpointTest {
+
+	private static final Id<Link> DEPOT_LINK_ID = Id.createLinkId("i(5,0)");
+	private static final int LAST_ITERATION = 4;
+	private static final int CHECKPOINT_ITERATION = 2;
+
+	@RegisterExtension
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testResumedRunEqualsUninterruptedRun() {
+		Config uninterruptedConfig = prepareConfig(utils.getOutputDirectory() + "uninterrupted/");
+		ConfigUtils.addOrGetModule(uninterruptedConfig, FreightLogisticsConfigGroup.class).setWriteCheckpointInterval(CHECKPOINT_ITERATION);
+		Controler uninterrupted = prepareControler(uninterruptedConfig);
+		uninterrupted.run();
+
+		String checkpoint = uninterrupted.getControlerIO().getIterationFilename(CHECKPOINT_ITERATION, "lsp_checkpoint.bin.gz");
+		assertTrue(new File(checkpoint).exists());
+
+		Config resumedConfig = prepareConfig(utils.getOutputDirectory() + "resumed/");
+		resumedConfig.controller().setFirstIteration(CHECKPOINT_ITERATION + 1);
+		ConfigUtils.addOrGetModule(resumedConfig, FreightLogisticsConfigGroup.class).setResumeFromCheckpoint(checkpoint);
+		Controler resumed = prepareControler(resumedConfig);
+		resumed.run();
+
+		assertEquals(
+				readLines(uninterrupted.getControlerIO().getOutputPath() + "/output_lsps.xml.gz"),
+				readLines(resumed.getControlerIO().getOutputPath() + "/output_lsps.xml.gz"));
+		assertEquals(
+				readLines(uninterrupted.getControlerIO().getOutputPath() + "/output_carriers.xml.gz"),
+				readLines(resumed.getControlerIO().getOutputPath() + "/output_carriers.xml.gz"));
+
+		Map<ScoreItem, Map<Integer, Double>> uninterruptedHistory = uninterrupted.getInjector().getInstance(LspScoreStats.class).getScoreHistory();
+		Map<ScoreItem, Map<Integer, Double>> resumedHistory = resumed.getInjector().getInstance(LspScoreStats.class).getScoreHistory();
+		assertEquals(LAST_ITERATION + 1, resumedHistory.get(ScoreItem.executed).size());
+		assertEquals(uninterruptedHistory, resumedHistory);
+	}
+
+	@Test
+	public void testResumeRequiresNextIteration() {
+		Config uninterruptedConfig = prepareConfig(utils.getOutputDirectory() + "uninterrupted/");
+		uninterruptedConfig.controller().setLastIteration(CHECKPOINT_ITERATION);
+		ConfigUtils.addOrGetModule(uninterruptedConfig, FreightLogisticsConfigGroup.class).setWriteCheckpointInterval(CHECKPOINT_ITERATION);
+		Controler uninterrupted = prepareControler(uninterruptedConfig);
+		uninterrupted.run();
+
+		// the checkpoint of the last iteration is written at shutdown
+		String checkpoint = uninterrupted.getControlerIO().getIterationFilename(CHECKPOINT_ITERATION, "lsp_checkpoint.bin.gz");
+
+		Config resumedConfig = prepareConfig(utils.getOutputDirectory() + "resumed/");
+		resumedConfig.controller().setFirstIteration(CHECKPOINT_ITERATION);
+		ConfigUtils.addOrGetModule(resumedConfig, FreightLogisticsConfigGroup.class).setResumeFromCheckpoint(checkpoint);
+		Controler resumed = prepareControler(resumedConfig);
+		assertThrows(RuntimeException.class, resumed::run);
+	}
+
+	private Config prepareConfig(String outputDirectory) {
+		Config config = ConfigUtils.createConfig();
+
+		config.controller().setOutputDirectory(outputDirectory);
+		config.controller().setLastIteration(LAST_ITERATION);
+
+		config.network().setInputFile(String.valueOf(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("freight-chessboard-9x9"), "grid9x9.xml")));
+		config.controller().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists);
+		config.vspExperimental().setVspDefaultsCheckingLevel(VspExperimentalConfigGroup.VspDefaultsCheckingLevel.warn);
+
+		FreightCarriersConfigGroup freightConfig = ConfigUtils.addOrGetModule(config, FreightCarriersConfigGroup.class);
+		freightConfig.setTimeWindowHandling(FreightCarriersConfigGroup.TimeWindowHandling.ignore);
+
+		return config;
+	}
+
+	private static Controler prepareControler(Config config) {
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		LSPUtils.addLSPs(scenario, new LSPs(Collections.singletonList(createLSP(scenario))));
+
+		Controler controler = new Controler(scenario);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				install(new LSPModule());
+			}
+		});
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(CarrierScoringFunctionFactory.class).toInstance(new EventBasedCarrierScorer4MultipleChains());
+				bind(LSPScorerFactory.class).toInstance(MyLSPScorer::new);
+				bind(CarrierStrategyManager.class).toProvider(() -> {
+					CarrierStrategyManager strategyManager = CarrierControlerUtils.createDefaultCarrierStrategyManager();
+					strategyManager.addStrategy(new GenericPlanStrategyImpl<>(new BestPlanSelector<>()), null, 1);
+					return strategyManager;
+				});
+				// both strategies draw their random numbers from the controler, see LSPCheckpointListener
+				bind(LSPStrategyManager.class).toProvider(() -> {
+					LSPStrategyManager strategyManager = new ParallelLSPStrategyManagerImpl(1);
+					strategyManager.addStrategy(new GenericPlanStrategyImpl<>(new ExpBetaPlanSelector<>(new ScoringConfigGroup())), null, 1);
+					strategyManager.addStrategy(RandomDistributionAllShipmentsStrategyFactory.createStrategy(), null, 1);
+					strategyManager.setMaxPlansPerAgent(3);
+					return strategyManager;
+				});
+			}
+		});
+		return controler;
+	}
+
+	private static LSP createLSP(Scenario scenario) {
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("large50", VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(50);
+		vehicleType.getCostInformation().setCostsPerMeter(0.01);
+		vehicleType.getCostInformation().setCostsPerSecond(0.01);
+		vehicleType.getCostInformation().setFixedCost(150.);
+		vehicleType.setMaximumVelocity(10);
+		vehicleType.setNetworkMode(TransportMode.car);
+
+		LogisticChain leftChain = createChain(scenario, vehicleType, "Left");
+		LogisticChain rightChain = createChain(scenario, vehicleType, "Right");
+
+		LSPPlan plan = LSPUtils.createLSPPlan()
+				.addLogisticChain(leftChain)
+				.addLogisticChain(rightChain)
+				.setInitialShipmentAssigner(MultipleChainsUtils.createRoundRobinLogisticChainShipmentAssigner());
+		plan.setType(MultipleChainsUtils.LspPlanTypes.MULTIPLE_ONE_ECHELON_CHAINS.toString());
+
+		List<LSPResource> resources = new ArrayList<>();
+		for (LogisticChain logisticChain : plan.getLogisticChains()) {
+			for (LogisticChainElement logisticChainElement : logisticChain.getLogisticChainElements()) {
+				resources.add(logisticChainElement.getResource());
+			}
+		}
+
+		LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("myLSP", LSP.class))
+				.setInitialPlan(plan)
+				.setLogisticChainScheduler(ResourceImplementationUtils.createDefaultSimpleForwardLogisticChainScheduler(resources))
+				.build();
+
+		for (int i = 1; i <= 10; i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create("Shipment_" + i, LspShipment.class));
+			builder.setCapacityDemand(1);
+			builder.setFromLinkId(DEPOT_LINK_ID);
+			builder.setToLinkId(Id.createLinkId(i % 2 != 0 ? "i(1,9)R" : "j(9,9)"));
+			builder.setEndTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setDeliveryServiceTime(60);
+			lsp.assignShipmentToLSP(builder.build());
+		}
+
+		lsp.scheduleLogisticChains();
+
+		return lsp;
+	}
+
+	private static LogisticChain createChain(Scenario scenario, VehicleType vehicleType, String side) {
+		Carrier carrier = CarriersUtils.createCarrier(Id.create("carrier" + side, Carrier.class));
+		carrier.getCarrierCapabilities().setFleetSize(CarrierCapabilities.FleetSize.INFINITE);
+		CarriersUtils.addCarrierVehicle(carrier, CarrierVehicle.newInstance(Id.createVehicleId("veh_large"), DEPOT_LINK_ID, vehicleType));
+
+		LSPResource carrierResource = ResourceImplementationUtils.DistributionCarrierResourceBuilder.newInstance(carrier)
+				.setDistributionScheduler(ResourceImplementationUtils.createDefaultDistributionCarrierScheduler(scenario))
+				.build();
+
+		LogisticChainElement carrierElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create(side.toLowerCase() + "CarrierElement", LogisticChainElement.class))
+				.setResource(carrierResource)
+				.build();
+
+		return LSPUtils.LogisticChainBuilder.newInstance(Id.create(side.toLowerCase() + "Chain", LogisticChain.class))
+				.addLogisticChainElement(carrierElement)
+				.build();
+	}
+
+	private static List<String> readLines(String filename) {
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			return reader.lines().toList();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
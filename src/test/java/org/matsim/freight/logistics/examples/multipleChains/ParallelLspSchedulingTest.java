@@ -0,0 +1,193 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.examples.multipleChains;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ScoringConfigGroup;
+import org.matsim.core.config.groups.VspExperimentalConfigGroup;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.replanning.GenericPlanStrategyImpl;
+import org.matsim.core.replanning.selectors.BestPlanSelector;
+import org.matsim.core.replanning.selectors.ExpBetaPlanSelector;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.controler.CarrierControlerUtils;
+import org.matsim.freight.carriers.controler.CarrierScoringFunctionFactory;
+import org.matsim.freight.carriers.controler.CarrierStrategyManager;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.resourceImplementations.ResourceImplementationUtils;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+/**
+ * Runs the same scenario with several LSPs once with sequential and once with parallel scheduling of
+ * the LSPs (see {@link FreightLogisticsConfigGroup#getNumberOfThreadsForScheduling()}). Both runs
+ * have to produce the same LSP plans, carrier plans and events.
+ */
+public class ParallelLspSchedulingTest {
+
+	private static final Id<Link> DEPOT_LINK_ID = Id.createLinkId("i(5,0)");
+	private static final List<String> LSP_NAMES = List.of("A", "B", "C");
+
+	@RegisterExtension
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testParallelSchedulingEqualsSequentialScheduling() {
+		String sequentialOutput = utils.getOutputDirectory() + "sequential/";
+		String parallelOutput = utils.getOutputDirectory() + "parallel/";
+		run(sequentialOutput, 1);
+		run(parallelOutput, 4);
+
+		MatsimTestUtils.assertEqualFilesLineByLine(sequentialOutput + "output_lsps.xml.gz", parallelOutput + "output_lsps.xml.gz");
+		MatsimTestUtils.assertEqualFilesLineByLine(sequentialOutput + "output_carriers.xml.gz", parallelOutput + "output_carriers.xml.gz");
+		MatsimTestUtils.assertEqualEventsFiles(sequentialOutput + "output_events.xml.gz", parallelOutput + "output_events.xml.gz");
+	}
+
+	private static void run(String outputDirectory, int numberOfThreadsForScheduling) {
+		Config config = ConfigUtils.createConfig();
+		config.controller().setOutputDirectory(outputDirectory);
+		config.controller().setLastIteration(2);
+		config.network().setInputFile(String.valueOf(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("freight-chessboard-9x9"), "grid9x9.xml")));
+		config.controller().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists);
+		config.vspExperimental().setVspDefaultsCheckingLevel(VspExperimentalConfigGroup.VspDefaultsCheckingLevel.warn);
+		ConfigUtils.addOrGetModule(config, FreightCarriersConfigGroup.class).setTimeWindowHandling(FreightCarriersConfigGroup.TimeWindowHandling.ignore);
+		ConfigUtils.addOrGetModule(config, FreightLogisticsConfigGroup.class).setNumberOfThreadsForScheduling(numberOfThreadsForScheduling);
+
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		VehicleType vehicleType = createVehicleType();
+		List<LSP> lsps = new ArrayList<>();
+		for (String lspName : LSP_NAMES) {
+			lsps.add(createLSP(scenario, vehicleType, lspName));
+		}
+		LSPUtils.addLSPs(scenario, new LSPs(lsps));
+
+		Controler controler = new Controler(scenario);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				install(new LSPModule());
+			}
+		});
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(CarrierScoringFunctionFactory.class).toInstance(new EventBasedCarrierScorer4MultipleChains());
+				bind(LSPScorerFactory.class).toInstance(MyLSPScorer::new);
+				bind(CarrierStrategyManager.class).toProvider(() -> {
+					CarrierStrategyManager strategyManager = CarrierControlerUtils.createDefaultCarrierStrategyManager();
+					strategyManager.addStrategy(new GenericPlanStrategyImpl<>(new BestPlanSelector<>()), null, 1);
+					return strategyManager;
+				});
+				bind(LSPStrategyManager.class).toProvider(() -> {
+					LSPStrategyManager strategyManager = new ParallelLSPStrategyManagerImpl(1);
+					strategyManager.addStrategy(new GenericPlanStrategyImpl<>(new ExpBetaPlanSelector<>(new ScoringConfigGroup())), null, 1);
+					strategyManager.addStrategy(RandomDistributionAllShipmentsStrategyFactory.createStrategy(), null, 1);
+					strategyManager.setMaxPlansPerAgent(3);
+					return strategyManager;
+				});
+			}
+		});
+		controler.run();
+	}
+
+	private static VehicleType createVehicleType() {
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("small05", VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(5);
+		vehicleType.getCostInformation().setCostsPerMeter(0.001);
+		vehicleType.getCostInformation().setCostsPerSecond(0.005);
+		vehicleType.getCostInformation().setFixedCost(25.);
+		vehicleType.setMaximumVelocity(10);
+		vehicleType.setNetworkMode(TransportMode.car);
+		return vehicleType;
+	}
+
+	private static LSP createLSP(Scenario scenario, VehicleType vehicleType, String lspName) {
+		LSPPlan plan = LSPUtils.createLSPPlan()
+				.addLogisticChain(createChain(scenario, vehicleType, lspName, "Left"))
+				.addLogisticChain(createChain(scenario, vehicleType, lspName, "Right"))
+				.setInitialShipmentAssigner(MultipleChainsUtils.createRoundRobinLogisticChainShipmentAssigner());
+		plan.setType(MultipleChainsUtils.LspPlanTypes.MULTIPLE_ONE_ECHELON_CHAINS.toString());
+
+		List<LSPResource> resources = new ArrayList<>();
+		for (LogisticChain logisticChain : plan.getLogisticChains()) {
+			for (LogisticChainElement logisticChainElement : logisticChain.getLogisticChainElements()) {
+				resources.add(logisticChainElement.getResource());
+			}
+		}
+
+		LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("lsp" + lspName, LSP.class))
+				.setInitialPlan(plan)
+				.setLogisticChainScheduler(ResourceImplementationUtils.createDefaultSimpleForwardLogisticChainScheduler(resources))
+				.build();
+
+		String[] toLinks = {"i(1,9)R", "j(9,9)", "i(3,5)R", "j(7,3)", "i(6,8)"};
+		for (int i = 1; i <= 12; i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(lspName + "_Shipment_" + i, LspShipment.class));
+			builder.setCapacityDemand(1);
+			builder.setFromLinkId(DEPOT_LINK_ID);
+			builder.setToLinkId(Id.createLinkId(toLinks[i % toLinks.length]));
+			builder.setEndTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setDeliveryServiceTime(60);
+			lsp.assignShipmentToLSP(builder.build());
+		}
+
+		lsp.scheduleLogisticChains();
+
+		return lsp;
+	}
+
+	private static LogisticChain createChain(Scenario scenario, VehicleType vehicleType, String lspName, String side) {
+		// the resource (i.e. carrier) ids have to be unique over all LSPs
+		Carrier carrier = CarriersUtils.createCarrier(Id.create("carrier" + lspName + side, Carrier.class));
+		carrier.getCarrierCapabilities().setFleetSize(CarrierCapabilities.FleetSize.INFINITE);
+		CarriersUtils.addCarrierVehicle(carrier, CarrierVehicle.newInstance(Id.createVehicleId("veh_" + lspName + side), DEPOT_LINK_ID, vehicleType));
+
+		LSPResource carrierResource = ResourceImplementationUtils.DistributionCarrierResourceBuilder.newInstance(carrier)
+				.setDistributionScheduler(ResourceImplementationUtils.createDefaultDistributionCarrierScheduler(scenario))
+				.build();
+
+		LogisticChainElement carrierElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create(lspName + side + "CarrierElement", LogisticChainElement.class))
+				.setResource(carrierResource)
+				.build();
+
+		return LSPUtils.LogisticChainBuilder.newInstance(Id.create(lspName + side + "Chain", LogisticChain.class))
+				.addLogisticChainElement(carrierElement)
+				.build();
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.resourceImplementations.CarrierSchedulerUtils;
+import org.matsim.freight.logistics.resourceImplementations.ResourceImplementationUtils;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentLeg;
+import org.matsim.freight.logistics.shipment.LspShipmentPlan;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class LSPBinarySnapshotTest {
+	private static final Logger log = LogManager.getLogger(LSPBinarySnapshotTest.class);
+
+	private static final Id<Link> DEPOT_LINK_ID = Id.createLinkId("(4 2) (4 3)");
+	private static final List<String> TO_LINKS = List.of("(2 2) (2 3)", "(3 3) (3 4)", "(1 1) (1 2)", "(2 1) (3 1)", "(2 3) (2 4)", "(2 2) (3 2)");
+	private static final int LARGE_NUMBER_OF_SHIPMENTS = 350_000;
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRestoreFromSnapshot() {
+		String snapshotFilename = utils.getOutputDirectory() + "/lspSnapshot.bin.gz";
+
+		CarrierVehicleTypes carrierVehicleTypes = readVehicleTypes();
+		Carriers originalCarriers = readCarriers(carrierVehicleTypes);
+		LSPs originalLsps = readLsps(originalCarriers);
+		new LSPBinarySnapshotWriter(originalLsps).write(snapshotFilename);
+
+		// set up as at the start of a run, then change what the snapshot is expected to restore
+		Carriers restoredCarriers = readCarriers(carrierVehicleTypes);
+		LSPs restoredLsps = readLsps(restoredCarriers);
+		for (LSP lsp : restoredLsps.getLSPs().values()) {
+			lsp.setSelectedPlan(lsp.getPlans().getLast());
+			for (LSPPlan plan : lsp.getPlans()) {
+				plan.setScore(0.);
+				plan.getShipmentPlans().clear();
+			}
+		}
+		for (Carrier carrier : restoredCarriers.getCarriers().values()) {
+			carrier.getPlans().clear();
+			carrier.getServices().clear();
+			carrier.getShipments().clear();
+		}
+
+		new LSPBinarySnapshotReader(restoredLsps).read(snapshotFilename);
+
+		new LSPPlanXmlWriter(originalLsps).write(utils.getOutputDirectory() + "/originalLsps.xml");
+		new LSPPlanXmlWriter(restoredLsps).write(utils.getOutputDirectory() + "/restoredLsps.xml");
+		MatsimTestUtils.assertEqualFilesLineByLine(
+				utils.getOutputDirectory() + "/originalLsps.xml", utils.getOutputDirectory() + "/restoredLsps.xml");
+
+		new CarrierPlanWriter(originalCarriers).write(utils.getOutputDirectory() + "/originalCarriers.xml");
+		new CarrierPlanWriter(restoredCarriers).write(utils.getOutputDirectory() + "/restoredCarriers.xml");
+		MatsimTestUtils.assertEqualFilesLineByLine(
+				utils.getOutputDirectory() + "/originalCarriers.xml", utils.getOutputDirectory() + "/restoredCarriers.xml");
+
+		for (Carrier carrier : restoredCarriers.getCarriers().values()) {
+			assertNotNull(carrier.getSelectedPlan(), "no restored plan for carrier " + carrier.getId());
+		}
+	}
+
+	@Test
+	public void testRestoredShipmentPlansAreLinked() {
+		String snapshotFilename = utils.getOutputDirectory() + "/lspSnapshot.bin.gz";
+		Scenario scenario = createScenario();
+		LSP originalLsp = createDistributionLSP(scenario, LSPUtils.LogicOfVrp.serviceBased, true);
+		new LSPBinarySnapshotWriter(new LSPs(List.of(originalLsp))).write(snapshotFilename);
+
+		// set up again, as at the start of a run, i.e. with new chain elements, resources and carriers
+		LSP restoredLsp = createDistributionLSP(scenario, LSPUtils.LogicOfVrp.serviceBased, false);
+		new LSPBinarySnapshotReader(new LSPs(List.of(restoredLsp))).read(snapshotFilename);
+
+		Carrier carrier = getCarrier(restoredLsp);
+		assertNotNull(carrier.getSelectedPlan());
+		Set<CarrierService> servicesOfTours = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+			for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+				if (tourElement instanceof Tour.ServiceActivity serviceActivity) {
+					assertSame(carrier.getServices().get(serviceActivity.getService().getId()), serviceActivity.getService());
+					servicesOfTours.add(serviceActivity.getService());
+				}
+			}
+		}
+
+		LSPPlan plan = restoredLsp.getSelectedPlan();
+		assertEquals(originalLsp.getLspShipments().size(), plan.getShipmentPlans().size());
+		int numberOfLegs = 0;
+		for (LogisticChain chain : plan.getLogisticChains()) {
+			for (Id<LspShipment> shipmentId : chain.getLspShipmentIds()) {
+				LspShipmentPlan shipmentPlan = LSPUtils.findLspShipmentPlan(plan, shipmentId);
+				assertNotNull(shipmentPlan, "no restored shipment plan for " + shipmentId);
+				assertEquals(LSPUtils.findLspShipmentPlan(originalLsp.getSelectedPlan(), shipmentId).getPlanElements().size(),
+						shipmentPlan.getPlanElements().size());
+				for (LspShipmentPlanElement element : shipmentPlan.getPlanElements().values()) {
+					// the elements refer to the chain elements and resources of the set up lsp, not to copies
+					assertTrue(chain.getLogisticChainElements().stream().anyMatch(chainElement -> chainElement == element.getLogisticChainElement()),
+							"element " + element.getElementType() + " of shipment " + shipmentId + " is not linked to its chain element");
+					assertSame(element.getLogisticChainElement().getResource(), findResource(restoredLsp, element.getResourceId()));
+					if (element instanceof LspShipmentLeg leg) {
+						assertEquals(carrier.getId(), leg.getCarrierId());
+						assertSame(carrier.getServices().get(leg.getCarrierService().getId()), leg.getCarrierService());
+						assertTrue(servicesOfTours.contains(leg.getCarrierService()), "service of shipment " + shipmentId + " is not in a tour");
+						numberOfLegs++;
+					}
+				}
+			}
+		}
+		assertEquals(originalLsp.getLspShipments().size(), numberOfLegs);
+	}
+
+	@Test
+	public void testAllCarrierPlansAreRestored() {
+		String snapshotFilename = utils.getOutputDirectory() + "/lspSnapshot.bin.gz";
+		Scenario scenario = createScenario();
+		LSP originalLsp = createDistributionLSP(scenario, LSPUtils.LogicOfVrp.shipmentBased, true);
+		Carrier originalCarrier = getCarrier(originalLsp);
+		CarrierPlan selectedPlan = originalCarrier.getSelectedPlan();
+		selectedPlan.setScore(-17.);
+		CarrierPlan otherPlan = new CarrierPlan(originalCarrier, selectedPlan.getScheduledTours());
+		otherPlan.setScore(-42.);
+		originalCarrier.addPlan(otherPlan);
+		originalCarrier.setSelectedPlan(selectedPlan);
+		new LSPBinarySnapshotWriter(new LSPs(List.of(originalLsp))).write(snapshotFilename);
+
+		LSP restoredLsp = createDistributionLSP(scenario, LSPUtils.LogicOfVrp.shipmentBased, false);
+		new LSPBinarySnapshotReader(new LSPs(List.of(restoredLsp))).read(snapshotFilename);
+
+		Carrier restoredCarrier = getCarrier(restoredLsp);
+		assertEquals(2, restoredCarrier.getPlans().size());
+		assertEquals(-17., restoredCarrier.getSelectedPlan().getScore());
+		assertEquals(originalCarrier.getShipments().keySet(), restoredCarrier.getShipments().keySet());
+
+		Carriers originalCarriers = new Carriers();
+		originalCarriers.addCarrier(originalCarrier);
+		Carriers restoredCarriers = new Carriers();
+		restoredCarriers.addCarrier(restoredCarrier);
+		new CarrierPlanWriter(originalCarriers).write(utils.getOutputDirectory() + "/originalCarriers.xml");
+		new CarrierPlanWriter(restoredCarriers).write(utils.getOutputDirectory() + "/restoredCarriers.xml");
+		MatsimTestUtils.assertEqualFilesLineByLine(
+				utils.getOutputDirectory() + "/originalCarriers.xml", utils.getOutputDirectory() + "/restoredCarriers.xml");
+
+		// the transport legs refer to the restored carrier shipments
+		for (LspShipmentPlan shipmentPlan : restoredLsp.getSelectedPlan().getShipmentPlans()) {
+			for (LspShipmentPlanElement element : shipmentPlan.getPlanElements().values()) {
+				if (element instanceof LspShipmentLeg leg) {
+					assertNotNull(leg.getCarrierShipment(), "no carrier shipment for " + shipmentPlan.getLspShipmentId());
+					assertSame(restoredCarrier.getShipments().get(leg.getCarrierShipment().getId()), leg.getCarrierShipment());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Restores more than a million shipment plan elements, i.e. the size of the large runs for which the snapshot is meant.
+	 */
+	@Test
+	@Timeout(60)
+	public void testRestoreOfAMillionShipmentPlanElements() {
+		String snapshotFilename = utils.getOutputDirectory() + "/lspSnapshot.bin.gz";
+		Scenario scenario = createScenario();
+		LSP lsp = createDistributionLSP(scenario, LSPUtils.LogicOfVrp.serviceBased, false);
+		LSPPlan plan = lsp.getSelectedPlan();
+		LogisticChain chain = plan.getLogisticChains().iterator().next();
+		LogisticChainElement chainElement = chain.getLogisticChainElements().iterator().next();
+		for (int i = 0; i < LARGE_NUMBER_OF_SHIPMENTS; i++) {
+			Id<LspShipment> shipmentId = Id.create("shipment_" + i, LspShipment.class);
+			chain.getLspShipmentIds().add(shipmentId);
+			addScheduledElements(LspShipmentUtils.getOrCreateShipmentPlan(plan, shipmentId), chainElement, i);
+		}
+		new LSPBinarySnapshotWriter(new LSPs(List.of(lsp))).write(snapshotFilename);
+		plan.getShipmentPlans().clear();
+		chain.getLspShipmentIds().clear();
+
+		long start = System.nanoTime();
+		new LSPBinarySnapshotReader(new LSPs(List.of(lsp))).read(snapshotFilename);
+		log.info("Restored {} shipment plan elements in {} ms.", 3 * LARGE_NUMBER_OF_SHIPMENTS, (System.nanoTime() - start) / 1_000_000);
+
+		LSPPlan restoredPlan = lsp.getSelectedPlan();
+		LogisticChain restoredChain = restoredPlan.getLogisticChains().iterator().next();
+		assertEquals(LARGE_NUMBER_OF_SHIPMENTS, restoredChain.getLspShipmentIds().size());
+		assertEquals(LARGE_NUMBER_OF_SHIPMENTS, restoredPlan.getShipmentPlans().size());
+		int numberOfElements = 0;
+		for (LspShipmentPlan shipmentPlan : restoredPlan.getShipmentPlans()) {
+			numberOfElements += shipmentPlan.getPlanElements().size();
+		}
+		assertEquals(3 * LARGE_NUMBER_OF_SHIPMENTS, numberOfElements);
+		for (int i = 0; i < LARGE_NUMBER_OF_SHIPMENTS; i += 9973) {
+			LspShipmentPlan shipmentPlan = LSPUtils.findLspShipmentPlan(restoredPlan, Id.create("shipment_" + i, LspShipment.class));
+			List<LspShipmentPlanElement> elements = List.copyOf(shipmentPlan.getPlanElements().values());
+			assertEquals(List.of("LOAD", "TRANSPORT", "UNLOAD"), elements.stream().map(LspShipmentPlanElement::getElementType).toList());
+			for (int j = 0; j < elements.size(); j++) {
+				assertEquals(getStartTime(i, j), elements.get(j).getStartTime());
+				assertEquals(getStartTime(i, j + 1), elements.get(j).getEndTime());
+				assertSame(chainElement, elements.get(j).getLogisticChainElement());
+			}
+		}
+	}
+
+	@Test
+	public void testOtherFileIsRejected() {
+		LSPs lsps = new LSPs(Collections.emptyList());
+		assertThrows(IllegalArgumentException.class,
+				() -> new LSPBinarySnapshotReader(lsps).read(utils.getPackageInputDirectory() + "lsps.xml"));
+	}
+
+	private CarrierVehicleTypes readVehicleTypes() {
+		CarrierVehicleTypes carrierVehicleTypes = new CarrierVehicleTypes();
+		new CarrierVehicleTypeReader(carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "vehicles.xml");
+		return carrierVehicleTypes;
+	}
+
+	private Carriers readCarriers(CarrierVehicleTypes carrierVehicleTypes) {
+		Carriers carriers = new Carriers();
+		new CarrierPlanXmlReader(carriers, carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "carriers.xml");
+		return carriers;
+	}
+
+	private static Scenario createScenario() {
+		Config config = new Config();
+		config.addCoreModules();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+		return scenario;
+	}
+
+	/**
+	 * A distribution carrier with the given logic of the VRP. The lsp is scheduled if requested; otherwise, it is as at the start of a run.
+	 */
+	private static LSP createDistributionLSP(Scenario scenario, LSPUtils.LogicOfVrp logicOfVrp, boolean schedule) {
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("DistributionCarrierVehicleType", VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(2);
+		vehicleType.getCostInformation().setCostsPerMeter(0.0004);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.getCostInformation().setFixedCost(49.);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+
+		Carrier carrier = CarriersUtils.createCarrier(Id.create("DistributionCarrier", Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(CarrierVehicle.newInstance(Id.createVehicleId("DistributionVehicle"), DEPOT_LINK_ID, vehicleType))
+				.setFleetSize(CarrierCapabilities.FleetSize.INFINITE)
+				.build());
+		CarrierSchedulerUtils.setVrpLogic(carrier, logicOfVrp);
+		LSPResource resource = ResourceImplementationUtils.DistributionCarrierResourceBuilder.newInstance(carrier)
+				.setDistributionScheduler(ResourceImplementationUtils.createDefaultDistributionCarrierScheduler(scenario))
+				.setLocationLinkId(DEPOT_LINK_ID)
+				.build();
+
+		LogisticChainElement distributionElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create("DistributionElement", LogisticChainElement.class))
+				.setResource(resource)
+				.build();
+		LogisticChain distributionChain = LSPUtils.LogisticChainBuilder.newInstance(Id.create("DistributionChain", LogisticChain.class))
+				.addLogisticChainElement(distributionElement)
+				.build();
+		LSPPlan distributionPlan = LSPUtils.createLSPPlan()
+				.setInitialShipmentAssigner(ResourceImplementationUtils.createSingleLogisticChainShipmentAssigner())
+				.addLogisticChain(distributionChain);
+
+		LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("DistributionLSP", LSP.class))
+				.setInitialPlan(distributionPlan)
+				.setLogisticChainScheduler(ResourceImplementationUtils.createDefaultSimpleForwardLogisticChainScheduler(List.of(resource)))
+				.build();
+		if (schedule) {
+			for (int i = 0; i < TO_LINKS.size(); i++) {
+				LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(i + 1, LspShipment.class));
+				builder.setCapacityDemand(1);
+				builder.setFromLinkId(DEPOT_LINK_ID);
+				builder.setToLinkId(Id.createLinkId(TO_LINKS.get(i)));
+				builder.setEndTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+				builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+				builder.setDeliveryServiceTime(60);
+				lsp.assignShipmentToLSP(builder.build());
+			}
+			lsp.scheduleLogisticChains();
+		}
+		return lsp;
+	}
+
+	private static Carrier getCarrier(LSP lsp) {
+		return ((LSPCarrierResource) lsp.getResources().iterator().next()).getCarrier();
+	}
+
+	private static LSPResource findResource(LSP lsp, Id<LSPResource> resourceId) {
+		for (LSPResource resource : lsp.getResources()) {
+			if (resource.getId().equals(resourceId)) {
+				return resource;
+			}
+		}
+		return null;
+	}
+
+	/** Adds the load, transport and unload of the shipment with the given index, as scheduled by a distribution carrier. */
+	private static void addScheduledElements(LspShipmentPlan shipmentPlan, LogisticChainElement chainElement, int shipmentIndex) {
+		Id<LSPResource> resourceId = chainElement.getResource().getId();
+
+		LspShipmentUtils.ScheduledShipmentLoadBuilder loadBuilder = LspShipmentUtils.ScheduledShipmentLoadBuilder.newInstance();
+		loadBuilder.setStartTime(getStartTime(shipmentIndex, 0));
+		loadBuilder.setEndTime(getStartTime(shipmentIndex, 1));
+		loadBuilder.setResourceId(resourceId);
+		loadBuilder.setLogisticChainElement(chainElement);
+		shipmentPlan.addPlanElement(Id.create(resourceId + "" + chainElement.getId() + "LOAD", LspShipmentPlanElement.class), loadBuilder.build());
+
+		LspShipmentUtils.ScheduledShipmentTransportBuilder transportBuilder = LspShipmentUtils.ScheduledShipmentTransportBuilder.newInstance();
+		transportBuilder.setStartTime(getStartTime(shipmentIndex, 1));
+		transportBuilder.setEndTime(getStartTime(shipmentIndex, 2));
+		transportBuilder.setResourceId(resourceId);
+		transportBuilder.setLogisticChainElement(chainElement);
+		transportBuilder.setFromLinkId(DEPOT_LINK_ID);
+		transportBuilder.setToLinkId(Id.createLinkId(TO_LINKS.get(shipmentIndex % TO_LINKS.size())));
+		shipmentPlan.addPlanElement(Id.create(resourceId + "" + chainElement.getId() + "TRANSPORT", LspShipmentPlanElement.class), transportBuilder.build());
+
+		LspShipmentUtils.ScheduledShipmentUnloadBuilder unloadBuilder = LspShipmentUtils.ScheduledShipmentUnloadBuilder.newInstance();
+		unloadBuilder.setStartTime(getStartTime(shipmentIndex, 2));
+		unloadBuilder.setEndTime(getStartTime(shipmentIndex, 3));
+		unloadBuilder.setResourceId(resourceId);
+		unloadBuilder.setLogisticsChainElement(chainElement);
+		shipmentPlan.addPlanElement(Id.create(resourceId + "" + chainElement.getId() + "UNLOAD", LspShipmentPlanElement.class), unloadBuilder.build());
+	}
+
+	private static double getStartTime(int shipmentIndex, int elementIndex) {
+		return 6 * 3600 + shipmentIndex % 1000 * 30. + elementIndex * 600.5;
+	}
+
+	private LSPs readLsps(Carriers carriers) {
+		LSPs lsps = new LSPs(Collections.emptyList());
+		new LSPPlanXmlReader(lsps, carriers).readFile(utils.getPackageInputDirectory() + "lsps.xml");
+		return lsps;
+	}
+}
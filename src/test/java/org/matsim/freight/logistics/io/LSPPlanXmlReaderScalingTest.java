@@ -0,0 +1,136 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.freight.carriers.CarrierPlanXmlReader;
+import org.matsim.freight.carriers.CarrierVehicleTypeReader;
+import org.matsim.freight.carriers.CarrierVehicleTypes;
+import org.matsim.freight.carriers.Carriers;
+import org.matsim.freight.logistics.LSP;
+import org.matsim.freight.logistics.LSPPlan;
+import org.matsim.freight.logistics.LSPUtils;
+import org.matsim.freight.logistics.LSPs;
+import org.matsim.freight.logistics.LogisticChain;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Parses a generated file with many shipments. Before, every shipment plan was matched against all
+ * shipments and chains of the LSP, which made the parsing quadratic in the number of shipments.
+ */
+public class LSPPlanXmlReaderScalingTest {
+
+	private static final int NUMBER_OF_SHIPMENTS = 100_000;
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testReadFileWithManyShipments() {
+		String lspsFilename = utils.getOutputDirectory() + "/manyShipmentsLsps.xml";
+		writeLspsFile(lspsFilename);
+
+		CarrierVehicleTypes carrierVehicleTypes = new CarrierVehicleTypes();
+		new CarrierVehicleTypeReader(carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "vehicles.xml");
+		Carriers carriers = new Carriers();
+		new CarrierPlanXmlReader(carriers, carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "carriers.xml");
+
+		LSPs lsps = new LSPs(Collections.emptyList());
+		new LSPPlanXmlReader(lsps, carriers).readFile(lspsFilename);
+
+		LSP lsp = lsps.getLSPs().get(Id.create("LSP_1", LSP.class));
+		assertNotNull(lsp);
+		assertEquals(NUMBER_OF_SHIPMENTS, lsp.getLspShipments().size());
+		assertEquals(2, lsp.getResources().size());
+
+		LSPPlan plan = lsp.getSelectedPlan();
+		assertEquals(2, plan.getLogisticChains().size());
+		assertEquals(NUMBER_OF_SHIPMENTS, plan.getShipmentPlans().size());
+		LogisticChain southChain = LSPUtils.findLogisticChainOfShipment(plan, Id.create("shipment0", LspShipment.class));
+		LogisticChain northChain = LSPUtils.findLogisticChainOfShipment(plan, Id.create("shipment1", LspShipment.class));
+		assertEquals("southChain", southChain.getId().toString());
+		assertEquals("northChain", northChain.getId().toString());
+		assertEquals(NUMBER_OF_SHIPMENTS / 2, southChain.getLspShipmentIds().size());
+		assertEquals(NUMBER_OF_SHIPMENTS / 2, northChain.getLspShipmentIds().size());
+		assertEquals(1, southChain.getLogisticChainElements().size());
+
+		Id<LspShipment> lastShipmentId = Id.create("shipment" + (NUMBER_OF_SHIPMENTS - 1), LspShipment.class);
+		assertTrue(northChain.getLspShipmentIds().contains(lastShipmentId));
+		assertEquals(3, LspShipmentUtils.getOrCreateShipmentPlan(plan, lastShipmentId).getPlanElements().size());
+	}
+
+	private static void writeLspsFile(String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n");
+			writer.write("<lsps xmlns=\"http://www.matsim.org/files/dtd\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+					+ "xsi:schemaLocation=\"http://www.matsim.org/files/dtd http://www.matsim.org/files/dtd/lspsDefinitions_v1.xsd\">\n");
+			writer.write("\t<lsp id=\"LSP_1\">\n");
+			writer.write("\t\t<resources>\n");
+			writer.write("\t\t\t<carrier id=\"carrierSouth\"/>\n");
+			writer.write("\t\t\t<carrier id=\"CarrierNorth\"/>\n");
+			writer.write("\t\t</resources>\n");
+			writer.write("\t\t<shipments>\n");
+			for (int i = 0; i < NUMBER_OF_SHIPMENTS; i++) {
+				writer.write("\t\t\t<shipment id=\"shipment" + i + "\" from=\"i(1,0)\" to=\"i(9,0)\" size=\"1\" startPickup=\"0.0\" endPickup=\"24.0\" "
+						+ "startDelivery=\"0.0\" endDelivery=\"86400.0\" pickupServiceTime=\"0.0\" deliveryServiceTime=\"60.0\"/>\n");
+			}
+			writer.write("\t\t</shipments>\n");
+			writer.write("\t\t<LspPlans>\n");
+			writer.write("\t\t\t<LspPlan score=\"-649.2\" selected=\"true\">\n");
+			writer.write("\t\t\t\t<logisticChains>\n");
+			writer.write("\t\t\t\t\t<logisticChain id=\"southChain\">\n");
+			writer.write("\t\t\t\t\t\t<logisticChainElement id=\"southCarrierElement\" resourceId=\"carrierSouth\"/>\n");
+			writer.write("\t\t\t\t\t</logisticChain>\n");
+			writer.write("\t\t\t\t\t<logisticChain id=\"northChain\">\n");
+			writer.write("\t\t\t\t\t\t<logisticChainElement id=\"northCarrierElement\" resourceId=\"CarrierNorth\"/>\n");
+			writer.write("\t\t\t\t\t</logisticChain>\n");
+			writer.write("\t\t\t\t</logisticChains>\n");
+			writer.write("\t\t\t\t<shipmentPlans>\n");
+			for (int i = 0; i < NUMBER_OF_SHIPMENTS; i++) {
+				String chainId = i % 2 == 0 ? "southChain" : "northChain";
+				String resourceId = i % 2 == 0 ? "carrierSouth" : "CarrierNorth";
+				writer.write("\t\t\t\t\t<shipmentPlan shipmentId=\"shipment" + i + "\" chainId=\"" + chainId + "\">\n");
+				writer.write("\t\t\t\t\t\t<element id=\"" + resourceId + "LOAD\" type=\"LOAD\" startTime=\"0.0\" endTime=\"60.0\" resourceId=\"" + resourceId + "\"/>\n");
+				writer.write("\t\t\t\t\t\t<element id=\"" + resourceId + "TRANSPORT\" type=\"TRANSPORT\" startTime=\"60.0\" endTime=\"1020.0\" resourceId=\"" + resourceId + "\"/>\n");
+				writer.write("\t\t\t\t\t\t<element id=\"" + resourceId + "UNLOAD\" type=\"UNLOAD\" startTime=\"1020.0\" endTime=\"1080.0\" resourceId=\"" + resourceId + "\"/>\n");
+				writer.write("\t\t\t\t\t</shipmentPlan>\n");
+			}
+			writer.write("\t\t\t\t</shipmentPlans>\n");
+			writer.write("\t\t\t</LspPlan>\n");
+			writer.write("\t\t</LspPlans>\n");
+			writer.write("\t</lsp>\n");
+			writer.write("</lsps>\n");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -1,13 +1,23 @@
 package org.matsim.freight.logistics.io;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
 import org.matsim.freight.carriers.CarrierPlanXmlReader;
 import org.matsim.freight.carriers.CarrierVehicleTypeReader;
 import org.matsim.freight.carriers.CarrierVehicleTypes;
 import org.matsim.freight.carriers.Carriers;
+import org.matsim.freight.carriers.TimeWindow;
+import org.matsim.freight.logistics.LSP;
 import org.matsim.freight.logistics.LSPs;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
 public class LSPReadWriteTest {
@@ -72,7 +82,44 @@ public class LSPReadWriteTest {
 		MatsimTestUtils.assertEqualFilesLineByLine(inputFilename, outputFilename2);
 	}
 
+	@Test
+	public void snapshotWriteTest() {
+		String inputFilename = utils.getPackageInputDirectory() + "lsps.xml";
+		String outputFilename = utils.getOutputDirectory() + "/outputLsps.xml";
 
+		new LSPPlanXmlWriter(LSPsSnapshot.of(readLsps(inputFilename))).write(outputFilename);
 
+		MatsimTestUtils.assertEqualFilesLineByLine(inputFilename, outputFilename);
+	}
 
+	@Test
+	public void writeErrorThrowsTest() {
+		// every write to /dev/full fails, i.e. the file can be opened, but writing the lsps fails.
+		File deviceFull = new File("/dev/full");
+		assumeTrue(deviceFull.exists() && deviceFull.canWrite(), "needs /dev/full");
+		LSPs lsps = readLsps(utils.getPackageInputDirectory() + "lsps.xml");
+		// more shipments than fit into the buffers of the writer, so that writing fails before closing the file.
+		LSP lsp = lsps.getLSPs().values().iterator().next();
+		for (int i = 0; i < 1000; i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create("additionalShipment_" + i, LspShipment.class));
+			builder.setCapacityDemand(1);
+			builder.setFromLinkId(Id.createLinkId("from"));
+			builder.setToLinkId(Id.createLinkId("to"));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, 24 * 3600));
+			builder.setEndTimeWindow(TimeWindow.newInstance(0, 24 * 3600));
+			lsp.getLspShipments().add(builder.build());
+		}
+
+		assertThrows(UncheckedIOException.class, () -> new LSPPlanXmlWriter(lsps).write(deviceFull.getPath()));
+	}
+
+	private LSPs readLsps(String inputFilename) {
+		LSPs lsps = new LSPs(Collections.emptyList());
+		Carriers carriers = new Carriers();
+		CarrierVehicleTypes carrierVehicleTypes = new CarrierVehicleTypes();
+		new CarrierVehicleTypeReader(carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "vehicles.xml");
+		new CarrierPlanXmlReader(carriers, carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "carriers.xml");
+		new LSPPlanXmlReader(lsps, carriers).readFile(inputFilename);
+		return lsps;
+	}
 }
@@ -0,0 +1,70 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.io;
+
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.freight.carriers.CarrierPlanXmlReader;
+import org.matsim.freight.carriers.CarrierVehicleTypeReader;
+import org.matsim.freight.carriers.CarrierVehicleTypes;
+import org.matsim.freight.carriers.Carriers;
+import org.matsim.freight.logistics.LSP;
+import org.matsim.freight.logistics.LSPPlan;
+import org.matsim.freight.logistics.LSPs;
+import org.matsim.freight.logistics.LogisticChain;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class LSPsSnapshotTest {
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSnapshotIsNotAffectedByLaterChanges() {
+		String inputFilename = utils.getPackageInputDirectory() + "lsps.xml";
+		String outputFilename = utils.getOutputDirectory() + "/outputLsps.xml";
+
+		CarrierVehicleTypes carrierVehicleTypes = new CarrierVehicleTypes();
+		new CarrierVehicleTypeReader(carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "vehicles.xml");
+		Carriers carriers = new Carriers();
+		new CarrierPlanXmlReader(carriers, carrierVehicleTypes).readFile(utils.getPackageInputDirectory() + "carriers.xml");
+		LSPs lsps = new LSPs(Collections.emptyList());
+		new LSPPlanXmlReader(lsps, carriers).readFile(inputFilename);
+
+		LSPsSnapshot snapshot = LSPsSnapshot.of(lsps);
+
+		// as it happens in the next iteration: new scores, new chain assignments and new shipment plans
+		for (LSP lsp : lsps.getLSPs().values()) {
+			for (LSPPlan plan : lsp.getPlans()) {
+				plan.setScore(0.);
+				plan.getShipmentPlans().clear();
+				for (LogisticChain chain : plan.getLogisticChains()) {
+					chain.getLspShipmentIds().clear();
+				}
+			}
+		}
+
+		new LSPPlanXmlWriter(snapshot).write(outputFilename);
+
+		MatsimTestUtils.assertEqualFilesLineByLine(inputFilename, outputFilename);
+	}
+}
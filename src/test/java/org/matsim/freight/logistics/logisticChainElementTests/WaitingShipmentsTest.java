@@ -0,0 +1,102 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.logisticChainElementTests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.matsim.api.core.v01.Id;
+import org.matsim.freight.logistics.LSPUtils;
+import org.matsim.freight.logistics.WaitingShipments;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+
+public class WaitingShipmentsTest {
+
+	private static LspShipment createShipment(String id) {
+		return LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(id, LspShipment.class)).build();
+	}
+
+	@ParameterizedTest
+	@EnumSource(LSPUtils.WaitingShipmentsType.class)
+	public void testSortedByTime(LSPUtils.WaitingShipmentsType type) {
+		WaitingShipments waitingShipments = LSPUtils.createWaitingShipments(type);
+		LspShipment s1 = createShipment("s1");
+		LspShipment s2 = createShipment("s2");
+		LspShipment s3 = createShipment("s3");
+		LspShipment s4 = createShipment("s4");
+
+		waitingShipments.addShipment(300, s1);
+		waitingShipments.addShipment(100, s2);
+		waitingShipments.addShipment(200, s3);
+		waitingShipments.addShipment(100, s4);
+
+		List<LspShipment> sorted = new ArrayList<>(waitingShipments.getSortedLspShipments());
+		// same time stamp -> order of insertion
+		assertEquals(List.of(s2, s4, s3, s1), sorted);
+		assertEquals(200, LspShipmentUtils.getTimeOfLspShipment(s3));
+		assertEquals(4, waitingShipments.getLspShipmentsWTime().size());
+		assertTrue(waitingShipments.getLspShipmentsWTime().contains(s3));
+	}
+
+	@ParameterizedTest
+	@EnumSource(LSPUtils.WaitingShipmentsType.class)
+	public void testRemoveAndClear(LSPUtils.WaitingShipmentsType type) {
+		WaitingShipments waitingShipments = LSPUtils.createWaitingShipments(type);
+		LspShipment s1 = createShipment("s1");
+		LspShipment s2 = createShipment("s2");
+		LspShipment s3 = createShipment("s3");
+		waitingShipments.addShipment(10, s1);
+		waitingShipments.addShipment(20, s2);
+		waitingShipments.addShipment(30, s3);
+
+		assertTrue(waitingShipments.getLspShipmentsWTime().remove(s2));
+		assertFalse(waitingShipments.getLspShipmentsWTime().contains(s2));
+		assertEquals(List.of(s1, s3), new ArrayList<>(waitingShipments.getSortedLspShipments()));
+
+		Iterator<LspShipment> it = waitingShipments.getLspShipmentsWTime().iterator();
+		assertSame(s1, it.next());
+		it.remove();
+		assertFalse(waitingShipments.getLspShipmentsWTime().contains(s1));
+		assertEquals(1, waitingShipments.getLspShipmentsWTime().size());
+
+		waitingShipments.clear();
+		assertTrue(waitingShipments.getSortedLspShipments().isEmpty());
+		assertFalse(waitingShipments.getLspShipmentsWTime().contains(s3));
+	}
+
+	@ParameterizedTest
+	@EnumSource(LSPUtils.WaitingShipmentsType.class)
+	public void testAddViaCollectionUsesTimeOfShipment(LSPUtils.WaitingShipmentsType type) {
+		WaitingShipments waitingShipments = LSPUtils.createWaitingShipments(type);
+		LspShipment s1 = createShipment("s1");
+		LspShipment s2 = createShipment("s2");
+		waitingShipments.addShipment(50, s1);
+		LspShipmentUtils.setTimeOfLspShipment(s2, 10);
+		waitingShipments.getLspShipmentsWTime().add(s2);
+
+		assertEquals(List.of(s2, s1), new ArrayList<>(waitingShipments.getSortedLspShipments()));
+	}
+}
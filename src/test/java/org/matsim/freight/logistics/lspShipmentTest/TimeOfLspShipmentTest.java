@@ -0,0 +1,64 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.lspShipmentTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesImpl;
+
+public class TimeOfLspShipmentTest {
+
+	@Test
+	public void testTimeIsKeptInTheShipment() {
+		LspShipment lspShipment = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create("s1", LspShipment.class)).build();
+		assertTrue(Double.isNaN(LspShipmentUtils.getTimeOfLspShipment(lspShipment)));
+
+		LspShipmentUtils.setTimeOfLspShipment(lspShipment, 3600.5);
+		assertEquals(3600.5, LspShipmentUtils.getTimeOfLspShipment(lspShipment));
+		LspShipmentUtils.setTimeOfLspShipment(lspShipment, 0);
+		assertEquals(0, LspShipmentUtils.getTimeOfLspShipment(lspShipment));
+
+		// the time is scheduling state only and is not written out with the attributes
+		assertNull(lspShipment.getAttributes().getAttribute("time"));
+	}
+
+	@Test
+	public void testTimeOfOtherImplementationsIsKeptAsAttribute() {
+		Attributes attributes = new AttributesImpl();
+		LspShipment lspShipment = (LspShipment) Proxy.newProxyInstance(LspShipment.class.getClassLoader(), new Class<?>[]{LspShipment.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "getAttributes" -> attributes;
+					case "getId" -> Id.create("s2", LspShipment.class);
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+		assertTrue(Double.isNaN(LspShipmentUtils.getTimeOfLspShipment(lspShipment)));
+
+		LspShipmentUtils.setTimeOfLspShipment(lspShipment, 120);
+		assertEquals(120., attributes.getAttribute("time"));
+		assertEquals(120, LspShipmentUtils.getTimeOfLspShipment(lspShipment));
+	}
+}
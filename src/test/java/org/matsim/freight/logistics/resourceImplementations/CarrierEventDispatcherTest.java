@@ -0,0 +1,173 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.CarrierCapabilities.FleetSize;
+import org.matsim.freight.carriers.events.CarrierServiceEndEvent;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class CarrierEventDispatcherTest {
+
+	private static final List<String> FROM_LINKS = List.of("(2 2) (2 3)", "(3 3) (3 4)", "(1 1) (1 2)", "(2 1) (3 1)");
+
+	private CollectionCarrierResource collectionResource;
+	private LSP collectionLSP;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("CollectionCarrierVehicleType", VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(10);
+		vehicleType.getCostInformation().setCostsPerMeter(0.0004);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.getCostInformation().setFixedCost(49.);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+
+		Id<Link> collectionLinkId = Id.createLinkId("(4 2) (4 3)");
+		Carrier carrier = CarriersUtils.createCarrier(Id.create("CollectionCarrier", Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(CarrierVehicle.newInstance(Id.createVehicleId("CollectionVehicle"), collectionLinkId, vehicleType))
+				.setFleetSize(FleetSize.INFINITE)
+				.build());
+
+		collectionResource = (CollectionCarrierResource) ResourceImplementationUtils.CollectionCarrierResourceBuilder.newInstance(carrier)
+				.setCollectionScheduler(ResourceImplementationUtils.createDefaultCollectionCarrierScheduler(scenario))
+				.setLocationLinkId(collectionLinkId)
+				.build();
+
+		LogisticChainElement collectionElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create("CollectionElement", LogisticChainElement.class))
+				.setResource(collectionResource)
+				.build();
+		LogisticChain collectionChain = LSPUtils.LogisticChainBuilder.newInstance(Id.create("CollectionChain", LogisticChain.class))
+				.addLogisticChainElement(collectionElement)
+				.build();
+
+		LSPPlan collectionPlan = LSPUtils.createLSPPlan()
+				.setInitialShipmentAssigner(ResourceImplementationUtils.createSingleLogisticChainShipmentAssigner())
+				.addLogisticChain(collectionChain);
+
+		List<LSPResource> resources = new ArrayList<>();
+		resources.add(collectionResource);
+		collectionLSP = LSPUtils.LSPBuilder.getInstance(Id.create("CollectionLSP", LSP.class))
+				.setInitialPlan(collectionPlan)
+				.setLogisticChainScheduler(ResourceImplementationUtils.createDefaultSimpleForwardLogisticChainScheduler(resources))
+				.build();
+
+		for (int i = 0; i < FROM_LINKS.size(); i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(i + 1, LspShipment.class));
+			builder.setCapacityDemand(1);
+			builder.setFromLinkId(Id.createLinkId(FROM_LINKS.get(i)));
+			builder.setToLinkId(collectionLinkId);
+			builder.setEndTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setDeliveryServiceTime(60);
+			collectionLSP.assignShipmentToLSP(builder.build());
+		}
+		collectionLSP.scheduleLogisticChains();
+	}
+
+	@Test
+	public void testOnlyTheDispatcherIsRegisteredAtTheEventsManager() {
+		CarrierEventDispatcher dispatcher = collectionResource.getEventDispatcher();
+		assertTrue(collectionResource.getSimulationTrackers().contains(dispatcher));
+		assertTrue(dispatcher.isRegisteredAtEventsManager());
+
+		for (LspShipment lspShipment : collectionLSP.getLspShipments()) {
+			assertFalse(lspShipment.getSimulationTrackers().isEmpty());
+			for (LSPSimulationTracker<LspShipment> tracker : lspShipment.getSimulationTrackers()) {
+				assertFalse(tracker.isRegisteredAtEventsManager());
+			}
+		}
+	}
+
+	@Test
+	public void testServiceEndReachesOnlyTheShipmentOfTheService() {
+		CarrierEventDispatcher dispatcher = collectionResource.getEventDispatcher();
+		Carrier carrier = collectionResource.getCarrier();
+		CarrierService firstService = carrier.getServices().get(Id.create("1", CarrierService.class));
+		assertNotNull(firstService);
+
+		// the same service id, but of another carrier: has to be ignored
+		dispatcher.handleEvent(new CarrierServiceEndEvent(1000, Id.create("OtherCarrier", Carrier.class), firstService, Id.createVehicleId("CollectionVehicle")));
+		for (LspShipment lspShipment : collectionLSP.getLspShipments()) {
+			assertTrue(lspShipment.getShipmentLog().getPlanElements().isEmpty());
+		}
+
+		dispatcher.handleEvent(new CarrierServiceEndEvent(1000, carrier.getId(), firstService, Id.createVehicleId("CollectionVehicle")));
+		for (LspShipment lspShipment : collectionLSP.getLspShipments()) {
+			if (lspShipment.getId().toString().equals("1")) {
+				// load and transport
+				assertEquals(2, lspShipment.getShipmentLog().getPlanElements().size());
+			} else {
+				assertTrue(lspShipment.getShipmentLog().getPlanElements().isEmpty());
+			}
+		}
+	}
+
+	@Test
+	public void testRescheduleReplacesTheTrackers() {
+		CarrierEventDispatcher dispatcher = collectionResource.getEventDispatcher();
+		List<LSPSimulationTracker<LspShipment>> oldTrackers = new ArrayList<>();
+		for (LspShipment lspShipment : collectionLSP.getLspShipments()) {
+			oldTrackers.addAll(lspShipment.getSimulationTrackers());
+		}
+
+		collectionLSP.getSelectedPlan().getShipmentPlans().clear();
+		collectionLSP.scheduleLogisticChains();
+
+		for (LspShipment lspShipment : collectionLSP.getLspShipments()) {
+			// the trackers of the previous schedule are detached, the new ones are attached once
+			for (LSPSimulationTracker<LspShipment> tracker : lspShipment.getSimulationTrackers()) {
+				assertFalse(oldTrackers.contains(tracker));
+			}
+		}
+
+		Carrier carrier = collectionResource.getCarrier();
+		for (CarrierService service : carrier.getServices().values()) {
+			dispatcher.handleEvent(new CarrierServiceEndEvent(1000, carrier.getId(), service, Id.createVehicleId("CollectionVehicle")));
+		}
+		for (LspShipment lspShipment : collectionLSP.getLspShipments()) {
+			assertEquals(2, lspShipment.getShipmentLog().getPlanElements().size());
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.CarrierCapabilities.FleetSize;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class CarrierSchedulerUtilsTest {
+
+	private Scenario scenario;
+	private Carrier carrier;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("CollectionCarrierVehicleType", VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(10);
+		vehicleType.getCostInformation().setCostsPerMeter(0.0004);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.getCostInformation().setFixedCost(49.);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+
+		CarrierVehicle carrierVehicle = CarrierVehicle.newInstance(Id.createVehicleId("CollectionVehicle"), Id.createLinkId("(4 2) (4 3)"), vehicleType);
+		carrier = CarriersUtils.createCarrier(Id.create("CollectionCarrier", Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(carrierVehicle)
+				.setFleetSize(FleetSize.INFINITE)
+				.build());
+		CarriersUtils.setJspritIterations(carrier, 10);
+	}
+
+	@Test
+	public void testWarmStartFromPreviousPlan() {
+		CarrierSchedulerUtils.setJspritWarmStartIterations(carrier, 2);
+		addService("service1", "(2 2) (2 3)");
+		addService("service2", "(3 3) (3 4)");
+		addService("service3", "(1 1) (1 2)");
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		CarrierPlan previousPlan = carrier.getSelectedPlan();
+
+		// as it is done by the carrier schedulers; service2 is dropped, service4 is new
+		carrier.getServices().clear();
+		carrier.getPlans().clear();
+		addService("service1", "(2 2) (2 3)");
+		addService("service3", "(1 1) (1 2)");
+		addService("service4", "(3 3) (3 4)");
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario, previousPlan);
+
+		Set<Id<CarrierService>> servicesInTours = new HashSet<>();
+		for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+			for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+				if (tourElement instanceof Tour.ServiceActivity serviceActivity) {
+					assertTrue(servicesInTours.add(serviceActivity.getService().getId()));
+				}
+			}
+		}
+		assertEquals(carrier.getServices().keySet(), servicesInTours);
+	}
+
+	@Test
+	public void testNoWarmStartByDefault() {
+		assertEquals(0, CarrierSchedulerUtils.getJspritWarmStartIterations(carrier));
+	}
+
+	private void addService(String id, String linkId) {
+		Id<Link> locationLinkId = Id.createLinkId(linkId);
+		CarrierService service = CarrierService.Builder.newInstance(Id.create(id, CarrierService.class), locationLinkId)
+				.setServiceStartTimeWindow(TimeWindow.newInstance(0, 24 * 3600))
+				.setCapacityDemand(1)
+				.setServiceDuration(60)
+				.build();
+		carrier.getServices().put(service.getId(), service);
+	}
+}
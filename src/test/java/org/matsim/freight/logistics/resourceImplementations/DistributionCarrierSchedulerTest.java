@@ -0,0 +1,224 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.CarrierCapabilities.FleetSize;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class DistributionCarrierSchedulerTest {
+
+	private static final Id<Link> DEPOT_LINK_ID = Id.createLinkId("(4 2) (4 3)");
+	private static final List<String> TO_LINKS = List.of("(2 2) (2 3)", "(3 3) (3 4)", "(1 1) (1 2)", "(2 1) (3 1)", "(2 3) (2 4)", "(2 2) (3 2)");
+
+	private Scenario scenario;
+	private VehicleType vehicleType;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+
+		vehicleType = VehicleUtils.createVehicleType(Id.create("DistributionCarrierVehicleType", VehicleType.class), TransportMode.car);
+		// small vehicles, so that the distribution carrier needs several tours
+		vehicleType.getCapacity().setOther(2);
+		vehicleType.getCostInformation().setCostsPerMeter(0.0004);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.getCostInformation().setFixedCost(49.);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+	}
+
+	@Test
+	public void testSolvingAuxiliaryCarriersInParallelGivesTheSameSchedule() {
+		DistributionCarrierResource sequentialResource = createResource("SequentialCarrier", false);
+		LSP sequentialLSP = createLSP(sequentialResource);
+		DistributionCarrierResource parallelResource = createResource("ParallelCarrier", true);
+		LSP parallelLSP = createLSP(parallelResource);
+
+		List<String> sequentialTours = describeTours(sequentialResource.getCarrier());
+		// one tour per auxiliary carrier, i.e. per filled vehicle
+		assertEquals((TO_LINKS.size() + 1) / 2, sequentialResource.getCarrier().getSelectedPlan().getScheduledTours().size());
+		assertEquals(sequentialTours, describeTours(parallelResource.getCarrier()));
+		assertEquals(describeShipmentPlans(sequentialLSP), describeShipmentPlans(parallelLSP));
+	}
+
+	@Test
+	public void testShipmentBasedScheduleFollowsTheTours() {
+		DistributionCarrierResource resource = createResource("ShipmentBasedCarrier", LSPUtils.LogicOfVrp.shipmentBased, false);
+		LSP lsp = createLSP(resource);
+		Carrier carrier = resource.getCarrier();
+
+		for (LspShipment lspShipment : lsp.getLspShipments()) {
+			Tour tour = null;
+			Tour.Pickup pickup = null;
+			Tour.Delivery delivery = null;
+			for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+				for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+					if (tourElement instanceof Tour.Pickup activity && activity.getShipment().getId().toString().equals(lspShipment.getId().toString())) {
+						pickup = activity;
+						tour = scheduledTour.getTour();
+					} else if (tourElement instanceof Tour.Delivery activity && activity.getShipment().getId().toString().equals(lspShipment.getId().toString())) {
+						delivery = activity;
+					}
+				}
+			}
+			assertNotNull(pickup, "shipment " + lspShipment.getId() + " is not picked up");
+			assertNotNull(delivery, "shipment " + lspShipment.getId() + " is not delivered");
+
+			Map<String, LspShipmentPlanElement> elements = new TreeMap<>();
+			for (LspShipmentPlanElement element : LspShipmentUtils.getOrCreateShipmentPlan(lsp.getSelectedPlan(), lspShipment.getId()).getPlanElements().values()) {
+				elements.put(element.getElementType(), element);
+			}
+			assertEquals(3, elements.size());
+			LspShipmentPlanElement load = elements.get("LOAD");
+			LspShipmentPlanElement transport = elements.get("TRANSPORT");
+			LspShipmentPlanElement unload = elements.get("UNLOAD");
+
+			// loading is done at the pickup activity and takes its duration
+			Tour.Leg legAfterPickup = (Tour.Leg) tour.getTourElements().get(tour.getTourElements().indexOf(pickup) + 1);
+			assertEquals(legAfterPickup.getExpectedDepartureTime(), load.getEndTime());
+			assertEquals(pickup.getDuration(), load.getEndTime() - load.getStartTime());
+			assertTrue(load.getEndTime() - load.getStartTime() > 0);
+
+			Tour.Leg legBeforeDelivery = (Tour.Leg) tour.getTourElements().get(tour.getTourElements().indexOf(delivery) - 1);
+			assertEquals(load.getEndTime(), transport.getStartTime());
+			assertEquals(legBeforeDelivery.getExpectedDepartureTime() + legBeforeDelivery.getExpectedTransportTime(), transport.getEndTime());
+
+			assertEquals(delivery.getExpectedArrival(), unload.getStartTime());
+			assertEquals(delivery.getExpectedArrival() + delivery.getDuration(), unload.getEndTime());
+			assertTrue(transport.getEndTime() <= unload.getStartTime());
+		}
+	}
+
+	@Test
+	public void testShipmentBasedSchedulingFailsForUnassignedShipments() {
+		DistributionCarrierResource resource = createResource("ShipmentBasedCarrier", LSPUtils.LogicOfVrp.shipmentBased, false);
+		// the first shipment cannot be loaded and delivered within one minute
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> createLSP(resource, TimeWindow.newInstance(0, 60)));
+		assertTrue(exception.getMessage().contains("[1]"), exception.getMessage());
+	}
+
+	private DistributionCarrierResource createResource(String carrierId, boolean solveAuxiliaryCarriersInParallel) {
+		return createResource(carrierId, LSPUtils.LogicOfVrp.serviceBased, solveAuxiliaryCarriersInParallel);
+	}
+
+	private DistributionCarrierResource createResource(String carrierId, LSPUtils.LogicOfVrp logicOfVrp, boolean solveAuxiliaryCarriersInParallel) {
+		Carrier carrier = CarriersUtils.createCarrier(Id.create(carrierId, Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(CarrierVehicle.newInstance(Id.createVehicleId("DistributionVehicle"), DEPOT_LINK_ID, vehicleType))
+				.setFleetSize(FleetSize.INFINITE)
+				.build());
+		CarrierSchedulerUtils.setVrpLogic(carrier, logicOfVrp);
+		CarrierSchedulerUtils.setSolveAuxiliaryCarriersInParallel(carrier, solveAuxiliaryCarriersInParallel);
+
+		return (DistributionCarrierResource) ResourceImplementationUtils.DistributionCarrierResourceBuilder.newInstance(carrier)
+				.setDistributionScheduler(ResourceImplementationUtils.createDefaultDistributionCarrierScheduler(scenario))
+				.setLocationLinkId(DEPOT_LINK_ID)
+				.build();
+	}
+
+	private static LSP createLSP(DistributionCarrierResource resource) {
+		return createLSP(resource, TimeWindow.newInstance(0, (24 * 3600)));
+	}
+
+	private static LSP createLSP(DistributionCarrierResource resource, TimeWindow endTimeWindowOfFirstShipment) {
+		LogisticChainElement distributionElement = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create("DistributionElement", LogisticChainElement.class))
+				.setResource(resource)
+				.build();
+		LogisticChain distributionChain = LSPUtils.LogisticChainBuilder.newInstance(Id.create("DistributionChain", LogisticChain.class))
+				.addLogisticChainElement(distributionElement)
+				.build();
+		LSPPlan distributionPlan = LSPUtils.createLSPPlan()
+				.setInitialShipmentAssigner(ResourceImplementationUtils.createSingleLogisticChainShipmentAssigner())
+				.addLogisticChain(distributionChain);
+
+		List<LSPResource> resources = new ArrayList<>();
+		resources.add(resource);
+		LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("DistributionLSP", LSP.class))
+				.setInitialPlan(distributionPlan)
+				.setLogisticChainScheduler(ResourceImplementationUtils.createDefaultSimpleForwardLogisticChainScheduler(resources))
+				.build();
+
+		for (int i = 0; i < TO_LINKS.size(); i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(i + 1, LspShipment.class));
+			builder.setCapacityDemand(1);
+			builder.setFromLinkId(DEPOT_LINK_ID);
+			builder.setToLinkId(Id.createLinkId(TO_LINKS.get(i)));
+			builder.setEndTimeWindow(i == 0 ? endTimeWindowOfFirstShipment : TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setDeliveryServiceTime(60);
+			lsp.assignShipmentToLSP(builder.build());
+		}
+		lsp.scheduleLogisticChains();
+		return lsp;
+	}
+
+	/** The tours of the selected plan, without the carrier id, so that the plans of different carriers can be compared. */
+	private static List<String> describeTours(Carrier carrier) {
+		List<String> description = new ArrayList<>();
+		for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+			description.add(scheduledTour.getTour().getId() + " " + scheduledTour.getVehicle().getId() + " " + scheduledTour.getDeparture());
+			for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+				switch (tourElement) {
+					case Tour.Leg leg -> description.add("leg " + leg.getExpectedDepartureTime() + " " + leg.getExpectedTransportTime());
+					case Tour.TourActivity activity -> description.add(activity.getActivityType() + " " + activity.getLocation() + " " + activity.getExpectedArrival() + " " + activity.getDuration());
+					default -> description.add(tourElement.toString());
+				}
+			}
+		}
+		return description;
+	}
+
+	private static Map<String, List<String>> describeShipmentPlans(LSP lsp) {
+		Map<String, List<String>> description = new TreeMap<>();
+		for (LspShipment lspShipment : lsp.getLspShipments()) {
+			List<String> planElements = new ArrayList<>();
+			for (LspShipmentPlanElement element : LspShipmentUtils.getOrCreateShipmentPlan(lsp.getSelectedPlan(), lspShipment.getId()).getPlanElements().values()) {
+				planElements.add(element.getElementType() + " " + element.getLogisticChainElement().getId() + " " + element.getStartTime() + " " + element.getEndTime());
+			}
+			planElements.sort(null);
+			description.put(lspShipment.getId().toString(), planElements);
+		}
+		return description;
+	}
+}
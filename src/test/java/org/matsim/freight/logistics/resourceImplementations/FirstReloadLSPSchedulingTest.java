@@ -321,4 +321,52 @@ public class FirstReloadLSPSchedulingTest {
 		}
 
 	}
+
+	@Test
+	public void testReschedulingReplacesShipmentTrackers() {
+		ArrayList<LSPSimulationTracker<LspShipment>> oldTrackers = new ArrayList<>();
+		for (LspShipment shipment : lsp.getLspShipments()) {
+			oldTrackers.addAll(shipment.getSimulationTrackers());
+		}
+
+		// as it is done in every replanning by the LSPControlerListener:
+		lsp.getSelectedPlan().getShipmentPlans().clear();
+		lsp.scheduleLogisticChains();
+
+		for (LspShipment shipment : lsp.getLspShipments()) {
+			assertEquals(2, shipment.getSimulationTrackers().size());
+			for (LSPSimulationTracker<LspShipment> tracker : shipment.getSimulationTrackers()) {
+				assertFalse(oldTrackers.contains(tracker));
+			}
+		}
+	}
+
+	@Test
+	public void testTourHandlingsOfTranshipmentHub() {
+		TransshipmentHubTourEndEventHandler reloadEventHandler = (TransshipmentHubTourEndEventHandler) firstTranshipmentHubResource.getSimulationTrackers().iterator().next();
+		Carrier collectionCarrier = ((LSPCarrierResource) collectionResource).getCarrier();
+
+		int numberOfHandlings = 0;
+		for (ScheduledTour scheduledTour : collectionCarrier.getSelectedPlan().getScheduledTours()) {
+			Tour tour = scheduledTour.getTour();
+			TransshipmentHubTourEndEventHandler.TourHandling tourHandling = reloadEventHandler.getTourHandlings()
+					.get(new TransshipmentHubTourEndEventHandler.CarrierTour(collectionCarrier.getId(), tour.getId()));
+			assertNotNull(tourHandling);
+
+			double unloadingDuration = 0.;
+			for (Tour.TourElement tourElement : tour.getTourElements()) {
+				if (tourElement instanceof Tour.ServiceActivity serviceActivity) {
+					unloadingDuration += serviceActivity.getDuration();
+				}
+			}
+			assertEquals(unloadingDuration, tourHandling.unloadingDuration(), 0.0);
+
+			for (TransshipmentHubTourEndEventHandler.HubHandling hubHandling : tourHandling.hubHandlings()) {
+				assertSame(firstHubElement, hubHandling.logisticChainElement());
+				assertEquals(10 + hubHandling.lspShipment().getSize(), hubHandling.expHandlingDuration(), 0.0);
+				numberOfHandlings++;
+			}
+		}
+		assertEquals(lsp.getLspShipments().size(), numberOfHandlings);
+	}
 }
@@ -0,0 +1,303 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.CarrierCapabilities.FleetSize;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.examples.multipleChains.MultipleChainsUtils;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentPlanElement;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+/**
+ * Schedules an LSP with two complete chains (collection, hub, main run, hub, distribution) once
+ * sequentially and once with the resources of each level in parallel, i.e. the two collection
+ * carriers, the two first hubs, the two main run carriers, the two second hubs and the two
+ * distribution carriers at the same time. All carrier and hub resources declare {@link
+ * LSPResource#isSchedulingThreadSafe()}, so both have to give the same schedule.
+ */
+public class ParallelResourceSchedulingTest {
+
+	private static final Id<Link> WEST_HUB_LINK_ID = Id.createLinkId("(4 2) (4 3)");
+	private static final Id<Link> EAST_HUB_LINK_ID = Id.createLinkId("(14 2) (14 3)");
+	private static final int NUMBER_OF_SHIPMENTS = 40;
+
+	private Scenario scenario;
+	private final List<Id<Link>> fromLinkIds = new ArrayList<>();
+	private final List<Id<Link>> toLinkIds = new ArrayList<>();
+	private final List<Integer> capacityDemands = new ArrayList<>();
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+
+		// the shipments go from the western to the eastern region; they are the same for both LSPs
+		List<Link> westernLinks = new ArrayList<>();
+		List<Link> easternLinks = new ArrayList<>();
+		for (Link link : scenario.getNetwork().getLinks().values()) {
+			if (isInside(link, 0, 4000)) {
+				westernLinks.add(link);
+			} else if (isInside(link, 14000, 18000)) {
+				easternLinks.add(link);
+			}
+		}
+		Random random = new Random(1);
+		for (int i = 0; i < NUMBER_OF_SHIPMENTS; i++) {
+			fromLinkIds.add(westernLinks.get(random.nextInt(westernLinks.size())).getId());
+			toLinkIds.add(easternLinks.get(random.nextInt(easternLinks.size())).getId());
+			capacityDemands.add(1 + random.nextInt(3));
+		}
+	}
+
+	@Test
+	public void testParallelSchedulingOfTheResourcesGivesTheSameSchedule() {
+		LSP sequentialLSP = createLSP(LSPUtils.createForwardLogisiticChainScheduler());
+		sequentialLSP.scheduleLogisticChains();
+
+		LSP parallelLSP;
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			parallelLSP = createLSP(LSPUtils.createForwardLogisiticChainScheduler(pool));
+			parallelLSP.scheduleLogisticChains();
+		} finally {
+			pool.shutdown();
+		}
+
+		Map<String, List<String>> sequentialShipmentPlans = describeShipmentPlans(sequentialLSP);
+		for (List<String> shipmentPlan : sequentialShipmentPlans.values()) {
+			// load, transport and unload at three carriers plus handling at two hubs
+			assertEquals(11, shipmentPlan.size(), shipmentPlan.toString());
+		}
+		assertEquals(sequentialShipmentPlans, describeShipmentPlans(parallelLSP));
+		assertEquals(describeCarrierTours(sequentialLSP), describeCarrierTours(parallelLSP));
+	}
+
+	/**
+	 * Moves every shipment to the other chain and schedules again in parallel. The carrier that handled a shipment before detaches
+	 * its tracker while the carrier that handles it now attaches a new one, at the same time. Only the new trackers may remain.
+	 */
+	@Test
+	public void testShipmentsMovedBetweenParallelCarriersKeepOnlyTheirNewTrackers() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			LSP lsp = createLSP(LSPUtils.createForwardLogisiticChainScheduler(pool));
+			lsp.scheduleLogisticChains();
+			Map<Id<LspShipment>, Integer> numberOfTrackers = new TreeMap<>();
+			for (LspShipment lspShipment : lsp.getLspShipments()) {
+				numberOfTrackers.put(lspShipment.getId(), lspShipment.getSimulationTrackers().size());
+			}
+
+			List<LogisticChain> chains = new ArrayList<>(lsp.getSelectedPlan().getLogisticChains());
+			List<Id<LspShipment>> shipmentIdsOfFirstChain = new ArrayList<>(chains.get(0).getLspShipmentIds());
+			List<Id<LspShipment>> shipmentIdsOfSecondChain = new ArrayList<>(chains.get(1).getLspShipmentIds());
+			moveShipments(lsp, shipmentIdsOfFirstChain, chains.get(0), chains.get(1));
+			moveShipments(lsp, shipmentIdsOfSecondChain, chains.get(1), chains.get(0));
+			lsp.getSelectedPlan().getShipmentPlans().clear();
+			lsp.scheduleLogisticChains();
+
+			for (LspShipment lspShipment : lsp.getLspShipments()) {
+				LogisticChain chain = LSPUtils.findLogisticChainOfShipment(lsp.getSelectedPlan(), lspShipment.getId());
+				assertEquals(numberOfTrackers.get(lspShipment.getId()), lspShipment.getSimulationTrackers().size(), lspShipment.getId().toString());
+				for (LSPSimulationTracker<LspShipment> tracker : lspShipment.getSimulationTrackers()) {
+					assertTrue(chain.getLogisticChainElements().contains(getElementOfTracker(tracker)),
+							"shipment " + lspShipment.getId() + " kept a tracker of " + getElementOfTracker(tracker).getId());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void moveShipments(LSP lsp, List<Id<LspShipment>> lspShipmentIds, LogisticChain from, LogisticChain to) {
+		for (Id<LspShipment> lspShipmentId : lspShipmentIds) {
+			from.getLspShipmentIds().remove(lspShipmentId);
+			to.addShipmentToChain(LSPUtils.findLspShipment(lsp, lspShipmentId));
+		}
+	}
+
+	private static LogisticChainElement getElementOfTracker(LSPSimulationTracker<LspShipment> tracker) {
+		return switch (tracker) {
+			case LSPTourStartEventHandler handler -> handler.getLogisticChainElement();
+			case LSPTourEndEventHandler handler -> handler.getLogisticChainElement();
+			case DistributionServiceStartEventHandler handler -> handler.getLogisticChainElement();
+			case CollectionServiceEndEventHandler handler -> handler.getElement();
+			default -> throw new IllegalArgumentException("unexpected tracker " + tracker);
+		};
+	}
+
+	private LSP createLSP(LogisticChainScheduler logisticChainScheduler) {
+		VehicleType smallVehicleType = createVehicleType("small", 10, 0.0004, 49.);
+		VehicleType largeVehicleType = createVehicleType("large", 30, 0.0002, 120.);
+
+		LSPPlan plan = LSPUtils.createLSPPlan()
+				.setInitialShipmentAssigner(MultipleChainsUtils.createRoundRobinLogisticChainShipmentAssigner());
+		for (String chainName : List.of("A", "B")) {
+			plan.addLogisticChain(createCompleteChain(chainName, smallVehicleType, largeVehicleType));
+		}
+
+		logisticChainScheduler.setBufferTime(300);
+		LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("CompleteLSP", LSP.class))
+				.setInitialPlan(plan)
+				.setLogisticChainScheduler(logisticChainScheduler)
+				.build();
+
+		for (int i = 0; i < NUMBER_OF_SHIPMENTS; i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(i + 1, LspShipment.class));
+			builder.setCapacityDemand(capacityDemands.get(i));
+			builder.setFromLinkId(fromLinkIds.get(i));
+			builder.setToLinkId(toLinkIds.get(i));
+			builder.setEndTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setDeliveryServiceTime(capacityDemands.get(i) * 60);
+			lsp.assignShipmentToLSP(builder.build());
+		}
+		return lsp;
+	}
+
+	private LogisticChain createCompleteChain(String chainName, VehicleType smallVehicleType, VehicleType largeVehicleType) {
+		LSPResource collectionResource = ResourceImplementationUtils.CollectionCarrierResourceBuilder
+				.newInstance(createCarrier("CollectionCarrier" + chainName, WEST_HUB_LINK_ID, smallVehicleType))
+				.setCollectionScheduler(ResourceImplementationUtils.createDefaultCollectionCarrierScheduler(scenario))
+				.setLocationLinkId(WEST_HUB_LINK_ID)
+				.build();
+		LSPResource firstHubResource = createHub("FirstHub" + chainName, WEST_HUB_LINK_ID);
+		LSPResource mainRunResource = ResourceImplementationUtils.MainRunCarrierResourceBuilder
+				.newInstance(createCarrier("MainRunCarrier" + chainName, WEST_HUB_LINK_ID, largeVehicleType))
+				.setMainRunCarrierScheduler(ResourceImplementationUtils.createDefaultMainRunCarrierScheduler(scenario))
+				.setFromLinkId(WEST_HUB_LINK_ID)
+				.setToLinkId(EAST_HUB_LINK_ID)
+				.build();
+		LSPResource secondHubResource = createHub("SecondHub" + chainName, EAST_HUB_LINK_ID);
+		LSPResource distributionResource = ResourceImplementationUtils.DistributionCarrierResourceBuilder
+				.newInstance(createCarrier("DistributionCarrier" + chainName, EAST_HUB_LINK_ID, smallVehicleType))
+				.setDistributionScheduler(ResourceImplementationUtils.createDefaultDistributionCarrierScheduler(scenario))
+				.setLocationLinkId(EAST_HUB_LINK_ID)
+				.build();
+
+		LSPUtils.LogisticChainBuilder chainBuilder = LSPUtils.LogisticChainBuilder.newInstance(Id.create("Chain" + chainName, LogisticChain.class));
+		LogisticChainElement previousElement = null;
+		for (LSPResource resource : List.of(collectionResource, firstHubResource, mainRunResource, secondHubResource, distributionResource)) {
+			LogisticChainElement element = LSPUtils.LogisticChainElementBuilder
+					.newInstance(Id.create(resource.getId() + "Element", LogisticChainElement.class))
+					.setResource(resource)
+					.build();
+			if (previousElement != null) {
+				previousElement.connectWithNextElement(element);
+			}
+			chainBuilder.addLogisticChainElement(element);
+			previousElement = element;
+		}
+		return chainBuilder.build();
+	}
+
+	private LSPResource createHub(String hubId, Id<Link> linkId) {
+		return ResourceImplementationUtils.TransshipmentHubBuilder.newInstance(Id.create(hubId, LSPResource.class), linkId, scenario)
+				.setTransshipmentHubScheduler(ResourceImplementationUtils.TranshipmentHubSchedulerBuilder.newInstance()
+						.setCapacityNeedFixed(10)
+						.setCapacityNeedLinear(1)
+						.build())
+				.build();
+	}
+
+	private static Carrier createCarrier(String carrierId, Id<Link> depotLinkId, VehicleType vehicleType) {
+		Carrier carrier = CarriersUtils.createCarrier(Id.create(carrierId, Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(CarrierVehicle.newInstance(Id.createVehicleId(carrierId + "Vehicle"), depotLinkId, vehicleType))
+				.setFleetSize(FleetSize.INFINITE)
+				.build());
+		return carrier;
+	}
+
+	private static VehicleType createVehicleType(String id, int capacity, double costsPerMeter, double fixedCosts) {
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create(id, VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(capacity);
+		vehicleType.getCostInformation().setCostsPerMeter(costsPerMeter);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.getCostInformation().setFixedCost(fixedCosts);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+		return vehicleType;
+	}
+
+	private static boolean isInside(Link link, double minX, double maxX) {
+		return link.getFromNode().getCoord().getX() >= minX && link.getFromNode().getCoord().getX() <= maxX && link.getFromNode().getCoord().getY() <= 4000
+				&& link.getToNode().getCoord().getX() >= minX && link.getToNode().getCoord().getX() <= maxX && link.getToNode().getCoord().getY() <= 4000;
+	}
+
+	private static Map<String, List<String>> describeShipmentPlans(LSP lsp) {
+		Map<String, List<String>> description = new TreeMap<>();
+		for (LspShipment lspShipment : lsp.getLspShipments()) {
+			List<LspShipmentPlanElement> planElements = new ArrayList<>(
+					LspShipmentUtils.getOrCreateShipmentPlan(lsp.getSelectedPlan(), lspShipment.getId()).getPlanElements().values());
+			planElements.sort(LspShipmentUtils.createShipmentPlanElementComparator());
+			List<String> shipmentPlan = new ArrayList<>();
+			for (LspShipmentPlanElement element : planElements) {
+				shipmentPlan.add(element.getLogisticChainElement().getId() + " " + element.getResourceId() + " " + element.getElementType()
+						+ " " + element.getStartTime() + " " + element.getEndTime());
+			}
+			description.put(lspShipment.getId().toString(), shipmentPlan);
+		}
+		return description;
+	}
+
+	private static Map<String, List<String>> describeCarrierTours(LSP lsp) {
+		Map<String, List<String>> description = new TreeMap<>();
+		for (LSPResource resource : lsp.getResources()) {
+			if (resource instanceof LSPCarrierResource carrierResource) {
+				List<String> tours = new ArrayList<>();
+				for (ScheduledTour scheduledTour : carrierResource.getCarrier().getSelectedPlan().getScheduledTours()) {
+					tours.add(scheduledTour.getTour().getId() + " " + scheduledTour.getVehicle().getId() + " " + scheduledTour.getDeparture());
+					for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+						if (tourElement instanceof Tour.TourActivity activity) {
+							tours.add(activity.getActivityType() + " " + activity.getLocation() + " " + activity.getExpectedArrival());
+						}
+					}
+				}
+				Collections.sort(tours);
+				description.put(resource.getId().toString(), tours);
+			}
+		}
+		return description;
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.graphhopper.jsprit.core.problem.Location;
+import com.graphhopper.jsprit.core.problem.cost.VehicleRoutingTransportCosts;
+import com.graphhopper.jsprit.core.problem.vehicle.Vehicle;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleImpl;
+import com.graphhopper.jsprit.core.problem.vehicle.VehicleTypeImpl;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.jsprit.NetworkBasedTransportCosts;
+import org.matsim.freight.logistics.*;
+import org.matsim.freight.logistics.shipment.LspShipment;
+import org.matsim.freight.logistics.shipment.LspShipmentUtils;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class TransportCostsProviderTest {
+
+	private static final String DEPOT_LINK_ID = "(4 2) (4 3)";
+	private static final List<String> TO_LINKS = List.of("(2 2) (2 3)", "(3 3) (3 4)", "(1 1) (1 2)", "(2 1) (3 1)");
+	/** A link in the other region, which is not used by the LSP. */
+	private static final String UNUSED_LINK_ID = "(14 2) (14 3)";
+
+	private Scenario scenario;
+	private VehicleType small;
+	private VehicleType large;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+
+		small = createVehicleType("small", 0.0004, 0.38);
+		large = createVehicleType("large", 0.001, 0.5);
+	}
+
+	@Test
+	public void testProviderIsKeptInTheScenario() {
+		assertSame(TransportCostsProvider.getOrCreate(scenario), TransportCostsProvider.getOrCreate(scenario));
+	}
+
+	@Test
+	public void testCostsAreSharedForTheSameVehicleTypes() {
+		TransportCostsProvider provider = TransportCostsProvider.getOrCreate(scenario);
+		NetworkBasedTransportCosts costs = provider.getTransportCosts(List.of(small, large), false);
+
+		// the vehicle types are identified by their ids, independent of the order
+		assertSame(costs, provider.getTransportCosts(List.of(large, small), false));
+		assertNotSame(costs, provider.getTransportCosts(List.of(small), false));
+		// there is no road pricing scheme in the scenario, so the costs with tolls are the same
+		assertSame(costs, provider.getTransportCosts(List.of(small, large), true));
+	}
+
+	@Test
+	public void testResetRebuildsTheCosts() {
+		TransportCostsProvider provider = TransportCostsProvider.getOrCreate(scenario);
+		NetworkBasedTransportCosts costs = provider.getTransportCosts(List.of(small), true);
+
+		TransportCostsProvider.reset(scenario);
+
+		assertSame(provider, TransportCostsProvider.getOrCreate(scenario));
+		NetworkBasedTransportCosts rebuiltCosts = provider.getTransportCosts(List.of(small), true);
+		assertNotSame(costs, rebuiltCosts);
+		assertSame(rebuiltCosts, provider.getTransportCosts(List.of(small), true));
+	}
+
+	@Test
+	public void testNoMatrixIfNotSwitchedOn() {
+		addLSP();
+		TransportCostsProvider.collectMatrixLinks(scenario);
+
+		TransportCostsProvider provider = TransportCostsProvider.getOrCreate(scenario);
+		assertSame(provider.getTransportCosts(List.of(small), false), provider.getRoutingCosts(List.of(small), false));
+	}
+
+	@Test
+	public void testMatrixCostsEqualNetworkCostsOnCoveredLinks() {
+		switchMatrixOn();
+		addLSP();
+		TransportCostsProvider.collectMatrixLinks(scenario);
+
+		TransportCostsProvider provider = TransportCostsProvider.getOrCreate(scenario);
+		VehicleRoutingTransportCosts routingCosts = provider.getRoutingCosts(List.of(small), false);
+		assertInstanceOf(MatrixTransportCosts.class, routingCosts);
+		NetworkBasedTransportCosts networkCosts = provider.getTransportCosts(List.of(small), false);
+
+		List<String> coveredLinks = new ArrayList<>(TO_LINKS);
+		coveredLinks.add(DEPOT_LINK_ID);
+		Vehicle vehicle = createJspritVehicle(small);
+		for (String fromLink : coveredLinks) {
+			for (String toLink : coveredLinks) {
+				Location from = Location.newInstance(fromLink);
+				Location to = Location.newInstance(toLink);
+				// the matrix keeps floats
+				double expectedTime = networkCosts.getTransportTime(from, to, 0, null, vehicle);
+				assertEquals(expectedTime, routingCosts.getTransportTime(from, to, 0, null, vehicle), 1e-4 * Math.max(1, expectedTime), fromLink + " -> " + toLink);
+				double expectedDistance = networkCosts.getDistance(from, to, 0, vehicle);
+				assertEquals(expectedDistance, routingCosts.getDistance(from, to, 0, vehicle), 1e-4 * Math.max(1, expectedDistance), fromLink + " -> " + toLink);
+				double expectedCosts = networkCosts.getTransportCost(from, to, 0, null, vehicle);
+				assertEquals(expectedCosts, routingCosts.getTransportCost(from, to, 0, null, vehicle), 1e-4 * Math.max(1, expectedCosts), fromLink + " -> " + toLink);
+			}
+		}
+	}
+
+	@Test
+	public void testLinksOutsideTheMatrixAreRoutedOnTheNetwork() {
+		switchMatrixOn();
+		addLSP();
+		TransportCostsProvider.collectMatrixLinks(scenario);
+
+		TransportCostsProvider provider = TransportCostsProvider.getOrCreate(scenario);
+		VehicleRoutingTransportCosts routingCosts = provider.getRoutingCosts(List.of(small), false);
+		NetworkBasedTransportCosts networkCosts = provider.getTransportCosts(List.of(small), false);
+
+		Vehicle vehicle = createJspritVehicle(small);
+		Location depot = Location.newInstance(DEPOT_LINK_ID);
+		Location unused = Location.newInstance(UNUSED_LINK_ID);
+		assertEquals(networkCosts.getTransportTime(depot, unused, 0, null, vehicle), routingCosts.getTransportTime(depot, unused, 0, null, vehicle));
+		assertEquals(networkCosts.getDistance(unused, depot, 0, vehicle), routingCosts.getDistance(unused, depot, 0, vehicle));
+		assertEquals(networkCosts.getTransportCost(unused, depot, 0, null, vehicle), routingCosts.getTransportCost(unused, depot, 0, null, vehicle));
+	}
+
+	@Test
+	public void testMatricesAreCalculatedAgainIfTheNetworkChanged() {
+		switchMatrixOn();
+		addLSP();
+		TransportCostsProvider.collectMatrixLinks(scenario);
+
+		TransportCostsProvider provider = TransportCostsProvider.getOrCreate(scenario);
+		Vehicle vehicle = createJspritVehicle(small);
+		Location depot = Location.newInstance(DEPOT_LINK_ID);
+		Location customer = Location.newInstance(TO_LINKS.getFirst());
+		double travelTime = provider.getRoutingCosts(List.of(small), false).getTransportTime(depot, customer, 0, null, vehicle);
+
+		// an unchanged network keeps the matrix
+		TransportCostsProvider.reset(scenario);
+		assertEquals(travelTime, provider.getRoutingCosts(List.of(small), false).getTransportTime(depot, customer, 0, null, vehicle));
+
+		// the destination link is always part of the path, so its travel time becomes longer
+		Link link = scenario.getNetwork().getLinks().get(Id.createLinkId(TO_LINKS.getFirst()));
+		link.setFreespeed(link.getFreespeed() / 4);
+		TransportCostsProvider.reset(scenario);
+		VehicleRoutingTransportCosts routingCosts = provider.getRoutingCosts(List.of(small), false);
+		double newTravelTime = routingCosts.getTransportTime(depot, customer, 0, null, vehicle);
+		assertTrue(newTravelTime > travelTime);
+		double expectedTime = provider.getTransportCosts(List.of(small), false).getTransportTime(depot, customer, 0, null, vehicle);
+		assertEquals(expectedTime, newTravelTime, 1e-4 * expectedTime);
+	}
+
+	private void switchMatrixOn() {
+		ConfigUtils.addOrGetModule(scenario.getConfig(), FreightLogisticsConfigGroup.class).setUseTravelTimeDistanceMatrix(true);
+	}
+
+	/** Adds an LSP with one distribution carrier, whose depot and customers are the links of the matrix. */
+	private void addLSP() {
+		Carrier carrier = CarriersUtils.createCarrier(Id.create("DistributionCarrier", Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(CarrierVehicle.newInstance(Id.createVehicleId("DistributionVehicle"), Id.createLinkId(DEPOT_LINK_ID), small))
+				.setFleetSize(CarrierCapabilities.FleetSize.INFINITE)
+				.build());
+		LSPResource resource = ResourceImplementationUtils.DistributionCarrierResourceBuilder.newInstance(carrier)
+				.setDistributionScheduler(ResourceImplementationUtils.createDefaultDistributionCarrierScheduler(scenario))
+				.setLocationLinkId(Id.createLinkId(DEPOT_LINK_ID))
+				.build();
+		LogisticChainElement element = LSPUtils.LogisticChainElementBuilder.newInstance(Id.create("DistributionElement", LogisticChainElement.class))
+				.setResource(resource)
+				.build();
+		LogisticChain chain = LSPUtils.LogisticChainBuilder.newInstance(Id.create("DistributionChain", LogisticChain.class))
+				.addLogisticChainElement(element)
+				.build();
+		LSPPlan plan = LSPUtils.createLSPPlan()
+				.setInitialShipmentAssigner(ResourceImplementationUtils.createSingleLogisticChainShipmentAssigner())
+				.addLogisticChain(chain);
+		LSP lsp = LSPUtils.LSPBuilder.getInstance(Id.create("DistributionLSP", LSP.class))
+				.setInitialPlan(plan)
+				.setLogisticChainScheduler(ResourceImplementationUtils.createDefaultSimpleForwardLogisticChainScheduler(List.of(resource)))
+				.build();
+
+		for (int i = 0; i < TO_LINKS.size(); i++) {
+			LspShipmentUtils.LspShipmentBuilder builder = LspShipmentUtils.LspShipmentBuilder.newInstance(Id.create(i + 1, LspShipment.class));
+			builder.setCapacityDemand(1);
+			builder.setFromLinkId(Id.createLinkId(DEPOT_LINK_ID));
+			builder.setToLinkId(Id.createLinkId(TO_LINKS.get(i)));
+			builder.setEndTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setStartTimeWindow(TimeWindow.newInstance(0, (24 * 3600)));
+			builder.setDeliveryServiceTime(60);
+			lsp.assignShipmentToLSP(builder.build());
+		}
+		LSPUtils.addLSPs(scenario, new LSPs(List.of(lsp)));
+	}
+
+	/** A jsprit vehicle with the same type id, costs and maximum velocity as the given vehicle type. */
+	private static Vehicle createJspritVehicle(VehicleType vehicleType) {
+		com.graphhopper.jsprit.core.problem.vehicle.VehicleType jspritType = VehicleTypeImpl.Builder.newInstance(vehicleType.getId().toString())
+				.setCostPerDistance(vehicleType.getCostInformation().getCostsPerMeter())
+				.setCostPerTransportTime(vehicleType.getCostInformation().getCostsPerSecond())
+				.setMaxVelocity(vehicleType.getMaximumVelocity())
+				.build();
+		return VehicleImpl.Builder.newInstance("vehicle")
+				.setStartLocation(Location.newInstance(DEPOT_LINK_ID))
+				.setType(jspritType)
+				.build();
+	}
+
+	private static VehicleType createVehicleType(String id, double costsPerMeter, double costsPerSecond) {
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create(id, VehicleType.class), TransportMode.car);
+		vehicleType.getCostInformation().setCostsPerMeter(costsPerMeter);
+		vehicleType.getCostInformation().setCostsPerSecond(costsPerSecond);
+		vehicleType.getCostInformation().setFixedCost(0.);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+		return vehicleType;
+	}
+}
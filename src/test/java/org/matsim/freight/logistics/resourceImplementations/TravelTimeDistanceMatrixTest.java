@@ -0,0 +1,89 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.speedy.SpeedyGraphBuilder;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class TravelTimeDistanceMatrixTest {
+
+	private static final String LINK_A = "(2 2) (2 3)";
+	private static final String LINK_B = "(2 3) (2 4)";
+	private static final String LINK_C = "(2 2) (3 2)";
+
+	private TravelTimeDistanceMatrix matrix;
+
+	@BeforeEach
+	public void initialize() {
+		Network network = NetworkUtils.createNetwork();
+		new MatsimNetworkReader(network).readFile("scenarios/2regions/2regions-network.xml");
+
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("vehicleType", VehicleType.class), TransportMode.car);
+		vehicleType.getCostInformation().setCostsPerMeter(0.0004);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+
+		List<Link> links = List.of(
+				network.getLinks().get(Id.createLinkId(LINK_A)),
+				network.getLinks().get(Id.createLinkId(LINK_B)),
+				network.getLinks().get(Id.createLinkId(LINK_C)));
+		matrix = TravelTimeDistanceMatrix.calculate(SpeedyGraphBuilder.build(network), links, vehicleType, 2);
+	}
+
+	@Test
+	public void testSameLink() {
+		assertEquals(0., matrix.getTravelTime(LINK_A, LINK_A), 0.);
+		assertEquals(0., matrix.getDistance(LINK_A, LINK_A), 0.);
+	}
+
+	@Test
+	public void testFollowingLink() {
+		// only the destination link is driven, with the free speed of 7.5 m/s
+		assertEquals(1000. / 7.5, matrix.getTravelTime(LINK_A, LINK_B), 0.01);
+		assertEquals(1000., matrix.getDistance(LINK_A, LINK_B), 0.01);
+	}
+
+	@Test
+	public void testWayBack() {
+		// back over (2 4) -> (2 3) -> (2 2) and then the destination link
+		assertEquals(3000., matrix.getDistance(LINK_B, LINK_A), 0.01);
+		assertEquals(3000. / 7.5, matrix.getTravelTime(LINK_B, LINK_A), 0.01);
+	}
+
+	@Test
+	public void testUnknownLink() {
+		assertTrue(Double.isNaN(matrix.getTravelTime(LINK_A, "(1 1) (1 2)")));
+		assertTrue(Double.isNaN(matrix.getDistance("(1 1) (1 2)", LINK_C)));
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2024 by the members listed in the COPYING,        *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+
+package org.matsim.freight.logistics.resourceImplementations;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.freight.carriers.*;
+import org.matsim.freight.carriers.CarrierCapabilities.FleetSize;
+import org.matsim.freight.logistics.FreightLogisticsConfigGroup;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+public class VrpSolutionCacheTest {
+
+	private Scenario scenario;
+	private Carrier carrier;
+	private VehicleType vehicleType;
+
+	@BeforeEach
+	public void initialize() {
+		Config config = new Config();
+		config.addCoreModules();
+		ConfigUtils.addOrGetModule(config, FreightLogisticsConfigGroup.class).setVrpSolutionCacheSize(1);
+		scenario = ScenarioUtils.createScenario(config);
+		new MatsimNetworkReader(scenario.getNetwork()).readFile("scenarios/2regions/2regions-network.xml");
+
+		vehicleType = VehicleUtils.createVehicleType(Id.create("CollectionCarrierVehicleType", VehicleType.class), TransportMode.car);
+		vehicleType.getCapacity().setOther(10);
+		vehicleType.getCostInformation().setCostsPerMeter(0.0004);
+		vehicleType.getCostInformation().setCostsPerSecond(0.38);
+		vehicleType.getCostInformation().setFixedCost(49.);
+		vehicleType.setMaximumVelocity(50 / 3.6);
+
+		CarrierVehicle carrierVehicle = CarrierVehicle.newInstance(Id.createVehicleId("CollectionVehicle"), Id.createLinkId("(4 2) (4 3)"), vehicleType);
+		carrier = CarriersUtils.createCarrier(Id.create("CollectionCarrier", Carrier.class));
+		carrier.setCarrierCapabilities(CarrierCapabilities.Builder.newInstance()
+				.addVehicle(carrierVehicle)
+				.setFleetSize(FleetSize.INFINITE)
+				.build());
+	}
+
+	@Test
+	public void testUnchangedCarrierReusesSolution() {
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		List<String> firstTours = describeTours(carrier.getSelectedPlan());
+
+		// as it is done by the carrier schedulers: clear the carrier and add new (but equal) services
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+
+		VrpSolutionCache cache = VrpSolutionCache.getOrCreate(scenario);
+		assertNotNull(cache);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(firstTours, describeTours(carrier.getSelectedPlan()));
+		for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+			for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+				if (tourElement instanceof Tour.ServiceActivity serviceActivity) {
+					assertSame(serviceActivity.getService(), carrier.getServices().get(serviceActivity.getService().getId()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testChangedCarrierIsSolvedAgain() {
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+
+		setServices(2);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+
+		VrpSolutionCache cache = VrpSolutionCache.getOrCreate(scenario);
+		assertNotNull(cache);
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		// the cache size is 1, so the first solution was evicted
+		assertEquals(1, cache.size());
+
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		assertEquals(3, cache.getMisses());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testPlansDoNotShareTours() {
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		List<ScheduledTour> firstTours = new ArrayList<>(carrier.getSelectedPlan().getScheduledTours());
+
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		List<ScheduledTour> secondTours = new ArrayList<>(carrier.getSelectedPlan().getScheduledTours());
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		List<ScheduledTour> thirdTours = new ArrayList<>(carrier.getSelectedPlan().getScheduledTours());
+
+		assertEquals(2, VrpSolutionCache.getOrCreate(scenario).getHits());
+		assertEquals(firstTours.size(), secondTours.size());
+		for (int i = 0; i < firstTours.size(); i++) {
+			assertNotSame(firstTours.get(i), secondTours.get(i));
+			assertNotSame(firstTours.get(i).getTour(), secondTours.get(i).getTour());
+			assertNotSame(secondTours.get(i), thirdTours.get(i));
+			assertNotSame(secondTours.get(i).getTour(), thirdTours.get(i).getTour());
+		}
+	}
+
+	@Test
+	public void testChangedVehicleTypeIsSolvedAgain() {
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+
+		// same vehicle type id, but other costs
+		vehicleType.getCostInformation().setCostsPerSecond(0.5);
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+
+		VrpSolutionCache cache = VrpSolutionCache.getOrCreate(scenario);
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+
+		vehicleType.getCapacity().setOther(5);
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		assertEquals(3, cache.getMisses());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testChangedNetworkIsSolvedAgainAfterReset() {
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+
+		Link link = scenario.getNetwork().getLinks().get(Id.createLinkId("(2 2) (2 3)"));
+		link.setFreespeed(link.getFreespeed() / 2);
+		// the network is only looked at again after the reset, which is done once per iteration
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		VrpSolutionCache cache = VrpSolutionCache.getOrCreate(scenario);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		TransportCostsProvider.reset(scenario);
+		setServices(1);
+		CarrierSchedulerUtils.solveVrpWithJsprit(carrier, scenario);
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testNoCacheByDefault() {
+		Config config = new Config();
+		config.addCoreModules();
+		assertNull(VrpSolutionCache.getOrCreate(ScenarioUtils.createScenario(config)));
+	}
+
+	private static List<String> describeTours(CarrierPlan plan) {
+		List<String> description = new ArrayList<>();
+		for (ScheduledTour scheduledTour : plan.getScheduledTours()) {
+			description.add(scheduledTour.getTour().getId() + " " + scheduledTour.getVehicle().getId() + " " + scheduledTour.getDeparture());
+			for (Tour.TourElement tourElement : scheduledTour.getTour().getTourElements()) {
+				switch (tourElement) {
+					case Tour.Leg leg -> description.add("leg " + leg.getExpectedDepartureTime() + " " + leg.getExpectedTransportTime());
+					case Tour.TourActivity activity -> description.add(activity.getActivityType() + " " + activity.getLocation() + " " + activity.getExpectedArrival() + " " + activity.getDuration());
+					default -> description.add(tourElement.toString());
+				}
+			}
+		}
+		return description;
+	}
+
+	private void setServices(int serviceDuration) {
+		carrier.getServices().clear();
+		carrier.getPlans().clear();
+		addService("service1", "(2 2) (2 3)", serviceDuration);
+		addService("service2", "(3 3) (3 4)", serviceDuration);
+		addService("service3", "(1 1) (1 2)", serviceDuration);
+	}
+
+	private void addService(String id, String linkId, int serviceDuration) {
+		Id<Link> locationLinkId = Id.createLinkId(linkId);
+		CarrierService service = CarrierService.Builder.newInstance(Id.create(id, CarrierService.class), locationLinkId)
+				.setServiceStartTimeWindow(TimeWindow.newInstance(0, 24 * 3600))
+				.setCapacityDemand(1)
+				.setServiceDuration(serviceDuration)
+				.build();
+		carrier.getServices().put(service.getId(), service);
+	}
+}